@@ -0,0 +1,98 @@
+package com.deadlock.detector.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 比较两次{@link BenchmarkRunner}的汇总，超过阈值的变慢标记为回归，有回归时以状态码1退出
+ * <p>
+ * 参数：基线、当前结果（summary.tsv的路径，或结果根目录下的提交名）、结果根目录、阈值百分比。
+ * 吞吐量越大越好，其他模式（平均时间、采样时间）越小越好。
+ */
+public final class BenchmarkCompare {
+
+    private BenchmarkCompare() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BenchmarkCompare <baseline> <current> [resultsRoot] [thresholdPercent]");
+            System.exit(2);
+        }
+        File root = new File(args.length > 2 ? args[2] : "build/jmh-results");
+        double threshold = args.length > 3 ? Double.parseDouble(args[3]) : 10;
+        Map<String, Row> baseline = read(resolve(args[0], root));
+        Map<String, Row> current = read(resolve(args[1], root));
+
+        int regressions = 0;
+        System.out.println(String.format(Locale.ROOT, "%-50s %-40s %4s %-7s %14s %14s %9s",
+                "Benchmark", "Params", "Thr", "Mode", "Baseline", "Current", "Change"));
+        for (Map.Entry<String, Row> entry : current.entrySet()) {
+            Row now = entry.getValue();
+            Row before = baseline.get(entry.getKey());
+            if (before == null || before.score == 0) {
+                continue;
+            }
+            double change = (now.score - before.score) / before.score * 100;
+            // 统一成"正数表示变慢"
+            double slowdown = "thrpt".equals(now.mode) ? -change : change;
+            boolean regressed = slowdown > threshold;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.println(String.format(Locale.ROOT, "%-50s %-40s %4s %-7s %14.3f %14.3f %+8.1f%%%s",
+                    BenchmarkRunner.shortName(now.benchmark), now.params, now.threads, now.mode,
+                    before.score, now.score, change, regressed ? "  REGRESSION" : ""));
+        }
+        System.out.println(regressions + " regression(s) over " + threshold + "%");
+        if (regressions > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static File resolve(String arg, File root) {
+        File file = new File(arg);
+        return file.isFile() ? file : new File(new File(root, arg), BenchmarkRunner.SUMMARY_FILE);
+    }
+
+    private static Map<String, Row> read(File file) throws IOException {
+        Map<String, Row> rows = new LinkedHashMap<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            // 跳过表头
+            String line = reader.readLine();
+            while ((line = reader.readLine()) != null) {
+                String[] cols = line.split("\t");
+                if (cols.length < 5) {
+                    continue;
+                }
+                Row row = new Row(cols[0], cols[1], cols[2], cols[3], Double.parseDouble(cols[4]));
+                rows.put(row.benchmark + '|' + row.params + '|' + row.threads + '|' + row.mode, row);
+            }
+        }
+        return rows;
+    }
+
+    private static final class Row {
+        final String benchmark;
+        final String params;
+        final String threads;
+        final String mode;
+        final double score;
+
+        Row(String benchmark, String params, String threads, String mode, double score) {
+            this.benchmark = benchmark;
+            this.params = params;
+            this.threads = threads;
+            this.mode = mode;
+            this.score = score;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.deadlock.detector.benchmark;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.NoBenchmarksException;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 运行JMH基准，带GC profiler，输出JSON结果和供{@link BenchmarkCompare}比较的汇总
+ * <p>
+ * 参数：include正则、逗号分隔的线程数、结果目录。锁基准按每个线程数各运行一遍，
+ * 图算法基准是单线程的，只用1个线程运行一遍。
+ */
+public final class BenchmarkRunner {
+
+    // 需要按线程数分别运行的基准
+    private static final String THREAD_SCALED = "LockWrapperBenchmark";
+
+    static final String SUMMARY_FILE = "summary.tsv";
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        String include = args.length > 0 ? args[0] : ".*";
+        String threadList = args.length > 1 ? args[1] : "1,2,8,32";
+        File outDir = new File(args.length > 2 ? args[2] : "build/jmh-results");
+        if (!outDir.isDirectory() && !outDir.mkdirs()) {
+            throw new IllegalStateException("Cannot create " + outDir);
+        }
+
+        List<RunResult> all = new ArrayList<>();
+        // 单线程基准：排除按线程数运行的
+        all.addAll(run(new OptionsBuilder()
+                .include(include)
+                .exclude(THREAD_SCALED)
+                .threads(1), new File(outDir, "results-single.json")));
+        for (String item : threadList.split(",")) {
+            int threads = Integer.parseInt(item.trim());
+            // 同时满足include和THREAD_SCALED
+            all.addAll(run(new OptionsBuilder()
+                    .include(include)
+                    .exclude("^(?!.*" + THREAD_SCALED + ").*")
+                    .threads(threads), new File(outDir, "results-t" + threads + ".json")));
+        }
+
+        printSummary(all, System.out);
+        try (PrintStream out = new PrintStream(new File(outDir, SUMMARY_FILE), "UTF-8")) {
+            writeSummary(all, out);
+        }
+        System.out.println("Results: " + outDir.getAbsolutePath());
+    }
+
+    private static Collection<RunResult> run(OptionsBuilder builder, File result) throws RunnerException {
+        Options options = builder
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(result.getPath())
+                .build();
+        try {
+            return new Runner(options).run();
+        } catch (NoBenchmarksException e) {
+            // include只选中了另一类基准
+            return new ArrayList<>();
+        }
+    }
+
+    private static void printSummary(Collection<RunResult> results, PrintStream out) {
+        out.println();
+        out.println(String.format(Locale.ROOT, "%-50s %-40s %4s %-7s %14s %10s %-10s %12s",
+                "Benchmark", "Params", "Thr", "Mode", "Score", "Error", "Unit", "Alloc(B/op)"));
+        for (RunResult run : results) {
+            BenchmarkParams params = run.getParams();
+            Result primary = run.getPrimaryResult();
+            out.println(String.format(Locale.ROOT, "%-50s %-40s %4d %-7s %14.3f %10.3f %-10s %12s",
+                    shortName(params.getBenchmark()), describeParams(params), params.getThreads(),
+                    params.getMode().shortLabel(), primary.getScore(), primary.getScoreError(),
+                    primary.getScoreUnit(), allocPerOp(run)));
+        }
+    }
+
+    /**
+     * 每行一个结果：benchmark、params、threads、mode、score、error、unit、alloc，用制表符分隔
+     */
+    private static void writeSummary(Collection<RunResult> results, PrintStream out) {
+        out.println("benchmark\tparams\tthreads\tmode\tscore\terror\tunit\talloc");
+        for (RunResult run : results) {
+            BenchmarkParams params = run.getParams();
+            Result primary = run.getPrimaryResult();
+            out.println(params.getBenchmark() + '\t' + describeParams(params) + '\t' + params.getThreads()
+                    + '\t' + params.getMode().shortLabel()
+                    + '\t' + String.format(Locale.ROOT, "%.6f", primary.getScore())
+                    + '\t' + String.format(Locale.ROOT, "%.6f", primary.getScoreError())
+                    + '\t' + primary.getScoreUnit() + '\t' + allocPerOp(run));
+        }
+    }
+
+    static String shortName(String benchmark) {
+        int dot = benchmark.lastIndexOf('.');
+        int classDot = dot > 0 ? benchmark.lastIndexOf('.', dot - 1) : -1;
+        return benchmark.substring(classDot + 1);
+    }
+
+    private static String describeParams(BenchmarkParams params) {
+        StringBuilder sb = new StringBuilder();
+        for (String key : params.getParamsKeys()) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(key).append('=').append(params.getParam(key));
+        }
+        return sb.length() > 0 ? sb.toString() : "-";
+    }
+
+    private static String allocPerOp(RunResult run) {
+        // JMH 1.36起去掉了次要结果名前的"·"
+        Result alloc = run.getSecondaryResults().get("gc.alloc.rate.norm");
+        if (alloc == null) {
+            alloc = run.getSecondaryResults().get("·gc.alloc.rate.norm");
+        }
+        return alloc != null ? String.format(Locale.ROOT, "%.1f", alloc.getScore()) : "-";
+    }
+}
@@ -0,0 +1,71 @@
+package com.deadlock.detector.benchmark;
+
+import com.deadlock.detector.analyzer.DeadlockAnalyzer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 等待图环检测随图规模和形状的耗时
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DeadlockAnalyzerBenchmark {
+
+    @Param({"10", "100", "1000", "10000", "100000"})
+    public int size;
+
+    @Param({"CHAIN", "RANDOM_FUNCTIONAL", "SMALL_CYCLES", "ONE_CYCLE"})
+    public GraphShape shape;
+
+    private final DeadlockAnalyzer analyzer = new DeadlockAnalyzer();
+    private Map<Long, Long> graph;
+    private Map<Long, Set<Long>> multiGraph;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int[] next = shape.successors(size, 42);
+        graph = new HashMap<>();
+        multiGraph = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            if (next[i] >= 0) {
+                graph.put((long) i, (long) next[i]);
+                multiGraph.put((long) i, Collections.singleton((long) next[i]));
+            }
+        }
+    }
+
+    @Benchmark
+    public List<List<Long>> detectCycles() {
+        return analyzer.detectCycles(graph);
+    }
+
+    /**
+     * 同样的拓扑用多对多版本检测
+     */
+    @Benchmark
+    public List<List<Long>> detectCyclesMulti() {
+        return analyzer.detectCyclesMulti(multiGraph);
+    }
+}
@@ -0,0 +1,68 @@
+package com.deadlock.detector.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 合成等待图的形状，每个节点最多等待一个节点（与单个锁等待一致）
+ */
+public enum GraphShape {
+    /**
+     * 一条长等待链，没有环
+     */
+    CHAIN,
+    /**
+     * 每个节点随机等待另一个节点，通常形成少量环和指向环的树
+     */
+    RANDOM_FUNCTIONAL,
+    /**
+     * 大量3个节点的小环
+     */
+    SMALL_CYCLES,
+    /**
+     * 所有节点组成一个大环
+     */
+    ONE_CYCLE;
+
+    private static final int SMALL_CYCLE_LENGTH = 3;
+
+    /**
+     * 生成每个节点的后继，-1表示不等待；同样的参数总是生成同样的图
+     */
+    public int[] successors(int size, long seed) {
+        int[] next = new int[size];
+        Arrays.fill(next, -1);
+        switch (this) {
+            case CHAIN:
+                for (int i = 0; i < size - 1; i++) {
+                    next[i] = i + 1;
+                }
+                break;
+            case RANDOM_FUNCTIONAL:
+                Random random = new Random(seed);
+                for (int i = 0; i < size && size > 1; i++) {
+                    // 不等待自己
+                    int target = random.nextInt(size - 1);
+                    next[i] = target >= i ? target + 1 : target;
+                }
+                break;
+            case SMALL_CYCLES:
+                int full = size - size % SMALL_CYCLE_LENGTH;
+                for (int i = 0; i < full; i++) {
+                    int base = i - i % SMALL_CYCLE_LENGTH;
+                    next[i] = base + (i - base + 1) % SMALL_CYCLE_LENGTH;
+                }
+                // 剩下不够成环的节点接成短链
+                for (int i = full; i < size - 1; i++) {
+                    next[i] = i + 1;
+                }
+                break;
+            case ONE_CYCLE:
+                for (int i = 0; i < size && size > 1; i++) {
+                    next[i] = (i + 1) % size;
+                }
+                break;
+        }
+        return next;
+    }
+}
@@ -0,0 +1,153 @@
+package com.deadlock.detector.benchmark;
+
+import com.deadlock.detector.detector.ReentrantLockDetector;
+import com.deadlock.detector.jvm.JfrLockTracer;
+import com.deadlock.detector.model.DeadlockReport;
+import com.deadlock.detector.reporter.DeadlockReporter;
+import com.deadlock.detector.stats.LockEventRecorder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 被追踪锁相对原始ReentrantLock的开销
+ * <ul>
+ * <li>RAW：原始ReentrantLock</li>
+ * <li>TRACKED：LockWrapper，只维护持有/等待关系</li>
+ * <li>FULL：再开启锁等待看门狗、锁事件时间线和JFR回调（未录制）</li>
+ * </ul>
+ * 线程数由{@link BenchmarkRunner}逐个传入；uncontended/nested/reentrant每个线程用自己的锁，contended所有线程抢同一把锁。
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LockWrapperBenchmark {
+
+    public enum Tracking {
+        RAW, TRACKED, FULL
+    }
+
+    @Param({"RAW", "TRACKED", "FULL"})
+    public Tracking tracking;
+
+    private ReentrantLockDetector detector;
+    private Lock shared;
+    private long sharedCounter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        detector = new ReentrantLockDetector(new DeadlockReporter() {
+            @Override
+            public void report(DeadlockReport report) {
+            }
+        });
+        if (tracking == Tracking.FULL) {
+            detector.startWatchdog(1000);
+            detector.setLockTracer(new JfrLockTracer());
+            LockEventRecorder.getDefault().start();
+        }
+        shared = newLock("shared");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        LockEventRecorder.getDefault().stop();
+        LockEventRecorder.getDefault().clear();
+        detector.destroy();
+    }
+
+    Lock newLock(String name) {
+        return tracking == Tracking.RAW ? new ReentrantLock() : detector.createTrackedLock(name);
+    }
+
+    /**
+     * 每个线程自己的锁
+     */
+    @State(Scope.Thread)
+    public static class PerThread {
+        Lock outer;
+        Lock inner;
+        long counter;
+
+        @Setup(Level.Trial)
+        public void setUp(LockWrapperBenchmark benchmark) {
+            String suffix = "-" + Thread.currentThread().getId();
+            outer = benchmark.newLock("outer" + suffix);
+            inner = benchmark.newLock("inner" + suffix);
+        }
+    }
+
+    @Benchmark
+    public long uncontended(PerThread state) {
+        state.outer.lock();
+        try {
+            return ++state.counter;
+        } finally {
+            state.outer.unlock();
+        }
+    }
+
+    @Benchmark
+    public long contended() {
+        shared.lock();
+        try {
+            return ++sharedCounter;
+        } finally {
+            shared.unlock();
+        }
+    }
+
+    /**
+     * 按固定顺序嵌套获取两把锁
+     */
+    @Benchmark
+    public long nested(PerThread state) {
+        state.outer.lock();
+        try {
+            state.inner.lock();
+            try {
+                return ++state.counter;
+            } finally {
+                state.inner.unlock();
+            }
+        } finally {
+            state.outer.unlock();
+        }
+    }
+
+    /**
+     * 同一把锁重入一次
+     */
+    @Benchmark
+    public long reentrant(PerThread state) {
+        state.outer.lock();
+        try {
+            state.outer.lock();
+            try {
+                return ++state.counter;
+            } finally {
+                state.outer.unlock();
+            }
+        } finally {
+            state.outer.unlock();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.deadlock.detector.detector;
+
+import com.deadlock.detector.benchmark.GraphShape;
+import com.deadlock.detector.model.DeadlockReport;
+import com.deadlock.detector.reporter.DeadlockReporter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ReentrantLockDetector由等待表和持有表构建等待图的耗时
+ * <p>
+ * 合成的线程j持有锁j，线程i等待后继线程持有的锁；与检测器相同的包，直接调用包级方法
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReentrantWaitForGraphBenchmark {
+
+    @Param({"10", "100", "1000", "10000", "100000"})
+    public int size;
+
+    @Param({"CHAIN", "RANDOM_FUNCTIONAL", "SMALL_CYCLES", "ONE_CYCLE"})
+    public GraphShape shape;
+
+    private Map<Long, LockWrapper> waiting;
+    private Map<Long, Set<LockWrapper>> held;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ReentrantLockDetector detector = new ReentrantLockDetector(new DeadlockReporter() {
+            @Override
+            public void report(DeadlockReport report) {
+            }
+        });
+        LockWrapper[] locks = new LockWrapper[size];
+        held = new ConcurrentHashMap<>();
+        for (int j = 0; j < size; j++) {
+            locks[j] = new LockWrapper(new ReentrantLock(), "lock-" + j, detector);
+            locks[j].markAcquired(j);
+            Set<LockWrapper> set = ConcurrentHashMap.newKeySet();
+            set.add(locks[j]);
+            held.put((long) j, set);
+        }
+        int[] next = shape.successors(size, 42);
+        waiting = new ConcurrentHashMap<>();
+        for (int i = 0; i < size; i++) {
+            if (next[i] >= 0) {
+                waiting.put((long) i, locks[next[i]]);
+            }
+        }
+    }
+
+    @Benchmark
+    public Map<Long, Long> buildWaitForGraph() {
+        return ReentrantLockDetector.buildWaitForGraph(waiting, held);
+    }
+}
@@ -0,0 +1,87 @@
+package com.deadlock.detector.detector;
+
+import com.deadlock.detector.benchmark.GraphShape;
+import com.deadlock.detector.model.DeadlockReport;
+import com.deadlock.detector.reporter.DeadlockReporter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SynchronizedLockDetector由堆栈推断等待图的耗时
+ * <p>
+ * 合成的线程j在Lockj.enter内，阻塞的线程栈顶是后继线程的Lock.enter。
+ * 每个阻塞线程都要扫描其他线程的堆栈，耗时与线程数的平方成正比，规模只到1万
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SynchronizedWaitForGraphBenchmark {
+
+    // 每个合成堆栈在锁帧之下的公共栈帧数
+    private static final int BASE_FRAMES = 12;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int size;
+
+    @Param({"CHAIN", "RANDOM_FUNCTIONAL", "SMALL_CYCLES", "ONE_CYCLE"})
+    public GraphShape shape;
+
+    private SynchronizedLockDetector detector;
+    private List<Thread> blocked;
+    private Map<Thread, StackTraceElement[]> stacks;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        detector = new SynchronizedLockDetector(new DeadlockReporter() {
+            @Override
+            public void report(DeadlockReport report) {
+            }
+        });
+        int[] next = shape.successors(size, 42);
+        blocked = new ArrayList<>();
+        stacks = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            // 不启动，只用作线程对象
+            Thread thread = new Thread("synthetic-" + i);
+            List<StackTraceElement> stack = new ArrayList<>(BASE_FRAMES + 2);
+            if (next[i] >= 0) {
+                stack.add(lockFrame(next[i]));
+                blocked.add(thread);
+            }
+            stack.add(lockFrame(i));
+            for (int f = 0; f < BASE_FRAMES; f++) {
+                stack.add(new StackTraceElement("com.example.Worker", "step" + f, "Worker.java", 10 + f));
+            }
+            stacks.put(thread, stack.toArray(new StackTraceElement[0]));
+        }
+    }
+
+    private static StackTraceElement lockFrame(int index) {
+        return new StackTraceElement("com.example.Lock" + index, "enter", "Lock.java", 20);
+    }
+
+    @Benchmark
+    public Map<Long, Long> buildWaitForGraph() {
+        return detector.buildWaitForGraph(blocked, stacks);
+    }
+}
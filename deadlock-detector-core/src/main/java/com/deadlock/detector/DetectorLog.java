@@ -0,0 +1,95 @@
+package com.deadlock.detector;
+
+import java.io.PrintStream;
+import java.util.Iterator;
+import java.util.ServiceLoader;
+
+/**
+ * 日志入口 - core模块不依赖具体平台的日志实现
+ * <p>
+ * 启动时通过{@link ServiceLoader}查找{@link Printer}实现（Android模块提供输出到Logcat的实现），
+ * 找不到时输出到System.err；也可以用{@link #setPrinter(Printer)}替换。
+ */
+public final class DetectorLog {
+
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+
+    /**
+     * 日志输出实现
+     */
+    public interface Printer {
+        void println(int priority, String tag, String message, Throwable throwable);
+    }
+
+    private static volatile Printer printer = loadPrinter();
+
+    private DetectorLog() {
+    }
+
+    public static void setPrinter(Printer newPrinter) {
+        printer = newPrinter != null ? newPrinter : new StreamPrinter(System.err);
+    }
+
+    public static void d(String tag, String message) {
+        printer.println(DEBUG, tag, message, null);
+    }
+
+    public static void i(String tag, String message) {
+        printer.println(INFO, tag, message, null);
+    }
+
+    public static void w(String tag, String message) {
+        printer.println(WARN, tag, message, null);
+    }
+
+    public static void w(String tag, String message, Throwable throwable) {
+        printer.println(WARN, tag, message, throwable);
+    }
+
+    public static void e(String tag, String message) {
+        printer.println(ERROR, tag, message, null);
+    }
+
+    public static void e(String tag, String message, Throwable throwable) {
+        printer.println(ERROR, tag, message, throwable);
+    }
+
+    private static Printer loadPrinter() {
+        try {
+            Iterator<Printer> found = ServiceLoader.load(Printer.class, DetectorLog.class.getClassLoader()).iterator();
+            if (found.hasNext()) {
+                return found.next();
+            }
+        } catch (Throwable t) {
+            // 服务配置损坏时退回默认输出
+        }
+        return new StreamPrinter(System.err);
+    }
+
+    /**
+     * 输出到PrintStream，格式为"W/Tag: message"
+     */
+    public static final class StreamPrinter implements Printer {
+        private static final char[] LEVELS = {'V', 'V', 'V', 'D', 'I', 'W', 'E'};
+
+        private final PrintStream out;
+
+        public StreamPrinter(PrintStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void println(int priority, String tag, String message, Throwable throwable) {
+            char level = priority >= 0 && priority < LEVELS.length ? LEVELS[priority] : 'E';
+            synchronized (out) {
+                out.println(level + "/" + tag + ": " + message);
+                if (throwable != null) {
+                    throwable.printStackTrace(out);
+                }
+            }
+        }
+    }
+}
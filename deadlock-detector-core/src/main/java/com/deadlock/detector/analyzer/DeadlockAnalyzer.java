@@ -0,0 +1,120 @@
+package com.deadlock.detector.analyzer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 死锁分析器 - 使用图算法检测环
+ */
+public class DeadlockAnalyzer {
+
+    /**
+     * 检测等待图中的环（死锁）
+     * <p>
+     * 每个线程最多等待一个线程，从每个未访问的节点沿等待关系走到底即可，不需要递归，
+     * 大图（长等待链、大环）不会栈溢出
+     *
+     * @param waitForGraph 等待图: key=等待线程ID, value=被等待线程ID
+     * @return 所有检测到的环（每个环是一个线程ID列表）
+     */
+    public List<List<Long>> detectCycles(Map<Long, Long> waitForGraph) {
+        List<List<Long>> cycles = new ArrayList<>();
+        Set<Long> visited = new HashSet<>();
+        // 当前路径上的节点 -> 在路径中的位置
+        Map<Long, Integer> pathIndex = new HashMap<>();
+        List<Long> path = new ArrayList<>();
+
+        for (Long start : waitForGraph.keySet()) {
+            if (visited.contains(start)) {
+                continue;
+            }
+            Long node = start;
+            while (true) {
+                visited.add(node);
+                pathIndex.put(node, path.size());
+                path.add(node);
+
+                Long next = waitForGraph.get(node);
+                if (next == null) {
+                    break;
+                }
+                if (!visited.contains(next)) {
+                    node = next;
+                    continue;
+                }
+                Integer cycleStart = pathIndex.get(next);
+                if (cycleStart != null) {
+                    // 找到环，提取环中的节点
+                    cycles.add(new ArrayList<>(path.subList(cycleStart, path.size())));
+                }
+                break;
+            }
+            // 逐个移除，HashMap.clear()要遍历整个表，长路径之后会变成平方复杂度
+            for (Long onPath : path) {
+                pathIndex.remove(onPath);
+            }
+            path.clear();
+        }
+
+        return cycles;
+    }
+
+    /**
+     * 检测多对多等待关系中的环
+     * <p>
+     * 用显式栈做深度优先搜索，结果与递归版本相同
+     *
+     * @param waitForGraph 等待图: key=等待线程ID, value=被等待线程ID集合
+     * @return 所有检测到的环
+     */
+    public List<List<Long>> detectCyclesMulti(Map<Long, Set<Long>> waitForGraph) {
+        List<List<Long>> cycles = new ArrayList<>();
+        Set<Long> visited = new HashSet<>();
+        Map<Long, Integer> pathIndex = new HashMap<>();
+        List<Long> path = new ArrayList<>();
+        // 与path一一对应，每层还没访问的后继
+        ArrayDeque<Iterator<Long>> pending = new ArrayDeque<>();
+
+        for (Long start : waitForGraph.keySet()) {
+            if (visited.contains(start)) {
+                continue;
+            }
+            push(start, waitForGraph, visited, pathIndex, path, pending);
+            while (!pending.isEmpty()) {
+                Iterator<Long> nextNodes = pending.peek();
+                if (!nextNodes.hasNext()) {
+                    pending.pop();
+                    pathIndex.remove(path.remove(path.size() - 1));
+                    continue;
+                }
+                Long next = nextNodes.next();
+                if (!visited.contains(next)) {
+                    push(next, waitForGraph, visited, pathIndex, path, pending);
+                } else {
+                    Integer cycleStart = pathIndex.get(next);
+                    if (cycleStart != null) {
+                        cycles.add(new ArrayList<>(path.subList(cycleStart, path.size())));
+                    }
+                }
+            }
+        }
+
+        return cycles;
+    }
+
+    private static void push(Long node, Map<Long, Set<Long>> graph, Set<Long> visited,
+                             Map<Long, Integer> pathIndex, List<Long> path, ArrayDeque<Iterator<Long>> pending) {
+        visited.add(node);
+        pathIndex.put(node, path.size());
+        path.add(node);
+        Set<Long> nextNodes = graph.get(node);
+        pending.push(nextNodes != null ? nextNodes.iterator() : Collections.<Long>emptyIterator());
+    }
+}
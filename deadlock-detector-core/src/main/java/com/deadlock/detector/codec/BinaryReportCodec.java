@@ -0,0 +1,481 @@
+package com.deadlock.detector.codec;
+
+import com.deadlock.detector.model.DeadlockReport;
+import com.deadlock.detector.model.DeadlockType;
+import com.deadlock.detector.model.MessageRecord;
+import com.deadlock.detector.model.StackProfile;
+import com.deadlock.detector.model.ThreadDetail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DeadlockReport的紧凑二进制编码
+ * <p>
+ * 整数使用varint（有符号值先做zigzag），字符串为varint长度+UTF-8，null用长度0表示，
+ * 非null字符串的长度+1写入。字符串直接按字符编码写出，不生成中间byte[]。
+ * 不依赖Android API，可以在普通JVM上解码。
+ * <p>
+ * 堆栈在报告开头按字符串表、栈帧表、堆栈表写一次，线程只引用堆栈下标，
+ * 几百个线程共用相同空闲堆栈时只编码一份；解码后相同的堆栈也共用同一个数组。
+ * <p>
+ * 堆栈采样聚合（StackProfile）写在报告末尾，每条堆栈按栈帧表下标完整写出，不受maxFrames限制。
+ * 版本2的报告没有这一段，仍可解码。
+ */
+public final class BinaryReportCodec {
+
+    public static final int VERSION = 3;
+
+    /**
+     * 不含堆栈采样聚合的旧版本
+     */
+    private static final int VERSION_WITHOUT_PROFILE = 2;
+
+    /**
+     * 不限制每个堆栈的帧数
+     */
+    public static final int UNLIMITED_FRAMES = Integer.MAX_VALUE;
+
+    private BinaryReportCodec() {
+    }
+
+    /**
+     * 把报告编码到buffer当前位置
+     *
+     * @param maxFrames 每个堆栈最多编码的帧数，超出部分丢弃
+     * @throws java.nio.BufferOverflowException buffer空间不足
+     */
+    public static void encode(DeadlockReport report, ByteBuffer out, int maxFrames) {
+        try {
+            encode(report, ByteSink.of(out), maxFrames);
+        } catch (IOException e) {
+            // ByteBuffer不会抛出IOException
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 把报告流式编码到输出流，编码过程中只使用固定大小的缓冲区，不调用out.close()
+     *
+     * @param maxFrames 每个堆栈最多编码的帧数，超出部分丢弃
+     */
+    public static void encode(DeadlockReport report, OutputStream out, int maxFrames) throws IOException {
+        ByteSink sink = ByteSink.of(out);
+        encode(report, sink, maxFrames);
+        sink.flush();
+    }
+
+    /**
+     * 报告编码后的字节数，只计数不写出
+     */
+    static long encodedSize(DeadlockReport report, int maxFrames) {
+        ByteSink.Counter counter = new ByteSink.Counter();
+        try {
+            encode(report, counter, maxFrames);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return counter.count;
+    }
+
+    private static void encode(DeadlockReport report, ByteSink out, int maxFrames) throws IOException {
+        out.write(VERSION);
+        DeadlockType type = report.getType();
+        writeVarLong(out, type != null ? type.ordinal() + 1 : 0);
+        writeVarLong(out, report.getTimestamp());
+        writeString(out, report.getMessage());
+        writeString(out, report.getLooperName());
+
+        StackTable table = new StackTable(maxFrames);
+        table.addAll(report.getThreadDetails());
+        table.addAll(report.getOtherThreadDetails());
+        table.addProfile(report.getStackProfile());
+        table.write(out);
+        writeThreads(out, report.getThreadDetails(), table);
+        writeThreads(out, report.getOtherThreadDetails(), table);
+
+        List<MessageRecord> messages = report.getRecentMessages();
+        writeVarLong(out, messages.size());
+        for (MessageRecord message : messages) {
+            writeString(out, message.getTarget());
+            writeString(out, message.getCallback());
+            writeVarLong(out, zigzag(message.getWhat()));
+            writeVarLong(out, message.getStartTimeMs());
+            writeVarLong(out, message.getWallNanos());
+            writeVarLong(out, zigzag(message.getCpuNanos()));
+            writeVarLong(out, message.getIdleBeforeNanos());
+            out.write(message.isInProgress() ? 1 : 0);
+        }
+        writeProfile(out, report.getStackProfile(), table);
+    }
+
+    /**
+     * 从buffer当前位置解码一个报告
+     *
+     * @throws IllegalArgumentException 版本不支持或数据损坏
+     */
+    public static DeadlockReport decode(ByteBuffer in) {
+        try {
+            return decode(ByteSource.of(in));
+        } catch (IOException e) {
+            // ByteBuffer不会抛出IOException
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 从输入流解码一个报告，流中可以连续存放多个报告
+     *
+     * @throws IllegalArgumentException 版本不支持或数据损坏
+     * @throws java.io.EOFException     输入提前结束
+     */
+    public static DeadlockReport decode(InputStream in) throws IOException {
+        return decode(ByteSource.of(in));
+    }
+
+    private static DeadlockReport decode(ByteSource in) throws IOException {
+        int version = in.read();
+        if (version != VERSION && version != VERSION_WITHOUT_PROFILE) {
+            throw new IllegalArgumentException("Unsupported report version: " + version);
+        }
+        DeadlockReport.Builder builder = new DeadlockReport.Builder();
+        int typeIndex = (int) readVarLong(in);
+        if (typeIndex > 0) {
+            DeadlockType[] types = DeadlockType.values();
+            if (typeIndex > types.length) {
+                throw new IllegalArgumentException("Unknown report type: " + typeIndex);
+            }
+            builder.type(types[typeIndex - 1]);
+        }
+        builder.timestamp(readVarLong(in))
+                .message(readString(in))
+                .looperName(readString(in));
+
+        StackTraceElement[] frames = readFrames(in);
+        StackTraceElement[][] stacks = readStacks(in, frames);
+        int count = readCount(in);
+        for (int i = 0; i < count; i++) {
+            builder.addThreadDetail(readThread(in, stacks));
+        }
+        count = readCount(in);
+        for (int i = 0; i < count; i++) {
+            builder.addOtherThreadDetail(readThread(in, stacks));
+        }
+
+        count = readCount(in);
+        List<MessageRecord> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            messages.add(new MessageRecord.Builder()
+                    .target(readString(in))
+                    .callback(readString(in))
+                    .what((int) unzigzag(readVarLong(in)))
+                    .startTimeMs(readVarLong(in))
+                    .wallNanos(readVarLong(in))
+                    .cpuNanos(unzigzag(readVarLong(in)))
+                    .idleBeforeNanos(readVarLong(in))
+                    .inProgress(in.read() != 0)
+                    .build());
+        }
+        builder.recentMessages(messages);
+        if (version != VERSION_WITHOUT_PROFILE) {
+            builder.stackProfile(readProfile(in, frames));
+        }
+        return builder.build();
+    }
+
+    private static void writeThreads(ByteSink out, List<ThreadDetail> threads, StackTable table) throws IOException {
+        writeVarLong(out, threads.size());
+        for (ThreadDetail detail : threads) {
+            writeVarLong(out, zigzag(detail.getThreadId()));
+            writeString(out, detail.getThreadName());
+            writeString(out, detail.getThreadState());
+            writeString(out, detail.getLockName());
+            writeVarLong(out, zigzag(detail.getLockOwnerId()));
+            writeString(out, detail.getLockOwnerName());
+            writeString(out, detail.getWaitingForLock());
+            writeVarLong(out, table.refOf(detail.getWaitingForSite()));
+            List<String> heldLocks = detail.getHeldLocks();
+            writeVarLong(out, heldLocks.size());
+            for (String lock : heldLocks) {
+                writeString(out, lock);
+            }
+            writeVarLong(out, table.refOf(detail.getStackTrace()));
+            writeVarLong(out, zigzag(detail.getBlockTimeMs()));
+        }
+    }
+
+    private static ThreadDetail readThread(ByteSource in, StackTraceElement[][] stacks) throws IOException {
+        ThreadDetail.Builder builder = new ThreadDetail.Builder()
+                .threadId(unzigzag(readVarLong(in)))
+                .threadName(readString(in))
+                .threadState(readString(in))
+                .lockName(readString(in))
+                .lockOwnerId(unzigzag(readVarLong(in)))
+                .lockOwnerName(readString(in))
+                .waitingForLock(readString(in))
+                .waitingForSite(readStackRef(in, stacks));
+        int count = readCount(in);
+        List<String> heldLocks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            heldLocks.add(readString(in));
+        }
+        return builder.heldLocks(heldLocks)
+                .stackTrace(readStackRef(in, stacks))
+                .blockTimeMs(unzigzag(readVarLong(in)))
+                .build();
+    }
+
+    private static void writeProfile(ByteSink out, StackProfile profile, StackTable table) throws IOException {
+        if (profile == null) {
+            out.write(0);
+            return;
+        }
+        out.write(1);
+        writeVarLong(out, profile.getMaxNodes());
+        writeVarLong(out, profile.getTruncatedSamples());
+        writeVarLong(out, table.profileStacks.size());
+        for (int i = 0; i < table.profileStacks.size(); i++) {
+            StackTraceElement[] stack = table.profileStacks.get(i);
+            writeVarLong(out, table.profileCounts.get(i));
+            writeVarLong(out, stack.length);
+            for (StackTraceElement frame : stack) {
+                writeVarLong(out, table.frameIndex.get(frame));
+            }
+        }
+    }
+
+    private static StackProfile readProfile(ByteSource in, StackTraceElement[] frames) throws IOException {
+        if (in.read() == 0) {
+            return null;
+        }
+        // 节点上限和采样次数与报告长度无关，只校验范围
+        StackProfile profile = new StackProfile(readIndex(in, Integer.MAX_VALUE));
+        int truncatedSamples = readIndex(in, Integer.MAX_VALUE);
+        int count = readCount(in);
+        for (int i = 0; i < count; i++) {
+            int samples = readIndex(in, Integer.MAX_VALUE);
+            StackTraceElement[] stack = new StackTraceElement[readCount(in)];
+            for (int j = 0; j < stack.length; j++) {
+                stack[j] = frames[readIndex(in, frames.length)];
+            }
+            profile.add(stack, samples);
+        }
+        profile.setTruncatedSamples(truncatedSamples);
+        return profile;
+    }
+
+    /**
+     * 一个报告内的字符串表、栈帧表和堆栈表
+     */
+    private static final class StackTable {
+        final int maxFrames;
+        final Map<String, Integer> stringIndex = new HashMap<>();
+        final List<String> strings = new ArrayList<>();
+        final Map<StackTraceElement, Integer> frameIndex = new HashMap<>();
+        final List<StackTraceElement> frames = new ArrayList<>();
+        // 堆栈经过StackDictionary驻留，相同内容通常是同一个数组
+        final Map<StackTraceElement[], Integer> stackIndex = new IdentityHashMap<>();
+        final List<StackTraceElement[]> stacks = new ArrayList<>();
+        // 采样聚合的堆栈只引用栈帧表，不进入堆栈表
+        final List<StackTraceElement[]> profileStacks = new ArrayList<>();
+        final List<Integer> profileCounts = new ArrayList<>();
+
+        StackTable(int maxFrames) {
+            this.maxFrames = maxFrames;
+        }
+
+        void addAll(List<ThreadDetail> threads) {
+            for (ThreadDetail detail : threads) {
+                add(detail.getWaitingForSite());
+                add(detail.getStackTrace());
+            }
+        }
+
+        void addProfile(StackProfile profile) {
+            if (profile == null) {
+                return;
+            }
+            profile.forEachStack(new StackProfile.StackVisitor() {
+                @Override
+                public void visit(StackTraceElement[] stackTrace, int count) {
+                    profileStacks.add(stackTrace);
+                    profileCounts.add(count);
+                    for (StackTraceElement frame : stackTrace) {
+                        addFrame(frame);
+                    }
+                }
+            });
+        }
+
+        private void add(StackTraceElement[] stack) {
+            if (stack == null || stackIndex.containsKey(stack)) {
+                return;
+            }
+            stackIndex.put(stack, stacks.size());
+            stacks.add(stack);
+            int count = Math.min(stack.length, maxFrames);
+            for (int i = 0; i < count; i++) {
+                addFrame(stack[i]);
+            }
+        }
+
+        private void addFrame(StackTraceElement frame) {
+            if (!frameIndex.containsKey(frame)) {
+                frameIndex.put(frame, frames.size());
+                frames.add(frame);
+                addString(frame.getClassName());
+                addString(frame.getMethodName());
+                addString(frame.getFileName());
+            }
+        }
+
+        private void addString(String value) {
+            if (value != null && !stringIndex.containsKey(value)) {
+                stringIndex.put(value, strings.size());
+                strings.add(value);
+            }
+        }
+
+        /**
+         * 字符串引用，0表示null
+         */
+        private long stringRef(String value) {
+            return value == null ? 0 : stringIndex.get(value) + 1L;
+        }
+
+        /**
+         * 堆栈引用，0表示null
+         */
+        long refOf(StackTraceElement[] stack) {
+            return stack == null ? 0 : stackIndex.get(stack) + 1L;
+        }
+
+        void write(ByteSink out) throws IOException {
+            writeVarLong(out, strings.size());
+            for (String value : strings) {
+                writeString(out, value);
+            }
+            writeVarLong(out, frames.size());
+            for (StackTraceElement frame : frames) {
+                writeVarLong(out, stringRef(frame.getClassName()));
+                writeVarLong(out, stringRef(frame.getMethodName()));
+                writeVarLong(out, stringRef(frame.getFileName()));
+                writeVarLong(out, zigzag(frame.getLineNumber()));
+            }
+            writeVarLong(out, stacks.size());
+            for (StackTraceElement[] stack : stacks) {
+                int count = Math.min(stack.length, maxFrames);
+                writeVarLong(out, count);
+                for (int i = 0; i < count; i++) {
+                    writeVarLong(out, frameIndex.get(stack[i]));
+                }
+            }
+        }
+    }
+
+    private static StackTraceElement[] readFrames(ByteSource in) throws IOException {
+        String[] strings = new String[readCount(in)];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = readString(in);
+        }
+        StackTraceElement[] frames = new StackTraceElement[readCount(in)];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = new StackTraceElement(readStringRef(in, strings), readStringRef(in, strings),
+                    readStringRef(in, strings), (int) unzigzag(readVarLong(in)));
+        }
+        return frames;
+    }
+
+    private static StackTraceElement[][] readStacks(ByteSource in, StackTraceElement[] frames) throws IOException {
+        StackTraceElement[][] stacks = new StackTraceElement[readCount(in)][];
+        for (int i = 0; i < stacks.length; i++) {
+            StackTraceElement[] stack = new StackTraceElement[readCount(in)];
+            for (int j = 0; j < stack.length; j++) {
+                stack[j] = frames[readIndex(in, frames.length)];
+            }
+            stacks[i] = stack;
+        }
+        return stacks;
+    }
+
+    private static String readStringRef(ByteSource in, String[] strings) throws IOException {
+        int ref = readIndex(in, strings.length + 1);
+        return ref == 0 ? null : strings[ref - 1];
+    }
+
+    private static StackTraceElement[] readStackRef(ByteSource in, StackTraceElement[][] stacks) throws IOException {
+        int ref = readIndex(in, stacks.length + 1);
+        return ref == 0 ? null : stacks[ref - 1];
+    }
+
+    private static int readIndex(ByteSource in, int bound) throws IOException {
+        long value = readVarLong(in);
+        if (value < 0 || value >= bound) {
+            throw new IllegalArgumentException("Corrupted index: " + value);
+        }
+        return (int) value;
+    }
+
+    private static void writeString(ByteSink out, String value) throws IOException {
+        if (value == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        writeVarLong(out, ByteSink.utf8Length(value) + 1L);
+        out.writeUtf8(value);
+    }
+
+    private static String readString(ByteSource in) throws IOException {
+        int length = readCount(in);
+        if (length == 0) {
+            return null;
+        }
+        return in.readUtf8(length - 1);
+    }
+
+    /**
+     * 读取一个长度或数量，超出剩余字节数即视为数据损坏
+     */
+    private static int readCount(ByteSource in) throws IOException {
+        long value = readVarLong(in);
+        if (value < 0 || value > in.remainingBound() + 1L) {
+            throw new IllegalArgumentException("Corrupted length: " + value);
+        }
+        return (int) value;
+    }
+
+    static void writeVarLong(ByteSink out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static long readVarLong(ByteSource in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
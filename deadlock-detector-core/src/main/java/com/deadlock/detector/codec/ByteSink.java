@@ -0,0 +1,147 @@
+package com.deadlock.detector.codec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * 编码输出目标，统一ByteBuffer和OutputStream
+ * <p>
+ * OutputStream目标自带一个固定大小的缓冲区，编码过程中内存占用不随报告大小增长。
+ */
+abstract class ByteSink {
+
+    // 十进制输出用的暂存区，long最多19位数字加符号
+    private final byte[] digits = new byte[20];
+
+    abstract void write(int b) throws IOException;
+
+    /**
+     * 写入long的十进制ASCII表示，不生成中间字符串
+     */
+    final void writeDecimal(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            writeUtf8("-9223372036854775808");
+            return;
+        }
+        if (value < 0) {
+            write('-');
+            value = -value;
+        }
+        int pos = digits.length;
+        do {
+            digits[--pos] = (byte) ('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+        while (pos < digits.length) {
+            write(digits[pos++]);
+        }
+    }
+
+    /**
+     * 把缓冲的内容写到底层输出
+     */
+    void flush() throws IOException {
+    }
+
+    /**
+     * 写入字符串的UTF-8编码，不生成中间byte[]
+     */
+    final void writeUtf8(CharSequence value) throws IOException {
+        writeUtf8(value, 0, value.length());
+    }
+
+    /**
+     * 写入value中[start, end)部分的UTF-8编码
+     */
+    final void writeUtf8(CharSequence value, int start, int end) throws IOException {
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                write(c);
+            } else if (c < 0x800) {
+                write(0xC0 | (c >> 6));
+                write(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < end
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                write(0xF0 | (codePoint >> 18));
+                write(0x80 | ((codePoint >> 12) & 0x3F));
+                write(0x80 | ((codePoint >> 6) & 0x3F));
+                write(0x80 | (codePoint & 0x3F));
+            } else {
+                // 孤立的代理字符按3字节编码，与String.getBytes的替换行为不同但可以往返
+                write(0xE0 | (c >> 12));
+                write(0x80 | ((c >> 6) & 0x3F));
+                write(0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    /**
+     * 字符串UTF-8编码后的字节数，与{@link #writeUtf8(CharSequence)}一致
+     */
+    static int utf8Length(CharSequence value) {
+        int length = value.length();
+        int bytes = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * 只统计字节数的输出，用于在写入前得到编码长度
+     */
+    static final class Counter extends ByteSink {
+        long count;
+
+        @Override
+        void write(int b) {
+            count++;
+        }
+    }
+
+    static ByteSink of(final ByteBuffer buffer) {
+        return new ByteSink() {
+            @Override
+            void write(int b) {
+                buffer.put((byte) b);
+            }
+        };
+    }
+
+    static ByteSink of(final OutputStream out) {
+        return new ByteSink() {
+            private final byte[] chunk = new byte[8192];
+            private int count;
+
+            @Override
+            void write(int b) throws IOException {
+                if (count == chunk.length) {
+                    flush();
+                }
+                chunk[count++] = (byte) b;
+            }
+
+            @Override
+            void flush() throws IOException {
+                if (count > 0) {
+                    out.write(chunk, 0, count);
+                    count = 0;
+                }
+            }
+        };
+    }
+}
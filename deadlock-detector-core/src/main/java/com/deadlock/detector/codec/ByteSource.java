@@ -0,0 +1,122 @@
+package com.deadlock.detector.codec;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 解码输入来源，统一ByteBuffer和InputStream
+ */
+abstract class ByteSource {
+
+    /**
+     * 读取一个字节（0-255）
+     *
+     * @throws EOFException 输入已结束
+     */
+    abstract int read() throws IOException;
+
+    /**
+     * 剩余可读字节数的上限，未知时返回Integer.MAX_VALUE，用于校验长度字段
+     */
+    int remainingBound() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * 单个字符串的长度上限，输入流无法得知剩余字节数时用于校验长度字段
+     */
+    static final int MAX_STRING_BYTES = 1 << 20;
+
+    private static final int READ_CHUNK = 4096;
+
+    /**
+     * 读取length字节的UTF-8字符串
+     * <p>
+     * 缓冲区随实际读到的字节扩容，长度字段损坏时不会按它一次分配
+     *
+     * @throws IOException 长度超出剩余字节数或{@link #MAX_STRING_BYTES}
+     */
+    String readUtf8(int length) throws IOException {
+        if (length < 0 || length > Math.min(remainingBound(), MAX_STRING_BYTES)) {
+            throw new IOException("Invalid string length: " + length);
+        }
+        byte[] bytes = new byte[Math.min(length, READ_CHUNK)];
+        for (int i = 0; i < length; i++) {
+            if (i == bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.min(length, bytes.length * 2));
+            }
+            bytes[i] = (byte) read();
+        }
+        return decodeUtf8(bytes, 0, length);
+    }
+
+    /**
+     * 与{@link ByteSink#writeUtf8(CharSequence)}对应的解码，孤立的代理字符也能还原
+     */
+    static String decodeUtf8(byte[] bytes, int offset, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        int end = offset + length;
+        int i = offset;
+        while (i < end) {
+            int b = bytes[i++] & 0xFF;
+            if (b < 0x80) {
+                sb.append((char) b);
+            } else if (b < 0xE0 && i < end) {
+                sb.append((char) (((b & 0x1F) << 6) | (bytes[i++] & 0x3F)));
+            } else if (b < 0xF0 && i + 1 < end) {
+                sb.append((char) (((b & 0x0F) << 12) | ((bytes[i] & 0x3F) << 6) | (bytes[i + 1] & 0x3F)));
+                i += 2;
+            } else if (i + 2 < end) {
+                int codePoint = ((b & 0x07) << 18) | ((bytes[i] & 0x3F) << 12)
+                        | ((bytes[i + 1] & 0x3F) << 6) | (bytes[i + 2] & 0x3F);
+                sb.appendCodePoint(codePoint);
+                i += 3;
+            } else {
+                throw new IllegalArgumentException("Truncated UTF-8 sequence");
+            }
+        }
+        return sb.toString();
+    }
+
+    static ByteSource of(final ByteBuffer buffer) {
+        return new ByteSource() {
+            @Override
+            int read() {
+                return buffer.get() & 0xFF;
+            }
+
+            @Override
+            int remainingBound() {
+                return buffer.remaining();
+            }
+
+            @Override
+            String readUtf8(int length) {
+                if (buffer.hasArray()) {
+                    String value = decodeUtf8(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+                    buffer.position(buffer.position() + length);
+                    return value;
+                }
+                byte[] bytes = new byte[length];
+                buffer.get(bytes);
+                return decodeUtf8(bytes, 0, length);
+            }
+        };
+    }
+
+    static ByteSource of(final InputStream in) {
+        return new ByteSource() {
+            @Override
+            int read() throws IOException {
+                int b = in.read();
+                if (b < 0) {
+                    throw new EOFException();
+                }
+                return b;
+            }
+        };
+    }
+}
@@ -0,0 +1,834 @@
+package com.deadlock.detector.codec;
+
+import com.deadlock.detector.model.DeadlockReport;
+import com.deadlock.detector.model.DeadlockType;
+import com.deadlock.detector.model.MessageRecord;
+import com.deadlock.detector.model.StackProfile;
+import com.deadlock.detector.model.ThreadDetail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DeadlockReport的JSON编解码
+ * <p>
+ * 编码时按字段顺序直接写出UTF-8字节，不构建中间字符串或JSON树，
+ * 大的ANR报告也只占用固定大小的缓冲区。值为null的字段不输出。
+ * 解码器是手写的递归下降解析器，供离线工具使用，未知字段会被跳过，版本不符时报错。
+ * 从输入流解码时逐字节读取，不会读过报告末尾，同一个流中可以连续存放多个报告。
+ * <p>
+ * 格式示例：
+ * <pre>
+ * {"version":1,"type":"ANR","timestamp":1700000000000,"message":"...","looper":"main",
+ *  "threads":[{"id":2,"name":"main","state":"BLOCKED","stackId":0,
+ *              "stack":[{"class":"a.B","method":"run","file":"B.java","line":10}]}],
+ *  "otherThreads":[...],
+ *  "recentMessages":[{"target":"...","callback":"...","what":0,"startTimeMs":0,
+ *                     "wallNanos":0,"cpuNanos":-1,"idleBeforeNanos":0,"inProgress":false}],
+ *  "stackProfile":{"maxNodes":2048,"truncatedSamples":0,
+ *                  "stacks":[{"count":3,"stack":[{"class":"a.B","method":"run","line":10}]}]}}
+ * </pre>
+ */
+public final class JsonReportCodec {
+
+    public static final int VERSION = 1;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private JsonReportCodec() {
+    }
+
+    /**
+     * 把报告流式编码到输出流，不调用out.close()
+     *
+     * @param maxFrames 每个堆栈最多输出的帧数，超出部分丢弃
+     */
+    public static void encode(DeadlockReport report, OutputStream out, int maxFrames) throws IOException {
+        ByteSink sink = ByteSink.of(out);
+        encode(report, sink, maxFrames);
+        sink.flush();
+    }
+
+    /**
+     * 把报告编码到buffer当前位置
+     *
+     * @throws java.nio.BufferOverflowException buffer空间不足
+     */
+    public static void encode(DeadlockReport report, ByteBuffer out, int maxFrames) {
+        try {
+            encode(report, ByteSink.of(out), maxFrames);
+        } catch (IOException e) {
+            // ByteBuffer不会抛出IOException
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void encode(DeadlockReport report, ByteSink out, int maxFrames) throws IOException {
+        out.write('{');
+        writeKey(out, "version", true);
+        out.writeDecimal(VERSION);
+        if (report.getType() != null) {
+            writeStringField(out, "type", report.getType().name());
+        }
+        writeKey(out, "timestamp", false);
+        out.writeDecimal(report.getTimestamp());
+        writeStringField(out, "message", report.getMessage());
+        writeStringField(out, "looper", report.getLooperName());
+        writeThreads(out, "threads", report.getThreadDetails(), maxFrames);
+        writeThreads(out, "otherThreads", report.getOtherThreadDetails(), maxFrames);
+
+        List<MessageRecord> messages = report.getRecentMessages();
+        writeKey(out, "recentMessages", false);
+        out.write('[');
+        for (int i = 0; i < messages.size(); i++) {
+            MessageRecord message = messages.get(i);
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write('{');
+            writeKey(out, "what", true);
+            out.writeDecimal(message.getWhat());
+            writeStringField(out, "target", message.getTarget());
+            writeStringField(out, "callback", message.getCallback());
+            writeLongField(out, "startTimeMs", message.getStartTimeMs());
+            writeLongField(out, "wallNanos", message.getWallNanos());
+            writeLongField(out, "cpuNanos", message.getCpuNanos());
+            writeLongField(out, "idleBeforeNanos", message.getIdleBeforeNanos());
+            writeKey(out, "inProgress", false);
+            out.writeUtf8(message.isInProgress() ? "true" : "false");
+            out.write('}');
+        }
+        out.write(']');
+        writeProfile(out, report.getStackProfile());
+        out.write('}');
+    }
+
+    private static void writeProfile(ByteSink out, StackProfile profile) throws IOException {
+        if (profile == null) {
+            return;
+        }
+        final List<StackTraceElement[]> stacks = new ArrayList<>();
+        final List<Integer> counts = new ArrayList<>();
+        profile.forEachStack(new StackProfile.StackVisitor() {
+            @Override
+            public void visit(StackTraceElement[] stackTrace, int count) {
+                stacks.add(stackTrace);
+                counts.add(count);
+            }
+        });
+        writeKey(out, "stackProfile", false);
+        out.write('{');
+        writeKey(out, "maxNodes", true);
+        out.writeDecimal(profile.getMaxNodes());
+        writeLongField(out, "truncatedSamples", profile.getTruncatedSamples());
+        writeKey(out, "stacks", false);
+        out.write('[');
+        for (int i = 0; i < stacks.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write('{');
+            writeKey(out, "count", true);
+            out.writeDecimal(counts.get(i));
+            // 采样聚合的堆栈完整写出，截断会改变树的结构
+            writeStack(out, "stack", stacks.get(i), Integer.MAX_VALUE);
+            out.write('}');
+        }
+        out.write(']');
+        out.write('}');
+    }
+
+    private static void writeThreads(ByteSink out, String key, List<ThreadDetail> threads, int maxFrames)
+            throws IOException {
+        writeKey(out, key, false);
+        out.write('[');
+        for (int i = 0; i < threads.size(); i++) {
+            ThreadDetail detail = threads.get(i);
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write('{');
+            writeKey(out, "id", true);
+            out.writeDecimal(detail.getThreadId());
+            writeStringField(out, "name", detail.getThreadName());
+            writeStringField(out, "state", detail.getThreadState());
+            writeStringField(out, "lockName", detail.getLockName());
+            writeLongField(out, "lockOwnerId", detail.getLockOwnerId());
+            writeStringField(out, "lockOwnerName", detail.getLockOwnerName());
+            writeStringField(out, "waitingFor", detail.getWaitingForLock());
+            writeStack(out, "waitingForSite", detail.getWaitingForSite(), maxFrames);
+            List<String> heldLocks = detail.getHeldLocks();
+            if (!heldLocks.isEmpty()) {
+                writeKey(out, "heldLocks", false);
+                out.write('[');
+                for (int j = 0; j < heldLocks.size(); j++) {
+                    if (j > 0) {
+                        out.write(',');
+                    }
+                    writeString(out, heldLocks.get(j));
+                }
+                out.write(']');
+            }
+            writeLongField(out, "blockTimeMs", detail.getBlockTimeMs());
+            writeLongField(out, "stackId", detail.getStackId());
+            writeStack(out, "stack", detail.getStackTrace(), maxFrames);
+            out.write('}');
+        }
+        out.write(']');
+    }
+
+    private static void writeStack(ByteSink out, String key, StackTraceElement[] stack, int maxFrames)
+            throws IOException {
+        if (stack == null) {
+            return;
+        }
+        writeKey(out, key, false);
+        out.write('[');
+        int count = Math.min(stack.length, maxFrames);
+        for (int i = 0; i < count; i++) {
+            StackTraceElement frame = stack[i];
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write('{');
+            writeKey(out, "class", true);
+            writeString(out, frame.getClassName());
+            writeStringField(out, "method", frame.getMethodName());
+            writeStringField(out, "file", frame.getFileName());
+            writeLongField(out, "line", frame.getLineNumber());
+            out.write('}');
+        }
+        out.write(']');
+    }
+
+    private static void writeKey(ByteSink out, String key, boolean first) throws IOException {
+        if (!first) {
+            out.write(',');
+        }
+        out.write('"');
+        out.writeUtf8(key);
+        out.write('"');
+        out.write(':');
+    }
+
+    private static void writeStringField(ByteSink out, String key, String value) throws IOException {
+        if (value != null) {
+            writeKey(out, key, false);
+            writeString(out, value);
+        }
+    }
+
+    private static void writeLongField(ByteSink out, String key, long value) throws IOException {
+        writeKey(out, key, false);
+        out.writeDecimal(value);
+    }
+
+    /**
+     * 写入带引号的JSON字符串，按段转义后直接编码为UTF-8
+     */
+    static void writeString(ByteSink out, String value) throws IOException {
+        out.write('"');
+        int length = value.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            if (i > start) {
+                out.writeUtf8(value, start, i);
+            }
+            out.write('\\');
+            switch (c) {
+                case '"':
+                    out.write('"');
+                    break;
+                case '\\':
+                    out.write('\\');
+                    break;
+                case '\n':
+                    out.write('n');
+                    break;
+                case '\r':
+                    out.write('r');
+                    break;
+                case '\t':
+                    out.write('t');
+                    break;
+                default:
+                    out.write('u');
+                    out.write('0');
+                    out.write('0');
+                    out.write(HEX[c >> 4]);
+                    out.write(HEX[c & 0xF]);
+                    break;
+            }
+            start = i + 1;
+        }
+        if (start < length) {
+            out.writeUtf8(value, start, length);
+        }
+        out.write('"');
+    }
+
+    /**
+     * 从UTF-8输入流解码一个报告，读到报告末尾的'}'为止，流中可以连续存放多个报告
+     * <p>
+     * 逐字节读取输入流，需要时由调用方包装BufferedInputStream
+     *
+     * @throws IllegalArgumentException JSON格式错误或版本不支持
+     */
+    public static DeadlockReport decode(InputStream in) throws IOException {
+        return decode(new Utf8Reader(in));
+    }
+
+    /**
+     * 从字符流解码一个报告
+     *
+     * @throws IllegalArgumentException JSON格式错误或版本不支持
+     */
+    public static DeadlockReport decode(Reader reader) throws IOException {
+        return new Parser(reader).readReport();
+    }
+
+    /**
+     * 按报告结构解析的递归下降解析器
+     */
+    private static final class Parser {
+        private final Reader reader;
+        private int peeked = -2;
+
+        Parser(Reader reader) {
+            this.reader = reader;
+        }
+
+        DeadlockReport readReport() throws IOException {
+            DeadlockReport.Builder builder = new DeadlockReport.Builder();
+            expect('{');
+            if (!consumeIf('}')) {
+                do {
+                    String key = readString();
+                    expect(':');
+                    switch (key) {
+                        case "version":
+                            long version = readLong();
+                            if (version != VERSION) {
+                                throw new IllegalArgumentException("Unsupported report version: " + version);
+                            }
+                            break;
+                        case "type":
+                            String type = readNullableString();
+                            if (type != null) {
+                                builder.type(DeadlockType.valueOf(type));
+                            }
+                            break;
+                        case "timestamp":
+                            builder.timestamp(readLong());
+                            break;
+                        case "message":
+                            builder.message(readNullableString());
+                            break;
+                        case "looper":
+                            builder.looperName(readNullableString());
+                            break;
+                        case "threads":
+                            for (ThreadDetail detail : readThreads()) {
+                                builder.addThreadDetail(detail);
+                            }
+                            break;
+                        case "otherThreads":
+                            for (ThreadDetail detail : readThreads()) {
+                                builder.addOtherThreadDetail(detail);
+                            }
+                            break;
+                        case "recentMessages":
+                            builder.recentMessages(readMessages());
+                            break;
+                        case "stackProfile":
+                            builder.stackProfile(readProfile());
+                            break;
+                        default:
+                            skipValue();
+                            break;
+                    }
+                } while (consumeIf(','));
+                expect('}');
+            }
+            return builder.build();
+        }
+
+        private List<ThreadDetail> readThreads() throws IOException {
+            List<ThreadDetail> threads = new ArrayList<>();
+            expect('[');
+            if (consumeIf(']')) {
+                return threads;
+            }
+            do {
+                ThreadDetail.Builder builder = new ThreadDetail.Builder();
+                expect('{');
+                if (!consumeIf('}')) {
+                    do {
+                        String key = readString();
+                        expect(':');
+                        switch (key) {
+                            case "id":
+                                builder.threadId(readLong());
+                                break;
+                            case "name":
+                                builder.threadName(readNullableString());
+                                break;
+                            case "state":
+                                builder.threadState(readNullableString());
+                                break;
+                            case "lockName":
+                                builder.lockName(readNullableString());
+                                break;
+                            case "lockOwnerId":
+                                builder.lockOwnerId(readLong());
+                                break;
+                            case "lockOwnerName":
+                                builder.lockOwnerName(readNullableString());
+                                break;
+                            case "waitingFor":
+                                builder.waitingForLock(readNullableString());
+                                break;
+                            case "waitingForSite":
+                                builder.waitingForSite(readStack());
+                                break;
+                            case "heldLocks":
+                                builder.heldLocks(readStringArray());
+                                break;
+                            case "blockTimeMs":
+                                builder.blockTimeMs(readLong());
+                                break;
+                            case "stack":
+                                builder.stackTrace(readStack());
+                                break;
+                            default:
+                                // stackId只在采集进程的字典内有效，解码后为NO_ID
+                                skipValue();
+                                break;
+                        }
+                    } while (consumeIf(','));
+                    expect('}');
+                }
+                threads.add(builder.build());
+            } while (consumeIf(','));
+            expect(']');
+            return threads;
+        }
+
+        private StackTraceElement[] readStack() throws IOException {
+            List<StackTraceElement> frames = new ArrayList<>();
+            expect('[');
+            if (!consumeIf(']')) {
+                do {
+                    String className = null;
+                    String method = null;
+                    String file = null;
+                    int line = -1;
+                    expect('{');
+                    if (!consumeIf('}')) {
+                        do {
+                            String key = readString();
+                            expect(':');
+                            switch (key) {
+                                case "class":
+                                    className = readNullableString();
+                                    break;
+                                case "method":
+                                    method = readNullableString();
+                                    break;
+                                case "file":
+                                    file = readNullableString();
+                                    break;
+                                case "line":
+                                    line = (int) readLong();
+                                    break;
+                                default:
+                                    skipValue();
+                                    break;
+                            }
+                        } while (consumeIf(','));
+                        expect('}');
+                    }
+                    frames.add(new StackTraceElement(className, method, file, line));
+                } while (consumeIf(','));
+                expect(']');
+            }
+            return frames.toArray(new StackTraceElement[0]);
+        }
+
+        private StackProfile readProfile() throws IOException {
+            if (peekNonWhitespace() == 'n') {
+                readLiteral("null");
+                return null;
+            }
+            int maxNodes = StackProfile.DEFAULT_MAX_NODES;
+            int truncatedSamples = 0;
+            List<StackTraceElement[]> stacks = new ArrayList<>();
+            List<Integer> counts = new ArrayList<>();
+            expect('{');
+            if (!consumeIf('}')) {
+                do {
+                    String key = readString();
+                    expect(':');
+                    switch (key) {
+                        case "maxNodes":
+                            maxNodes = (int) readLong();
+                            break;
+                        case "truncatedSamples":
+                            truncatedSamples = (int) readLong();
+                            break;
+                        case "stacks":
+                            readProfileStacks(stacks, counts);
+                            break;
+                        default:
+                            skipValue();
+                            break;
+                    }
+                } while (consumeIf(','));
+                expect('}');
+            }
+            // 节点上限可能出现在stacks之后，全部读完再还原
+            StackProfile profile = new StackProfile(maxNodes);
+            for (int i = 0; i < stacks.size(); i++) {
+                profile.add(stacks.get(i), counts.get(i));
+            }
+            profile.setTruncatedSamples(truncatedSamples);
+            return profile;
+        }
+
+        private void readProfileStacks(List<StackTraceElement[]> stacks, List<Integer> counts) throws IOException {
+            expect('[');
+            if (consumeIf(']')) {
+                return;
+            }
+            do {
+                StackTraceElement[] stack = new StackTraceElement[0];
+                int count = 0;
+                expect('{');
+                if (!consumeIf('}')) {
+                    do {
+                        String key = readString();
+                        expect(':');
+                        switch (key) {
+                            case "count":
+                                count = (int) readLong();
+                                break;
+                            case "stack":
+                                stack = readStack();
+                                break;
+                            default:
+                                skipValue();
+                                break;
+                        }
+                    } while (consumeIf(','));
+                    expect('}');
+                }
+                stacks.add(stack);
+                counts.add(count);
+            } while (consumeIf(','));
+            expect(']');
+        }
+
+        private List<MessageRecord> readMessages() throws IOException {
+            List<MessageRecord> messages = new ArrayList<>();
+            expect('[');
+            if (consumeIf(']')) {
+                return messages;
+            }
+            do {
+                MessageRecord.Builder builder = new MessageRecord.Builder();
+                expect('{');
+                if (!consumeIf('}')) {
+                    do {
+                        String key = readString();
+                        expect(':');
+                        switch (key) {
+                            case "what":
+                                builder.what((int) readLong());
+                                break;
+                            case "target":
+                                builder.target(readNullableString());
+                                break;
+                            case "callback":
+                                builder.callback(readNullableString());
+                                break;
+                            case "startTimeMs":
+                                builder.startTimeMs(readLong());
+                                break;
+                            case "wallNanos":
+                                builder.wallNanos(readLong());
+                                break;
+                            case "cpuNanos":
+                                builder.cpuNanos(readLong());
+                                break;
+                            case "idleBeforeNanos":
+                                builder.idleBeforeNanos(readLong());
+                                break;
+                            case "inProgress":
+                                builder.inProgress(readBoolean());
+                                break;
+                            default:
+                                skipValue();
+                                break;
+                        }
+                    } while (consumeIf(','));
+                    expect('}');
+                }
+                messages.add(builder.build());
+            } while (consumeIf(','));
+            expect(']');
+            return messages;
+        }
+
+        private List<String> readStringArray() throws IOException {
+            List<String> values = new ArrayList<>();
+            expect('[');
+            if (consumeIf(']')) {
+                return values;
+            }
+            do {
+                values.add(readNullableString());
+            } while (consumeIf(','));
+            expect(']');
+            return values;
+        }
+
+        private void skipValue() throws IOException {
+            int c = peekNonWhitespace();
+            if (c == '"') {
+                readString();
+            } else if (c == '{' || c == '[') {
+                int close = c == '{' ? '}' : ']';
+                next();
+                if (consumeIf(close)) {
+                    return;
+                }
+                do {
+                    if (c == '{') {
+                        readString();
+                        expect(':');
+                    }
+                    skipValue();
+                } while (consumeIf(','));
+                expect(close);
+            } else if (c == 't' || c == 'f') {
+                readBoolean();
+            } else if (c == 'n') {
+                readLiteral("null");
+            } else {
+                readNumberToken();
+            }
+        }
+
+        private String readNullableString() throws IOException {
+            if (peekNonWhitespace() == 'n') {
+                readLiteral("null");
+                return null;
+            }
+            return readString();
+        }
+
+        private String readString() throws IOException {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                int c = next();
+                if (c == '"') {
+                    return sb.toString();
+                }
+                if (c != '\\') {
+                    sb.append((char) c);
+                    continue;
+                }
+                c = next();
+                switch (c) {
+                    case 'n':
+                        sb.append('\n');
+                        break;
+                    case 'r':
+                        sb.append('\r');
+                        break;
+                    case 't':
+                        sb.append('\t');
+                        break;
+                    case 'b':
+                        sb.append('\b');
+                        break;
+                    case 'f':
+                        sb.append('\f');
+                        break;
+                    case 'u':
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(next(), 16);
+                            if (digit < 0) {
+                                throw new IllegalArgumentException("Invalid unicode escape");
+                            }
+                            code = (code << 4) | digit;
+                        }
+                        sb.append((char) code);
+                        break;
+                    default:
+                        sb.append((char) c);
+                        break;
+                }
+            }
+        }
+
+        private long readLong() throws IOException {
+            String token = readNumberToken();
+            try {
+                return Long.parseLong(token);
+            } catch (NumberFormatException e) {
+                return (long) Double.parseDouble(token);
+            }
+        }
+
+        private String readNumberToken() throws IOException {
+            peekNonWhitespace();
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                int c = peek();
+                if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E') {
+                    sb.append((char) next());
+                } else {
+                    break;
+                }
+            }
+            if (sb.length() == 0) {
+                throw new IllegalArgumentException("Expected number");
+            }
+            return sb.toString();
+        }
+
+        private boolean readBoolean() throws IOException {
+            if (peekNonWhitespace() == 't') {
+                readLiteral("true");
+                return true;
+            }
+            readLiteral("false");
+            return false;
+        }
+
+        private void readLiteral(String literal) throws IOException {
+            peekNonWhitespace();
+            for (int i = 0; i < literal.length(); i++) {
+                if (next() != literal.charAt(i)) {
+                    throw new IllegalArgumentException("Expected " + literal);
+                }
+            }
+        }
+
+        private void expect(int expected) throws IOException {
+            int c = peekNonWhitespace();
+            if (c != expected) {
+                throw new IllegalArgumentException("Expected '" + (char) expected + "' but was "
+                        + (c < 0 ? "end of input" : "'" + (char) c + "'"));
+            }
+            next();
+        }
+
+        private boolean consumeIf(int expected) throws IOException {
+            if (peekNonWhitespace() == expected) {
+                next();
+                return true;
+            }
+            return false;
+        }
+
+        private int peekNonWhitespace() throws IOException {
+            int c = peek();
+            while (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                next();
+                c = peek();
+            }
+            return c;
+        }
+
+        private int peek() throws IOException {
+            if (peeked == -2) {
+                peeked = reader.read();
+            }
+            return peeked;
+        }
+
+        private int next() throws IOException {
+            int c = peek();
+            if (c < 0) {
+                throw new IllegalArgumentException("Unexpected end of input");
+            }
+            peeked = -2;
+            return c;
+        }
+    }
+
+    /**
+     * 逐字节解码UTF-8的Reader，不预读，解码一个报告后流停在下一个报告的开头
+     */
+    private static final class Utf8Reader extends Reader {
+        private final InputStream in;
+        // 四字节序列解码出的低位代理字符，下次read()返回
+        private int pendingLow = -1;
+
+        Utf8Reader(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (pendingLow >= 0) {
+                int c = pendingLow;
+                pendingLow = -1;
+                return c;
+            }
+            int b = in.read();
+            if (b < 0x80) {
+                return b;
+            }
+            if (b < 0xE0) {
+                return ((b & 0x1F) << 6) | readContinuation();
+            }
+            if (b < 0xF0) {
+                return ((b & 0x0F) << 12) | (readContinuation() << 6) | readContinuation();
+            }
+            int codePoint = ((b & 0x07) << 18) | (readContinuation() << 12)
+                    | (readContinuation() << 6) | readContinuation();
+            pendingLow = Character.lowSurrogate(codePoint);
+            return Character.highSurrogate(codePoint);
+        }
+
+        private int readContinuation() throws IOException {
+            int b = in.read();
+            if (b < 0) {
+                throw new IllegalArgumentException("Truncated UTF-8 sequence");
+            }
+            return b & 0x3F;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            int c = read();
+            if (c < 0) {
+                return -1;
+            }
+            buffer[offset] = (char) c;
+            return 1;
+        }
+
+        @Override
+        public void close() {
+            // 输入流由调用方关闭
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.deadlock.detector.codec;
+
+import com.deadlock.detector.model.DeadlockReport;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * 报告日志 - 固定大小的内存映射环形文件
+ * <p>
+ * 报告用{@link BinaryReportCodec}直接编码到映射区，不经过中间缓冲区，也不产生系统调用；
+ * 进程被杀后页缓存仍由内核写回文件，下次启动时用{@link #recover(File)}读出完整的记录。
+ * <p>
+ * 文件布局：固定头部 + 数据区。每条记录为
+ * [magic:int][length:int][crc32:int][seq:long][payload]，写到数据区末尾放不下时从头开始覆盖。
+ * 写入前先统计编码长度，整个数据区都放不下的报告直接拒绝，不会破坏已有记录。
+ * 恢复时逐字节扫描数据区，只接受magic和CRC都正确的记录，按序号排序，
+ * 因此被部分覆盖或写了一半的记录会被跳过。只依赖java.nio，可以在普通JVM上用文件测试。
+ */
+public final class ReportJournal implements Closeable {
+
+    private static final int FILE_MAGIC = 0x444C4A31;   // "DLJ1"
+    private static final int RECORD_MAGIC = 0x5245434B; // "RECK"
+    static final int HEADER_SIZE = 32;
+    // 头部字段偏移
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_CAPACITY = 4;
+    private static final int OFFSET_WRITE_POS = 8;
+    private static final int OFFSET_NEXT_SEQ = 16;
+
+    static final int RECORD_HEADER_SIZE = 20;
+    public static final int MIN_SIZE = HEADER_SIZE + 1024;
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final int maxFrames;
+    private final CRC32 crc = new CRC32();
+    // 从映射区分块读回计算CRC（CRC32.update(ByteBuffer)在Android 8.0以下不可用）
+    private final byte[] crcChunk = new byte[512];
+    private int writePos;
+    private long nextSeq;
+
+    /**
+     * 打开或创建日志文件。已有文件大小一致时接着写入，否则重新初始化
+     *
+     * @param sizeBytes 文件总大小
+     * @param maxFrames 每个堆栈最多记录的帧数
+     */
+    public ReportJournal(File path, int sizeBytes, int maxFrames) throws IOException {
+        if (sizeBytes < MIN_SIZE) {
+            throw new IllegalArgumentException("Journal size must be at least " + MIN_SIZE + " bytes");
+        }
+        this.capacity = sizeBytes - HEADER_SIZE;
+        this.maxFrames = maxFrames;
+        this.file = new RandomAccessFile(path, "rw");
+        boolean resume = file.length() == sizeBytes;
+        if (!resume) {
+            file.setLength(sizeBytes);
+        }
+        this.buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, sizeBytes);
+
+        if (resume && buffer.getInt(OFFSET_MAGIC) == FILE_MAGIC && buffer.getInt(OFFSET_CAPACITY) == capacity) {
+            long pos = buffer.getLong(OFFSET_WRITE_POS);
+            writePos = pos >= 0 && pos < capacity ? (int) pos : 0;
+            nextSeq = buffer.getLong(OFFSET_NEXT_SEQ);
+        } else {
+            buffer.putInt(OFFSET_MAGIC, FILE_MAGIC);
+            buffer.putInt(OFFSET_CAPACITY, capacity);
+            writePos = 0;
+            nextSeq = 0;
+            writeHeader();
+        }
+    }
+
+    /**
+     * 追加一条报告，单条记录超过数据区大小时返回false
+     */
+    public synchronized boolean append(DeadlockReport report) {
+        long size = BinaryReportCodec.encodedSize(report, maxFrames);
+        if (size > capacity - RECORD_HEADER_SIZE) {
+            return false;
+        }
+        if (writePos + RECORD_HEADER_SIZE + size > capacity) {
+            writePos = 0;
+        }
+        int length = encodeAt(report, writePos);
+
+        int base = HEADER_SIZE + writePos;
+        buffer.putInt(base + 4, length);
+        buffer.putInt(base + 8, checksum(base + RECORD_HEADER_SIZE, length));
+        buffer.putLong(base + 12, nextSeq);
+        buffer.putInt(base, RECORD_MAGIC);
+
+        writePos += RECORD_HEADER_SIZE + length;
+        nextSeq++;
+        writeHeader();
+        return true;
+    }
+
+    /**
+     * 把报告直接编码到数据区pos处的记录体中，返回编码长度；调用前已确认放得下
+     */
+    private int encodeAt(DeadlockReport report, int pos) {
+        int base = HEADER_SIZE + pos;
+        // 先清掉旧magic，最后再写，写到一半的记录不会被当作有效记录
+        buffer.putInt(base, 0);
+        ByteBuffer body = buffer.duplicate();
+        body.limit(HEADER_SIZE + capacity);
+        body.position(base + RECORD_HEADER_SIZE);
+        BinaryReportCodec.encode(report, body, maxFrames);
+        return body.position() - base - RECORD_HEADER_SIZE;
+    }
+
+    private int checksum(int offset, int length) {
+        crc.reset();
+        ByteBuffer body = buffer.duplicate();
+        body.limit(offset + length);
+        body.position(offset);
+        while (body.hasRemaining()) {
+            int n = Math.min(crcChunk.length, body.remaining());
+            body.get(crcChunk, 0, n);
+            crc.update(crcChunk, 0, n);
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * 下一条记录在数据区中的偏移
+     */
+    synchronized int getWritePosition() {
+        return writePos;
+    }
+
+    private void writeHeader() {
+        buffer.putLong(OFFSET_WRITE_POS, writePos);
+        buffer.putLong(OFFSET_NEXT_SEQ, nextSeq);
+    }
+
+    /**
+     * 把映射区强制写回磁盘，只在需要抵御系统崩溃时调用，进程被杀不需要
+     */
+    public synchronized void force() {
+        buffer.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * 读出日志文件中所有完整的记录，按写入顺序排列
+     *
+     * @return 报告列表，文件不存在或不是日志文件时返回空列表
+     */
+    public static List<DeadlockReport> recover(File path) throws IOException {
+        if (!path.exists() || path.length() < MIN_SIZE) {
+            return Collections.emptyList();
+        }
+        byte[] data;
+        try (RandomAccessFile raf = new RandomAccessFile(path, "r")) {
+            data = new byte[(int) raf.length()];
+            raf.readFully(data);
+        }
+        ByteBuffer in = ByteBuffer.wrap(data);
+        if (in.getInt(OFFSET_MAGIC) != FILE_MAGIC) {
+            return Collections.emptyList();
+        }
+        int capacity = Math.min(in.getInt(OFFSET_CAPACITY), data.length - HEADER_SIZE);
+
+        List<long[]> found = new ArrayList<>();  // {seq, offset, length}
+        CRC32 crc = new CRC32();
+        int pos = 0;
+        while (pos + RECORD_HEADER_SIZE <= capacity) {
+            int base = HEADER_SIZE + pos;
+            if (in.getInt(base) == RECORD_MAGIC) {
+                int length = in.getInt(base + 4);
+                if (length > 0 && length <= capacity - pos - RECORD_HEADER_SIZE) {
+                    crc.reset();
+                    crc.update(data, base + RECORD_HEADER_SIZE, length);
+                    if ((int) crc.getValue() == in.getInt(base + 8)) {
+                        found.add(new long[]{in.getLong(base + 12), base + RECORD_HEADER_SIZE, length});
+                        pos += RECORD_HEADER_SIZE + length;
+                        continue;
+                    }
+                }
+            }
+            pos++;
+        }
+
+        Collections.sort(found, new Comparator<long[]>() {
+            @Override
+            public int compare(long[] a, long[] b) {
+                return Long.compare(a[0], b[0]);
+            }
+        });
+        List<DeadlockReport> reports = new ArrayList<>(found.size());
+        for (long[] record : found) {
+            ByteBuffer payload = ByteBuffer.wrap(data, (int) record[1], (int) record[2]).slice();
+            try {
+                reports.add(BinaryReportCodec.decode(payload));
+            } catch (RuntimeException e) {
+                // CRC正确但无法解码，通常是旧版本格式，跳过
+            }
+        }
+        return reports;
+    }
+
+    /**
+     * 清空日志，通常在恢复并上报后调用
+     */
+    public synchronized void clear() {
+        for (int i = HEADER_SIZE; i < HEADER_SIZE + capacity; i++) {
+            buffer.put(i, (byte) 0);
+        }
+        writePos = 0;
+        writeHeader();
+    }
+}
@@ -0,0 +1,235 @@
+package com.deadlock.detector.codec;
+
+import com.deadlock.detector.detector.LockWrapper;
+import com.deadlock.detector.stats.LockEventRecorder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 把{@link LockEventRecorder}的记录导出为Chrome trace-event JSON，可直接在Perfetto或chrome://tracing中打开
+ * <p>
+ * 每个线程一条轨道：等待锁、持有锁和检测器的每次检测各是一个完整事件（ph=X），
+ * 等待开始时的等待关系用flow事件从等待线程指向当时的持有者线程。
+ * 记录窗口开始前就已持有、或导出时仍未结束的区间，分别从窗口起点开始或延续到窗口终点。
+ */
+public final class TraceEventWriter {
+
+    private static final int PID = 1;
+
+    private TraceEventWriter() {
+    }
+
+    /**
+     * 某个线程上尚未结束的区间
+     */
+    private static final class Open {
+        final long startNanos;
+        final long peerThreadId;
+
+        Open(long startNanos, long peerThreadId) {
+            this.startNanos = startNanos;
+            this.peerThreadId = peerThreadId;
+        }
+    }
+
+    /**
+     * 流式写出trace JSON，不调用out.close()
+     */
+    public static void write(List<LockEventRecorder.ThreadEvents> threads, OutputStream out) throws IOException {
+        long minNanos = Long.MAX_VALUE;
+        long maxNanos = Long.MIN_VALUE;
+        for (LockEventRecorder.ThreadEvents thread : threads) {
+            if (thread.size() > 0) {
+                minNanos = Math.min(minNanos, thread.getTimeNanos(0));
+                maxNanos = Math.max(maxNanos, thread.getTimeNanos(thread.size() - 1));
+            }
+        }
+
+        ByteSink sink = ByteSink.of(out);
+        Writer writer = new Writer(sink, minNanos);
+        sink.writeUtf8("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+        for (LockEventRecorder.ThreadEvents thread : threads) {
+            writer.threadName(thread.getThreadId(), thread.getThreadName());
+            if (thread.size() > 0) {
+                writeThread(writer, thread, minNanos, maxNanos);
+            }
+        }
+        sink.writeUtf8("]}");
+        sink.flush();
+    }
+
+    private static void writeThread(Writer writer, LockEventRecorder.ThreadEvents thread,
+                                    long minNanos, long maxNanos) throws IOException {
+        long tid = thread.getThreadId();
+        Map<Object, Open> waits = new IdentityHashMap<>();
+        Map<Object, Open> holds = new IdentityHashMap<>();
+        Map<Object, Open> ticks = new IdentityHashMap<>();
+
+        for (int i = 0; i < thread.size(); i++) {
+            long time = thread.getTimeNanos(i);
+            Object subject = thread.getSubject(i);
+            switch (thread.getKind(i)) {
+                case LockEventRecorder.WAIT_BEGIN: {
+                    long owner = thread.getPeerThreadId(i);
+                    waits.put(subject, new Open(time, owner));
+                    if (owner > 0 && owner != tid) {
+                        writer.flow(tid, owner, time);
+                    }
+                    break;
+                }
+                case LockEventRecorder.ACQUIRED: {
+                    Open wait = waits.remove(subject);
+                    if (wait != null) {
+                        writer.slice(tid, "wait " + lockName(subject), "lock", wait.startNanos, time, wait.peerThreadId);
+                    }
+                    holds.put(subject, new Open(time, -1));
+                    break;
+                }
+                case LockEventRecorder.WAIT_FAILED: {
+                    Open wait = waits.remove(subject);
+                    long start = wait != null ? wait.startNanos : minNanos;
+                    long owner = wait != null ? wait.peerThreadId : -1;
+                    writer.slice(tid, "wait " + lockName(subject) + " (failed)", "lock", start, time, owner);
+                    break;
+                }
+                case LockEventRecorder.RELEASED: {
+                    Open hold = holds.remove(subject);
+                    writer.slice(tid, "hold " + lockName(subject), "lock",
+                            hold != null ? hold.startNanos : minNanos, time, -1);
+                    break;
+                }
+                case LockEventRecorder.TICK_BEGIN:
+                    ticks.put(subject, new Open(time, -1));
+                    break;
+                case LockEventRecorder.TICK_END: {
+                    Open tick = ticks.remove(subject);
+                    writer.slice(tid, String.valueOf(subject), "detector",
+                            tick != null ? tick.startNanos : minNanos, time, -1);
+                    break;
+                }
+                default:
+                    break;
+            }
+        }
+
+        // 导出时仍未结束的区间延续到窗口终点
+        for (Map.Entry<Object, Open> entry : waits.entrySet()) {
+            writer.slice(tid, "wait " + lockName(entry.getKey()), "lock",
+                    entry.getValue().startNanos, maxNanos, entry.getValue().peerThreadId);
+        }
+        for (Map.Entry<Object, Open> entry : holds.entrySet()) {
+            writer.slice(tid, "hold " + lockName(entry.getKey()), "lock", entry.getValue().startNanos, maxNanos, -1);
+        }
+        for (Map.Entry<Object, Open> entry : ticks.entrySet()) {
+            writer.slice(tid, String.valueOf(entry.getKey()), "detector", entry.getValue().startNanos, maxNanos, -1);
+        }
+    }
+
+    private static String lockName(Object subject) {
+        if (subject instanceof LockWrapper) {
+            return ((LockWrapper) subject).getName();
+        }
+        return String.valueOf(subject);
+    }
+
+    /**
+     * 逐个写出trace事件，负责逗号分隔和时间换算
+     */
+    private static final class Writer {
+        private final ByteSink out;
+        private final long originNanos;
+        private boolean first = true;
+        private long nextFlowId = 1;
+
+        Writer(ByteSink out, long originNanos) {
+            this.out = out;
+            this.originNanos = originNanos;
+        }
+
+        void threadName(long tid, String name) throws IOException {
+            begin();
+            out.writeUtf8("\"ph\":\"M\",\"name\":\"thread_name\",\"pid\":");
+            out.writeDecimal(PID);
+            out.writeUtf8(",\"tid\":");
+            out.writeDecimal(tid);
+            out.writeUtf8(",\"args\":{\"name\":");
+            JsonReportCodec.writeString(out, name != null ? name : "Thread-" + tid);
+            out.writeUtf8("}}");
+        }
+
+        void slice(long tid, String name, String category, long startNanos, long endNanos, long owner)
+                throws IOException {
+            begin();
+            out.writeUtf8("\"ph\":\"X\",\"name\":");
+            JsonReportCodec.writeString(out, name);
+            out.writeUtf8(",\"cat\":\"");
+            out.writeUtf8(category);
+            out.writeUtf8("\",\"pid\":");
+            out.writeDecimal(PID);
+            out.writeUtf8(",\"tid\":");
+            out.writeDecimal(tid);
+            out.writeUtf8(",\"ts\":");
+            writeMicros(startNanos - originNanos);
+            out.writeUtf8(",\"dur\":");
+            writeMicros(Math.max(0, endNanos - startNanos));
+            if (owner > 0) {
+                out.writeUtf8(",\"args\":{\"owner\":");
+                out.writeDecimal(owner);
+                out.write('}');
+            }
+            out.write('}');
+        }
+
+        /**
+         * 等待关系：从等待线程的等待区间指向持有者线程当时所在的区间
+         */
+        void flow(long waiterTid, long ownerTid, long timeNanos) throws IOException {
+            long id = nextFlowId++;
+            flowEvent("s", waiterTid, timeNanos, id, false);
+            flowEvent("f", ownerTid, timeNanos, id, true);
+        }
+
+        private void flowEvent(String phase, long tid, long timeNanos, long id, boolean enclosing)
+                throws IOException {
+            begin();
+            out.writeUtf8("\"ph\":\"");
+            out.writeUtf8(phase);
+            out.writeUtf8("\",\"name\":\"wait-for\",\"cat\":\"lock\",\"id\":");
+            out.writeDecimal(id);
+            out.writeUtf8(",\"pid\":");
+            out.writeDecimal(PID);
+            out.writeUtf8(",\"tid\":");
+            out.writeDecimal(tid);
+            out.writeUtf8(",\"ts\":");
+            writeMicros(timeNanos - originNanos);
+            if (enclosing) {
+                out.writeUtf8(",\"bp\":\"e\"");
+            }
+            out.write('}');
+        }
+
+        private void begin() throws IOException {
+            if (!first) {
+                out.write(',');
+            }
+            first = false;
+            out.write('{');
+        }
+
+        /**
+         * trace-event的时间单位是微秒，保留三位小数到纳秒
+         */
+        private void writeMicros(long nanos) throws IOException {
+            out.writeDecimal(nanos / 1000);
+            int fraction = (int) (nanos % 1000);
+            out.write('.');
+            out.write('0' + fraction / 100);
+            out.write('0' + fraction / 10 % 10);
+            out.write('0' + fraction % 10);
+        }
+    }
+}
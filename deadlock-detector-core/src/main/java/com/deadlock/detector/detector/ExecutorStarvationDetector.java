@@ -0,0 +1,269 @@
+package com.deadlock.detector.detector;
+
+import com.deadlock.detector.detector.TrackedThreadPoolExecutor.TaskRecord;
+import com.deadlock.detector.model.DeadlockReport;
+import com.deadlock.detector.model.DeadlockType;
+import com.deadlock.detector.model.StackDictionary;
+import com.deadlock.detector.model.ThreadDetail;
+import com.deadlock.detector.reporter.DeadlockReporter;
+import com.deadlock.detector.reporter.LogReporter;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 线程池饥饿检测器 - 检测{@link TrackedThreadPoolExecutor}中的池内死锁和排队超时
+ * <p>
+ * 池内死锁：工作线程在等待一个仍在排队的任务，或者等待的任务正在另一个同样卡住的工作线程上执行。
+ * 当所有工作线程都卡住且线程池无法再扩容时，排队的任务永远得不到执行，此时没有锁环，
+ * 其他检测器无法发现。
+ */
+public class ExecutorStarvationDetector implements IDeadlockDetector {
+
+    private static final String TAG = "ExecutorStarvation";
+
+    // 报告中最多列出的排队任务数
+    private static final int MAX_REPORTED_QUEUED = 5;
+
+    private final long queueLatencyThresholdNanos;
+    private final DeadlockReporter reporter;
+    private final List<PoolState> pools = new CopyOnWriteArrayList<>();
+    private final ThreadSnapshotService snapshots = ThreadSnapshotService.getDefault();
+
+    private volatile int lastScannedThreadCount;
+
+    /**
+     * 每个线程池的报告状态，只在检测线程访问
+     */
+    private static final class PoolState {
+        final TrackedThreadPoolExecutor pool;
+        // 防止重复报告，直到状态恢复
+        boolean deadlockReported;
+        boolean latencyReported;
+
+        PoolState(TrackedThreadPoolExecutor pool) {
+            this.pool = pool;
+        }
+    }
+
+    public ExecutorStarvationDetector(long queueLatencyThresholdMs) {
+        this(queueLatencyThresholdMs, new LogReporter());
+    }
+
+    /**
+     * @param queueLatencyThresholdMs 队首任务排队超过该时长（毫秒）时报告，0表示不检测排队时长
+     * @param reporter                报告输出
+     */
+    public ExecutorStarvationDetector(long queueLatencyThresholdMs, DeadlockReporter reporter) {
+        this.queueLatencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(queueLatencyThresholdMs);
+        this.reporter = reporter;
+    }
+
+    /**
+     * 注册一个线程池进行检测
+     */
+    public void track(TrackedThreadPoolExecutor pool) {
+        for (PoolState state : pools) {
+            if (state.pool == pool) {
+                return;
+            }
+        }
+        pools.add(new PoolState(pool));
+    }
+
+    /**
+     * 取消对某个线程池的检测
+     */
+    public void untrack(TrackedThreadPoolExecutor pool) {
+        for (PoolState state : pools) {
+            if (state.pool == pool) {
+                pools.remove(state);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void detect() {
+        int scanned = 0;
+        for (PoolState state : pools) {
+            if (state.pool.isTerminated()) {
+                pools.remove(state);
+                continue;
+            }
+            scanned += state.pool.getPoolSize();
+            checkStarvationDeadlock(state);
+            checkQueueLatency(state);
+        }
+        lastScannedThreadCount = scanned;
+    }
+
+    private void checkStarvationDeadlock(PoolState state) {
+        TrackedThreadPoolExecutor pool = state.pool;
+        Map<Thread, TaskRecord> running = pool.getRunningSnapshot();
+        Map<Thread, TaskRecord> awaiting = pool.getAwaitingSnapshot();
+        if (running.isEmpty() || awaiting.size() < running.size()) {
+            state.deadlockReported = false;
+            return;
+        }
+
+        // 不动点迭代：等待排队任务的工作线程卡住；等待的任务运行在已卡住的工作线程上，也卡住
+        Set<Thread> stuck = new HashSet<>();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Map.Entry<Thread, TaskRecord> entry : awaiting.entrySet()) {
+                Thread worker = entry.getKey();
+                if (stuck.contains(worker) || !running.containsKey(worker)) {
+                    continue;
+                }
+                TaskRecord awaited = entry.getValue();
+                int taskState = awaited.state;
+                if (taskState == TaskRecord.QUEUED
+                        || (taskState == TaskRecord.RUNNING && stuck.contains(awaited.runner))) {
+                    stuck.add(worker);
+                    changed = true;
+                }
+            }
+        }
+
+        // 所有工作线程都卡住且无法新建线程时，排队任务永远不会被执行
+        boolean deadlocked = stuck.size() == running.size() && !canGrow(pool);
+        if (!deadlocked) {
+            state.deadlockReported = false;
+            return;
+        }
+        if (state.deadlockReported) {
+            return;
+        }
+        state.deadlockReported = true;
+        reportStarvationDeadlock(pool, awaiting, stuck);
+    }
+
+    /**
+     * 线程池是否还会为排队任务新建线程：超过核心线程数后，只有入队失败（队列已满）时才会新建，
+     * 所以核心线程数小于最大线程数、队列无界的线程池不会超过核心线程数
+     */
+    private static boolean canGrow(TrackedThreadPoolExecutor pool) {
+        int poolSize = pool.getPoolSize();
+        if (poolSize >= pool.getMaximumPoolSize()) {
+            return false;
+        }
+        return poolSize < pool.getCorePoolSize() || pool.getQueue().remainingCapacity() == 0;
+    }
+
+    private void reportStarvationDeadlock(TrackedThreadPoolExecutor pool,
+                                          Map<Thread, TaskRecord> awaiting, Set<Thread> stuck) {
+        long now = System.nanoTime();
+        DeadlockReport.Builder builder = new DeadlockReport.Builder()
+                .type(DeadlockType.EXECUTOR_STARVATION)
+                .timestamp(System.currentTimeMillis())
+                .message("Pool \"" + pool.getName() + "\" deadlocked: all " + stuck.size()
+                        + " worker(s) wait on tasks of the same pool, queue depth "
+                        + pool.getQueue().size());
+
+        ThreadSnapshotService.Snapshot snapshot = snapshots.current();
+        for (Thread worker : stuck) {
+            TaskRecord awaited = awaiting.get(worker);
+            builder.addThreadDetail(new ThreadDetail.Builder()
+                    .stackDictionary(StackDictionary.getDefault())
+                    .threadId(worker.getId())
+                    .threadName(worker.getName())
+                    .threadState(snapshot.getState(worker).name())
+                    .stackTrace(snapshot.getStackTrace(worker))
+                    .waitingForLock(describe(awaited, now))
+                    .waitingForSite(awaited.submissionSite)
+                    .build());
+        }
+        reporter.report(builder.build());
+    }
+
+    private void checkQueueLatency(PoolState state) {
+        if (queueLatencyThresholdNanos <= 0) {
+            return;
+        }
+        TrackedThreadPoolExecutor pool = state.pool;
+        long oldestAgeNanos = pool.getOldestQueuedAgeNanos();
+        if (oldestAgeNanos < queueLatencyThresholdNanos) {
+            state.latencyReported = false;
+            return;
+        }
+        if (state.latencyReported) {
+            return;
+        }
+        state.latencyReported = true;
+
+        long now = System.nanoTime();
+        DeadlockReport.Builder builder = new DeadlockReport.Builder()
+                .type(DeadlockType.EXECUTOR_STARVATION)
+                .timestamp(System.currentTimeMillis())
+                .message("Pool \"" + pool.getName() + "\" queue latency "
+                        + TimeUnit.NANOSECONDS.toMillis(oldestAgeNanos) + "ms (threshold: "
+                        + TimeUnit.NANOSECONDS.toMillis(queueLatencyThresholdNanos) + "ms), queue depth "
+                        + pool.getQueue().size() + ", active " + pool.getActiveCount()
+                        + "/" + pool.getMaximumPoolSize());
+
+        // 正在执行的任务，通常就是占住线程池的原因
+        ThreadSnapshotService.Snapshot snapshot = snapshots.current();
+        for (Map.Entry<Thread, TaskRecord> entry : pool.getRunningSnapshot().entrySet()) {
+            Thread worker = entry.getKey();
+            TaskRecord task = entry.getValue();
+            builder.addThreadDetail(new ThreadDetail.Builder()
+                    .stackDictionary(StackDictionary.getDefault())
+                    .threadId(worker.getId())
+                    .threadName(worker.getName())
+                    .threadState(snapshot.getState(worker).name())
+                    .stackTrace(snapshot.getStackTrace(worker))
+                    .blockTimeMs(TimeUnit.NANOSECONDS.toMillis(now - task.startNanos))
+                    .waitingForSite(task.submissionSite)
+                    .build());
+        }
+
+        // 排队最久的任务，以提交位置代替线程堆栈
+        for (TaskRecord queued : pool.getQueuedRecords(MAX_REPORTED_QUEUED)) {
+            builder.addOtherThreadDetail(new ThreadDetail.Builder()
+                    .stackDictionary(StackDictionary.getDefault())
+                    .threadId(-1)
+                    .threadName(pool.getName() + " task#" + queued.id)
+                    .threadState("QUEUED")
+                    .waitingForLock(describe(queued, now))
+                    .waitingForSite(queued.submissionSite)
+                    .build());
+        }
+        reporter.report(builder.build());
+    }
+
+    private static String describe(TaskRecord task, long now) {
+        String desc = "task#" + task.id;
+        if (task.state == TaskRecord.QUEUED) {
+            return desc + " (queued " + TimeUnit.NANOSECONDS.toMillis(now - task.submitNanos) + "ms)";
+        }
+        Thread runner = task.runner;
+        return desc + " (running on " + (runner != null ? runner.getName() : "?") + ")";
+    }
+
+    @Override
+    public int getLastScannedThreadCount() {
+        return lastScannedThreadCount;
+    }
+
+    @Override
+    public int getLastGraphSize() {
+        return pools.size();
+    }
+
+    @Override
+    public String getName() {
+        return "ExecutorStarvationDetector";
+    }
+
+    @Override
+    public void destroy() {
+        pools.clear();
+    }
+}
@@ -0,0 +1,36 @@
+package com.deadlock.detector.detector;
+
+/**
+ * 死锁检测器接口
+ */
+public interface IDeadlockDetector {
+
+    /**
+     * 执行检测
+     */
+    void detect();
+
+    /**
+     * 获取检测器名称
+     */
+    String getName();
+
+    /**
+     * 销毁检测器，释放资源
+     */
+    void destroy();
+
+    /**
+     * 最近一次检测扫描的线程数，用于开销统计
+     */
+    default int getLastScannedThreadCount() {
+        return 0;
+    }
+
+    /**
+     * 最近一次检测构建的等待图大小（边数），用于开销统计
+     */
+    default int getLastGraphSize() {
+        return 0;
+    }
+}
@@ -0,0 +1,39 @@
+package com.deadlock.detector.detector;
+
+/**
+ * 被追踪锁的操作回调 - 供平台相关模块接入外部工具（如JVM端的JFR事件）
+ * <p>
+ * 回调在加锁/解锁线程上同步执行，实现必须足够轻量。未设置时每次锁操作只多一次volatile读；
+ * begin返回的对象原样传回对应的end，不需要记录时返回null，end不会被调用。
+ *
+ * @see ReentrantLockDetector#setLockTracer(LockTracer)
+ */
+public interface LockTracer {
+
+    /**
+     * 开始阻塞等待锁
+     *
+     * @param ownerThreadId 开始等待时的持有者线程ID，未知时为-1
+     * @return 等待结束时传给{@link #waitEnd}的对象，可以为null
+     */
+    Object waitBegin(LockWrapper lock, long ownerThreadId);
+
+    /**
+     * 等待结束
+     *
+     * @param acquired 是否获得了锁，超时或被中断时为false
+     */
+    void waitEnd(Object token, LockWrapper lock, boolean acquired);
+
+    /**
+     * 首次获得锁（重入不回调）；只对独占锁回调，读锁等共享锁不记录持有区间
+     *
+     * @return 完全释放时传给{@link #holdEnd}的对象，可以为null
+     */
+    Object holdBegin(LockWrapper lock);
+
+    /**
+     * 锁被完全释放，在真正释放之前回调
+     */
+    void holdEnd(Object token, LockWrapper lock);
+}
@@ -0,0 +1,158 @@
+package com.deadlock.detector.detector;
+
+import com.deadlock.detector.DetectorLog;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 锁等待看门狗 - 事件驱动的死锁检测
+ * <p>
+ * 线程在被追踪的锁上阻塞时登记到时间轮中，单个看门狗线程按刻度推进时间轮，
+ * 只对等待超过阈值的线程沿等待链做定向检查。
+ * 没有锁竞争时不做任何全局扫描，真正的死锁会在阈值时间内被发现。
+ */
+class LockWatchdog implements Runnable {
+
+    /**
+     * 线程的等待状态，每个线程复用同一个实例
+     */
+    static final class WaitState {
+        final long threadId;
+        final Thread thread;
+        // 当前等待的锁，null表示没有在等待
+        volatile LockWrapper lock;
+        volatile long waitStartNanos;
+        volatile long deadlineNanos;
+        // 是否已经在时间轮中
+        final AtomicBoolean queued = new AtomicBoolean(false);
+
+        WaitState(Thread thread) {
+            this.thread = thread;
+            this.threadId = thread.getId();
+        }
+    }
+
+    private static final String TAG = "LockWatchdog";
+    private static final long MIN_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final ReentrantLockDetector detector;
+    private final long thresholdNanos;
+    private final long tickNanos;
+    private final ConcurrentLinkedQueue<WaitState>[] wheel;
+    private final int mask;
+    private final Thread thread;
+    private volatile boolean running;
+
+    // 只由看门狗线程推进，等待线程入轮时读取
+    private volatile long cursorTick;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    LockWatchdog(ReentrantLockDetector detector, long thresholdMs) {
+        this.detector = detector;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMs);
+        this.tickNanos = Math.max(MIN_TICK_NANOS, thresholdNanos / 8);
+
+        // 时间轮一圈要覆盖阈值，保证登记时的截止时间落在当前圈内
+        int slots = 1;
+        while ((long) slots * tickNanos <= thresholdNanos + tickNanos) {
+            slots <<= 1;
+        }
+        this.wheel = new ConcurrentLinkedQueue[slots];
+        for (int i = 0; i < slots; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.mask = slots - 1;
+
+        this.thread = new Thread(this, "DeadlockDetector-LockWatchdog");
+        this.thread.setDaemon(true);
+        this.thread.setPriority(Thread.MIN_PRIORITY);
+    }
+
+    void start() {
+        running = true;
+        thread.start();
+    }
+
+    void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    long getThresholdNanos() {
+        return thresholdNanos;
+    }
+
+    /**
+     * 线程开始阻塞等待时调用（在等待线程上执行）
+     */
+    void onWaitStart(WaitState state) {
+        enqueue(state);
+    }
+
+    private void enqueue(WaitState state) {
+        // 已经在时间轮中的条目会在到期时按最新的截止时间重新入轮
+        if (state.queued.compareAndSet(false, true)) {
+            // 截止时间已落在正在处理的刻度内时放到下一刻度，避免等待一整圈
+            long tick = Math.max(state.deadlineNanos / tickNanos, cursorTick + 1);
+            wheel[(int) tick & mask].offer(state);
+        }
+    }
+
+    @Override
+    public void run() {
+        cursorTick = System.nanoTime() / tickNanos;
+        while (running) {
+            LockSupport.parkNanos(this, tickNanos);
+            if (!running) {
+                break;
+            }
+            long now = System.nanoTime();
+            long nowTick = now / tickNanos;
+            while (cursorTick <= nowTick) {
+                expire(wheel[(int) cursorTick & mask], now);
+                cursorTick++;
+            }
+        }
+        for (ConcurrentLinkedQueue<WaitState> bucket : wheel) {
+            bucket.clear();
+        }
+    }
+
+    private void expire(ConcurrentLinkedQueue<WaitState> bucket, long now) {
+        int pending = bucket.size();
+        // 只处理进入本刻度前已有的条目，重新入轮的条目留到后续刻度
+        for (int i = 0; i < pending; i++) {
+            WaitState state = bucket.poll();
+            if (state == null) {
+                break;
+            }
+            state.queued.set(false);
+
+            LockWrapper lock = state.lock;
+            if (lock == null) {
+                // 已经拿到锁或放弃等待
+                continue;
+            }
+            if (now - state.deadlineNanos < 0) {
+                enqueue(state);
+                continue;
+            }
+
+            try {
+                detector.checkWaitChain(state, now);
+            } catch (Exception e) {
+                // 看门狗线程不能因为单次检查失败而退出
+                DetectorLog.e(TAG, "Wait chain check failed for thread " + state.threadId, e);
+            }
+
+            // 仍在等待则在下一个阈值周期后复查，等待链可能后续才闭合
+            if (state.lock == lock) {
+                state.deadlineNanos = now + thresholdNanos;
+                enqueue(state);
+            }
+        }
+    }
+}
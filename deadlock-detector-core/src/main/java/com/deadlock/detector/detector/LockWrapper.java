@@ -0,0 +1,218 @@
+package com.deadlock.detector.detector;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Lock包装器 - 用于追踪锁的获取和释放
+ */
+public class LockWrapper implements Lock {
+
+    private final Lock delegate;
+    private final String name;
+    private final ReentrantLockDetector detector;
+    // 只有非公平的ReentrantLock走tryLock快速路径：公平锁会被插队，
+    // 读写锁的公平性无法从读锁/写锁对象得知，其他Lock实现的tryLock语义未知
+    private final boolean fastPath;
+    // 读锁可被多个线程同时持有，持有者字段和持有事件都只能按独占锁记录
+    private final boolean exclusive;
+
+    // 当前持有者线程ID，-1表示未被持有；只由持有线程修改
+    private volatile long ownerThreadId = -1;
+    private int holdCount;
+    // LockTracer在首次获得锁时返回的对象，只用于独占锁，只由持有线程读写
+    private Object holdToken;
+
+    public LockWrapper(Lock delegate, String name, ReentrantLockDetector detector) {
+        this.delegate = delegate;
+        this.name = name;
+        this.detector = detector;
+        this.fastPath = delegate instanceof ReentrantLock && !((ReentrantLock) delegate).isFair();
+        this.exclusive = !(delegate instanceof ReentrantReadWriteLock.ReadLock);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Lock getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * 是否为独占锁；共享锁（读锁）不记录持有事件
+     */
+    boolean isExclusive() {
+        return exclusive;
+    }
+
+    /**
+     * 获取当前持有者线程ID
+     *
+     * @return 持有者线程ID，未被持有时返回-1
+     */
+    public long getOwnerThreadId() {
+        return ownerThreadId;
+    }
+
+    /**
+     * 记录当前线程获得锁，返回是否为首次获得（非重入）
+     */
+    boolean markAcquired(long threadId) {
+        if (ownerThreadId == threadId) {
+            holdCount++;
+            return false;
+        }
+        ownerThreadId = threadId;
+        holdCount = 1;
+        return true;
+    }
+
+    /**
+     * 记录当前线程释放锁，返回是否已完全释放
+     */
+    boolean markReleased(long threadId) {
+        if (ownerThreadId != threadId) {
+            // 共享锁（如读锁）可能被多个线程持有，持有者字段只记录最后一个
+            return true;
+        }
+        if (--holdCount > 0) {
+            return false;
+        }
+        ownerThreadId = -1;
+        return true;
+    }
+
+    void setHoldToken(Object token) {
+        holdToken = token;
+    }
+
+    /**
+     * 取出并清空持有期间的LockTracer对象
+     */
+    Object takeHoldToken() {
+        Object token = holdToken;
+        holdToken = null;
+        return token;
+    }
+
+    @Override
+    public void lock() {
+        // 无竞争时直接获取，不登记等待关系
+        if (fastPath && delegate.tryLock()) {
+            detector.onAfterLock(this, null);
+            return;
+        }
+        Object waitToken = detector.onBeforeLock(this);
+        try {
+            delegate.lock();
+            detector.onAfterLock(this, waitToken);
+        } catch (Exception e) {
+            detector.onLockFailed(this, waitToken);
+            throw e;
+        }
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        if (fastPath && delegate.tryLock()) {
+            detector.onAfterLock(this, null);
+            return;
+        }
+        Object waitToken = detector.onBeforeLock(this);
+        try {
+            delegate.lockInterruptibly();
+            detector.onAfterLock(this, waitToken);
+        } catch (InterruptedException e) {
+            detector.onLockFailed(this, waitToken);
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean tryLock() {
+        boolean acquired = delegate.tryLock();
+        if (acquired) {
+            detector.onAfterLock(this, null);
+        }
+        return acquired;
+    }
+
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+        Object waitToken = detector.onBeforeLock(this);
+        try {
+            boolean acquired = delegate.tryLock(time, unit);
+            if (acquired) {
+                detector.onAfterLock(this, waitToken);
+            } else {
+                detector.onLockFailed(this, waitToken);
+            }
+            return acquired;
+        } catch (InterruptedException e) {
+            detector.onLockFailed(this, waitToken);
+            throw e;
+        }
+    }
+
+    @Override
+    public void unlock() {
+        if (!exclusive) {
+            // 无法预先判断当前线程是否持有共享锁，先释放，非持有线程释放时抛出异常且不改动追踪状态
+            delegate.unlock();
+            detector.onUnlock(this);
+            return;
+        }
+        if (!isHeldByCurrentThread()) {
+            // 由底层锁抛出IllegalMonitorStateException，不能提交持有者的持有事件
+            delegate.unlock();
+            return;
+        }
+        // 先清理追踪状态再真正释放，避免其他线程获得锁后被覆盖持有者
+        detector.onUnlock(this);
+        delegate.unlock();
+    }
+
+    /**
+     * 当前线程是否持有独占锁，底层锁不提供查询时按记录的持有者判断
+     */
+    private boolean isHeldByCurrentThread() {
+        if (delegate instanceof ReentrantLock) {
+            return ((ReentrantLock) delegate).isHeldByCurrentThread();
+        }
+        if (delegate instanceof ReentrantReadWriteLock.WriteLock) {
+            return ((ReentrantReadWriteLock.WriteLock) delegate).isHeldByCurrentThread();
+        }
+        return ownerThreadId == Thread.currentThread().getId();
+    }
+
+    @Override
+    public Condition newCondition() {
+        return delegate.newCondition();
+    }
+
+    @Override
+    public int hashCode() {
+        return delegate.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj instanceof LockWrapper) {
+            return delegate.equals(((LockWrapper) obj).delegate);
+        }
+        return delegate.equals(obj);
+    }
+
+    @Override
+    public String toString() {
+        return "LockWrapper{name='" + name + "', delegate=" + delegate + "}";
+    }
+}
@@ -0,0 +1,469 @@
+package com.deadlock.detector.detector;
+
+import com.deadlock.detector.DetectorLog;
+import com.deadlock.detector.model.DeadlockReport;
+import com.deadlock.detector.model.DeadlockType;
+import com.deadlock.detector.model.StackDictionary;
+import com.deadlock.detector.model.ThreadDetail;
+import com.deadlock.detector.reporter.DeadlockReporter;
+import com.deadlock.detector.reporter.LogReporter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 优先级反转检测器 - 高优先级线程（如主线程）等待的被追踪锁被低优先级线程持有
+ * <p>
+ * 每次检测沿{@link ReentrantLockDetector}的等待关系从等待线程走到持有者，持有者自己也在等锁时继续向下，
+ * 链上优先级低于等待线程的持有者即构成反转。反转从等待开始计时，等待结束时由锁回调记录准确的持续时间和涉及的锁，
+ * 可通过{@link #getRecentInversions()}查看。短于检测间隔的反转可能发现不了。
+ * <p>
+ * 开启{@link #setBoostOwners(boolean)}后，报告时把低优先级持有者临时提升到等待线程的优先级，
+ * 等待结束时恢复（持有者期间自己改过优先级则不恢复）。
+ */
+public class PriorityInversionDetector implements IDeadlockDetector {
+
+    private static final String TAG = "PriorityInversion";
+
+    // 沿等待链最多走的步数
+    private static final int MAX_CHAIN = 16;
+    // 保留的最近反转记录数
+    private static final int MAX_HISTORY = 32;
+
+    private final ReentrantLockDetector lockDetector;
+    private final ThreadPriorityAccess access;
+    private final long reportThresholdNanos;
+    private final DeadlockReporter reporter;
+    private final ThreadSnapshotService snapshots = ThreadSnapshotService.getDefault();
+
+    // 等待或持有过被追踪锁的线程，用于由持有者ID找到线程
+    private final ConcurrentHashMap<Long, Thread> lockThreads = new ConcurrentHashMap<>();
+    // 线程ID -> 本次等待开始的nanoTime
+    private final ConcurrentHashMap<Long, Long> waitStarts = new ConcurrentHashMap<>();
+    // 等待线程ID -> 进行中的反转
+    private final ConcurrentHashMap<Long, Inversion> active = new ConcurrentHashMap<>();
+    // 持有者ID -> 提升记录，以及反转历史，均在持有this时访问
+    private final Map<Long, Boost> boosts = new HashMap<>();
+    private final ArrayDeque<InversionRecord> history = new ArrayDeque<>();
+    private long inversionCount;
+    private long totalInversionNanos;
+    private long maxInversionNanos;
+
+    private volatile boolean boostOwners;
+    private volatile int lastScannedThreadCount;
+    private volatile int lastGraphSize;
+
+    /**
+     * 进行中的一次反转
+     */
+    private static final class Inversion {
+        final Thread waiter;
+        final int waiterPriority;
+        final LockWrapper lock;
+        final long startNanos;
+        // 从等待的锁开始，沿等待链经过的锁
+        final List<String> locks;
+        // 链上优先级低于等待线程的持有者
+        final List<Thread> lowerOwners;
+        final Thread lowestOwner;
+        final int lowestPriority;
+        final List<Thread> boostedOwners = new ArrayList<>();
+        boolean reported;
+        // 等待已结束、提升已恢复，在持有detector时读写
+        boolean finished;
+
+        Inversion(Thread waiter, int waiterPriority, LockWrapper lock, long startNanos, List<String> locks,
+                  List<Thread> lowerOwners, Thread lowestOwner, int lowestPriority) {
+            this.waiter = waiter;
+            this.waiterPriority = waiterPriority;
+            this.lock = lock;
+            this.startNanos = startNanos;
+            this.locks = locks;
+            this.lowerOwners = lowerOwners;
+            this.lowestOwner = lowestOwner;
+            this.lowestPriority = lowestPriority;
+        }
+    }
+
+    /**
+     * 一个持有者被提升的优先级，多个等待线程共用
+     */
+    private static final class Boost {
+        final int originalPriority;
+        int boostedPriority;
+        int refCount;
+
+        Boost(int originalPriority, int boostedPriority) {
+            this.originalPriority = originalPriority;
+            this.boostedPriority = boostedPriority;
+        }
+    }
+
+    /**
+     * 一次已结束的反转
+     */
+    public static final class InversionRecord {
+        private final long timestamp;
+        private final String waiterName;
+        private final int waiterPriority;
+        private final String ownerName;
+        private final int ownerPriority;
+        private final List<String> locks;
+        private final long durationMs;
+        private final boolean boosted;
+
+        InversionRecord(Inversion inversion, long durationMs) {
+            this.timestamp = System.currentTimeMillis();
+            this.waiterName = inversion.waiter.getName();
+            this.waiterPriority = inversion.waiterPriority;
+            this.ownerName = inversion.lowestOwner.getName();
+            this.ownerPriority = inversion.lowestPriority;
+            this.locks = Collections.unmodifiableList(inversion.locks);
+            this.durationMs = durationMs;
+            this.boosted = !inversion.boostedOwners.isEmpty();
+        }
+
+        /**
+         * 结束时间
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public String getWaiterName() {
+            return waiterName;
+        }
+
+        public int getWaiterPriority() {
+            return waiterPriority;
+        }
+
+        /**
+         * 链上优先级最低的持有者
+         */
+        public String getOwnerName() {
+            return ownerName;
+        }
+
+        public int getOwnerPriority() {
+            return ownerPriority;
+        }
+
+        /**
+         * 从等待的锁开始沿等待链经过的锁
+         */
+        public List<String> getLocks() {
+            return locks;
+        }
+
+        public long getDurationMs() {
+            return durationMs;
+        }
+
+        public boolean isBoosted() {
+            return boosted;
+        }
+
+        @Override
+        public String toString() {
+            return "\"" + waiterName + "\" (priority " + waiterPriority + ") waited " + durationMs
+                    + "ms on " + locks + " behind \"" + ownerName + "\" (priority " + ownerPriority + ")"
+                    + (boosted ? ", owner boosted" : "");
+        }
+    }
+
+    public PriorityInversionDetector(ReentrantLockDetector lockDetector) {
+        this(lockDetector, ThreadPriorityAccess.JAVA, 0, new LogReporter());
+    }
+
+    /**
+     * @param lockDetector       提供锁的持有和等待关系
+     * @param access             线程优先级的读写方式
+     * @param reportThresholdMs  反转持续超过该时长（毫秒）时报告，0表示发现即报告
+     * @param reporter           报告输出
+     */
+    public PriorityInversionDetector(ReentrantLockDetector lockDetector, ThreadPriorityAccess access,
+                                     long reportThresholdMs, DeadlockReporter reporter) {
+        this.lockDetector = lockDetector;
+        this.access = access;
+        this.reportThresholdNanos = TimeUnit.MILLISECONDS.toNanos(reportThresholdMs);
+        this.reporter = reporter;
+        lockDetector.setInversionDetector(this);
+    }
+
+    /**
+     * 是否在报告时临时提升低优先级持有者的优先级
+     */
+    public void setBoostOwners(boolean boost) {
+        this.boostOwners = boost;
+    }
+
+    public boolean isBoostOwners() {
+        return boostOwners;
+    }
+
+    /**
+     * 锁回调 - 线程开始等待被追踪锁
+     */
+    void onWaitBegin(Thread current) {
+        remember(current);
+        waitStarts.put(current.getId(), System.nanoTime());
+    }
+
+    /**
+     * 锁回调 - 线程首次获得被追踪锁
+     */
+    void onAcquired(Thread current) {
+        remember(current);
+    }
+
+    /**
+     * 锁回调 - 等待结束（获得锁、超时或被中断）
+     */
+    void onWaitEnd(long threadId) {
+        waitStarts.remove(threadId);
+        Inversion inversion = active.remove(threadId);
+        if (inversion != null) {
+            finish(inversion, System.nanoTime());
+        }
+    }
+
+    private void remember(Thread thread) {
+        long threadId = thread.getId();
+        if (!lockThreads.containsKey(threadId) && lockThreads.putIfAbsent(threadId, thread) == null) {
+            access.onThreadSeen(thread);
+        }
+    }
+
+    @Override
+    public void detect() {
+        long now = System.nanoTime();
+        Map<Long, LockWrapper> waiting = lockDetector.getWaitingLocks();
+        lastScannedThreadCount = waiting.size();
+        for (Map.Entry<Long, LockWrapper> entry : waiting.entrySet()) {
+            long waiterId = entry.getKey();
+            LockWrapper lock = entry.getValue();
+            Long start = waitStarts.get(waiterId);
+            Thread waiter = lockDetector.getWaitingThread(waiterId);
+            if (start == null || waiter == null) {
+                continue;
+            }
+            Inversion inversion = active.get(waiterId);
+            if (inversion == null || inversion.lock != lock || inversion.startNanos != start) {
+                inversion = findInversion(waiter, lock, start, waiting);
+                if (inversion == null) {
+                    continue;
+                }
+                active.put(waiterId, inversion);
+                // 等待可能在查找期间结束，此时onWaitEnd可能已经错过这条记录
+                if (!start.equals(waitStarts.get(waiterId))) {
+                    active.remove(waiterId, inversion);
+                    continue;
+                }
+            }
+            if (!inversion.reported && now - inversion.startNanos >= reportThresholdNanos) {
+                inversion.reported = true;
+                if (boostOwners) {
+                    boost(inversion);
+                }
+                report(inversion, now);
+            }
+        }
+        lastGraphSize = active.size();
+        pruneDeadThreads();
+    }
+
+    /**
+     * 从等待的锁出发沿持有者的等待链查找优先级更低的持有者，没有时返回null
+     */
+    private Inversion findInversion(Thread waiter, LockWrapper lock, long startNanos,
+                                    Map<Long, LockWrapper> waiting) {
+        int waiterPriority = access.getPriority(waiter);
+        List<String> locks = new ArrayList<>();
+        List<Thread> lowerOwners = new ArrayList<>();
+        Thread lowestOwner = null;
+        int lowestPriority = waiterPriority;
+        Set<Long> visited = new HashSet<>();
+        visited.add(waiter.getId());
+
+        LockWrapper current = lock;
+        for (int hop = 0; hop < MAX_CHAIN && current != null; hop++) {
+            locks.add(current.getName());
+            long ownerId = current.getOwnerThreadId();
+            // 回到链上已有的线程说明是死锁环，由死锁检测报告
+            if (ownerId < 0 || !visited.add(ownerId)) {
+                break;
+            }
+            Thread owner = lockThreads.get(ownerId);
+            if (owner == null) {
+                break;
+            }
+            int ownerPriority = access.getPriority(owner);
+            if (ownerPriority < waiterPriority) {
+                lowerOwners.add(owner);
+                if (ownerPriority < lowestPriority) {
+                    lowestOwner = owner;
+                    lowestPriority = ownerPriority;
+                }
+            }
+            current = waiting.get(ownerId);
+        }
+        if (lowestOwner == null) {
+            return null;
+        }
+        return new Inversion(waiter, waiterPriority, lock, startNanos, locks, lowerOwners,
+                lowestOwner, lowestPriority);
+    }
+
+    private synchronized void boost(Inversion inversion) {
+        // 等待可能在检测线程判断之后、进入这里之前结束，此时提升不会再被恢复
+        if (inversion.finished) {
+            return;
+        }
+        for (Thread owner : inversion.lowerOwners) {
+            Boost boost = boosts.get(owner.getId());
+            if (boost == null) {
+                int original = access.getPriority(owner);
+                if (!access.setPriority(owner, inversion.waiterPriority)) {
+                    continue;
+                }
+                boost = new Boost(original, inversion.waiterPriority);
+                boosts.put(owner.getId(), boost);
+            } else if (boost.boostedPriority < inversion.waiterPriority) {
+                if (access.setPriority(owner, inversion.waiterPriority)) {
+                    boost.boostedPriority = inversion.waiterPriority;
+                }
+            }
+            boost.refCount++;
+            inversion.boostedOwners.add(owner);
+        }
+    }
+
+    private synchronized void finish(Inversion inversion, long endNanos) {
+        inversion.finished = true;
+        for (Thread owner : inversion.boostedOwners) {
+            Boost boost = boosts.get(owner.getId());
+            if (boost == null || --boost.refCount > 0) {
+                continue;
+            }
+            boosts.remove(owner.getId());
+            // 持有者期间自己调整过优先级时保留它的设置
+            if (owner.isAlive() && access.getPriority(owner) == boost.boostedPriority) {
+                access.setPriority(owner, boost.originalPriority);
+            }
+        }
+
+        long durationNanos = endNanos - inversion.startNanos;
+        InversionRecord record = new InversionRecord(inversion, TimeUnit.NANOSECONDS.toMillis(durationNanos));
+        inversionCount++;
+        totalInversionNanos += durationNanos;
+        maxInversionNanos = Math.max(maxInversionNanos, durationNanos);
+        if (history.size() == MAX_HISTORY) {
+            history.removeFirst();
+        }
+        history.addLast(record);
+        if (inversion.reported) {
+            DetectorLog.i(TAG, "Priority inversion ended: " + record);
+        }
+    }
+
+    private void report(Inversion inversion, long now) {
+        Thread waiter = inversion.waiter;
+        long waitMs = TimeUnit.NANOSECONDS.toMillis(now - inversion.startNanos);
+        ThreadSnapshotService.Snapshot snapshot = snapshots.current();
+        DeadlockReport.Builder builder = new DeadlockReport.Builder()
+                .type(DeadlockType.PRIORITY_INVERSION)
+                .timestamp(System.currentTimeMillis())
+                .message("\"" + waiter.getName() + "\" (priority " + inversion.waiterPriority + ") waiting "
+                        + waitMs + "ms on " + inversion.lock.getName() + " behind lower-priority \""
+                        + inversion.lowestOwner.getName() + "\" (priority " + inversion.lowestPriority + ")"
+                        + (inversion.boostedOwners.isEmpty() ? "" : ", owner priority boosted"));
+        builder.addThreadDetail(new ThreadDetail.Builder()
+                .stackDictionary(StackDictionary.getDefault())
+                .threadId(waiter.getId())
+                .threadName(waiter.getName())
+                .threadState(waiter.getState().name())
+                .waitingForLock(inversion.lock.getName())
+                .heldLocks(lockDetector.getHeldLockNames(waiter.getId()))
+                .blockTimeMs(waitMs)
+                .stackTrace(snapshot.getStackTrace(waiter))
+                .build());
+        for (Thread owner : inversion.lowerOwners) {
+            builder.addThreadDetail(new ThreadDetail.Builder()
+                    .stackDictionary(StackDictionary.getDefault())
+                    .threadId(owner.getId())
+                    .threadName(owner.getName())
+                    .threadState(owner.getState().name())
+                    .waitingForLock(lockDetector.getWaitingLockName(owner.getId()))
+                    .heldLocks(lockDetector.getHeldLockNames(owner.getId()))
+                    .stackTrace(snapshot.getStackTrace(owner))
+                    .build());
+        }
+        reporter.report(builder.build());
+    }
+
+    private void pruneDeadThreads() {
+        for (Iterator<Thread> it = lockThreads.values().iterator(); it.hasNext(); ) {
+            Thread thread = it.next();
+            if (!thread.isAlive()) {
+                it.remove();
+                access.onThreadGone(thread.getId());
+            }
+        }
+    }
+
+    /**
+     * 最近结束的反转，按结束时间排列
+     */
+    public synchronized List<InversionRecord> getRecentInversions() {
+        return new ArrayList<>(history);
+    }
+
+    public synchronized long getInversionCount() {
+        return inversionCount;
+    }
+
+    public synchronized long getTotalInversionMs() {
+        return TimeUnit.NANOSECONDS.toMillis(totalInversionNanos);
+    }
+
+    public synchronized long getMaxInversionMs() {
+        return TimeUnit.NANOSECONDS.toMillis(maxInversionNanos);
+    }
+
+    @Override
+    public int getLastScannedThreadCount() {
+        return lastScannedThreadCount;
+    }
+
+    @Override
+    public int getLastGraphSize() {
+        return lastGraphSize;
+    }
+
+    @Override
+    public String getName() {
+        return "PriorityInversionDetector";
+    }
+
+    @Override
+    public void destroy() {
+        lockDetector.setInversionDetector(null);
+        for (Iterator<Inversion> it = active.values().iterator(); it.hasNext(); ) {
+            Inversion inversion = it.next();
+            it.remove();
+            finish(inversion, System.nanoTime());
+        }
+        lockThreads.clear();
+        waitStarts.clear();
+    }
+}
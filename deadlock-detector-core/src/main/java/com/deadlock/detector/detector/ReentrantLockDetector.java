@@ -0,0 +1,500 @@
+package com.deadlock.detector.detector;
+
+import com.deadlock.detector.analyzer.DeadlockAnalyzer;
+import com.deadlock.detector.model.DeadlockReport;
+import com.deadlock.detector.model.DeadlockType;
+import com.deadlock.detector.model.StackDictionary;
+import com.deadlock.detector.model.ThreadDetail;
+import com.deadlock.detector.reporter.DeadlockReporter;
+import com.deadlock.detector.reporter.LogReporter;
+import com.deadlock.detector.stats.LockEventRecorder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ReentrantLock等显式锁死锁检测器
+ * 通过包装Lock实现追踪锁的持有和等待关系
+ */
+public class ReentrantLockDetector implements IDeadlockDetector {
+
+    private static final String TAG = "ReentrantLockDetector";
+
+    // 记录每个线程持有的锁
+    private final ConcurrentHashMap<Long, Set<LockWrapper>> threadHeldLocks;
+    // 记录每个线程等待的锁
+    private final ConcurrentHashMap<Long, LockWrapper> threadWaitingLock;
+    // 正在等待锁的线程，虚拟线程不在线程组中，生成报告时从这里找到线程对象
+    private final ConcurrentHashMap<Long, Thread> waitingThreads = new ConcurrentHashMap<>();
+    // 所有被追踪的锁
+    private final Set<LockWrapper> trackedLocks;
+
+    private final DeadlockReporter reporter;
+    private final DeadlockAnalyzer analyzer;
+
+    // 每个线程复用的等待状态，供看门狗定向检查
+    private final ThreadLocal<LockWatchdog.WaitState> waitState = new ThreadLocal<LockWatchdog.WaitState>() {
+        @Override
+        protected LockWatchdog.WaitState initialValue() {
+            return new LockWatchdog.WaitState(Thread.currentThread());
+        }
+    };
+    // 看门狗已报告过的环，避免环中每个线程重复报告
+    private final Set<List<Long>> reportedCycles = ConcurrentHashMap.newKeySet();
+    // 锁事件时间线，未开始记录时每次回调只多一次volatile读
+    private final LockEventRecorder eventRecorder = LockEventRecorder.getDefault();
+    private final ThreadSnapshotService snapshots = ThreadSnapshotService.getDefault();
+    private volatile LockWatchdog watchdog;
+    // 锁操作回调，未设置时每次锁操作只多一次volatile读
+    private volatile LockTracer lockTracer;
+    // 优先级反转检测，未启用时为null
+    private volatile PriorityInversionDetector inversionDetector;
+
+    private volatile int lastScannedThreadCount;
+    private volatile int lastGraphSize;
+
+    public ReentrantLockDetector() {
+        this.threadHeldLocks = new ConcurrentHashMap<>();
+        this.threadWaitingLock = new ConcurrentHashMap<>();
+        this.trackedLocks = ConcurrentHashMap.newKeySet();
+        this.reporter = new LogReporter();
+        this.analyzer = new DeadlockAnalyzer();
+    }
+
+    public ReentrantLockDetector(DeadlockReporter reporter) {
+        this.threadHeldLocks = new ConcurrentHashMap<>();
+        this.threadWaitingLock = new ConcurrentHashMap<>();
+        this.trackedLocks = ConcurrentHashMap.newKeySet();
+        this.reporter = reporter;
+        this.analyzer = new DeadlockAnalyzer();
+    }
+
+    /**
+     * 创建一个被追踪的ReentrantLock
+     */
+    public Lock createTrackedLock(String lockName) {
+        return createTrackedLock(lockName, false);
+    }
+
+    /**
+     * 创建一个被追踪的ReentrantLock
+     *
+     * @param lockName 锁名称
+     * @param fair     是否公平锁
+     */
+    public Lock createTrackedLock(String lockName, boolean fair) {
+        ReentrantLock lock = new ReentrantLock(fair);
+        return wrap(lock, lockName);
+    }
+
+    /**
+     * 包装现有的Lock进行追踪
+     *
+     * @param lock     原始锁
+     * @param lockName 锁名称
+     */
+    public LockWrapper wrap(Lock lock, String lockName) {
+        LockWrapper wrapper = new LockWrapper(lock, lockName, this);
+        trackedLocks.add(wrapper);
+        return wrapper;
+    }
+
+    /**
+     * 启用锁等待看门狗
+     * <p>
+     * 启用后不再定时做全局扫描，只在线程等待锁超过阈值时检查它所在的等待链
+     *
+     * @param thresholdMs 等待阈值（毫秒）
+     */
+    public synchronized void startWatchdog(long thresholdMs) {
+        if (watchdog != null || thresholdMs <= 0) {
+            return;
+        }
+        LockWatchdog dog = new LockWatchdog(this, thresholdMs);
+        dog.start();
+        watchdog = dog;
+    }
+
+    /**
+     * 是否已启用锁等待看门狗
+     */
+    public boolean isWatchdogEnabled() {
+        return watchdog != null;
+    }
+
+    /**
+     * 获取线程当前持有的被追踪锁名称
+     *
+     * @param threadId 线程ID
+     * @return 锁名称列表，未持有时返回空列表
+     */
+    public List<String> getHeldLockNames(long threadId) {
+        List<String> names = new ArrayList<>();
+        Set<LockWrapper> heldLocks = threadHeldLocks.get(threadId);
+        if (heldLocks != null) {
+            for (LockWrapper lock : heldLocks) {
+                names.add(lock.getName());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * 获取线程当前正在等待的被追踪锁名称
+     *
+     * @param threadId 线程ID
+     * @return 锁名称，没有在等待时返回null
+     */
+    public String getWaitingLockName(long threadId) {
+        LockWrapper lock = threadWaitingLock.get(threadId);
+        return lock != null ? lock.getName() : null;
+    }
+
+    /**
+     * 设置锁操作回调，应在开始使用被追踪锁之前设置，传null取消
+     */
+    public void setLockTracer(LockTracer tracer) {
+        this.lockTracer = tracer;
+    }
+
+    public LockTracer getLockTracer() {
+        return lockTracer;
+    }
+
+    void setInversionDetector(PriorityInversionDetector detector) {
+        this.inversionDetector = detector;
+    }
+
+    /**
+     * 线程ID -> 正在等待的锁，只读视图
+     */
+    Map<Long, LockWrapper> getWaitingLocks() {
+        return Collections.unmodifiableMap(threadWaitingLock);
+    }
+
+    /**
+     * 正在等待被追踪锁的线程，没有在等待时返回null
+     */
+    Thread getWaitingThread(long threadId) {
+        return waitingThreads.get(threadId);
+    }
+
+    /**
+     * 内部回调方法 - 锁被获取前
+     *
+     * @return LockTracer的等待对象，获取结束时传回
+     */
+    Object onBeforeLock(LockWrapper lock) {
+        Thread current = Thread.currentThread();
+        long threadId = current.getId();
+        threadWaitingLock.put(threadId, lock);
+        waitingThreads.put(threadId, current);
+        PriorityInversionDetector inversion = inversionDetector;
+        if (inversion != null) {
+            inversion.onWaitBegin(current);
+        }
+        if (eventRecorder.isRecording()) {
+            eventRecorder.record(LockEventRecorder.WAIT_BEGIN, lock, lock.getOwnerThreadId());
+        }
+
+        LockWatchdog dog = watchdog;
+        if (dog != null) {
+            LockWatchdog.WaitState state = waitState.get();
+            long now = System.nanoTime();
+            state.waitStartNanos = now;
+            state.deadlineNanos = now + dog.getThresholdNanos();
+            state.lock = lock;
+            dog.onWaitStart(state);
+        }
+
+        LockTracer tracer = lockTracer;
+        return tracer != null ? tracer.waitBegin(lock, lock.getOwnerThreadId()) : null;
+    }
+
+    /**
+     * 内部回调方法 - 锁被获取后
+     */
+    void onAfterLock(LockWrapper lock, Object waitToken) {
+        long threadId = Thread.currentThread().getId();
+        endWait(threadId);
+        LockTracer tracer = lockTracer;
+        if (waitToken != null && tracer != null) {
+            tracer.waitEnd(waitToken, lock, true);
+        }
+        if (lock.markAcquired(threadId)) {
+            threadHeldLocks.computeIfAbsent(threadId, k -> ConcurrentHashMap.newKeySet()).add(lock);
+            if (eventRecorder.isRecording()) {
+                eventRecorder.record(LockEventRecorder.ACQUIRED, lock, -1);
+            }
+            // 多个读者共用一个包装器，持有事件会互相覆盖，只追踪独占锁
+            if (tracer != null && lock.isExclusive()) {
+                lock.setHoldToken(tracer.holdBegin(lock));
+            }
+            PriorityInversionDetector inversion = inversionDetector;
+            if (inversion != null) {
+                inversion.onAcquired(Thread.currentThread());
+            }
+        }
+    }
+
+    /**
+     * 内部回调方法 - 锁获取失败
+     */
+    void onLockFailed(LockWrapper lock, Object waitToken) {
+        long threadId = Thread.currentThread().getId();
+        endWait(threadId);
+        LockTracer tracer = lockTracer;
+        if (waitToken != null && tracer != null) {
+            tracer.waitEnd(waitToken, lock, false);
+        }
+        if (eventRecorder.isRecording()) {
+            eventRecorder.record(LockEventRecorder.WAIT_FAILED, lock, -1);
+        }
+    }
+
+    /**
+     * 内部回调方法 - 锁被释放
+     */
+    void onUnlock(LockWrapper lock) {
+        long threadId = Thread.currentThread().getId();
+        if (!lock.markReleased(threadId)) {
+            // 重入释放，仍然持有
+            return;
+        }
+        if (eventRecorder.isRecording()) {
+            eventRecorder.record(LockEventRecorder.RELEASED, lock, -1);
+        }
+        Object holdToken = lock.isExclusive() ? lock.takeHoldToken() : null;
+        LockTracer tracer = lockTracer;
+        if (holdToken != null && tracer != null) {
+            tracer.holdEnd(holdToken, lock);
+        }
+        Set<LockWrapper> heldLocks = threadHeldLocks.get(threadId);
+        if (heldLocks != null) {
+            heldLocks.remove(lock);
+            if (heldLocks.isEmpty()) {
+                threadHeldLocks.remove(threadId);
+            }
+        }
+    }
+
+    private void endWait(long threadId) {
+        waitingThreads.remove(threadId);
+        if (threadWaitingLock.remove(threadId) != null && watchdog != null) {
+            waitState.get().lock = null;
+        }
+        PriorityInversionDetector inversion = inversionDetector;
+        if (inversion != null) {
+            inversion.onWaitEnd(threadId);
+        }
+    }
+
+    /**
+     * 看门狗回调 - 沿等待链检查某个超时等待的线程是否处于死锁环中
+     * <p>
+     * 只访问该线程等待链上的锁和线程，不做全局扫描
+     */
+    void checkWaitChain(LockWatchdog.WaitState state, long nowNanos) {
+        List<Long> chain = new ArrayList<>();
+        long current = state.threadId;
+        while (true) {
+            int index = chain.indexOf(current);
+            if (index >= 0) {
+                List<Long> cycle = new ArrayList<>(chain.subList(index, chain.size()));
+                // 不在环上的线程只是被环阻塞，由环中的线程负责报告
+                if (cycle.contains(state.threadId)) {
+                    onWatchdogCycle(cycle, nowNanos - state.waitStartNanos);
+                }
+                return;
+            }
+            chain.add(current);
+
+            LockWrapper waitingFor = threadWaitingLock.get(current);
+            if (waitingFor == null) {
+                return;
+            }
+            long owner = waitingFor.getOwnerThreadId();
+            if (owner < 0 || owner == current) {
+                return;
+            }
+            current = owner;
+        }
+    }
+
+    private void onWatchdogCycle(List<Long> cycle, long waitNanos) {
+        // 清理已经解开的环（例如tryLock超时退出）
+        Iterator<List<Long>> it = reportedCycles.iterator();
+        while (it.hasNext()) {
+            if (!isStillCycle(it.next())) {
+                it.remove();
+            }
+        }
+
+        if (reportedCycles.add(normalizeCycle(cycle))) {
+            DeadlockReport report = buildReport(Collections.singletonList(cycle),
+                    "Lock wait exceeded " + TimeUnit.NANOSECONDS.toMillis(waitNanos)
+                            + "ms, detected by lock watchdog");
+            reporter.report(report);
+        }
+    }
+
+    private boolean isStillCycle(List<Long> cycle) {
+        for (int i = 0; i < cycle.size(); i++) {
+            LockWrapper waitingFor = threadWaitingLock.get(cycle.get(i));
+            long next = cycle.get((i + 1) % cycle.size());
+            if (waitingFor == null || waitingFor.getOwnerThreadId() != next) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 把环旋转到以最小线程ID开头，同一个环从任何线程出发得到相同结果
+     */
+    private List<Long> normalizeCycle(List<Long> cycle) {
+        int minIndex = 0;
+        for (int i = 1; i < cycle.size(); i++) {
+            if (cycle.get(i) < cycle.get(minIndex)) {
+                minIndex = i;
+            }
+        }
+        List<Long> normalized = new ArrayList<>(cycle.size());
+        for (int i = 0; i < cycle.size(); i++) {
+            normalized.add(cycle.get((minIndex + i) % cycle.size()));
+        }
+        return normalized;
+    }
+
+    @Override
+    public void detect() {
+        // 看门狗模式下由锁等待事件驱动检测，不做定时全局扫描
+        if (watchdog != null) {
+            return;
+        }
+
+        // 构建等待图并检测环
+        lastScannedThreadCount = threadWaitingLock.size();
+        Map<Long, Long> waitForGraph = buildWaitForGraph();
+        lastGraphSize = waitForGraph.size();
+        if (waitForGraph.isEmpty()) {
+            return;
+        }
+
+        List<List<Long>> cycles = analyzer.detectCycles(waitForGraph);
+
+        if (!cycles.isEmpty()) {
+            DeadlockReport report = buildReport(cycles, null);
+            reporter.report(report);
+        }
+    }
+
+    private Map<Long, Long> buildWaitForGraph() {
+        return buildWaitForGraph(threadWaitingLock, threadHeldLocks);
+    }
+
+    /**
+     * 由等待表和持有表构建等待图，包级可见供基准测试使用
+     */
+    static Map<Long, Long> buildWaitForGraph(Map<Long, LockWrapper> threadWaitingLock,
+                                             Map<Long, Set<LockWrapper>> threadHeldLocks) {
+        Map<Long, Long> graph = new HashMap<>();
+
+        for (Map.Entry<Long, LockWrapper> entry : threadWaitingLock.entrySet()) {
+            long waitingThreadId = entry.getKey();
+            LockWrapper waitingForLock = entry.getValue();
+
+            long owner = waitingForLock.getOwnerThreadId();
+            if (owner >= 0) {
+                if (owner != waitingThreadId) {
+                    graph.put(waitingThreadId, owner);
+                }
+                continue;
+            }
+
+            // 持有者未知时扫描持有表找到持有这个锁的线程
+            for (Map.Entry<Long, Set<LockWrapper>> heldEntry : threadHeldLocks.entrySet()) {
+                if (heldEntry.getValue().contains(waitingForLock)) {
+                    graph.put(waitingThreadId, heldEntry.getKey());
+                    break;
+                }
+            }
+        }
+
+        return graph;
+    }
+
+    private DeadlockReport buildReport(List<List<Long>> cycles, String message) {
+        DeadlockReport.Builder builder = new DeadlockReport.Builder()
+                .type(DeadlockType.REENTRANT_LOCK)
+                .timestamp(System.currentTimeMillis())
+                .message(message);
+
+        // 收集所有死锁线程ID（去重）
+        Set<Long> deadlockedThreadIds = ConcurrentHashMap.newKeySet();
+        for (List<Long> cycle : cycles) {
+            deadlockedThreadIds.addAll(cycle);
+        }
+
+        // 只获取死锁线程的堆栈
+        ThreadSnapshotService.Snapshot snapshot = snapshots.current();
+        for (Long threadId : deadlockedThreadIds) {
+            Thread thread = snapshot.findThread(threadId);
+            if (thread == null) {
+                thread = waitingThreads.get(threadId);
+            }
+            if (thread != null) {
+                ThreadDetail detail = new ThreadDetail.Builder()
+                        .stackDictionary(StackDictionary.getDefault())
+                        .threadId(threadId)
+                        .threadName(thread.getName())
+                        .threadState(snapshot.getState(thread).name())
+                        .waitingForLock(getWaitingLockName(threadId))
+                        .heldLocks(getHeldLockNames(threadId))
+                        .stackTrace(snapshot.getStackTrace(thread))
+                        .build();
+                builder.addThreadDetail(detail);
+            }
+        }
+
+        return builder.build();
+    }
+
+    @Override
+    public int getLastScannedThreadCount() {
+        return lastScannedThreadCount;
+    }
+
+    @Override
+    public int getLastGraphSize() {
+        return lastGraphSize;
+    }
+
+    @Override
+    public String getName() {
+        return "ReentrantLockDetector";
+    }
+
+    @Override
+    public void destroy() {
+        LockWatchdog dog = watchdog;
+        if (dog != null) {
+            dog.stop();
+            watchdog = null;
+        }
+        reportedCycles.clear();
+        threadHeldLocks.clear();
+        threadWaitingLock.clear();
+        waitingThreads.clear();
+        trackedLocks.clear();
+    }
+}
@@ -0,0 +1,374 @@
+package com.deadlock.detector.detector;
+
+import com.deadlock.detector.model.DeadlockReport;
+import com.deadlock.detector.model.DeadlockType;
+import com.deadlock.detector.model.StackDictionary;
+import com.deadlock.detector.model.ThreadDetail;
+import com.deadlock.detector.reporter.DeadlockReporter;
+import com.deadlock.detector.reporter.LogReporter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.AbstractQueuedSynchronizer;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 卡住线程检测器 - 找出长时间停在同一个等待点的WAITING/TIMED_WAITING线程和阻塞在I/O上的线程
+ * <p>
+ * 每次检测对候选线程的堆栈计算一个哈希，与上次相同则累计停留时间，超过阈值时报告一次，
+ * 直到堆栈变化。根据栈顶帧把原因分为PARKED（LockSupport.park）、WAITING（Object.wait、
+ * Thread.sleep、Thread.join）和IO（socket/文件读写、select）。
+ * <p>
+ * 空闲的池线程、消息循环等本来就长时间等待的线程通过帧白名单排除：从栈顶开始跳过JDK/平台帧，
+ * 遇到第一个应用帧之前命中白名单即视为空闲。两次检测之间恰好回到同一个等待点的轮询线程无法和卡住区分，
+ * 可以用{@link #ignoreThread(String)}按名称排除，持续收数据、大部分时间停在read中的线程同理。
+ */
+public class StuckThreadDetector implements IDeadlockDetector {
+
+    /**
+     * 默认的空闲等待帧，按"类名.方法名"前缀匹配
+     */
+    public static final List<String> DEFAULT_IDLE_FRAMES = Arrays.asList(
+            "java.util.concurrent.ThreadPoolExecutor.getTask",
+            "java.util.concurrent.ForkJoinPool.awaitWork",
+            "java.util.concurrent.ForkJoinPool.runWorker",
+            "java.util.concurrent.ScheduledThreadPoolExecutor$DelayedWorkQueue.take",
+            "java.lang.ref.Reference.waitForReferencePendingList",
+            "java.lang.ref.ReferenceQueue.remove",
+            "sun.nio.ch.SelectorImpl.select",
+            "android.os.MessageQueue.nativePollOnce",
+            "java.lang.Daemons$",
+            "com.deadlock.detector.detector.LockWatchdog",
+            "com.deadlock.detector.reporter.AsyncReporter",
+            "com.deadlock.detector.reporter.HttpUploadReporter");
+
+    // 报告前确认状态的次数和间隔
+    private static final int CONFIRM_ROUNDS = 5;
+    private static final long CONFIRM_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    // JDK和系统框架的包前缀，白名单匹配和原因分类只看第一个应用帧之前的部分
+    private static final String[] PLATFORM_PREFIXES = {
+            "java.", "javax.", "jdk.", "sun.", "com.sun.", "android.", "dalvik.", "libcore.", "com.android."};
+
+    // 出现在平台帧中即视为I/O等待
+    private static final String[] IO_PREFIXES = {
+            "java.net.", "java.io.FileInputStream", "java.io.FileOutputStream", "sun.nio.ch.", "sun.security.ssl.",
+            "java.nio.channels.", "libcore.io.", "com.android.org.conscrypt."};
+
+    /**
+     * 卡住的原因
+     */
+    public enum Reason {
+        PARKED, WAITING, IO
+    }
+
+    private final long thresholdNanos;
+    private final DeadlockReporter reporter;
+    private final List<String> idleFrames = new CopyOnWriteArrayList<>(DEFAULT_IDLE_FRAMES);
+    private final List<String> ignoredThreadPrefixes = new CopyOnWriteArrayList<>();
+    private final ThreadSnapshotService snapshots = ThreadSnapshotService.getDefault();
+
+    // 线程ID -> 上次看到的等待点，只在检测线程访问
+    private final Map<Long, Track> tracks = new HashMap<>();
+    // 白名单修改后清空缓存的分类结果
+    private volatile boolean allowlistChanged;
+
+    private volatile int lastScannedThreadCount;
+    private volatile int lastGraphSize;
+
+    /**
+     * 一个线程当前停留的等待点
+     */
+    private static final class Track {
+        final Thread thread;
+        final int stackHash;
+        final long sinceNanos;
+        // 为null表示空闲等待或不是候选线程
+        final Reason reason;
+        // 等待的锁队列的队首线程，变化说明锁在被轮流获取
+        final Thread queueHead;
+        boolean reported;
+
+        Track(Thread thread, int stackHash, long sinceNanos, Reason reason) {
+            this.thread = thread;
+            this.stackHash = stackHash;
+            this.sinceNanos = sinceNanos;
+            this.reason = reason;
+            this.queueHead = reason == Reason.PARKED ? queueHead(thread) : null;
+        }
+    }
+
+    public StuckThreadDetector(long thresholdMs) {
+        this(thresholdMs, new LogReporter());
+    }
+
+    /**
+     * @param thresholdMs 堆栈保持不变超过该时长（毫秒）时报告
+     * @param reporter    报告输出
+     */
+    public StuckThreadDetector(long thresholdMs, DeadlockReporter reporter) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMs);
+        this.reporter = reporter;
+    }
+
+    /**
+     * 添加空闲等待帧，"类名.方法名"前缀
+     */
+    public void allowFrame(String framePrefix) {
+        idleFrames.add(framePrefix);
+        allowlistChanged = true;
+    }
+
+    /**
+     * 清空空闲等待帧，包括默认值
+     */
+    public void clearAllowedFrames() {
+        idleFrames.clear();
+        allowlistChanged = true;
+    }
+
+    /**
+     * 按线程名前缀排除线程
+     */
+    public void ignoreThread(String namePrefix) {
+        ignoredThreadPrefixes.add(namePrefix);
+        allowlistChanged = true;
+    }
+
+    @Override
+    public void detect() {
+        if (allowlistChanged) {
+            allowlistChanged = false;
+            tracks.clear();
+        }
+        ThreadSnapshotService.Snapshot snapshot = snapshots.current();
+        long now = snapshot.getCaptureTimeNanos();
+        lastScannedThreadCount = snapshot.size();
+
+        Map<Long, Track> seen = new HashMap<>();
+        List<Track> stuck = new ArrayList<>();
+        int waiting = 0;
+        for (Thread thread : snapshot.getThreads()) {
+            Thread.State state = snapshot.getState(thread);
+            // BLOCKED由死锁检测器处理
+            if (state != Thread.State.WAITING && state != Thread.State.TIMED_WAITING
+                    && state != Thread.State.RUNNABLE) {
+                continue;
+            }
+            if (thread == Thread.currentThread() || isIgnored(thread.getName())) {
+                continue;
+            }
+            StackTraceElement[] stack = snapshot.getStackTrace(thread);
+            if (stack.length == 0) {
+                continue;
+            }
+            int hash = hash(state, stack);
+            Track track = tracks.get(thread.getId());
+            if (track == null || track.thread != thread || track.stackHash != hash
+                    || (track.reason == Reason.PARKED && queueHead(thread) != track.queueHead)) {
+                // 只在等待点变化时分类，停留期间不重复匹配白名单
+                track = new Track(thread, hash, now, classify(state, stack));
+            }
+            seen.put(thread.getId(), track);
+            if (track.reason == null) {
+                continue;
+            }
+            waiting++;
+            if (!track.reported && now - track.sinceNanos >= thresholdNanos) {
+                stuck.add(track);
+            }
+        }
+        if (!stuck.isEmpty()) {
+            List<Track> confirmed = new ArrayList<>(stuck);
+            confirm(confirmed, snapshot);
+            for (Track track : stuck) {
+                if (confirmed.contains(track)) {
+                    track.reported = true;
+                } else {
+                    // 有进展，从现在重新计时
+                    seen.put(track.thread.getId(), new Track(track.thread, track.stackHash, now, track.reason));
+                }
+            }
+            stuck = confirmed;
+        }
+        // 已结束或离开等待点的线程不再保留
+        tracks.clear();
+        tracks.putAll(seen);
+        lastGraphSize = waiting;
+
+        if (!stuck.isEmpty()) {
+            report(stuck, snapshot, now);
+        }
+    }
+
+    private boolean isIgnored(String name) {
+        for (String prefix : ignoredThreadPrefixes) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 状态和每一帧的哈希，不构造字符串
+     */
+    private static int hash(Thread.State state, StackTraceElement[] stack) {
+        int hash = state.ordinal();
+        for (StackTraceElement element : stack) {
+            hash = 31 * hash + element.hashCode();
+        }
+        return hash;
+    }
+
+    /**
+     * 根据栈顶的平台帧判断等待原因，空闲等待或RUNNABLE但不在I/O中时返回null
+     */
+    private Reason classify(Thread.State state, StackTraceElement[] stack) {
+        boolean io = false;
+        for (StackTraceElement element : stack) {
+            String className = element.getClassName();
+            if (!idleFrames.isEmpty() && isIdleFrame(className, element.getMethodName())) {
+                return null;
+            }
+            if (!isPlatform(className)) {
+                break;
+            }
+            io |= startsWithAny(className, IO_PREFIXES);
+        }
+        if (io) {
+            return Reason.IO;
+        }
+        if (state == Thread.State.RUNNABLE) {
+            return null;
+        }
+        // 栈顶不是等待帧时，说明获取堆栈前线程已经离开了快照时的等待状态
+        StackTraceElement top = stack[0];
+        String className = top.getClassName();
+        String method = top.getMethodName();
+        if (method.startsWith("park")) {
+            return Reason.PARKED;
+        }
+        if (("java.lang.Object".equals(className) && method.startsWith("wait"))
+                || ("java.lang.Thread".equals(className) && (method.startsWith("sleep") || method.equals("join")))) {
+            return Reason.WAITING;
+        }
+        return null;
+    }
+
+    /**
+     * park在AQS锁上的线程所在队列的队首；竞争激烈但有进展的锁队首不断变化，卡住的锁队列不变
+     */
+    private static Thread queueHead(Thread thread) {
+        Object blocker = LockSupport.getBlocker(thread);
+        return blocker instanceof AbstractQueuedSynchronizer
+                ? ((AbstractQueuedSynchronizer) blocker).getFirstQueuedThread()
+                : null;
+    }
+
+    /**
+     * 在短时间内反复读取状态，去掉其间离开过等待状态的线程
+     * <p>
+     * 竞争激烈的锁上，线程每次被采样时都可能恰好停在同一个park点，只比较堆栈会误判为卡住；
+     * 真正卡住的线程在确认期间状态和锁队列都不会变化。RUNNABLE的I/O线程无法用状态确认，保持不变。
+     */
+    private static void confirm(List<Track> candidates, ThreadSnapshotService.Snapshot snapshot) {
+        for (int round = 0; round < CONFIRM_ROUNDS && !candidates.isEmpty(); round++) {
+            if (round > 0) {
+                LockSupport.parkNanos(CONFIRM_INTERVAL_NANOS);
+            }
+            for (Iterator<Track> it = candidates.iterator(); it.hasNext(); ) {
+                Track track = it.next();
+                if (track.thread.getState() != snapshot.getState(track.thread)
+                        || (track.reason == Reason.PARKED && queueHead(track.thread) != track.queueHead)) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    private boolean isIdleFrame(String className, String methodName) {
+        for (String frame : idleFrames) {
+            // 前缀可能只包含类名，也可能延伸到方法名
+            if (frame.length() <= className.length()) {
+                if (className.startsWith(frame)) {
+                    return true;
+                }
+            } else if (frame.startsWith(className) && frame.charAt(className.length()) == '.'
+                    && methodName.startsWith(frame.substring(className.length() + 1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isPlatform(String className) {
+        return startsWithAny(className, PLATFORM_PREFIXES);
+    }
+
+    private static boolean startsWithAny(String value, String[] prefixes) {
+        for (String prefix : prefixes) {
+            if (value.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void report(List<Track> stuck, ThreadSnapshotService.Snapshot snapshot, long now) {
+        DeadlockReport.Builder builder = new DeadlockReport.Builder()
+                .type(DeadlockType.STUCK_THREAD)
+                .timestamp(System.currentTimeMillis())
+                .message(stuck.size() + " thread(s) stuck at the same point for over "
+                        + TimeUnit.NANOSECONDS.toMillis(thresholdNanos) + "ms");
+        for (Track track : stuck) {
+            Thread thread = track.thread;
+            builder.addThreadDetail(new ThreadDetail.Builder()
+                    .stackDictionary(StackDictionary.getDefault())
+                    .threadId(thread.getId())
+                    .threadName(thread.getName())
+                    .threadState(snapshot.getState(thread).name())
+                    .waitingForLock(describe(track))
+                    .blockTimeMs(TimeUnit.NANOSECONDS.toMillis(now - track.sinceNanos))
+                    .stackTrace(snapshot.getStackTrace(thread))
+                    .build());
+        }
+        reporter.report(builder.build());
+    }
+
+    private static String describe(Track track) {
+        if (track.reason == Reason.PARKED) {
+            Object blocker = LockSupport.getBlocker(track.thread);
+            if (blocker != null) {
+                return "PARKED on " + blocker.getClass().getName();
+            }
+        }
+        return track.reason.name();
+    }
+
+    @Override
+    public int getLastScannedThreadCount() {
+        return lastScannedThreadCount;
+    }
+
+    @Override
+    public int getLastGraphSize() {
+        return lastGraphSize;
+    }
+
+    @Override
+    public String getName() {
+        return "StuckThreadDetector";
+    }
+
+    @Override
+    public void destroy() {
+        tracks.clear();
+    }
+}
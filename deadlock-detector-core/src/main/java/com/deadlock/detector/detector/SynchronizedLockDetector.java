@@ -1,13 +1,13 @@
 package com.deadlock.detector.detector;
 
-import android.util.Log;
-
+import com.deadlock.detector.DetectorLog;
 import com.deadlock.detector.analyzer.DeadlockAnalyzer;
 import com.deadlock.detector.model.DeadlockReport;
 import com.deadlock.detector.model.DeadlockType;
+import com.deadlock.detector.model.StackDictionary;
 import com.deadlock.detector.model.ThreadDetail;
 import com.deadlock.detector.reporter.DeadlockReporter;
-import com.deadlock.detector.reporter.LogcatReporter;
+import com.deadlock.detector.reporter.LogReporter;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -29,9 +29,13 @@ public class SynchronizedLockDetector implements IDeadlockDetector {
     private static final String TAG = "SyncLockDetector";
     private final DeadlockReporter reporter;
     private final DeadlockAnalyzer analyzer;
+    private final ThreadSnapshotService snapshots = ThreadSnapshotService.getDefault();
+
+    private volatile int lastScannedThreadCount;
+    private volatile int lastGraphSize;
 
     public SynchronizedLockDetector() {
-        this.reporter = new LogcatReporter();
+        this.reporter = new LogReporter();
         this.analyzer = new DeadlockAnalyzer();
     }
 
@@ -42,32 +46,27 @@ public class SynchronizedLockDetector implements IDeadlockDetector {
 
     @Override
     public void detect() {
-        // 获取所有线程及其堆栈
-        Map<Thread, StackTraceElement[]> allStackTraces = Thread.getAllStackTraces();
+        // 本次检测共用的线程快照，此时还没有获取任何堆栈
+        ThreadSnapshotService.Snapshot snapshot = snapshots.current();
+        lastScannedThreadCount = snapshot.size();
+        lastGraphSize = 0;
 
-        // 找出所有BLOCKED状态的线程
-        List<Thread> blockedThreads = new ArrayList<>();
-        for (Thread thread : allStackTraces.keySet()) {
-            if (thread.getState() == Thread.State.BLOCKED) {
-                blockedThreads.add(thread);
-            }
-        }
-
-        if (blockedThreads.isEmpty()) {
+        // 少于两个BLOCKED线程既不会成环也不会报告，不需要获取堆栈
+        if (findBlockedThreads(snapshot).size() < 2) {
             return;
         }
-
-        // 分析BLOCKED线程，尝试检测死锁
-        // 如果有多个线程同时处于BLOCKED状态，可能存在死锁
-        if (blockedThreads.size() >= 2) {
-            // 检查是否存在循环等待
-            Map<Long, Long> waitForGraph = buildWaitForGraph(blockedThreads, allStackTraces);
-            List<List<Long>> cycles = analyzer.detectCycles(waitForGraph);
-
-            if (!cycles.isEmpty()) {
-                DeadlockReport report = buildReport(cycles, allStackTraces);
-                reporter.report(report);
-            }
+        // 一次转储所有线程，再按转储时刻的状态重新找出BLOCKED线程，状态与堆栈一致
+        Map<Thread, StackTraceElement[]> allStackTraces = snapshot.getAllStackTraces();
+        List<Thread> blockedThreads = findBlockedThreads(snapshot);
+
+        // 分析BLOCKED线程，检查是否存在循环等待
+        Map<Long, Long> waitForGraph = buildWaitForGraph(blockedThreads, allStackTraces);
+        lastGraphSize = waitForGraph.size();
+        List<List<Long>> cycles = analyzer.detectCycles(waitForGraph);
+
+        if (!cycles.isEmpty()) {
+            DeadlockReport report = buildReport(cycles, snapshot, allStackTraces);
+            reporter.report(report);
         }
 
         // 即使没有检测到完整的死锁环，也报告长时间BLOCKED的线程
@@ -75,12 +74,22 @@ public class SynchronizedLockDetector implements IDeadlockDetector {
         reportBlockedThreads(blockedThreads, allStackTraces);
     }
 
+    private static List<Thread> findBlockedThreads(ThreadSnapshotService.Snapshot snapshot) {
+        List<Thread> blockedThreads = new ArrayList<>();
+        for (Thread thread : snapshot.getThreads()) {
+            if (snapshot.getState(thread) == Thread.State.BLOCKED) {
+                blockedThreads.add(thread);
+            }
+        }
+        return blockedThreads;
+    }
+
     /**
      * 构建等待图
-     * 通过分析BLOCKED线程的堆栈，尝试确定它们在等待哪个线程持有的锁
+     * 通过分析BLOCKED线程的堆栈，尝试确定它们在等待哪个线程持有的锁；包级可见供基准测试使用
      */
-    private Map<Long, Long> buildWaitForGraph(List<Thread> blockedThreads,
-                                               Map<Thread, StackTraceElement[]> allStackTraces) {
+    Map<Long, Long> buildWaitForGraph(List<Thread> blockedThreads,
+                                      Map<Thread, StackTraceElement[]> allStackTraces) {
         Map<Long, Long> graph = new HashMap<>();
 
         for (Thread blockedThread : blockedThreads) {
@@ -152,17 +161,17 @@ public class SynchronizedLockDetector implements IDeadlockDetector {
             return;
         }
 
-        Log.w(TAG, "Detected " + blockedThreads.size() + " blocked threads, possible deadlock:");
+        DetectorLog.w(TAG, "Detected " + blockedThreads.size() + " blocked threads, possible deadlock:");
         for (Thread thread : blockedThreads) {
             StackTraceElement[] stack = allStackTraces.get(thread);
-            Log.w(TAG, "  Thread: " + thread.getName() + " (id=" + thread.getId() + ")");
+            DetectorLog.w(TAG, "  Thread: " + thread.getName() + " (id=" + thread.getId() + ")");
             if (stack != null && stack.length > 0) {
-                Log.w(TAG, "    at " + stack[0]);
+                DetectorLog.w(TAG, "    at " + stack[0]);
             }
         }
     }
 
-    private DeadlockReport buildReport(List<List<Long>> cycles,
+    private DeadlockReport buildReport(List<List<Long>> cycles, ThreadSnapshotService.Snapshot snapshot,
                                         Map<Thread, StackTraceElement[]> allStackTraces) {
         DeadlockReport.Builder builder = new DeadlockReport.Builder()
                 .type(DeadlockType.SYNCHRONIZED)
@@ -180,9 +189,10 @@ public class SynchronizedLockDetector implements IDeadlockDetector {
             Thread thread = entry.getKey();
             if (deadlockedThreadIds.contains(thread.getId())) {
                 ThreadDetail detail = new ThreadDetail.Builder()
+                        .stackDictionary(StackDictionary.getDefault())
                         .threadId(thread.getId())
                         .threadName(thread.getName())
-                        .threadState(thread.getState().name())
+                        .threadState(snapshot.getState(thread).name())
                         .stackTrace(entry.getValue())
                         .build();
                 builder.addThreadDetail(detail);
@@ -192,6 +202,16 @@ public class SynchronizedLockDetector implements IDeadlockDetector {
         return builder.build();
     }
 
+    @Override
+    public int getLastScannedThreadCount() {
+        return lastScannedThreadCount;
+    }
+
+    @Override
+    public int getLastGraphSize() {
+        return lastGraphSize;
+    }
+
     @Override
     public String getName() {
         return "SynchronizedLockDetector";
@@ -0,0 +1,48 @@
+package com.deadlock.detector.detector;
+
+/**
+ * 线程优先级的读写方式 - 供{@link PriorityInversionDetector}比较和临时提升优先级
+ * <p>
+ * 统一使用"数值越大越重要"的刻度，平台相关的实现（如Android的nice值）自行换算。
+ */
+public interface ThreadPriorityAccess {
+
+    /**
+     * 使用Thread.getPriority()/setPriority()；HotSpot在Linux上默认忽略Java优先级，此时提升只改变记录的值
+     */
+    ThreadPriorityAccess JAVA = new ThreadPriorityAccess() {
+        @Override
+        public int getPriority(Thread thread) {
+            return thread.getPriority();
+        }
+
+        @Override
+        public boolean setPriority(Thread thread, int priority) {
+            try {
+                thread.setPriority(Math.max(Thread.MIN_PRIORITY, Math.min(Thread.MAX_PRIORITY, priority)));
+                return true;
+            } catch (SecurityException e) {
+                return false;
+            }
+        }
+    };
+
+    /**
+     * 线程第一次等待或持有被追踪锁时在该线程上回调，可以在这里记录只有线程自己能取到的标识
+     */
+    default void onThreadSeen(Thread current) {
+    }
+
+    /**
+     * 线程已结束，释放为它记录的数据
+     */
+    default void onThreadGone(long threadId) {
+    }
+
+    int getPriority(Thread thread);
+
+    /**
+     * @return 是否设置成功
+     */
+    boolean setPriority(Thread thread, int priority);
+}
@@ -0,0 +1,246 @@
+package com.deadlock.detector.detector;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 线程快照服务 - 每次检测只枚举一次线程，所有检测器共用
+ * <p>
+ * 快照在第一次使用时生成，只记录线程列表和当时的状态，不遍历堆栈；
+ * 只需要少数线程时，某个线程的堆栈在第一次被请求时才获取，并在快照内缓存，同一次检测中不会重复获取；
+ * 需要所有线程的堆栈时用{@link Dumper}一次转储全部线程，快照中的状态随之换成与堆栈同一时刻的值，
+ * 同一快照内最多转储一次。
+ * 调度线程在每次检测开始时调用{@link #beginTick()}使旧快照失效；
+ * 在检测之外使用（如ANR工作线程、锁看门狗）时，超过最大有效期的快照也会重新生成。
+ */
+public final class ThreadSnapshotService {
+
+    public static final long DEFAULT_MAX_AGE_MS = 1000;
+
+    private static final ThreadSnapshotService DEFAULT = new ThreadSnapshotService(DEFAULT_MAX_AGE_MS);
+
+    private final long maxAgeNanos;
+    private final AtomicLong captureCount = new AtomicLong();
+    private final AtomicLong stackWalkCount = new AtomicLong();
+    private final AtomicLong dumpCount = new AtomicLong();
+    private volatile Dumper dumper = loadDumper();
+    private Snapshot current;
+
+    /**
+     * 一次获取所有线程堆栈和状态的实现
+     * <p>
+     * 默认用{@link Thread#getAllStackTraces()}；JVM模块通过{@link ServiceLoader}提供基于ThreadMXBean的实现，
+     * 状态与堆栈来自同一次转储。
+     */
+    public interface Dumper {
+        /**
+         * 获取threads中每个线程的堆栈和状态，写入stacks和states的对应位置，
+         * 已结束的线程写入空堆栈和{@link Thread.State#TERMINATED}
+         */
+        void dumpAll(List<Thread> threads, StackTraceElement[][] stacks, Thread.State[] states);
+    }
+
+    public ThreadSnapshotService(long maxAgeMs) {
+        this.maxAgeNanos = maxAgeMs * 1_000_000L;
+    }
+
+    /**
+     * 全局共用的快照服务，各检测器默认使用
+     */
+    public static ThreadSnapshotService getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * 新一次检测开始，之前的快照失效
+     */
+    public synchronized void beginTick() {
+        current = null;
+    }
+
+    /**
+     * 返回本次检测的快照，尚未生成或已过期时生成
+     */
+    public synchronized Snapshot current() {
+        long now = System.nanoTime();
+        if (current == null || now - current.captureTimeNanos > maxAgeNanos) {
+            current = new Snapshot(now, enumerateThreads());
+            captureCount.incrementAndGet();
+        }
+        return current;
+    }
+
+    /**
+     * 替换全线程转储的实现，为null时恢复默认实现
+     */
+    public void setDumper(Dumper newDumper) {
+        dumper = newDumper != null ? newDumper : new AllStackTracesDumper();
+    }
+
+    /**
+     * 已生成的快照数
+     */
+    public long getCaptureCount() {
+        return captureCount.get();
+    }
+
+    /**
+     * 已获取的单个线程堆栈数
+     */
+    public long getStackWalkCount() {
+        return stackWalkCount.get();
+    }
+
+    /**
+     * 已进行的全线程转储次数
+     */
+    public long getDumpCount() {
+        return dumpCount.get();
+    }
+
+    private static Dumper loadDumper() {
+        try {
+            Iterator<Dumper> found = ServiceLoader.load(Dumper.class, Dumper.class.getClassLoader()).iterator();
+            if (found.hasNext()) {
+                return found.next();
+            }
+        } catch (Throwable t) {
+            // 服务配置损坏时退回默认实现
+        }
+        return new AllStackTracesDumper();
+    }
+
+    /**
+     * 用{@link Thread#getAllStackTraces()}一次获取所有堆栈；该方法不返回状态，在获取后立即读取
+     */
+    static final class AllStackTracesDumper implements Dumper {
+        private static final StackTraceElement[] EMPTY = new StackTraceElement[0];
+
+        @Override
+        public void dumpAll(List<Thread> threads, StackTraceElement[][] stacks, Thread.State[] states) {
+            Map<Thread, StackTraceElement[]> all = Thread.getAllStackTraces();
+            for (int i = 0; i < threads.size(); i++) {
+                Thread thread = threads.get(i);
+                StackTraceElement[] stack = all.get(thread);
+                stacks[i] = stack != null ? stack : EMPTY;
+                states[i] = stack != null ? thread.getState() : Thread.State.TERMINATED;
+            }
+        }
+    }
+
+    private static Thread[] enumerateThreads() {
+        ThreadGroup root = Thread.currentThread().getThreadGroup();
+        while (root.getParent() != null) {
+            root = root.getParent();
+        }
+        // enumerate不扩容，数组被填满时说明可能有遗漏，加大后重试
+        Thread[] threads = new Thread[root.activeCount() + 16];
+        int count;
+        while ((count = root.enumerate(threads, true)) == threads.length) {
+            threads = new Thread[threads.length * 2];
+        }
+        return Arrays.copyOf(threads, count);
+    }
+
+    /**
+     * 某一时刻的线程快照
+     */
+    public final class Snapshot {
+        private final long captureTimeNanos;
+        private final List<Thread> threads;
+        private final Thread.State[] states;
+        private final Map<Long, Integer> indexById;
+        // 已获取的堆栈，只在持有快照锁时访问
+        private final Map<Thread, StackTraceElement[]> stacks = new IdentityHashMap<>();
+        // 是否已转储所有线程
+        private boolean dumped;
+
+        Snapshot(long captureTimeNanos, Thread[] threads) {
+            this.captureTimeNanos = captureTimeNanos;
+            this.threads = Collections.unmodifiableList(Arrays.asList(threads));
+            this.states = new Thread.State[threads.length];
+            this.indexById = new HashMap<>(threads.length * 2);
+            for (int i = 0; i < threads.length; i++) {
+                states[i] = threads[i].getState();
+                indexById.put(threads[i].getId(), i);
+            }
+        }
+
+        public long getCaptureTimeNanos() {
+            return captureTimeNanos;
+        }
+
+        public List<Thread> getThreads() {
+            return threads;
+        }
+
+        public int size() {
+            return threads.size();
+        }
+
+        /**
+         * 按线程ID查找线程，快照中没有时返回null
+         */
+        public Thread findThread(long threadId) {
+            Integer index = indexById.get(threadId);
+            return index != null ? threads.get(index) : null;
+        }
+
+        /**
+         * 线程在快照时刻的状态，已转储时为转储时刻的状态，不在快照中的线程返回当前状态
+         */
+        public synchronized Thread.State getState(Thread thread) {
+            Integer index = indexById.get(thread.getId());
+            if (index != null && threads.get(index) == thread) {
+                return states[index];
+            }
+            return thread.getState();
+        }
+
+        /**
+         * 线程的堆栈，第一次请求时获取并缓存
+         * <p>
+         * 检测器需要完整堆栈判断持锁帧和计算堆栈指纹，这里不截断；报告中的截断见{@link com.deadlock.detector.reporter.StackDepthReporter}
+         */
+        public synchronized StackTraceElement[] getStackTrace(Thread thread) {
+            StackTraceElement[] stack = stacks.get(thread);
+            if (stack == null) {
+                stack = thread.getStackTrace();
+                stackWalkCount.incrementAndGet();
+                stacks.put(thread, stack);
+            }
+            return stack;
+        }
+
+        /**
+         * 快照中所有线程的堆栈，按线程顺序排列
+         * <p>
+         * 第一次调用时一次转储所有线程，之后{@link #getState(Thread)}返回与这些堆栈同一时刻的状态，
+         * 之前已单独获取的堆栈也被替换
+         */
+        public synchronized Map<Thread, StackTraceElement[]> getAllStackTraces() {
+            if (!dumped) {
+                StackTraceElement[][] all = new StackTraceElement[threads.size()][];
+                dumper.dumpAll(threads, all, states);
+                dumpCount.incrementAndGet();
+                for (int i = 0; i < all.length; i++) {
+                    stacks.put(threads.get(i), all[i]);
+                }
+                dumped = true;
+            }
+            Map<Thread, StackTraceElement[]> result = new LinkedHashMap<>(threads.size() * 2);
+            for (Thread thread : threads) {
+                result.put(thread, stacks.get(thread));
+            }
+            return result;
+        }
+    }
+}
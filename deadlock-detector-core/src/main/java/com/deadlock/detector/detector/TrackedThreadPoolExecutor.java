@@ -0,0 +1,311 @@
+package com.deadlock.detector.detector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 被追踪的线程池 - 用于检测线程池饥饿和池内任务互等导致的死锁
+ * <p>
+ * 记录每个任务的提交时间、提交位置和执行状态，以及哪个工作线程正在等待哪个任务的Future。
+ * 由{@link ExecutorStarvationDetector}定时分析。
+ */
+public class TrackedThreadPoolExecutor extends ThreadPoolExecutor {
+
+    /**
+     * 任务状态记录
+     */
+    static final class TaskRecord {
+        static final int QUEUED = 0;
+        static final int RUNNING = 1;
+        static final int DONE = 2;
+
+        final long id;
+        final long submitNanos;
+        // 提交位置，未开启记录时为null
+        final StackTraceElement[] submissionSite;
+        volatile int state = QUEUED;
+        volatile Thread runner;
+        volatile long startNanos;
+
+        TaskRecord(long id, StackTraceElement[] submissionSite) {
+            this.id = id;
+            this.submitNanos = System.nanoTime();
+            this.submissionSite = submissionSite;
+        }
+    }
+
+    /**
+     * 可追踪的任务，提供对应的任务记录
+     */
+    interface TrackedTask {
+        TaskRecord getRecord();
+    }
+
+    private final String name;
+    private final boolean captureSubmissionSites;
+    private final AtomicLong taskIds = new AtomicLong();
+
+    // 工作线程 -> 正在执行的任务
+    private final Map<Thread, TaskRecord> running = new ConcurrentHashMap<>();
+    // 工作线程 -> 正在等待结果的任务
+    private final Map<Thread, TaskRecord> awaiting = new ConcurrentHashMap<>();
+
+    /**
+     * 创建固定大小的被追踪线程池
+     *
+     * @param name                   线程池名称，用于线程命名和报告输出
+     * @param threads                线程数
+     * @param captureSubmissionSites 是否在提交时记录调用栈，开启后每次提交会多一次栈捕获
+     */
+    public static TrackedThreadPoolExecutor newFixedThreadPool(String name, int threads,
+                                                               boolean captureSubmissionSites) {
+        return new TrackedThreadPoolExecutor(name, threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), namedThreadFactory(name), captureSubmissionSites);
+    }
+
+    public TrackedThreadPoolExecutor(String name, int corePoolSize, int maximumPoolSize,
+                                     long keepAliveTime, TimeUnit unit,
+                                     BlockingQueue<Runnable> workQueue, ThreadFactory threadFactory,
+                                     boolean captureSubmissionSites) {
+        super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, threadFactory);
+        this.name = name;
+        this.captureSubmissionSites = captureSubmissionSites;
+    }
+
+    private static ThreadFactory namedThreadFactory(final String name) {
+        return new ThreadFactory() {
+            private final AtomicInteger index = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                return new Thread(r, name + "-" + index.incrementAndGet());
+            }
+        };
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    private TaskRecord newRecord() {
+        StackTraceElement[] site = null;
+        if (captureSubmissionSites) {
+            StackTraceElement[] stack = new Throwable().getStackTrace();
+            // 去掉线程池内部的栈帧
+            int skip = 0;
+            while (skip < stack.length && isExecutorFrame(stack[skip])) {
+                skip++;
+            }
+            site = new StackTraceElement[stack.length - skip];
+            System.arraycopy(stack, skip, site, 0, site.length);
+        }
+        return new TaskRecord(taskIds.incrementAndGet(), site);
+    }
+
+    private static boolean isExecutorFrame(StackTraceElement frame) {
+        String className = frame.getClassName();
+        return className.startsWith(TrackedThreadPoolExecutor.class.getName())
+                || className.startsWith("java.util.concurrent.");
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (command instanceof TrackedTask) {
+            super.execute(command);
+        } else {
+            super.execute(new TrackedRunnable(command, newRecord()));
+        }
+    }
+
+    /**
+     * 按调用方传给execute()的原始任务匹配排队中的任务
+     */
+    @Override
+    public boolean remove(Runnable task) {
+        if (super.remove(task)) {
+            return true;
+        }
+        for (Runnable queued : getQueue()) {
+            if (queued instanceof TrackedRunnable && ((TrackedRunnable) queued).delegate.equals(task)) {
+                return super.remove(queued);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 返回未执行的任务，execute()提交的任务还原为调用方传入的原始对象
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> tasks = super.shutdownNow();
+        List<Runnable> unwrapped = new ArrayList<>(tasks.size());
+        for (Runnable task : tasks) {
+            unwrapped.add(task instanceof TrackedRunnable ? ((TrackedRunnable) task).delegate : task);
+        }
+        return unwrapped;
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        return new TrackedFutureTask<>(runnable, value, newRecord());
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        return new TrackedFutureTask<>(callable, newRecord());
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        super.beforeExecute(t, r);
+        if (r instanceof TrackedTask) {
+            TaskRecord record = ((TrackedTask) r).getRecord();
+            record.runner = t;
+            record.startNanos = System.nanoTime();
+            record.state = TaskRecord.RUNNING;
+            running.put(t, record);
+        }
+    }
+
+    @Override
+    protected void afterExecute(Runnable r, Throwable t) {
+        if (r instanceof TrackedTask) {
+            ((TrackedTask) r).getRecord().state = TaskRecord.DONE;
+        }
+        running.remove(Thread.currentThread());
+        super.afterExecute(r, t);
+    }
+
+    private void onAwaitStart(TaskRecord record) {
+        // 只关心本线程池的工作线程等待池内任务的情况
+        if (running.containsKey(Thread.currentThread())) {
+            awaiting.put(Thread.currentThread(), record);
+        }
+    }
+
+    private void onAwaitEnd() {
+        awaiting.remove(Thread.currentThread());
+    }
+
+    /**
+     * 正在执行任务的工作线程快照
+     */
+    Map<Thread, TaskRecord> getRunningSnapshot() {
+        return new ConcurrentHashMap<>(running);
+    }
+
+    /**
+     * 正在等待任务结果的工作线程快照
+     */
+    Map<Thread, TaskRecord> getAwaitingSnapshot() {
+        return new ConcurrentHashMap<>(awaiting);
+    }
+
+    /**
+     * 队首任务的排队时长（纳秒），队列为空时返回0
+     */
+    long getOldestQueuedAgeNanos() {
+        Runnable head = getQueue().peek();
+        if (head instanceof TrackedTask) {
+            return System.nanoTime() - ((TrackedTask) head).getRecord().submitNanos;
+        }
+        return 0;
+    }
+
+    /**
+     * 排队中的任务记录，最多返回limit个
+     */
+    List<TaskRecord> getQueuedRecords(int limit) {
+        List<TaskRecord> records = new ArrayList<>();
+        for (Runnable r : getQueue()) {
+            if (records.size() >= limit) {
+                break;
+            }
+            if (r instanceof TrackedTask) {
+                records.add(((TrackedTask) r).getRecord());
+            }
+        }
+        return records;
+    }
+
+    private static final class TrackedRunnable implements Runnable, TrackedTask {
+        private final Runnable delegate;
+        private final TaskRecord record;
+
+        TrackedRunnable(Runnable delegate, TaskRecord record) {
+            this.delegate = delegate;
+            this.record = record;
+        }
+
+        @Override
+        public TaskRecord getRecord() {
+            return record;
+        }
+
+        @Override
+        public void run() {
+            delegate.run();
+        }
+    }
+
+    private final class TrackedFutureTask<V> extends FutureTask<V> implements TrackedTask {
+        private final TaskRecord record;
+
+        TrackedFutureTask(Callable<V> callable, TaskRecord record) {
+            super(callable);
+            this.record = record;
+        }
+
+        TrackedFutureTask(Runnable runnable, V result, TaskRecord record) {
+            super(runnable, result);
+            this.record = record;
+        }
+
+        @Override
+        public TaskRecord getRecord() {
+            return record;
+        }
+
+        @Override
+        public V get() throws InterruptedException, ExecutionException {
+            if (isDone()) {
+                return super.get();
+            }
+            onAwaitStart(record);
+            try {
+                return super.get();
+            } finally {
+                onAwaitEnd();
+            }
+        }
+
+        @Override
+        public V get(long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            if (isDone()) {
+                return super.get(timeout, unit);
+            }
+            onAwaitStart(record);
+            try {
+                return super.get(timeout, unit);
+            } finally {
+                onAwaitEnd();
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.deadlock.detector.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 死锁报告
+ */
+public class DeadlockReport {
+
+    private final DeadlockType type;
+    private final long timestamp;
+    private final String message;
+    private final String looperName;
+    private final List<ThreadDetail> threadDetails;
+    private final List<ThreadDetail> otherThreadDetails;
+    private final StackProfile stackProfile;
+    private final List<MessageRecord> recentMessages;
+    // 其他线程的分组，第一次访问时计算
+    private volatile List<ThreadStackGroup> otherThreadGroups;
+
+    private DeadlockReport(Builder builder) {
+        this.type = builder.type;
+        this.timestamp = builder.timestamp;
+        this.message = builder.message;
+        this.looperName = builder.looperName;
+        this.threadDetails = Collections.unmodifiableList(builder.threadDetails);
+        this.otherThreadDetails = Collections.unmodifiableList(builder.otherThreadDetails);
+        this.stackProfile = builder.stackProfile;
+        this.recentMessages = Collections.unmodifiableList(builder.recentMessages);
+    }
+
+    public DeadlockType getType() {
+        return type;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * 获取阻塞的Looper名称（仅ANR报告），主线程为"main"
+     */
+    public String getLooperName() {
+        return looperName;
+    }
+
+    /**
+     * 获取死锁相关的线程详情
+     */
+    public List<ThreadDetail> getThreadDetails() {
+        return threadDetails;
+    }
+
+    /**
+     * 获取其他线程详情（用于ANR分析）
+     */
+    public List<ThreadDetail> getOtherThreadDetails() {
+        return otherThreadDetails;
+    }
+
+    /**
+     * 获取按(状态, 堆栈)分组后的其他线程，BLOCKED的组和大的组排在前面
+     */
+    public List<ThreadStackGroup> getOtherThreadGroups() {
+        List<ThreadStackGroup> groups = otherThreadGroups;
+        if (groups == null) {
+            groups = Collections.unmodifiableList(ThreadStackGroup.group(otherThreadDetails));
+            otherThreadGroups = groups;
+        }
+        return groups;
+    }
+
+    /**
+     * 获取阻塞期间的堆栈采样聚合（用于ANR分析），可能为null
+     */
+    public StackProfile getStackProfile() {
+        return stackProfile;
+    }
+
+    /**
+     * 获取ANR发生前最近分发的Looper消息（用于ANR归因）
+     */
+    public List<MessageRecord> getRecentMessages() {
+        return recentMessages;
+    }
+
+    /**
+     * 返回每个线程堆栈只保留栈顶depth帧的副本，没有超出的堆栈或depth为0时返回自身
+     * <p>
+     * 检测时使用完整堆栈，只在生成报告时截断；堆栈采样聚合不受影响
+     */
+    public DeadlockReport limitStackDepth(int depth) {
+        if (depth <= 0) {
+            return this;
+        }
+        List<ThreadDetail> details = limit(threadDetails, depth);
+        List<ThreadDetail> others = limit(otherThreadDetails, depth);
+        if (details == null && others == null) {
+            return this;
+        }
+        Builder builder = new Builder()
+                .type(type)
+                .timestamp(timestamp)
+                .message(message)
+                .looperName(looperName)
+                .stackProfile(stackProfile)
+                .recentMessages(recentMessages);
+        builder.threadDetails = details != null ? details : new ArrayList<>(threadDetails);
+        builder.otherThreadDetails = others != null ? others : new ArrayList<>(otherThreadDetails);
+        return builder.build();
+    }
+
+    /**
+     * 截断列表中的堆栈，没有需要截断的线程时返回null
+     */
+    private static List<ThreadDetail> limit(List<ThreadDetail> details, int depth) {
+        List<ThreadDetail> limited = null;
+        for (int i = 0; i < details.size(); i++) {
+            ThreadDetail detail = details.get(i);
+            ThreadDetail truncated = detail.limitStackDepth(depth);
+            if (truncated != detail && limited == null) {
+                limited = new ArrayList<>(details.subList(0, i));
+            }
+            if (limited != null) {
+                limited.add(truncated);
+            }
+        }
+        return limited;
+    }
+
+    public static class Builder {
+        private DeadlockType type;
+        private long timestamp;
+        private String message;
+        private String looperName;
+        private List<ThreadDetail> threadDetails = new ArrayList<>();
+        private List<ThreadDetail> otherThreadDetails = new ArrayList<>();
+        private StackProfile stackProfile;
+        private List<MessageRecord> recentMessages = new ArrayList<>();
+
+        public Builder type(DeadlockType type) {
+            this.type = type;
+            return this;
+        }
+
+        public Builder timestamp(long timestamp) {
+            this.timestamp = timestamp;
+            return this;
+        }
+
+        public Builder message(String message) {
+            this.message = message;
+            return this;
+        }
+
+        public Builder looperName(String looperName) {
+            this.looperName = looperName;
+            return this;
+        }
+
+        public Builder addThreadDetail(ThreadDetail detail) {
+            this.threadDetails.add(detail);
+            return this;
+        }
+
+        public Builder addOtherThreadDetail(ThreadDetail detail) {
+            this.otherThreadDetails.add(detail);
+            return this;
+        }
+
+        public Builder stackProfile(StackProfile stackProfile) {
+            this.stackProfile = stackProfile;
+            return this;
+        }
+
+        public Builder recentMessages(List<MessageRecord> messages) {
+            this.recentMessages = new ArrayList<>(messages);
+            return this;
+        }
+
+        public DeadlockReport build() {
+            return new DeadlockReport(this);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.deadlock.detector.model;
+
+/**
+ * 死锁类型枚举
+ */
+public enum DeadlockType {
+    /**
+     * synchronized关键字导致的死锁
+     */
+    SYNCHRONIZED("Synchronized Lock Deadlock"),
+
+    /**
+     * ReentrantLock等显式锁导致的死锁
+     */
+    REENTRANT_LOCK("ReentrantLock Deadlock"),
+
+    /**
+     * 主线程阻塞(ANR)
+     */
+    ANR("Application Not Responding"),
+
+    /**
+     * 主线程慢消息
+     */
+    SLOW_MESSAGE("Slow Main Thread Message"),
+
+    /**
+     * 主线程掉帧
+     */
+    FRAME_JANK("Frame Jank"),
+
+    /**
+     * 线程池饥饿：池内任务互相等待或排队超时
+     */
+    EXECUTOR_STARVATION("Executor Starvation"),
+
+    /**
+     * 虚拟线程长时间固定(pin)在载体线程上
+     */
+    VIRTUAL_THREAD_PINNED("Virtual Thread Pinned"),
+
+    /**
+     * 载体线程被固定的虚拟线程占满，其他虚拟线程无法调度
+     */
+    CARRIER_STARVATION("Carrier Thread Starvation"),
+
+    /**
+     * 线程长时间停在同一个等待点（park、wait、I/O）
+     */
+    STUCK_THREAD("Stuck Thread"),
+
+    /**
+     * 高优先级线程等待的锁被低优先级线程持有
+     */
+    PRIORITY_INVERSION("Priority Inversion");
+
+    private final String description;
+
+    DeadlockType(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
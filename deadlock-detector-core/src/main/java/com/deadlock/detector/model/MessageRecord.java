@@ -0,0 +1,147 @@
+package com.deadlock.detector.model;
+
+/**
+ * Looper消息分发记录
+ */
+public class MessageRecord {
+
+    private final String target;
+    private final String callback;
+    private final int what;
+    private final long startTimeMs;
+    private final long wallNanos;
+    private final long cpuNanos;
+    private final long idleBeforeNanos;
+    private final boolean inProgress;
+
+    private MessageRecord(Builder builder) {
+        this.target = builder.target;
+        this.callback = builder.callback;
+        this.what = builder.what;
+        this.startTimeMs = builder.startTimeMs;
+        this.wallNanos = builder.wallNanos;
+        this.cpuNanos = builder.cpuNanos;
+        this.idleBeforeNanos = builder.idleBeforeNanos;
+        this.inProgress = builder.inProgress;
+    }
+
+    /**
+     * 目标Handler类名
+     */
+    public String getTarget() {
+        return target;
+    }
+
+    /**
+     * callback类名，没有callback时为"null"
+     */
+    public String getCallback() {
+        return callback;
+    }
+
+    public int getWhat() {
+        return what;
+    }
+
+    /**
+     * 开始分发的时间戳（毫秒）
+     */
+    public long getStartTimeMs() {
+        return startTimeMs;
+    }
+
+    /**
+     * 分发耗时（纳秒），进行中的消息为截至快照时的耗时
+     */
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    /**
+     * 分发期间Looper线程的CPU时间（纳秒），不支持或进行中时为-1
+     */
+    public long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    /**
+     * 与上一条消息结束之间的空闲时间（纳秒）
+     * <p>
+     * 消息日志中没有入队时间，无法得到真实的排队时长；
+     * 接近0表示消息在队列中排在前一条之后紧接着被分发，即存在积压
+     */
+    public long getIdleBeforeNanos() {
+        return idleBeforeNanos;
+    }
+
+    /**
+     * 快照时是否仍在分发
+     */
+    public boolean isInProgress() {
+        return inProgress;
+    }
+
+    @Override
+    public String toString() {
+        return target + " " + callback + ": " + what
+                + " wall=" + wallNanos / 1_000_000 + "ms"
+                + (cpuNanos >= 0 ? " cpu=" + cpuNanos / 1_000_000 + "ms" : "")
+                + " idleBefore=" + idleBeforeNanos / 1_000_000 + "ms"
+                + (inProgress ? " (in progress)" : "");
+    }
+
+    public static class Builder {
+        private String target;
+        private String callback;
+        private int what;
+        private long startTimeMs;
+        private long wallNanos;
+        private long cpuNanos = -1;
+        private long idleBeforeNanos;
+        private boolean inProgress;
+
+        public Builder target(String target) {
+            this.target = target;
+            return this;
+        }
+
+        public Builder callback(String callback) {
+            this.callback = callback;
+            return this;
+        }
+
+        public Builder what(int what) {
+            this.what = what;
+            return this;
+        }
+
+        public Builder startTimeMs(long startTimeMs) {
+            this.startTimeMs = startTimeMs;
+            return this;
+        }
+
+        public Builder wallNanos(long wallNanos) {
+            this.wallNanos = wallNanos;
+            return this;
+        }
+
+        public Builder cpuNanos(long cpuNanos) {
+            this.cpuNanos = cpuNanos;
+            return this;
+        }
+
+        public Builder idleBeforeNanos(long idleBeforeNanos) {
+            this.idleBeforeNanos = idleBeforeNanos;
+            return this;
+        }
+
+        public Builder inProgress(boolean inProgress) {
+            this.inProgress = inProgress;
+            return this;
+        }
+
+        public MessageRecord build() {
+            return new MessageRecord(this);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.deadlock.detector.model;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 堆栈字典 - 对栈帧和整个堆栈做驻留（intern）
+ * <p>
+ * 线程池中大量线程的空闲堆栈完全相同，驻留后相同的堆栈在所有报告中共用同一个数组，
+ * 相同的栈帧共用同一个StackTraceElement，并分配一个稳定的堆栈id供报告引用。
+ * <p>
+ * 字典按代淘汰：当前代的堆栈数或栈帧数达到上限时，当前代变为上一代，原来的上一代整个丢弃；
+ * 上一代中再次用到的堆栈和栈帧提升到当前代，id不变。因此长时间运行的进程里字典始终能继续去重，
+ * 最多保留两代内容，不再出现的堆栈在两次轮换后释放。
+ */
+public final class StackDictionary {
+
+    public static final int NO_ID = -1;
+
+    public static final int DEFAULT_MAX_STACKS = 4096;
+    public static final int DEFAULT_MAX_FRAMES = 65536;
+
+    private static final StackDictionary DEFAULT = new StackDictionary(DEFAULT_MAX_STACKS, DEFAULT_MAX_FRAMES);
+
+    /**
+     * 堆栈内容作为key，缓存hash
+     */
+    private static final class StackKey {
+        final StackTraceElement[] stack;
+        final int hash;
+
+        StackKey(StackTraceElement[] stack) {
+            this.stack = stack;
+            this.hash = Arrays.hashCode(stack);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof StackKey && Arrays.equals(stack, ((StackKey) o).stack);
+        }
+    }
+
+    /**
+     * 已驻留的堆栈及其id
+     */
+    static final class Entry {
+        final int id;
+        final StackTraceElement[] stack;
+
+        Entry(int id, StackTraceElement[] stack) {
+            this.id = id;
+            this.stack = stack;
+        }
+    }
+
+    /**
+     * 一代驻留内容
+     */
+    private static final class Generation {
+        final ConcurrentHashMap<StackKey, Entry> stacks = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<Integer, Entry> stacksById = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<StackTraceElement, StackTraceElement> frames = new ConcurrentHashMap<>();
+    }
+
+    private final int maxStacks;
+    private final int maxFrames;
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final AtomicLong rotations = new AtomicLong();
+    private volatile Generation current = new Generation();
+    private volatile Generation previous = new Generation();
+
+    /**
+     * @param maxStacks 每代最多驻留的堆栈数
+     * @param maxFrames 每代最多驻留的栈帧数
+     */
+    public StackDictionary(int maxStacks, int maxFrames) {
+        this.maxStacks = maxStacks;
+        this.maxFrames = maxFrames;
+    }
+
+    /**
+     * 全局共用的字典，检测器采集线程堆栈时使用
+     */
+    public static StackDictionary getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * 返回与stack内容相同的驻留数组
+     */
+    public StackTraceElement[] intern(StackTraceElement[] stack) {
+        if (stack == null) {
+            return null;
+        }
+        return lookup(stack).stack;
+    }
+
+    /**
+     * 返回stack的id，stack为null时返回{@link #NO_ID}
+     */
+    public int idOf(StackTraceElement[] stack) {
+        if (stack == null) {
+            return NO_ID;
+        }
+        return lookup(stack).id;
+    }
+
+    /**
+     * 按id取回驻留的堆栈，不存在或已被淘汰时返回null
+     */
+    public StackTraceElement[] getStack(int id) {
+        Entry entry = current.stacksById.get(id);
+        if (entry == null) {
+            entry = previous.stacksById.get(id);
+        }
+        return entry != null ? entry.stack : null;
+    }
+
+    /**
+     * 查找或驻留stack，上一代中的堆栈提升到当前代
+     */
+    Entry lookup(StackTraceElement[] stack) {
+        StackKey key = new StackKey(stack);
+        Generation generation = current;
+        Entry entry = generation.stacks.get(key);
+        if (entry != null) {
+            return entry;
+        }
+
+        entry = previous.stacks.get(key);
+        if (entry == null) {
+            StackTraceElement[] canonical = new StackTraceElement[stack.length];
+            for (int i = 0; i < stack.length; i++) {
+                canonical[i] = internFrame(generation, stack[i]);
+            }
+            entry = new Entry(nextId.getAndIncrement(), canonical);
+        }
+        // key引用驻留数组，不持有调用方传入的数组
+        key = new StackKey(entry.stack);
+        if (generation.stacks.size() >= maxStacks) {
+            generation = rotate(generation);
+        }
+        Entry existing = generation.stacks.putIfAbsent(key, entry);
+        if (existing != null) {
+            return existing;
+        }
+        generation.stacksById.put(entry.id, entry);
+        return entry;
+    }
+
+    private StackTraceElement internFrame(Generation generation, StackTraceElement frame) {
+        StackTraceElement canonical = generation.frames.get(frame);
+        if (canonical != null) {
+            return canonical;
+        }
+        StackTraceElement old = previous.frames.get(frame);
+        if (old != null) {
+            frame = old;
+        }
+        if (generation.frames.size() >= maxFrames) {
+            generation = rotate(generation);
+        }
+        canonical = generation.frames.putIfAbsent(frame, frame);
+        return canonical != null ? canonical : frame;
+    }
+
+    /**
+     * full已满时轮换，返回新的当前代；其他线程已经轮换过时直接返回当前代
+     */
+    private synchronized Generation rotate(Generation full) {
+        if (current == full) {
+            previous = full;
+            current = new Generation();
+            rotations.incrementAndGet();
+        }
+        return current;
+    }
+
+    /**
+     * 两代中驻留的堆栈数（提升过的堆栈可能同时计入两代）
+     */
+    public int getStackCount() {
+        return current.stacks.size() + previous.stacks.size();
+    }
+
+    public int getFrameCount() {
+        return current.frames.size() + previous.frames.size();
+    }
+
+    /**
+     * 轮换次数
+     */
+    public long getRotationCount() {
+        return rotations.get();
+    }
+
+    /**
+     * 清空字典，已分配的id不会复用
+     */
+    public synchronized void clear() {
+        current = new Generation();
+        previous = new Generation();
+    }
+}
@@ -0,0 +1,258 @@
+package com.deadlock.detector.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 堆栈采样聚合 - 帧前缀树
+ * <p>
+ * 每次采样从栈底到栈顶插入树中，相同前缀共享节点，节点记录经过的采样次数。
+ * 内存占用由节点数上限决定，与采样次数无关；超出上限的采样截断到已有的最深节点。
+ * 非线程安全，由采样线程独占写入，报告时通过{@link #copy()}生成快照。
+ */
+public class StackProfile {
+
+    public static final int DEFAULT_MAX_NODES = 2048;
+
+    private static final class Node {
+        final StackTraceElement frame;
+        int count;
+        // 以该节点为栈顶的采样次数
+        int selfCount;
+        Node firstChild;
+        Node nextSibling;
+
+        Node(StackTraceElement frame) {
+            this.frame = frame;
+        }
+    }
+
+    private final int maxNodes;
+    private Node root = new Node(null);
+    private int nodeCount;
+    private int sampleCount;
+    private int truncatedSamples;
+
+    public StackProfile() {
+        this(DEFAULT_MAX_NODES);
+    }
+
+    public StackProfile(int maxNodes) {
+        this.maxNodes = maxNodes;
+    }
+
+    /**
+     * 逐条访问聚合中的堆栈，用于序列化
+     */
+    public interface StackVisitor {
+        /**
+         * @param stackTrace 从栈底到该节点的堆栈，下标0为栈顶；截断在根节点的采样为空数组
+         * @param count      以该节点为栈顶的采样次数
+         */
+        void visit(StackTraceElement[] stackTrace, int count);
+    }
+
+    /**
+     * 加入一次采样
+     *
+     * @param stackTrace 线程堆栈，下标0为栈顶
+     */
+    public void add(StackTraceElement[] stackTrace) {
+        if (stackTrace == null || stackTrace.length == 0) {
+            return;
+        }
+        add(stackTrace, 1);
+    }
+
+    /**
+     * 加入count次相同的采样，用于从序列化结果还原；空数组计入根节点
+     *
+     * @param stackTrace 线程堆栈，下标0为栈顶
+     */
+    public void add(StackTraceElement[] stackTrace, int count) {
+        if (count <= 0) {
+            return;
+        }
+        sampleCount += count;
+        root.count += count;
+
+        Node node = root;
+        boolean truncated = false;
+        for (int i = stackTrace.length - 1; i >= 0; i--) {
+            Node child = findChild(node, stackTrace[i]);
+            if (child == null) {
+                if (nodeCount >= maxNodes) {
+                    truncated = true;
+                    break;
+                }
+                child = new Node(stackTrace[i]);
+                child.nextSibling = node.firstChild;
+                node.firstChild = child;
+                nodeCount++;
+            }
+            child.count += count;
+            node = child;
+        }
+        node.selfCount += count;
+        if (truncated) {
+            truncatedSamples += count;
+        }
+    }
+
+    private Node findChild(Node parent, StackTraceElement frame) {
+        for (Node child = parent.firstChild; child != null; child = child.nextSibling) {
+            if (child.frame.equals(frame)) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 清空所有采样
+     */
+    public void reset() {
+        root = new Node(null);
+        nodeCount = 0;
+        sampleCount = 0;
+        truncatedSamples = 0;
+    }
+
+    public int getMaxNodes() {
+        return maxNodes;
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * 因节点数达到上限而被截断的采样次数
+     */
+    public int getTruncatedSamples() {
+        return truncatedSamples;
+    }
+
+    /**
+     * 还原序列化前的截断次数，还原出的树不会再次截断
+     */
+    public void setTruncatedSamples(int truncatedSamples) {
+        this.truncatedSamples = truncatedSamples;
+    }
+
+    public boolean isEmpty() {
+        return sampleCount == 0;
+    }
+
+    /**
+     * 深拷贝当前聚合结果
+     */
+    public StackProfile copy() {
+        StackProfile copy = new StackProfile(maxNodes);
+        copy.root = copyNode(root);
+        copy.nodeCount = nodeCount;
+        copy.sampleCount = sampleCount;
+        copy.truncatedSamples = truncatedSamples;
+        return copy;
+    }
+
+    private Node copyNode(Node node) {
+        Node copy = new Node(node.frame);
+        copy.count = node.count;
+        copy.selfCount = node.selfCount;
+        Node last = null;
+        for (Node child = node.firstChild; child != null; child = child.nextSibling) {
+            Node childCopy = copyNode(child);
+            if (last == null) {
+                copy.firstChild = childCopy;
+            } else {
+                last.nextSibling = childCopy;
+            }
+            last = childCopy;
+        }
+        return copy;
+    }
+
+    /**
+     * 按树的先序访问每个有采样以它为栈顶的节点，不包括子节点计数，
+     * 依次用{@link #add(StackTraceElement[], int)}加回即可还原同样的树
+     */
+    public void forEachStack(StackVisitor visitor) {
+        visit(root, new ArrayList<StackTraceElement>(), visitor);
+    }
+
+    private void visit(Node node, List<StackTraceElement> path, StackVisitor visitor) {
+        if (node.frame != null) {
+            path.add(node.frame);
+        }
+        if (node.selfCount > 0) {
+            int depth = path.size();
+            StackTraceElement[] stackTrace = new StackTraceElement[depth];
+            for (int i = 0; i < depth; i++) {
+                stackTrace[i] = path.get(depth - 1 - i);
+            }
+            visitor.visit(stackTrace, node.selfCount);
+        }
+        for (Node child = node.firstChild; child != null; child = child.nextSibling) {
+            visit(child, path, visitor);
+        }
+        if (node.frame != null) {
+            path.remove(path.size() - 1);
+        }
+    }
+
+    /**
+     * 输出folded-stack格式，每行 "栈底;...;栈顶 次数"，按次数降序
+     */
+    public List<String> toFoldedLines() {
+        List<Folded> entries = new ArrayList<>();
+        collect(root, new StringBuilder(), entries);
+        Collections.sort(entries, new Comparator<Folded>() {
+            @Override
+            public int compare(Folded a, Folded b) {
+                return Integer.compare(b.count, a.count);
+            }
+        });
+        List<String> lines = new ArrayList<>(entries.size());
+        for (Folded entry : entries) {
+            lines.add(entry.stack + " " + entry.count);
+        }
+        return lines;
+    }
+
+    private static final class Folded {
+        final String stack;
+        final int count;
+
+        Folded(String stack, int count) {
+            this.stack = stack;
+            this.count = count;
+        }
+    }
+
+    private void collect(Node node, StringBuilder path, List<Folded> out) {
+        int length = path.length();
+        if (node.frame != null) {
+            if (length > 0) {
+                path.append(';');
+            }
+            path.append(node.frame.getClassName()).append('.').append(node.frame.getMethodName());
+            if (node.frame.getLineNumber() > 0) {
+                path.append(':').append(node.frame.getLineNumber());
+            }
+            if (node.selfCount > 0) {
+                out.add(new Folded(path.toString(), node.selfCount));
+            }
+        }
+        for (Node child = node.firstChild; child != null; child = child.nextSibling) {
+            collect(child, path, out);
+        }
+        path.setLength(length);
+    }
+}
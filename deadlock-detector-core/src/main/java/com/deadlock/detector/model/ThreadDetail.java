@@ -16,8 +16,10 @@ public class ThreadDetail {
     private final long lockOwnerId;
     private final String lockOwnerName;
     private final String waitingForLock;
+    private final StackTraceElement[] waitingForSite;
     private final List<String> heldLocks;
     private final StackTraceElement[] stackTrace;
+    private final int stackId;
     private final long blockTimeMs;
 
     private ThreadDetail(Builder builder) {
@@ -29,8 +31,19 @@ public class ThreadDetail {
         this.lockOwnerName = builder.lockOwnerName;
         this.waitingForLock = builder.waitingForLock;
         this.heldLocks = builder.heldLocks != null ? builder.heldLocks : Collections.emptyList();
-        this.stackTrace = builder.stackTrace;
         this.blockTimeMs = builder.blockTimeMs;
+        StackDictionary dictionary = builder.stackDictionary;
+        if (dictionary == null) {
+            this.waitingForSite = builder.waitingForSite;
+            this.stackTrace = builder.stackTrace;
+            this.stackId = builder.stackId;
+            return;
+        }
+        // 采集时驻留，相同的堆栈在所有报告间共用同一个数组
+        this.waitingForSite = dictionary.intern(builder.waitingForSite);
+        StackDictionary.Entry entry = builder.stackTrace != null ? dictionary.lookup(builder.stackTrace) : null;
+        this.stackId = entry != null ? entry.id : StackDictionary.NO_ID;
+        this.stackTrace = entry != null ? entry.stack : null;
     }
 
     public long getThreadId() {
@@ -61,6 +74,13 @@ public class ThreadDetail {
         return waitingForLock;
     }
 
+    /**
+     * 获取被等待资源的创建位置，例如被等待任务的提交调用栈，可能为null
+     */
+    public StackTraceElement[] getWaitingForSite() {
+        return waitingForSite;
+    }
+
     public List<String> getHeldLocks() {
         return heldLocks;
     }
@@ -69,6 +89,15 @@ public class ThreadDetail {
         return stackTrace;
     }
 
+    /**
+     * 获取堆栈在{@link StackDictionary}中的id，相同堆栈的id相同；
+     * 无堆栈或未经字典驻留（例如解码得到的报告）时为{@link StackDictionary#NO_ID}。
+     * 截断后的副本沿用完整堆栈的id
+     */
+    public int getStackId() {
+        return stackId;
+    }
+
     public long getBlockTimeMs() {
         return blockTimeMs;
     }
@@ -84,6 +113,37 @@ public class ThreadDetail {
         return sb.toString();
     }
 
+    /**
+     * 返回堆栈只保留栈顶depth帧的副本，未超出或depth为0时返回自身；副本不进入字典
+     */
+    public ThreadDetail limitStackDepth(int depth) {
+        if (depth <= 0 || (!exceeds(stackTrace, depth) && !exceeds(waitingForSite, depth))) {
+            return this;
+        }
+        return new Builder()
+                .threadId(threadId)
+                .threadName(threadName)
+                .threadState(threadState)
+                .lockName(lockName)
+                .lockOwnerId(lockOwnerId)
+                .lockOwnerName(lockOwnerName)
+                .waitingForLock(waitingForLock)
+                .waitingForSite(truncate(waitingForSite, depth))
+                .heldLocks(heldLocks)
+                .stackTrace(truncate(stackTrace, depth))
+                .stackId(stackId)
+                .blockTimeMs(blockTimeMs)
+                .build();
+    }
+
+    private static boolean exceeds(StackTraceElement[] stack, int depth) {
+        return stack != null && stack.length > depth;
+    }
+
+    private static StackTraceElement[] truncate(StackTraceElement[] stack, int depth) {
+        return exceeds(stack, depth) ? Arrays.copyOf(stack, depth) : stack;
+    }
+
     public static class Builder {
         private long threadId;
         private String threadName;
@@ -92,8 +152,11 @@ public class ThreadDetail {
         private long lockOwnerId = -1;
         private String lockOwnerName;
         private String waitingForLock;
+        private StackTraceElement[] waitingForSite;
         private List<String> heldLocks;
         private StackTraceElement[] stackTrace;
+        private int stackId = StackDictionary.NO_ID;
+        private StackDictionary stackDictionary;
         private long blockTimeMs;
 
         public Builder threadId(long threadId) {
@@ -131,6 +194,11 @@ public class ThreadDetail {
             return this;
         }
 
+        public Builder waitingForSite(StackTraceElement[] waitingForSite) {
+            this.waitingForSite = waitingForSite;
+            return this;
+        }
+
         public Builder heldLocks(List<String> heldLocks) {
             this.heldLocks = heldLocks;
             return this;
@@ -141,6 +209,22 @@ public class ThreadDetail {
             return this;
         }
 
+        /**
+         * 未设置字典时使用的堆栈id
+         */
+        public Builder stackId(int stackId) {
+            this.stackId = stackId;
+            return this;
+        }
+
+        /**
+         * 驻留堆栈并分配id的字典，只在采集现场设置；未设置时堆栈原样保存
+         */
+        public Builder stackDictionary(StackDictionary stackDictionary) {
+            this.stackDictionary = stackDictionary;
+            return this;
+        }
+
         public Builder blockTimeMs(long blockTimeMs) {
             this.blockTimeMs = blockTimeMs;
             return this;
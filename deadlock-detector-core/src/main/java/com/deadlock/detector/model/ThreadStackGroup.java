@@ -0,0 +1,131 @@
+package com.deadlock.detector.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 线程分组 - 状态和堆栈都相同的线程归为一组
+ * <p>
+ * 大线程池的线程通常停在同一个空闲堆栈上，分组后报告里只需要输出一次
+ * "37 threads × same stack"。
+ */
+public class ThreadStackGroup {
+
+    private final String threadState;
+    private final StackTraceElement[] stackTrace;
+    private final int stackId;
+    private final List<ThreadDetail> threads;
+
+    private ThreadStackGroup(String threadState, StackTraceElement[] stackTrace, int stackId,
+                             List<ThreadDetail> threads) {
+        this.threadState = threadState;
+        this.stackTrace = stackTrace;
+        this.stackId = stackId;
+        this.threads = Collections.unmodifiableList(threads);
+    }
+
+    public String getThreadState() {
+        return threadState;
+    }
+
+    /**
+     * 组内共同的堆栈，可能为null
+     */
+    public StackTraceElement[] getStackTrace() {
+        return stackTrace;
+    }
+
+    /**
+     * 堆栈在{@link StackDictionary}中的id
+     */
+    public int getStackId() {
+        return stackId;
+    }
+
+    public List<ThreadDetail> getThreads() {
+        return threads;
+    }
+
+    public int size() {
+        return threads.size();
+    }
+
+    /**
+     * 分组的key：线程状态 + 堆栈内容
+     */
+    private static final class Key {
+        final String state;
+        final StackTraceElement[] stack;
+        final int hash;
+
+        Key(String state, StackTraceElement[] stack) {
+            this.state = state;
+            this.stack = stack;
+            this.hash = 31 * (state != null ? state.hashCode() : 0) + Arrays.hashCode(stack);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return (state != null ? state.equals(other.state) : other.state == null)
+                    && Arrays.equals(stack, other.stack);
+        }
+    }
+
+    /**
+     * 按(状态, 堆栈)分组，并按诊断价值排序：BLOCKED最先，其次RUNNABLE，同一优先级内大的组在前
+     */
+    public static List<ThreadStackGroup> group(List<ThreadDetail> details) {
+        Map<Key, List<ThreadDetail>> buckets = new LinkedHashMap<>();
+        for (ThreadDetail detail : details) {
+            Key key = new Key(detail.getThreadState(), detail.getStackTrace());
+            List<ThreadDetail> bucket = buckets.get(key);
+            if (bucket == null) {
+                bucket = new ArrayList<>();
+                buckets.put(key, bucket);
+            }
+            bucket.add(detail);
+        }
+
+        List<ThreadStackGroup> groups = new ArrayList<>(buckets.size());
+        for (Map.Entry<Key, List<ThreadDetail>> entry : buckets.entrySet()) {
+            List<ThreadDetail> threads = entry.getValue();
+            groups.add(new ThreadStackGroup(entry.getKey().state, entry.getKey().stack,
+                    threads.get(0).getStackId(), threads));
+        }
+        Collections.sort(groups, new Comparator<ThreadStackGroup>() {
+            @Override
+            public int compare(ThreadStackGroup a, ThreadStackGroup b) {
+                int byState = Integer.compare(stateRank(a.threadState), stateRank(b.threadState));
+                if (byState != 0) {
+                    return byState;
+                }
+                return Integer.compare(b.size(), a.size());
+            }
+        });
+        return groups;
+    }
+
+    private static int stateRank(String state) {
+        if ("BLOCKED".equals(state)) {
+            return 0;
+        }
+        if ("RUNNABLE".equals(state)) {
+            return 1;
+        }
+        return 2;
+    }
+}
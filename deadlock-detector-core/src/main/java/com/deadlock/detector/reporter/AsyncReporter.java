@@ -0,0 +1,227 @@
+package com.deadlock.detector.reporter;
+
+import com.deadlock.detector.DetectorLog;
+import com.deadlock.detector.model.DeadlockReport;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 异步报告输出 - 把报告的格式化和输出从检测线程移到单独的低优先级线程
+ * <p>
+ * 检测线程只做一次无锁入队；队列有容量上限，满了按溢出策略丢弃，
+ * 慢的或阻塞的下游reporter不会拖慢检测，也不会无限堆积内存。
+ * 消费线程每次最多取出一批报告交给下游的{@link DeadlockReporter#reportBatch(List)}。
+ */
+public class AsyncReporter implements DeadlockReporter {
+
+    private static final String TAG = "AsyncReporter";
+
+    public static final int DEFAULT_CAPACITY = 64;
+    public static final int DEFAULT_BATCH_SIZE = 16;
+
+    /**
+     * 队列满时的溢出策略
+     */
+    public enum OverflowPolicy {
+        /**
+         * 丢弃最旧的报告，保留最新的
+         */
+        DROP_OLDEST,
+
+        /**
+         * 同一问题（类型、Looper、首个线程相同）在队列中已有未输出的报告时丢弃新报告，
+         * 只增加{@link AsyncReporter#getCoalescedCount()}计数，已排队的报告不变；队列满时仍丢弃最旧的报告
+         */
+        COALESCE
+    }
+
+    private final DeadlockReporter delegate;
+    private final int capacity;
+    private final int batchSize;
+    private final OverflowPolicy policy;
+
+    private final ConcurrentLinkedQueue<DeadlockReport> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    // COALESCE策略下队列中未输出报告的key
+    private final Map<String, Boolean> pendingKeys = new ConcurrentHashMap<>();
+    private final Thread consumer;
+    private volatile boolean running = true;
+
+    // 背压计数
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+
+    public AsyncReporter(DeadlockReporter delegate) {
+        this(delegate, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE, OverflowPolicy.DROP_OLDEST);
+    }
+
+    /**
+     * @param delegate  下游reporter，只在消费线程上调用
+     * @param capacity  队列容量
+     * @param batchSize 每批最多输出的报告数
+     * @param policy    队列满时的溢出策略
+     */
+    public AsyncReporter(DeadlockReporter delegate, int capacity, int batchSize, OverflowPolicy policy) {
+        this.delegate = delegate;
+        this.capacity = Math.max(1, capacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.policy = policy;
+        this.consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                consumeLoop();
+            }
+        }, "DeadlockDetector-Reporter");
+        this.consumer.setDaemon(true);
+        this.consumer.setPriority(Thread.MIN_PRIORITY);
+        this.consumer.start();
+    }
+
+    @Override
+    public void report(DeadlockReport report) {
+        if (!running) {
+            dropped.incrementAndGet();
+            return;
+        }
+        submitted.incrementAndGet();
+
+        if (policy == OverflowPolicy.COALESCE
+                && pendingKeys.putIfAbsent(coalesceKey(report), Boolean.TRUE) != null) {
+            coalesced.incrementAndGet();
+            return;
+        }
+
+        // 先占位再入队，超出容量时从队首丢弃
+        int depth = size.incrementAndGet();
+        while (depth > capacity) {
+            DeadlockReport oldest = queue.poll();
+            if (oldest == null) {
+                break;
+            }
+            onDequeued(oldest);
+            dropped.incrementAndGet();
+            depth = size.get();
+        }
+        queue.offer(report);
+        updateMaxDepth(depth);
+        LockSupport.unpark(consumer);
+    }
+
+    private void updateMaxDepth(int depth) {
+        int max;
+        while (depth > (max = maxDepth.get())) {
+            if (maxDepth.compareAndSet(max, depth)) {
+                return;
+            }
+        }
+    }
+
+    private static String coalesceKey(DeadlockReport report) {
+        // 类型可能为null，例如从不完整的JSON解码得到的报告
+        StringBuilder key = new StringBuilder(report.getType() != null ? report.getType().name() : "null");
+        if (report.getLooperName() != null) {
+            key.append('/').append(report.getLooperName());
+        }
+        if (!report.getThreadDetails().isEmpty()) {
+            key.append('/').append(report.getThreadDetails().get(0).getThreadId());
+        }
+        return key.toString();
+    }
+
+    private void onDequeued(DeadlockReport report) {
+        size.decrementAndGet();
+        if (policy == OverflowPolicy.COALESCE) {
+            pendingKeys.remove(coalesceKey(report));
+        }
+    }
+
+    private void consumeLoop() {
+        List<DeadlockReport> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            DeadlockReport report;
+            while (batch.size() < batchSize && (report = queue.poll()) != null) {
+                onDequeued(report);
+                batch.add(report);
+            }
+            if (batch.isEmpty()) {
+                if (running) {
+                    LockSupport.parkNanos(this, TimeUnit.SECONDS.toNanos(1));
+                }
+                continue;
+            }
+            try {
+                delegate.reportBatch(batch);
+                delivered.addAndGet(batch.size());
+            } catch (Throwable t) {
+                failed.addAndGet(batch.size());
+                DetectorLog.e(TAG, "Reporter failed", t);
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * 停止消费线程，剩余的报告在超时时间内尽量输出
+     */
+    public void shutdown(long timeoutMs) {
+        running = false;
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join(timeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 当前队列中的报告数
+     */
+    public int getQueueDepth() {
+        return size.get();
+    }
+
+    public int getMaxQueueDepth() {
+        return maxDepth.get();
+    }
+
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    public long getDeliveredCount() {
+        return delivered.get();
+    }
+
+    /**
+     * 因队列满或已停止而丢弃的报告数
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * COALESCE策略下被合并的报告数
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * 下游reporter抛出异常而输出失败的报告数
+     */
+    public long getFailedCount() {
+        return failed.get();
+    }
+}
@@ -0,0 +1,43 @@
+package com.deadlock.detector.reporter;
+
+import com.deadlock.detector.DetectorLog;
+import com.deadlock.detector.model.DeadlockReport;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 组合输出 - 把报告依次交给多个reporter，单个reporter出错不影响其他reporter
+ */
+public class CompositeReporter implements DeadlockReporter {
+
+    private static final String TAG = "CompositeReporter";
+
+    private final List<DeadlockReporter> reporters;
+
+    public CompositeReporter(List<DeadlockReporter> reporters) {
+        this.reporters = new ArrayList<>(reporters);
+    }
+
+    @Override
+    public void report(DeadlockReport report) {
+        for (DeadlockReporter reporter : reporters) {
+            try {
+                reporter.report(report);
+            } catch (RuntimeException e) {
+                DetectorLog.e(TAG, "Reporter failed: " + reporter.getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+    @Override
+    public void reportBatch(List<DeadlockReport> reports) {
+        for (DeadlockReporter reporter : reporters) {
+            try {
+                reporter.reportBatch(reports);
+            } catch (RuntimeException e) {
+                DetectorLog.e(TAG, "Reporter failed: " + reporter.getClass().getSimpleName(), e);
+            }
+        }
+    }
+}
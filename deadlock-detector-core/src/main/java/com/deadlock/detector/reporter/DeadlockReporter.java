@@ -0,0 +1,29 @@
+package com.deadlock.detector.reporter;
+
+import com.deadlock.detector.model.DeadlockReport;
+
+import java.util.List;
+
+/**
+ * 死锁报告输出接口
+ */
+public interface DeadlockReporter {
+
+    /**
+     * 输出死锁报告
+     *
+     * @param report 死锁报告
+     */
+    void report(DeadlockReport report);
+
+    /**
+     * 批量输出死锁报告，由{@link AsyncReporter}在消费线程上调用，默认逐条输出
+     *
+     * @param reports 按入队顺序排列的报告
+     */
+    default void reportBatch(List<DeadlockReport> reports) {
+        for (DeadlockReport report : reports) {
+            report(report);
+        }
+    }
+}
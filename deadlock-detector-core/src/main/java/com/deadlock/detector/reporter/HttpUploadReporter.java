@@ -0,0 +1,459 @@
+package com.deadlock.detector.reporter;
+
+import com.deadlock.detector.DetectorLog;
+import com.deadlock.detector.codec.JsonReportCodec;
+import com.deadlock.detector.model.DeadlockReport;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 上传输出实现 - 把报告分批压缩后上传到指定的HTTP地址
+ * <p>
+ * 报告先进入有界的内存队列，上传线程每攒够一批（或超过刷新间隔）就把这一批以NDJSON格式
+ * 流式编码并gzip压缩，写成spool目录中的一个文件，再按从旧到新的顺序逐个上传，成功后删除。
+ * 上传失败按指数退避重试，离线期间文件留在spool目录中，目录大小超过上限时删除最旧的批次。
+ * 内存中只保留有界队列和固定大小的缓冲区，采集端慢或不可用时内存占用不会增长。
+ * <p>
+ * 请求为POST，Content-Type为application/x-ndjson，Content-Encoding为gzip。
+ */
+public class HttpUploadReporter implements DeadlockReporter {
+
+    private static final String TAG = "HttpUploadReporter";
+
+    /**
+     * 默认的spool目录名，位于应用缓存目录下
+     */
+    public static final String DEFAULT_SPOOL_DIR = "deadlock-upload";
+
+    private static final String SPOOL_PREFIX = "batch-";
+    private static final String SPOOL_SUFFIX = ".ndjson.gz";
+
+    private final URL endpoint;
+    private final File spoolDir;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long maxSpoolBytes;
+    private final int maxFrames;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final int connectTimeoutMs;
+    private final int readTimeoutMs;
+
+    private final BlockingQueue<DeadlockReport> queue;
+    private final Thread worker;
+    private final Random random = new Random();
+    private volatile boolean running = true;
+
+    // 以下字段只在上传线程访问
+    private long spoolSeq;
+    private long backoffMs;
+    private long nextUploadTime;
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong batchesSpooled = new AtomicLong();
+    private final AtomicLong batchesUploaded = new AtomicLong();
+    private final AtomicLong uploadFailures = new AtomicLong();
+    private final AtomicLong batchesEvicted = new AtomicLong();
+
+    private HttpUploadReporter(Builder builder) {
+        this.endpoint = builder.endpoint;
+        this.spoolDir = builder.spoolDir;
+        this.batchSize = Math.max(1, builder.batchSize);
+        this.flushIntervalMs = builder.flushIntervalMs;
+        this.maxSpoolBytes = builder.maxSpoolBytes;
+        this.maxFrames = builder.maxFrames;
+        this.initialBackoffMs = builder.initialBackoffMs;
+        this.maxBackoffMs = builder.maxBackoffMs;
+        this.connectTimeoutMs = builder.connectTimeoutMs;
+        this.readTimeoutMs = builder.readTimeoutMs;
+        this.queue = new ArrayBlockingQueue<>(Math.max(batchSize, builder.queueCapacity));
+
+        if (!spoolDir.isDirectory() && !spoolDir.mkdirs()) {
+            DetectorLog.w(TAG, "Cannot create spool directory: " + spoolDir);
+        }
+        // 接着上一次进程留下的批次编号
+        for (File file : listSpool()) {
+            spoolSeq = Math.max(spoolSeq, parseSeq(file) + 1);
+        }
+
+        this.worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                workLoop();
+            }
+        }, "DeadlockDetector-Uploader");
+        this.worker.setDaemon(true);
+        this.worker.setPriority(Thread.MIN_PRIORITY);
+        this.worker.start();
+    }
+
+    @Override
+    public void report(DeadlockReport report) {
+        // 队列满时丢弃最旧的报告
+        while (!queue.offer(report)) {
+            if (queue.poll() != null) {
+                dropped.incrementAndGet();
+            }
+        }
+        if (queue.size() >= batchSize) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    private void workLoop() {
+        List<DeadlockReport> batch = new ArrayList<>(batchSize);
+        long lastFlush = System.currentTimeMillis();
+        while (running) {
+            long now = System.currentTimeMillis();
+            if (queue.size() >= batchSize || (!queue.isEmpty() && now - lastFlush >= flushIntervalMs)) {
+                queue.drainTo(batch, batchSize);
+                spool(batch);
+                batch.clear();
+                lastFlush = now;
+            }
+
+            if (now >= nextUploadTime) {
+                uploadSpooled();
+            }
+
+            long wait = flushIntervalMs;
+            if (nextUploadTime > now) {
+                wait = Math.min(wait, nextUploadTime - now);
+            }
+            synchronized (this) {
+                if (running && queue.size() < batchSize) {
+                    try {
+                        wait(Math.max(1, wait));
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 把一批报告流式编码、压缩后写成一个spool文件
+     */
+    private void spool(List<DeadlockReport> batch) {
+        File file = new File(spoolDir, SPOOL_PREFIX + (spoolSeq++) + SPOOL_SUFFIX);
+        File temp = new File(spoolDir, file.getName() + ".tmp");
+        try (OutputStream out = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            for (DeadlockReport report : batch) {
+                JsonReportCodec.encode(report, out, maxFrames);
+                out.write('\n');
+            }
+        } catch (IOException e) {
+            DetectorLog.e(TAG, "Failed to spool batch", e);
+            temp.delete();
+            return;
+        } catch (RuntimeException e) {
+            // 某个报告无法编码时只丢弃这一批，上传线程继续工作
+            DetectorLog.e(TAG, "Failed to encode batch of " + batch.size() + " reports", e);
+            dropped.addAndGet(batch.size());
+            temp.delete();
+            return;
+        }
+        // 写完再改名，进程中途退出时不会留下半个批次
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            return;
+        }
+        batchesSpooled.incrementAndGet();
+        trimSpool();
+    }
+
+    /**
+     * spool目录超过上限时删除最旧的批次
+     */
+    private void trimSpool() {
+        File[] files = listSpool();
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        for (int i = 0; i < files.length - 1 && total > maxSpoolBytes; i++) {
+            total -= files[i].length();
+            if (files[i].delete()) {
+                batchesEvicted.incrementAndGet();
+            }
+        }
+    }
+
+    private void uploadSpooled() {
+        for (File file : listSpool()) {
+            if (!running) {
+                return;
+            }
+            int status;
+            try {
+                status = upload(file);
+            } catch (IOException e) {
+                status = -1;
+            } catch (RuntimeException e) {
+                // 按网络错误退避重试，不让异常结束上传线程
+                DetectorLog.e(TAG, "Failed to upload " + file.getName(), e);
+                status = -1;
+            }
+
+            if (status >= 200 && status < 300) {
+                file.delete();
+                batchesUploaded.incrementAndGet();
+                backoffMs = 0;
+                nextUploadTime = 0;
+                continue;
+            }
+            if (status >= 400 && status < 500 && status != 408 && status != 429) {
+                // 采集端拒绝了这一批，重试也不会成功
+                DetectorLog.w(TAG, "Batch rejected with HTTP " + status + ", dropping " + file.getName());
+                file.delete();
+                continue;
+            }
+
+            // 网络错误或服务端错误，指数退避后从这一批开始重试
+            uploadFailures.incrementAndGet();
+            backoffMs = backoffMs == 0 ? initialBackoffMs : Math.min(maxBackoffMs, backoffMs * 2);
+            long jitter = (long) (backoffMs * 0.2 * random.nextDouble());
+            nextUploadTime = System.currentTimeMillis() + backoffMs + jitter;
+            return;
+        }
+    }
+
+    private int upload(File file) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) endpoint.openConnection();
+        try {
+            connection.setConnectTimeout(connectTimeoutMs);
+            connection.setReadTimeout(readTimeoutMs);
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/x-ndjson");
+            connection.setRequestProperty("Content-Encoding", "gzip");
+            connection.setFixedLengthStreamingMode((int) file.length());
+
+            byte[] chunk = new byte[8192];
+            try (InputStream in = new FileInputStream(file);
+                 OutputStream out = connection.getOutputStream()) {
+                int n;
+                while ((n = in.read(chunk)) > 0) {
+                    out.write(chunk, 0, n);
+                }
+            }
+            int status = connection.getResponseCode();
+            // 读完响应体以便连接复用
+            InputStream response = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            if (response != null) {
+                try {
+                    while (response.read(chunk) > 0) {
+                        // 丢弃
+                    }
+                } finally {
+                    response.close();
+                }
+            }
+            return status;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private File[] listSpool() {
+        File[] files = spoolDir.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        List<File> batches = new ArrayList<>();
+        for (File file : files) {
+            if (file.getName().startsWith(SPOOL_PREFIX) && file.getName().endsWith(SPOOL_SUFFIX)) {
+                batches.add(file);
+            }
+        }
+        File[] sorted = batches.toArray(new File[0]);
+        Arrays.sort(sorted, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(parseSeq(a), parseSeq(b));
+            }
+        });
+        return sorted;
+    }
+
+    private static long parseSeq(File file) {
+        String name = file.getName();
+        try {
+            return Long.parseLong(name.substring(SPOOL_PREFIX.length(), name.length() - SPOOL_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 停止上传线程，队列中剩余的报告写入spool目录，下次启动后继续上传
+     */
+    public void shutdown(long timeoutMs) {
+        running = false;
+        synchronized (this) {
+            notifyAll();
+        }
+        try {
+            worker.join(timeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<DeadlockReport> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (remaining.isEmpty()) {
+            return;
+        }
+        if (worker.isAlive()) {
+            // 上传线程仍在写spool目录，不能并发写入
+            DetectorLog.w(TAG, "Uploader did not stop in " + timeoutMs + "ms, dropping "
+                    + remaining.size() + " queued reports");
+            dropped.addAndGet(remaining.size());
+            return;
+        }
+        spool(remaining);
+    }
+
+    /**
+     * 丢弃的报告数：内存队列满、编码失败，或停止时上传线程未及时退出
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getBatchesSpooled() {
+        return batchesSpooled.get();
+    }
+
+    public long getBatchesUploaded() {
+        return batchesUploaded.get();
+    }
+
+    public long getUploadFailures() {
+        return uploadFailures.get();
+    }
+
+    /**
+     * 因spool目录超过上限而删除的批次数
+     */
+    public long getBatchesEvicted() {
+        return batchesEvicted.get();
+    }
+
+    public static class Builder {
+        private URL endpoint;
+        private File spoolDir;
+        private int batchSize = 20;
+        private int queueCapacity = 100;
+        private long flushIntervalMs = 30_000;
+        private long maxSpoolBytes = 2 * 1024 * 1024;
+        private int maxFrames = 64;
+        private long initialBackoffMs = 5_000;
+        private long maxBackoffMs = 10 * 60_000;
+        private int connectTimeoutMs = 10_000;
+        private int readTimeoutMs = 30_000;
+
+        /**
+         * @param endpoint 上传地址
+         * @param spoolDir 批次文件目录，离线期间的报告保存在这里
+         */
+        public Builder(URL endpoint, File spoolDir) {
+            this.endpoint = endpoint;
+            this.spoolDir = spoolDir;
+        }
+
+        /**
+         * 每批最多包含的报告数，攒够时立即写批次
+         */
+        public Builder batchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * 内存队列容量，满了丢弃最旧的报告
+         */
+        public Builder queueCapacity(int capacity) {
+            this.queueCapacity = capacity;
+            return this;
+        }
+
+        /**
+         * 未攒够一批时，最多等待多久（毫秒）也写出批次
+         */
+        public Builder flushInterval(long intervalMs) {
+            this.flushIntervalMs = intervalMs;
+            return this;
+        }
+
+        /**
+         * spool目录大小上限（字节）
+         */
+        public Builder maxSpoolBytes(long bytes) {
+            this.maxSpoolBytes = bytes;
+            return this;
+        }
+
+        /**
+         * 每个堆栈最多上传的帧数
+         */
+        public Builder maxFrames(int maxFrames) {
+            this.maxFrames = maxFrames;
+            return this;
+        }
+
+        /**
+         * 上传失败后的退避时间范围（毫秒），每次失败加倍
+         */
+        public Builder backoff(long initialMs, long maxMs) {
+            this.initialBackoffMs = initialMs;
+            this.maxBackoffMs = maxMs;
+            return this;
+        }
+
+        public Builder timeouts(int connectTimeoutMs, int readTimeoutMs) {
+            this.connectTimeoutMs = connectTimeoutMs;
+            this.readTimeoutMs = readTimeoutMs;
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException 上传地址不是http(s)，或spool目录为空或是已存在的文件
+         */
+        public HttpUploadReporter build() {
+            if (endpoint == null) {
+                throw new IllegalArgumentException("Upload endpoint is required");
+            }
+            String protocol = endpoint.getProtocol();
+            if (!"http".equals(protocol) && !"https".equals(protocol)) {
+                throw new IllegalArgumentException("Upload endpoint must be http or https: " + endpoint);
+            }
+            if (spoolDir == null) {
+                throw new IllegalArgumentException("Spool directory is required");
+            }
+            if (spoolDir.exists() && !spoolDir.isDirectory()) {
+                throw new IllegalArgumentException("Spool path is not a directory: " + spoolDir);
+            }
+            return new HttpUploadReporter(this);
+        }
+    }
+}
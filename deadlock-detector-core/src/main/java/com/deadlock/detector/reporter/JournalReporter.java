@@ -0,0 +1,55 @@
+package com.deadlock.detector.reporter;
+
+import com.deadlock.detector.DetectorLog;
+import com.deadlock.detector.codec.ReportJournal;
+import com.deadlock.detector.model.DeadlockReport;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 日志文件输出实现 - 把报告追加到内存映射的环形文件，进程被杀后下次启动仍可读出
+ *
+ * @see ReportJournal
+ */
+public class JournalReporter implements DeadlockReporter {
+
+    private static final String TAG = "JournalReporter";
+
+    public static final String DEFAULT_FILE_NAME = "deadlock-journal.bin";
+    public static final int DEFAULT_MAX_FRAMES = 32;
+
+    private final ReportJournal journal;
+
+    public JournalReporter(ReportJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * @param file      日志文件
+     * @param sizeBytes 文件大小
+     * @param maxFrames 每个堆栈最多记录的帧数
+     */
+    public JournalReporter(File file, int sizeBytes, int maxFrames) throws IOException {
+        this(new ReportJournal(file, sizeBytes, maxFrames));
+    }
+
+    @Override
+    public void report(DeadlockReport report) {
+        if (!journal.append(report)) {
+            DetectorLog.w(TAG, "Report too large for journal, dropped: " + report.getType());
+        }
+    }
+
+    public ReportJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * 读出上一次进程留下的报告
+     */
+    public static List<DeadlockReport> recover(File file) throws IOException {
+        return ReportJournal.recover(file);
+    }
+}
@@ -0,0 +1,19 @@
+package com.deadlock.detector.reporter;
+
+import com.deadlock.detector.DetectorLog;
+import com.deadlock.detector.model.DeadlockReport;
+
+/**
+ * 日志输出实现 - 通过{@link DetectorLog}输出格式化后的报告
+ * <p>
+ * core模块中检测器的默认输出；在Android上DetectorLog输出到Logcat，在JVM上默认输出到System.err
+ */
+public class LogReporter implements DeadlockReporter {
+
+    private static final String TAG = "DeadlockDetector";
+
+    @Override
+    public void report(DeadlockReport report) {
+        DetectorLog.e(TAG, ReportFormatter.format(report));
+    }
+}
@@ -0,0 +1,270 @@
+package com.deadlock.detector.reporter;
+
+import com.deadlock.detector.model.DeadlockReport;
+import com.deadlock.detector.model.DeadlockType;
+import com.deadlock.detector.model.MessageRecord;
+import com.deadlock.detector.model.StackProfile;
+import com.deadlock.detector.model.ThreadDetail;
+import com.deadlock.detector.model.ThreadStackGroup;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 报告文本格式化 - Logcat和其他文本输出共用的报告格式
+ */
+public final class ReportFormatter {
+
+    private static final String LINE = "══════════════════════════════════════════════════════════════════";
+    private static final String SEPARATOR = "──────────────────────────────────────────────────────────────────";
+    // 其他线程最多输出的分组数，以及每组输出的栈帧数
+    private static final int MAX_GROUPS = 10;
+    private static final int GROUP_STACK_LINES = 5;
+
+    // 每个线程复用的报告缓冲区，超过这个容量的不再保留
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+    private static final ThreadLocal<StringBuilder> BUFFER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(4096);
+        }
+    };
+
+    // SimpleDateFormat不是线程安全的，多个检测线程可能同时输出报告
+    private static final ThreadLocal<SimpleDateFormat> DATE_FORMAT = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.getDefault());
+        }
+    };
+
+    private ReportFormatter() {
+    }
+
+    /**
+     * 把报告格式化为文本，使用当前线程复用的缓冲区
+     */
+    public static String format(DeadlockReport report) {
+        StringBuilder sb = BUFFER.get();
+        sb.setLength(0);
+        format(report, sb);
+        String text = sb.toString();
+        if (sb.capacity() > MAX_RETAINED_BUFFER) {
+            // 偶尔的超大报告（如线程很多的ANR）不长期占用内存
+            BUFFER.remove();
+        }
+        return text;
+    }
+
+    /**
+     * 把报告格式化后追加到sb
+     */
+    public static void format(DeadlockReport report, StringBuilder sb) {
+
+        // 头部
+        sb.append("\n╔").append(LINE).append("╗\n");
+        sb.append("║                        ").append(getTitle(report.getType())).append("                        ║\n");
+        sb.append("╠").append(LINE).append("╣\n");
+
+        // 基本信息
+        sb.append("║ Type: ").append(report.getType().getDescription()).append("\n");
+        sb.append("║ Time: ").append(DATE_FORMAT.get().format(new Date(report.getTimestamp()))).append("\n");
+        if (report.getLooperName() != null) {
+            sb.append("║ Looper: ").append(report.getLooperName()).append("\n");
+        }
+
+        if (report.getMessage() != null && !report.getMessage().isEmpty()) {
+            sb.append("║ Message: ").append(report.getMessage()).append("\n");
+        }
+
+        // 死锁线程详情
+        List<ThreadDetail> threadDetails = report.getThreadDetails();
+        for (int i = 0; i < threadDetails.size(); i++) {
+            sb.append("╠").append(SEPARATOR).append("╣\n");
+            appendThreadDetail(sb, threadDetails.get(i), report.getType());
+        }
+
+        // 阻塞期间的采样聚合
+        StackProfile profile = report.getStackProfile();
+        if (profile != null && !profile.isEmpty()) {
+            sb.append("╠").append(SEPARATOR).append("╣\n");
+            sb.append("║ Sampled Stacks (").append(profile.getSampleCount()).append(" samples, top 5):\n");
+            List<String> folded = profile.toFoldedLines();
+            int count = Math.min(5, folded.size());
+            for (int i = 0; i < count; i++) {
+                sb.append("║   ").append(folded.get(i)).append("\n");
+            }
+        }
+
+        // ANR前最近分发的消息，按时间顺序，最多显示最后10条
+        List<MessageRecord> messages = report.getRecentMessages();
+        if (!messages.isEmpty()) {
+            sb.append("╠").append(SEPARATOR).append("╣\n");
+            sb.append("║ Recent Messages (last ").append(Math.min(10, messages.size())).append("):\n");
+            for (int i = Math.max(0, messages.size() - 10); i < messages.size(); i++) {
+                sb.append("║   ").append(messages.get(i)).append("\n");
+            }
+        }
+
+        // ANR时按(状态, 堆栈)分组显示其他线程，相同堆栈只输出一次
+        if (report.getType() == DeadlockType.ANR && !report.getOtherThreadDetails().isEmpty()) {
+            List<ThreadStackGroup> groups = report.getOtherThreadGroups();
+            sb.append("╠").append(SEPARATOR).append("╣\n");
+            sb.append("║ Other Threads (").append(report.getOtherThreadDetails().size())
+                    .append(" threads in ").append(groups.size()).append(" groups):\n");
+
+            int count = Math.min(MAX_GROUPS, groups.size());
+            for (int i = 0; i < count; i++) {
+                appendThreadGroup(sb, groups.get(i));
+            }
+            if (groups.size() > count) {
+                sb.append("║   ... ").append(groups.size() - count).append(" more groups\n");
+            }
+        }
+
+        // 线程池饥饿时显示排队最久的任务及其提交位置
+        if (report.getType() == DeadlockType.EXECUTOR_STARVATION && !report.getOtherThreadDetails().isEmpty()) {
+            sb.append("╠").append(SEPARATOR).append("╣\n");
+            sb.append("║ Queued Tasks (oldest first):\n");
+            for (ThreadDetail detail : report.getOtherThreadDetails()) {
+                appendThreadDetail(sb, detail, report.getType());
+            }
+        }
+
+        // 尾部
+        sb.append("╚").append(LINE).append("╝\n");
+    }
+
+    private static void appendThreadGroup(StringBuilder sb, ThreadStackGroup group) {
+        List<ThreadDetail> threads = group.getThreads();
+        sb.append("║   - ").append(threads.size()).append(threads.size() > 1 ? " threads × " : " thread × ")
+                .append(group.getThreadState()).append(": ");
+        int names = Math.min(3, threads.size());
+        for (int i = 0; i < names; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(threads.get(i).getThreadName());
+        }
+        if (threads.size() > names) {
+            sb.append(", ...");
+        }
+        sb.append("\n");
+
+        StackTraceElement[] stackTrace = group.getStackTrace();
+        if (stackTrace != null) {
+            int maxLines = Math.min(GROUP_STACK_LINES, stackTrace.length);
+            for (int i = 0; i < maxLines; i++) {
+                appendFrame(sb.append("║       at "), stackTrace[i]);
+            }
+        }
+    }
+
+    /**
+     * 按StackTraceElement.toString()的格式直接写入栈帧，不生成中间字符串
+     */
+    private static void appendFrame(StringBuilder sb, StackTraceElement frame) {
+        sb.append(frame.getClassName()).append('.').append(frame.getMethodName()).append('(');
+        if (frame.isNativeMethod()) {
+            sb.append("Native Method");
+        } else if (frame.getFileName() == null) {
+            sb.append("Unknown Source");
+        } else {
+            sb.append(frame.getFileName());
+            if (frame.getLineNumber() >= 0) {
+                sb.append(':').append(frame.getLineNumber());
+            }
+        }
+        sb.append(")\n");
+    }
+
+    private static String getTitle(DeadlockType type) {
+        switch (type) {
+            case SYNCHRONIZED:
+            case REENTRANT_LOCK:
+                return "DEADLOCK DETECTED!";
+            case ANR:
+                return "ANR DETECTED!     ";
+            case SLOW_MESSAGE:
+                return "SLOW MESSAGE!     ";
+            case FRAME_JANK:
+                return "FRAME JANK!       ";
+            case EXECUTOR_STARVATION:
+                return "POOL STARVATION!  ";
+            case VIRTUAL_THREAD_PINNED:
+                return "VTHREAD PINNED!   ";
+            case CARRIER_STARVATION:
+                return "CARRIER STARVED!  ";
+            case STUCK_THREAD:
+                return "THREAD STUCK!     ";
+            case PRIORITY_INVERSION:
+                return "PRIO INVERSION!   ";
+            default:
+                return "ISSUE DETECTED!   ";
+        }
+    }
+
+    private static void appendThreadDetail(StringBuilder sb, ThreadDetail detail, DeadlockType type) {
+        sb.append("║ Thread: \"").append(detail.getThreadName())
+                .append("\" (id=").append(detail.getThreadId()).append(")\n");
+        sb.append("║ State: ").append(detail.getThreadState()).append("\n");
+
+        // 锁信息
+        if (type == DeadlockType.SYNCHRONIZED) {
+            if (detail.getLockName() != null) {
+                sb.append("║ Waiting for: ").append(detail.getLockName());
+                if (detail.getLockOwnerId() > 0) {
+                    sb.append(" (held by ").append(detail.getLockOwnerName()).append(")");
+                }
+                sb.append("\n");
+            }
+        } else if (type == DeadlockType.REENTRANT_LOCK) {
+            if (detail.getWaitingForLock() != null) {
+                sb.append("║ Waiting for: ").append(detail.getWaitingForLock()).append("\n");
+            }
+            if (detail.getHeldLocks() != null && !detail.getHeldLocks().isEmpty()) {
+                sb.append("║ Holding: ").append(String.join(", ", detail.getHeldLocks())).append("\n");
+            }
+        } else if (type == DeadlockType.ANR || type == DeadlockType.FRAME_JANK
+                || type == DeadlockType.VIRTUAL_THREAD_PINNED || type == DeadlockType.CARRIER_STARVATION
+                || type == DeadlockType.STUCK_THREAD
+                || type == DeadlockType.PRIORITY_INVERSION) {
+            if (detail.getWaitingForLock() != null) {
+                sb.append("║ Waiting for: ").append(detail.getWaitingForLock()).append("\n");
+            }
+            if (detail.getHeldLocks() != null && !detail.getHeldLocks().isEmpty()) {
+                sb.append("║ Holding: ").append(String.join(", ", detail.getHeldLocks())).append("\n");
+            }
+            if (detail.getBlockTimeMs() > 0) {
+                sb.append("║ Blocked for: ").append(detail.getBlockTimeMs()).append("ms\n");
+            }
+        } else if (type == DeadlockType.EXECUTOR_STARVATION) {
+            if (detail.getWaitingForLock() != null) {
+                sb.append("║ Waiting for: ").append(detail.getWaitingForLock()).append("\n");
+            }
+            StackTraceElement[] site = detail.getWaitingForSite();
+            if (site != null && site.length > 0) {
+                sb.append("║ Submitted at:\n");
+                int maxLines = Math.min(5, site.length);
+                for (int i = 0; i < maxLines; i++) {
+                    appendFrame(sb.append("║   at "), site[i]);
+                }
+            }
+        }
+
+        // 堆栈信息
+        StackTraceElement[] stackTrace = detail.getStackTrace();
+        if (stackTrace != null && stackTrace.length > 0) {
+            sb.append("║ Stack:\n");
+            int maxLines = Math.min(15, stackTrace.length);
+            for (int i = 0; i < maxLines; i++) {
+                appendFrame(sb.append("║   at "), stackTrace[i]);
+            }
+            if (stackTrace.length > maxLines) {
+                sb.append("║   ... ").append(stackTrace.length - maxLines).append(" more\n");
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.deadlock.detector.reporter;
+
+import com.deadlock.detector.model.DeadlockReport;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 堆栈截断 - 把报告中每个线程的堆栈截断到栈顶的最大帧数后交给下一个reporter
+ * <p>
+ * 每个监控实例用自己的最大帧数包装自己的输出链，检测器始终看到完整堆栈，
+ * 截断只影响报告以及队列、日志中持有的数组
+ */
+public class StackDepthReporter implements DeadlockReporter {
+
+    public static final int DEFAULT_MAX_STACK_DEPTH = 64;
+
+    private final DeadlockReporter delegate;
+    private final int maxStackDepth;
+
+    /**
+     * @param maxStackDepth 每个堆栈保留的最大帧数（从栈顶开始），0表示不截断
+     */
+    public StackDepthReporter(DeadlockReporter delegate, int maxStackDepth) {
+        this.delegate = delegate;
+        this.maxStackDepth = maxStackDepth;
+    }
+
+    public int getMaxStackDepth() {
+        return maxStackDepth;
+    }
+
+    @Override
+    public void report(DeadlockReport report) {
+        delegate.report(report.limitStackDepth(maxStackDepth));
+    }
+
+    @Override
+    public void reportBatch(List<DeadlockReport> reports) {
+        List<DeadlockReport> limited = new ArrayList<>(reports.size());
+        for (DeadlockReport report : reports) {
+            limited.add(report.limitStackDepth(maxStackDepth));
+        }
+        delegate.reportBatch(limited);
+    }
+}
@@ -0,0 +1,197 @@
+package com.deadlock.detector.stats;
+
+/**
+ * 单个检测器的开销统计
+ * <p>
+ * 保存最近{@link #WINDOW_SIZE}次检测的滚动窗口，以及启动以来的累计值
+ */
+public class DetectorStats {
+
+    public static final int WINDOW_SIZE = 32;
+
+    /**
+     * 运行时不支持某项指标时记录的值
+     */
+    public static final long UNSUPPORTED = -1;
+
+    private final String name;
+
+    // 滚动窗口，环形数组
+    private final long[] wallNanos = new long[WINDOW_SIZE];
+    private final long[] cpuNanos = new long[WINDOW_SIZE];
+    private final long[] allocBytes = new long[WINDOW_SIZE];
+    private int cursor;
+    private int filled;
+
+    private long runs;
+    private long totalWallNanos;
+    private long totalCpuNanos;
+    private long maxWallNanos;
+    private int lastThreadsScanned;
+    private int lastGraphSize;
+
+    public DetectorStats(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 记录一次检测的开销
+     *
+     * @param wall           墙钟时间（纳秒）
+     * @param cpu            线程CPU时间（纳秒），不支持时为{@link #UNSUPPORTED}
+     * @param alloc          分配字节数，不支持时为{@link #UNSUPPORTED}
+     * @param threadsScanned 扫描的线程数
+     * @param graphSize      等待图大小
+     */
+    public synchronized void record(long wall, long cpu, long alloc, int threadsScanned, int graphSize) {
+        wallNanos[cursor] = wall;
+        cpuNanos[cursor] = cpu;
+        allocBytes[cursor] = alloc;
+        cursor = (cursor + 1) % WINDOW_SIZE;
+        if (filled < WINDOW_SIZE) {
+            filled++;
+        }
+
+        runs++;
+        totalWallNanos += wall;
+        if (cpu > 0) {
+            totalCpuNanos += cpu;
+        }
+        if (wall > maxWallNanos) {
+            maxWallNanos = wall;
+        }
+        lastThreadsScanned = threadsScanned;
+        lastGraphSize = graphSize;
+    }
+
+    /**
+     * 滚动窗口内每次检测的平均CPU时间（纳秒）
+     */
+    public synchronized long getWindowAvgCpuNanos() {
+        return average(cpuNanos);
+    }
+
+    public synchronized Snapshot snapshot() {
+        Snapshot s = new Snapshot();
+        s.name = name;
+        s.runs = runs;
+        s.totalWallNanos = totalWallNanos;
+        s.totalCpuNanos = totalCpuNanos;
+        s.maxWallNanos = maxWallNanos;
+        s.avgWallNanos = average(wallNanos);
+        s.avgCpuNanos = average(cpuNanos);
+        s.avgAllocBytes = average(allocBytes);
+        s.lastThreadsScanned = lastThreadsScanned;
+        s.lastGraphSize = lastGraphSize;
+        if (filled > 0) {
+            int last = (cursor - 1 + WINDOW_SIZE) % WINDOW_SIZE;
+            s.lastWallNanos = wallNanos[last];
+            s.lastCpuNanos = cpuNanos[last];
+            s.lastAllocBytes = allocBytes[last];
+        }
+        return s;
+    }
+
+    /**
+     * 窗口内的平均值，存在不支持的采样时返回{@link #UNSUPPORTED}
+     */
+    private long average(long[] window) {
+        if (filled == 0) {
+            return 0;
+        }
+        long sum = 0;
+        for (int i = 0; i < filled; i++) {
+            if (window[i] < 0) {
+                return UNSUPPORTED;
+            }
+            sum += window[i];
+        }
+        return sum / filled;
+    }
+
+    /**
+     * 统计快照，字段单位为纳秒/字节，不支持的指标为{@link #UNSUPPORTED}
+     */
+    public static class Snapshot {
+        private String name;
+        private long runs;
+        private long totalWallNanos;
+        private long totalCpuNanos;
+        private long maxWallNanos;
+        private long avgWallNanos;
+        private long avgCpuNanos;
+        private long avgAllocBytes;
+        private long lastWallNanos;
+        private long lastCpuNanos;
+        private long lastAllocBytes;
+        private int lastThreadsScanned;
+        private int lastGraphSize;
+
+        public String getName() {
+            return name;
+        }
+
+        public long getRuns() {
+            return runs;
+        }
+
+        public long getTotalWallNanos() {
+            return totalWallNanos;
+        }
+
+        public long getTotalCpuNanos() {
+            return totalCpuNanos;
+        }
+
+        public long getMaxWallNanos() {
+            return maxWallNanos;
+        }
+
+        public long getAvgWallNanos() {
+            return avgWallNanos;
+        }
+
+        public long getAvgCpuNanos() {
+            return avgCpuNanos;
+        }
+
+        public long getAvgAllocBytes() {
+            return avgAllocBytes;
+        }
+
+        public long getLastWallNanos() {
+            return lastWallNanos;
+        }
+
+        public long getLastCpuNanos() {
+            return lastCpuNanos;
+        }
+
+        public long getLastAllocBytes() {
+            return lastAllocBytes;
+        }
+
+        public int getLastThreadsScanned() {
+            return lastThreadsScanned;
+        }
+
+        public int getLastGraphSize() {
+            return lastGraphSize;
+        }
+
+        @Override
+        public String toString() {
+            return name + "{runs=" + runs
+                    + ", avgWall=" + avgWallNanos / 1000 + "us"
+                    + ", maxWall=" + maxWallNanos / 1000 + "us"
+                    + ", avgCpu=" + (avgCpuNanos < 0 ? "n/a" : avgCpuNanos / 1000 + "us")
+                    + ", avgAlloc=" + (avgAllocBytes < 0 ? "n/a" : avgAllocBytes + "B")
+                    + ", threads=" + lastThreadsScanned
+                    + ", graph=" + lastGraphSize + "}";
+        }
+    }
+}
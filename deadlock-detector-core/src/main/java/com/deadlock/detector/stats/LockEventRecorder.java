@@ -0,0 +1,319 @@
+package com.deadlock.detector.stats;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 锁事件记录器 - 把锁的等待/获得/释放和检测器每次检测记录到按线程划分的环形缓冲区
+ * <p>
+ * 每个线程只写自己的缓冲区，写入无锁、不分配内存；缓冲区满后覆盖最旧的事件，
+ * 线程数超过上限后先回收已结束线程的缓冲区（其事件随之丢弃），仍没有空位时新线程的事件被丢弃，
+ * 因此内存占用有上限。被拒绝的线程在本次记录中不再尝试登记，之后的事件直接丢弃，不进入同步块。
+ * 记录可以在运行时开关，也可以只记录一段时间窗口，到期后自动停止。
+ * 记录结果通过{@link #snapshot()}取出，再用{@link com.deadlock.detector.codec.TraceEventWriter}导出。
+ */
+public final class LockEventRecorder {
+
+    /** 开始等待锁，subject为锁，peer为当时的持有者线程ID */
+    public static final byte WAIT_BEGIN = 1;
+    /** 获得锁（不含重入），subject为锁 */
+    public static final byte ACQUIRED = 2;
+    /** 等待锁失败（超时或被中断），subject为锁 */
+    public static final byte WAIT_FAILED = 3;
+    /** 完全释放锁，subject为锁 */
+    public static final byte RELEASED = 4;
+    /** 检测器开始一次检测，subject为检测器名称 */
+    public static final byte TICK_BEGIN = 5;
+    /** 检测器结束一次检测，subject为检测器名称 */
+    public static final byte TICK_END = 6;
+
+    public static final int DEFAULT_EVENTS_PER_THREAD = 4096;
+    public static final int DEFAULT_MAX_THREADS = 128;
+
+    private static final LockEventRecorder DEFAULT =
+            new LockEventRecorder(DEFAULT_EVENTS_PER_THREAD, DEFAULT_MAX_THREADS);
+
+    /**
+     * 单个线程的事件缓冲区，只由所属线程写入
+     */
+    private static final class ThreadBuffer {
+        final int generation;
+        // 线程数达到上限时给线程的占位缓冲区，不保存事件
+        final boolean rejected;
+        // 弱引用，缓冲区不阻止线程对象被回收
+        final WeakReference<Thread> owner;
+        final long threadId;
+        final String threadName;
+        final int mask;
+        final long[] times;
+        final byte[] kinds;
+        final Object[] subjects;
+        final long[] peers;
+        // 已写入的事件总数，写完槽位后再递增，读取方据此判断哪些槽位有效
+        volatile long written;
+
+        ThreadBuffer(int generation, Thread thread, int capacity, boolean rejected) {
+            this.generation = generation;
+            this.rejected = rejected;
+            this.owner = new WeakReference<>(thread);
+            this.threadId = thread.getId();
+            this.threadName = thread.getName();
+            this.mask = capacity - 1;
+            this.times = new long[capacity];
+            this.kinds = new byte[capacity];
+            this.subjects = new Object[capacity];
+            this.peers = new long[capacity];
+        }
+
+        boolean isOwnerAlive() {
+            Thread thread = owner.get();
+            return thread != null && thread.isAlive();
+        }
+    }
+
+    /**
+     * 一个线程在快照时刻的事件，按时间先后排列
+     */
+    public static final class ThreadEvents {
+        private final long threadId;
+        private final String threadName;
+        private final long[] times;
+        private final byte[] kinds;
+        private final Object[] subjects;
+        private final long[] peers;
+        private final int count;
+        private final long overwritten;
+
+        ThreadEvents(long threadId, String threadName, long[] times, byte[] kinds, Object[] subjects,
+                     long[] peers, int count, long overwritten) {
+            this.threadId = threadId;
+            this.threadName = threadName;
+            this.times = times;
+            this.kinds = kinds;
+            this.subjects = subjects;
+            this.peers = peers;
+            this.count = count;
+            this.overwritten = overwritten;
+        }
+
+        public long getThreadId() {
+            return threadId;
+        }
+
+        public String getThreadName() {
+            return threadName;
+        }
+
+        public int size() {
+            return count;
+        }
+
+        /**
+         * 第i个事件的时间（System.nanoTime）
+         */
+        public long getTimeNanos(int i) {
+            return times[i];
+        }
+
+        public byte getKind(int i) {
+            return kinds[i];
+        }
+
+        /**
+         * 第i个事件的对象：锁事件为锁，检测事件为检测器名称
+         */
+        public Object getSubject(int i) {
+            return subjects[i];
+        }
+
+        /**
+         * 第i个事件的关联线程ID，只有WAIT_BEGIN有意义，没有时为-1
+         */
+        public long getPeerThreadId(int i) {
+            return peers[i];
+        }
+
+        /**
+         * 缓冲区满后被覆盖的事件数
+         */
+        public long getOverwrittenCount() {
+            return overwritten;
+        }
+    }
+
+    private final int eventsPerThread;
+    private final int maxThreads;
+    private final CopyOnWriteArrayList<ThreadBuffer> buffers = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<ThreadBuffer> localBuffer = new ThreadLocal<>();
+    private final AtomicInteger generation = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private volatile boolean recording;
+    // 记录窗口的截止时间，0表示不限制
+    private volatile long deadlineNanos;
+
+    /**
+     * @param eventsPerThread 每个线程保留的事件数，向上取整为2的幂
+     * @param maxThreads      最多记录的线程数
+     */
+    public LockEventRecorder(int eventsPerThread, int maxThreads) {
+        int capacity = 1;
+        while (capacity < eventsPerThread) {
+            capacity <<= 1;
+        }
+        this.eventsPerThread = capacity;
+        this.maxThreads = maxThreads;
+    }
+
+    /**
+     * 全局共用的记录器，被追踪的锁和检测调度写入这里
+     */
+    public static LockEventRecorder getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * 清空之前的记录并开始记录，直到调用{@link #stop()}
+     */
+    public void start() {
+        start(0);
+    }
+
+    /**
+     * 清空之前的记录并开始记录，durationMs毫秒后自动停止，0表示不限制
+     */
+    public void start(long durationMs) {
+        recording = false;
+        clear();
+        deadlineNanos = durationMs > 0 ? System.nanoTime() + durationMs * 1_000_000L : 0;
+        recording = true;
+    }
+
+    public void stop() {
+        recording = false;
+    }
+
+    public boolean isRecording() {
+        return recording;
+    }
+
+    /**
+     * 记录当前线程的一个事件，未在记录时直接返回
+     */
+    public void record(byte kind, Object subject, long peerThreadId) {
+        if (!recording) {
+            return;
+        }
+        long now = System.nanoTime();
+        long deadline = deadlineNanos;
+        if (deadline != 0 && now - deadline > 0) {
+            recording = false;
+            return;
+        }
+        ThreadBuffer buffer = localBuffer.get();
+        if (buffer == null || buffer.generation != generation.get()) {
+            buffer = register();
+        }
+        if (buffer.rejected) {
+            dropped.incrementAndGet();
+            return;
+        }
+        long seq = buffer.written;
+        int slot = (int) seq & buffer.mask;
+        buffer.times[slot] = now;
+        buffer.kinds[slot] = kind;
+        buffer.subjects[slot] = subject;
+        buffer.peers[slot] = peerThreadId;
+        buffer.written = seq + 1;
+    }
+
+    /**
+     * 为当前线程登记缓冲区，线程数已达上限且没有可回收的缓冲区时登记占位缓冲区
+     */
+    private ThreadBuffer register() {
+        synchronized (buffers) {
+            int current = generation.get();
+            boolean full = buffers.size() >= maxThreads && !reclaimDeadThread();
+            ThreadBuffer buffer = new ThreadBuffer(current, Thread.currentThread(), full ? 0 : eventsPerThread, full);
+            if (!full) {
+                buffers.add(buffer);
+            }
+            localBuffer.set(buffer);
+            return buffer;
+        }
+    }
+
+    /**
+     * 回收一个已结束线程的缓冲区，持有buffers锁时调用
+     */
+    private boolean reclaimDeadThread() {
+        for (ThreadBuffer buffer : buffers) {
+            if (!buffer.isOwnerAlive()) {
+                buffers.remove(buffer);
+                dropped.addAndGet(Math.min(buffer.written, buffer.mask + 1));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 复制所有线程当前的事件，记录可以同时进行；复制期间被覆盖的事件会被丢弃
+     */
+    public List<ThreadEvents> snapshot() {
+        List<ThreadEvents> result = new ArrayList<>(buffers.size());
+        for (ThreadBuffer buffer : buffers) {
+            int capacity = buffer.mask + 1;
+            long end = buffer.written;
+            long start = Math.max(0, end - capacity);
+            int count = (int) (end - start);
+            long[] times = new long[count];
+            byte[] kinds = new byte[count];
+            Object[] subjects = new Object[count];
+            long[] peers = new long[count];
+            for (int i = 0; i < count; i++) {
+                int slot = (int) (start + i) & buffer.mask;
+                times[i] = buffer.times[slot];
+                kinds[i] = buffer.kinds[slot];
+                subjects[i] = buffer.subjects[slot];
+                peers[i] = buffer.peers[slot];
+            }
+
+            // 复制期间写线程可能已经绕回，覆盖了开头的一部分
+            long validStart = Math.max(start, buffer.written - capacity);
+            int skip = (int) Math.min(count, validStart - start);
+            if (skip > 0) {
+                count -= skip;
+                System.arraycopy(times, skip, times, 0, count);
+                System.arraycopy(kinds, skip, kinds, 0, count);
+                System.arraycopy(subjects, skip, subjects, 0, count);
+                System.arraycopy(peers, skip, peers, 0, count);
+            }
+            result.add(new ThreadEvents(buffer.threadId, buffer.threadName, times, kinds, subjects, peers,
+                    count, validStart));
+        }
+        return result;
+    }
+
+    /**
+     * 清空所有记录，各线程下次写入时重新分配缓冲区
+     */
+    public void clear() {
+        synchronized (buffers) {
+            generation.incrementAndGet();
+            buffers.clear();
+        }
+        dropped.set(0);
+    }
+
+    /**
+     * 因线程数超过上限而丢弃的事件数，包括被回收的已结束线程的事件
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+}
@@ -0,0 +1,154 @@
+package com.deadlock.detector.analyzer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DeadlockAnalyzerTest {
+
+    private final DeadlockAnalyzer analyzer = new DeadlockAnalyzer();
+
+    @Test
+    public void findsSimpleCycles() {
+        Map<Long, Long> graph = new HashMap<>();
+        graph.put(1L, 2L);
+        graph.put(2L, 1L);
+        graph.put(3L, 1L);
+        graph.put(4L, 5L);
+        graph.put(6L, 6L);
+
+        List<List<Long>> cycles = analyzer.detectCycles(graph);
+        assertEquals(2, cycles.size());
+        assertTrue(cycles.contains(Arrays.asList(1L, 2L)) || cycles.contains(Arrays.asList(2L, 1L)));
+        assertTrue(cycles.contains(Arrays.asList(6L)));
+    }
+
+    @Test
+    public void handlesLongChainsAndCyclesWithoutRecursion() {
+        int size = 100_000;
+        Map<Long, Long> chain = new HashMap<>();
+        Map<Long, Set<Long>> multi = new HashMap<>();
+        for (long i = 0; i < size; i++) {
+            long next = (i + 1) % size;
+            chain.put(i, next);
+            multi.put(i, new HashSet<>(Arrays.asList(next)));
+        }
+        assertEquals(size, analyzer.detectCycles(chain).get(0).size());
+        assertEquals(size, analyzer.detectCyclesMulti(multi).get(0).size());
+
+        // 去掉一条边后只剩一条链
+        chain.remove(size - 1L);
+        multi.remove(size - 1L);
+        assertTrue(analyzer.detectCycles(chain).isEmpty());
+        assertTrue(analyzer.detectCyclesMulti(multi).isEmpty());
+    }
+
+    /**
+     * 迭代版本与原来的递归版本在随机图上返回相同的环，顺序也相同
+     */
+    @Test
+    public void matchesRecursiveVersionOnRandomGraphs() {
+        for (long seed = 0; seed < 500; seed++) {
+            Random random = new Random(seed);
+            int nodes = 1 + random.nextInt(40);
+
+            Map<Long, Long> graph = new HashMap<>();
+            Map<Long, Set<Long>> multi = new HashMap<>();
+            for (long node = 0; node < nodes; node++) {
+                // 一部分线程不在等待，被等待的线程也可能不在图中
+                if (random.nextInt(4) == 0) {
+                    continue;
+                }
+                graph.put(node, (long) random.nextInt(nodes + 5));
+                Set<Long> targets = new LinkedHashSet<>();
+                int edges = 1 + random.nextInt(3);
+                for (int i = 0; i < edges; i++) {
+                    targets.add((long) random.nextInt(nodes + 5));
+                }
+                multi.put(node, targets);
+            }
+
+            assertEquals("seed " + seed, recursiveCycles(graph), analyzer.detectCycles(graph));
+            assertEquals("seed " + seed, recursiveCyclesMulti(multi), analyzer.detectCyclesMulti(multi));
+        }
+    }
+
+    // 以下是改为迭代之前的递归实现，作为对照
+
+    private static List<List<Long>> recursiveCycles(Map<Long, Long> graph) {
+        List<List<Long>> cycles = new ArrayList<>();
+        Set<Long> visited = new HashSet<>();
+        Set<Long> inStack = new HashSet<>();
+        for (Long node : graph.keySet()) {
+            if (!visited.contains(node)) {
+                dfs(node, graph, visited, inStack, new ArrayList<Long>(), cycles);
+            }
+        }
+        return cycles;
+    }
+
+    private static void dfs(Long node, Map<Long, Long> graph, Set<Long> visited, Set<Long> inStack,
+                            List<Long> path, List<List<Long>> cycles) {
+        visited.add(node);
+        inStack.add(node);
+        path.add(node);
+        Long next = graph.get(node);
+        if (next != null) {
+            if (!visited.contains(next)) {
+                dfs(next, graph, visited, inStack, path, cycles);
+            } else if (inStack.contains(next)) {
+                int cycleStart = path.indexOf(next);
+                if (cycleStart >= 0) {
+                    cycles.add(new ArrayList<>(path.subList(cycleStart, path.size())));
+                }
+            }
+        }
+        path.remove(path.size() - 1);
+        inStack.remove(node);
+    }
+
+    private static List<List<Long>> recursiveCyclesMulti(Map<Long, Set<Long>> graph) {
+        List<List<Long>> cycles = new ArrayList<>();
+        Set<Long> visited = new HashSet<>();
+        Set<Long> inStack = new HashSet<>();
+        for (Long node : graph.keySet()) {
+            if (!visited.contains(node)) {
+                dfsMulti(node, graph, visited, inStack, new ArrayList<Long>(), cycles);
+            }
+        }
+        return cycles;
+    }
+
+    private static void dfsMulti(Long node, Map<Long, Set<Long>> graph, Set<Long> visited, Set<Long> inStack,
+                                 List<Long> path, List<List<Long>> cycles) {
+        visited.add(node);
+        inStack.add(node);
+        path.add(node);
+        Set<Long> nextNodes = graph.get(node);
+        if (nextNodes != null) {
+            for (Long next : nextNodes) {
+                if (!visited.contains(next)) {
+                    dfsMulti(next, graph, visited, inStack, path, cycles);
+                } else if (inStack.contains(next)) {
+                    int cycleStart = path.indexOf(next);
+                    if (cycleStart >= 0) {
+                        cycles.add(new ArrayList<>(path.subList(cycleStart, path.size())));
+                    }
+                }
+            }
+        }
+        path.remove(path.size() - 1);
+        inStack.remove(node);
+    }
+}
@@ -0,0 +1,298 @@
+package com.deadlock.detector.codec;
+
+import com.deadlock.detector.model.DeadlockReport;
+import com.deadlock.detector.model.DeadlockType;
+import com.deadlock.detector.model.MessageRecord;
+import com.deadlock.detector.model.StackDictionary;
+import com.deadlock.detector.model.StackProfile;
+import com.deadlock.detector.model.ThreadDetail;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 二进制和JSON编码的往返测试
+ */
+public class ReportCodecTest {
+
+    private static final StackTraceElement[] IDLE = {
+            new StackTraceElement("jdk.internal.misc.Unsafe", "park", null, -2),
+            new StackTraceElement("java.util.concurrent.locks.LockSupport", "park", "LockSupport.java", 211),
+            new StackTraceElement("java.lang.Thread", "run", "Thread.java", 840),
+    };
+    private static final StackTraceElement[] SUBMIT = {
+            new StackTraceElement("com.example.Pool", "submit", "Pool.java", 42),
+    };
+
+    @Test
+    public void binaryRoundTripThroughBuffer() {
+        DeadlockReport report = fullReport();
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        BinaryReportCodec.encode(report, buffer, BinaryReportCodec.UNLIMITED_FRAMES);
+        buffer.flip();
+
+        DeadlockReport decoded = BinaryReportCodec.decode(buffer);
+        assertReportEquals(report, decoded);
+        assertEquals(0, buffer.remaining());
+        // 相同的堆栈只编码一份，解码后共用同一个数组
+        assertSame(decoded.getOtherThreadDetails().get(0).getStackTrace(),
+                decoded.getOtherThreadDetails().get(1).getStackTrace());
+    }
+
+    @Test
+    public void binaryRoundTripThroughStream() throws IOException {
+        DeadlockReport report = fullReport();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryReportCodec.encode(report, out, BinaryReportCodec.UNLIMITED_FRAMES);
+
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        BinaryReportCodec.encode(report, buffer, BinaryReportCodec.UNLIMITED_FRAMES);
+        // 两种输出方式的字节相同
+        assertArrayEquals(Arrays.copyOf(buffer.array(), buffer.position()), out.toByteArray());
+        assertReportEquals(report, BinaryReportCodec.decode(new ByteArrayInputStream(out.toByteArray())));
+    }
+
+    @Test
+    public void jsonRoundTrip() throws IOException {
+        DeadlockReport report = fullReport();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonReportCodec.encode(report, out, Integer.MAX_VALUE);
+
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        JsonReportCodec.encode(report, buffer, Integer.MAX_VALUE);
+        assertArrayEquals(Arrays.copyOf(buffer.array(), buffer.position()), out.toByteArray());
+
+        String json = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(json.startsWith("{\"version\":1,\"type\":\"ANR\""));
+        assertReportEquals(report, JsonReportCodec.decode(new ByteArrayInputStream(out.toByteArray())));
+    }
+
+    @Test
+    public void jsonDecodesConsecutiveReportsFromOneStream() throws IOException {
+        DeadlockReport first = fullReport();
+        DeadlockReport second = new DeadlockReport.Builder().type(DeadlockType.REENTRANT_LOCK).timestamp(2).build();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonReportCodec.encode(first, out, Integer.MAX_VALUE);
+        out.write('\n');
+        JsonReportCodec.encode(second, out, Integer.MAX_VALUE);
+
+        ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+        assertReportEquals(first, JsonReportCodec.decode(in));
+        assertReportEquals(second, JsonReportCodec.decode(in));
+        // 解码器没有读过第二个报告的末尾
+        assertEquals(0, in.available());
+    }
+
+    @Test
+    public void jsonRejectsUnsupportedVersion() throws IOException {
+        byte[] json = "{\"version\":99,\"timestamp\":1}".getBytes(StandardCharsets.UTF_8);
+        try {
+            JsonReportCodec.decode(new ByteArrayInputStream(json));
+            fail();
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().contains("99"));
+        }
+    }
+
+    @Test
+    public void binaryRejectsOversizedStringLengthFromStream() {
+        // 版本、类型、时间戳，然后是长度字段接近Integer.MAX_VALUE的消息
+        byte[] data = {(byte) BinaryReportCodec.VERSION, 0, 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+        try {
+            BinaryReportCodec.decode(new ByteArrayInputStream(data));
+            fail();
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().startsWith("Invalid string length"));
+        }
+    }
+
+    @Test
+    public void keepsTopFramesUpToLimit() throws IOException {
+        DeadlockReport report = fullReport();
+
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        BinaryReportCodec.encode(report, buffer, 2);
+        buffer.flip();
+        DeadlockReport binary = BinaryReportCodec.decode(buffer);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonReportCodec.encode(report, out, 2);
+        DeadlockReport json = JsonReportCodec.decode(new ByteArrayInputStream(out.toByteArray()));
+
+        for (DeadlockReport decoded : Arrays.asList(binary, json)) {
+            assertFrames(Arrays.copyOf(IDLE, 2), decoded.getOtherThreadDetails().get(0).getStackTrace());
+            assertFrames(SUBMIT, decoded.getThreadDetails().get(0).getWaitingForSite());
+            // 采样聚合不受帧数限制
+            assertProfileEquals(report.getStackProfile(), decoded.getStackProfile());
+        }
+    }
+
+    @Test
+    public void roundTripsMinimalReport() throws IOException {
+        DeadlockReport report = new DeadlockReport.Builder().timestamp(1).build();
+
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        BinaryReportCodec.encode(report, buffer, BinaryReportCodec.UNLIMITED_FRAMES);
+        buffer.flip();
+        assertReportEquals(report, BinaryReportCodec.decode(buffer));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonReportCodec.encode(report, out, Integer.MAX_VALUE);
+        DeadlockReport json = JsonReportCodec.decode(new ByteArrayInputStream(out.toByteArray()));
+        assertReportEquals(report, json);
+        assertNull(json.getType());
+    }
+
+    /**
+     * 覆盖所有字段，字符串中包含需要转义的字符和非ASCII字符
+     */
+    private static DeadlockReport fullReport() {
+        // 节点上限为4，第三条堆栈被截断
+        StackProfile profile = new StackProfile(4);
+        profile.add(IDLE);
+        profile.add(IDLE);
+        profile.add(new StackTraceElement[]{IDLE[1], IDLE[2]});
+        profile.add(SUBMIT);
+        return new DeadlockReport.Builder()
+                .type(DeadlockType.ANR)
+                .timestamp(1_700_000_000_123L)
+                .message("主线程阻塞 5000ms \"quoted\"\n\ttab \\ \u0001 😀")
+                .looperName("main")
+                .addThreadDetail(new ThreadDetail.Builder()
+                        .threadId(1)
+                        .threadName("main")
+                        .threadState("BLOCKED")
+                        .lockName("java.lang.Object@1a2b")
+                        .lockOwnerId(17)
+                        .lockOwnerName("worker-1")
+                        .waitingForLock("future-7")
+                        .waitingForSite(SUBMIT)
+                        .heldLocks(Arrays.asList("lock-a", "锁-b"))
+                        .blockTimeMs(5000)
+                        .stackTrace(new StackTraceElement[]{
+                                new StackTraceElement("com.example.Main", "onClick", "Main.java", 10),
+                                new StackTraceElement("android.os.Looper", "loop", "Looper.java", 193),
+                        })
+                        .build())
+                .addOtherThreadDetail(new ThreadDetail.Builder()
+                        // 采集时驻留，两个线程的堆栈内容相同但不是同一个数组
+                        .stackDictionary(StackDictionary.getDefault())
+                        .threadId(17)
+                        .threadName("worker-1")
+                        .threadState("WAITING")
+                        .stackTrace(IDLE.clone())
+                        .build())
+                .addOtherThreadDetail(new ThreadDetail.Builder()
+                        .stackDictionary(StackDictionary.getDefault())
+                        .threadId(18)
+                        .threadName("worker-2")
+                        .threadState("WAITING")
+                        .stackTrace(IDLE.clone())
+                        .build())
+                .recentMessages(Arrays.asList(
+                        new MessageRecord.Builder()
+                                .target("android.app.ActivityThread$H")
+                                .callback(null)
+                                .what(159)
+                                .startTimeMs(1_700_000_000_000L)
+                                .wallNanos(12_000_000L)
+                                .cpuNanos(-1)
+                                .idleBeforeNanos(3_000_000L)
+                                .build(),
+                        new MessageRecord.Builder()
+                                .target("com.example.Handler")
+                                .callback("com.example.Task")
+                                .what(0)
+                                .startTimeMs(1_700_000_000_100L)
+                                .wallNanos(5_000_000_000L)
+                                .cpuNanos(4_900_000_000L)
+                                .inProgress(true)
+                                .build()))
+                .stackProfile(profile)
+                .build();
+    }
+
+    private static void assertReportEquals(DeadlockReport expected, DeadlockReport actual) {
+        assertEquals(expected.getType(), actual.getType());
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        assertEquals(expected.getMessage(), actual.getMessage());
+        assertEquals(expected.getLooperName(), actual.getLooperName());
+        assertThreadsEqual(expected.getThreadDetails(), actual.getThreadDetails());
+        assertThreadsEqual(expected.getOtherThreadDetails(), actual.getOtherThreadDetails());
+        List<MessageRecord> messages = expected.getRecentMessages();
+        assertEquals(messages.size(), actual.getRecentMessages().size());
+        for (int i = 0; i < messages.size(); i++) {
+            MessageRecord e = messages.get(i);
+            MessageRecord a = actual.getRecentMessages().get(i);
+            assertEquals(e.getTarget(), a.getTarget());
+            assertEquals(e.getCallback(), a.getCallback());
+            assertEquals(e.getWhat(), a.getWhat());
+            assertEquals(e.getStartTimeMs(), a.getStartTimeMs());
+            assertEquals(e.getWallNanos(), a.getWallNanos());
+            assertEquals(e.getCpuNanos(), a.getCpuNanos());
+            assertEquals(e.getIdleBeforeNanos(), a.getIdleBeforeNanos());
+            assertEquals(e.isInProgress(), a.isInProgress());
+        }
+        assertProfileEquals(expected.getStackProfile(), actual.getStackProfile());
+    }
+
+    private static void assertProfileEquals(StackProfile expected, StackProfile actual) {
+        if (expected == null) {
+            assertNull(actual);
+            return;
+        }
+        assertEquals(expected.getMaxNodes(), actual.getMaxNodes());
+        assertEquals(expected.getNodeCount(), actual.getNodeCount());
+        assertEquals(expected.getSampleCount(), actual.getSampleCount());
+        assertEquals(expected.getTruncatedSamples(), actual.getTruncatedSamples());
+        // 还原后兄弟节点顺序可能不同，次数相同的行按内容比较
+        List<String> expectedLines = new ArrayList<>(expected.toFoldedLines());
+        List<String> actualLines = new ArrayList<>(actual.toFoldedLines());
+        Collections.sort(expectedLines);
+        Collections.sort(actualLines);
+        assertEquals(expectedLines, actualLines);
+    }
+
+    private static void assertThreadsEqual(List<ThreadDetail> expected, List<ThreadDetail> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            ThreadDetail e = expected.get(i);
+            ThreadDetail a = actual.get(i);
+            assertEquals(e.getThreadId(), a.getThreadId());
+            assertEquals(e.getThreadName(), a.getThreadName());
+            assertEquals(e.getThreadState(), a.getThreadState());
+            assertEquals(e.getLockName(), a.getLockName());
+            assertEquals(e.getLockOwnerId(), a.getLockOwnerId());
+            assertEquals(e.getLockOwnerName(), a.getLockOwnerName());
+            assertEquals(e.getWaitingForLock(), a.getWaitingForLock());
+            assertFrames(e.getWaitingForSite(), a.getWaitingForSite());
+            assertEquals(e.getHeldLocks(), a.getHeldLocks());
+            assertEquals(e.getBlockTimeMs(), a.getBlockTimeMs());
+            assertFrames(e.getStackTrace(), a.getStackTrace());
+        }
+    }
+
+    private static void assertFrames(StackTraceElement[] expected, StackTraceElement[] actual) {
+        if (expected == null || expected.length == 0) {
+            assertTrue(actual == null || actual.length == 0);
+            return;
+        }
+        assertArrayEquals(expected, actual);
+    }
+}
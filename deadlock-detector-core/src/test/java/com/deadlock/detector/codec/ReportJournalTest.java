@@ -0,0 +1,185 @@
+package com.deadlock.detector.codec;
+
+import com.deadlock.detector.model.DeadlockReport;
+import com.deadlock.detector.model.DeadlockType;
+import com.deadlock.detector.model.ThreadDetail;
+import com.deadlock.detector.reporter.JournalReporter;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ReportJournalTest {
+
+    private static final int SIZE = 16 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void recoversAppendedReportsInOrder() throws IOException {
+        File file = folder.newFile("journal.bin");
+        JournalReporter reporter = new JournalReporter(file, SIZE, JournalReporter.DEFAULT_MAX_FRAMES);
+        for (int i = 0; i < 3; i++) {
+            reporter.report(report(i));
+        }
+        reporter.getJournal().close();
+
+        List<DeadlockReport> recovered = JournalReporter.recover(file);
+        assertEquals(3, recovered.size());
+        for (int i = 0; i < 3; i++) {
+            DeadlockReport report = recovered.get(i);
+            assertEquals(DeadlockType.REENTRANT_LOCK, report.getType());
+            assertEquals(i, report.getTimestamp());
+            assertEquals("report-" + i, report.getMessage());
+            ThreadDetail detail = report.getThreadDetails().get(0);
+            assertEquals("worker-" + i, detail.getThreadName());
+            assertEquals(Arrays.asList("lock-a", "lock-b"), detail.getHeldLocks());
+            assertArrayEquals(stack(i), detail.getStackTrace());
+        }
+    }
+
+    @Test
+    public void resumesAfterReopen() throws IOException {
+        File file = folder.newFile("journal.bin");
+        try (ReportJournal journal = new ReportJournal(file, SIZE, 32)) {
+            journal.append(report(0));
+        }
+        try (ReportJournal journal = new ReportJournal(file, SIZE, 32)) {
+            journal.append(report(1));
+        }
+        assertTimestamps(ReportJournal.recover(file), 0, 2);
+    }
+
+    @Test
+    public void keepsNewestRecordsAfterWrapAround() throws IOException {
+        File file = folder.newFile("journal.bin");
+        int count = 200;
+        try (ReportJournal journal = new ReportJournal(file, ReportJournal.MIN_SIZE + 1024, 32)) {
+            for (int i = 0; i < count; i++) {
+                assertTrue(journal.append(report(i)));
+            }
+        }
+
+        List<DeadlockReport> recovered = ReportJournal.recover(file);
+        assertFalse(recovered.isEmpty());
+        assertTrue(recovered.size() < count);
+        // 留下的是最新的一段连续记录
+        assertTimestamps(recovered, count - recovered.size(), count);
+    }
+
+    @Test
+    public void rejectsReportLargerThanJournal() throws IOException {
+        File file = folder.newFile("journal.bin");
+        char[] text = new char[4 * ReportJournal.MIN_SIZE];
+        Arrays.fill(text, 'x');
+        try (ReportJournal journal = new ReportJournal(file, ReportJournal.MIN_SIZE, 32)) {
+            assertTrue(journal.append(report(0)));
+            int position = journal.getWritePosition();
+            assertFalse(journal.append(new DeadlockReport.Builder().message(new String(text)).build()));
+            // 被拒绝的报告不写入映射区，也不移动写入位置
+            assertEquals(position, journal.getWritePosition());
+        }
+        assertTimestamps(ReportJournal.recover(file), 0, 1);
+    }
+
+    @Test
+    public void skipsTornLastRecord() throws IOException {
+        File file = folder.newFile("journal.bin");
+        int lastRecord;
+        try (ReportJournal journal = new ReportJournal(file, SIZE, 32)) {
+            journal.append(report(0));
+            journal.append(report(1));
+            lastRecord = journal.getWritePosition();
+            journal.append(report(2));
+        }
+        // 记录头已写完，记录体只写了一部分
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(ReportJournal.HEADER_SIZE + lastRecord + ReportJournal.RECORD_HEADER_SIZE + 8);
+            raf.write(new byte[16]);
+        }
+        assertTimestamps(ReportJournal.recover(file), 0, 2);
+    }
+
+    @Test
+    public void skipsTruncatedLastRecord() throws IOException {
+        File file = folder.newFile("journal.bin");
+        int count = 0;
+        int lastRecord;
+        try (ReportJournal journal = new ReportJournal(file, SIZE, 32)) {
+            // 写到超过最小文件大小，截断后的文件仍会被当作日志读取
+            do {
+                lastRecord = journal.getWritePosition();
+                journal.append(report(count++));
+            } while (ReportJournal.HEADER_SIZE + lastRecord < ReportJournal.MIN_SIZE);
+        }
+        // 文件在最后一条记录中间被截断
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(ReportJournal.HEADER_SIZE + lastRecord + ReportJournal.RECORD_HEADER_SIZE + 4);
+        }
+        assertTimestamps(ReportJournal.recover(file), 0, count - 1);
+    }
+
+    @Test
+    public void clearDropsAllRecords() throws IOException {
+        File file = folder.newFile("journal.bin");
+        try (ReportJournal journal = new ReportJournal(file, SIZE, 32)) {
+            journal.append(report(0));
+            journal.clear();
+            journal.append(report(1));
+        }
+        assertTimestamps(ReportJournal.recover(file), 1, 2);
+    }
+
+    @Test
+    public void ignoresMissingOrForeignFile() throws IOException {
+        assertTrue(ReportJournal.recover(new File(folder.getRoot(), "missing.bin")).isEmpty());
+        File foreign = folder.newFile("foreign.bin");
+        try (RandomAccessFile raf = new RandomAccessFile(foreign, "rw")) {
+            raf.setLength(SIZE);
+        }
+        assertTrue(ReportJournal.recover(foreign).isEmpty());
+    }
+
+    private static void assertTimestamps(List<DeadlockReport> reports, int from, int to) {
+        assertEquals(to - from, reports.size());
+        for (int i = from; i < to; i++) {
+            assertEquals(i, reports.get(i - from).getTimestamp());
+        }
+    }
+
+    static DeadlockReport report(int index) {
+        return new DeadlockReport.Builder()
+                .type(DeadlockType.REENTRANT_LOCK)
+                .timestamp(index)
+                .message("report-" + index)
+                .addThreadDetail(new ThreadDetail.Builder()
+                        .threadId(index + 1)
+                        .threadName("worker-" + index)
+                        .threadState("WAITING")
+                        .waitingForLock("lock-c")
+                        .heldLocks(Arrays.asList("lock-a", "lock-b"))
+                        .stackTrace(stack(index))
+                        .build())
+                .build();
+    }
+
+    static StackTraceElement[] stack(int index) {
+        return new StackTraceElement[]{
+                new StackTraceElement("java.util.concurrent.locks.LockSupport", "park", "LockSupport.java", 211),
+                new StackTraceElement("com.example.Worker", "step" + index, "Worker.java", 10 + index),
+                new StackTraceElement("java.lang.Thread", "run", "Thread.java", 840),
+        };
+    }
+}
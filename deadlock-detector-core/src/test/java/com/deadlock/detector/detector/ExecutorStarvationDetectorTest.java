@@ -0,0 +1,172 @@
+package com.deadlock.detector.detector;
+
+import com.deadlock.detector.model.DeadlockReport;
+import com.deadlock.detector.model.DeadlockType;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ExecutorStarvationDetectorTest {
+
+    private static final long TIMEOUT_MS = 5000;
+
+    private final List<DeadlockReport> reports = new ArrayList<>();
+    private final ExecutorStarvationDetector detector = new ExecutorStarvationDetector(0, reports::add);
+    private final List<TrackedThreadPoolExecutor> pools = new ArrayList<>();
+
+    @After
+    public void tearDown() throws InterruptedException {
+        detector.destroy();
+        for (TrackedThreadPoolExecutor pool : pools) {
+            // 中断卡在get()上的工作线程
+            pool.shutdownNow();
+            pool.awaitTermination(1, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void reportsFixedPoolWhoseWorkersWaitOnQueuedTasks() throws InterruptedException {
+        TrackedThreadPoolExecutor pool = track(TrackedThreadPoolExecutor.newFixedThreadPool("fixed", 2, true));
+        submitNested(pool, 2);
+
+        awaitReport();
+        DeadlockReport report = reports.get(0);
+        assertEquals(DeadlockType.EXECUTOR_STARVATION, report.getType());
+        assertTrue(report.getMessage().contains("\"fixed\" deadlocked"));
+        assertEquals(2, report.getThreadDetails().size());
+        // 卡住的工作线程带上被等待任务的提交位置
+        assertTrue(report.getThreadDetails().get(0).getWaitingForSite().length > 0);
+
+        // 状态不变时不重复报告
+        detector.detect();
+        assertEquals(1, reports.size());
+    }
+
+    @Test
+    public void reportsPoolKeptAtCoreSizeByUnboundedQueue() throws InterruptedException {
+        // 核心线程数小于最大线程数，但无界队列不会满，线程池不会再新建线程
+        TrackedThreadPoolExecutor pool = track(new TrackedThreadPoolExecutor("unbounded", 1, 4,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                Executors.defaultThreadFactory(), false));
+        submitNested(pool, 1);
+
+        awaitReport();
+        assertTrue(reports.get(0).getMessage().contains("\"unbounded\" deadlocked"));
+    }
+
+    @Test
+    public void ignoresPoolThatCanStillGrow() throws InterruptedException {
+        // 队列已满，下一次提交会新建线程执行排队任务
+        TrackedThreadPoolExecutor pool = track(new TrackedThreadPoolExecutor("bounded", 1, 4,
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(1),
+                Executors.defaultThreadFactory(), false));
+        submitNested(pool, 1);
+        awaitAwaiting(pool, 1);
+
+        detector.detect();
+        assertTrue(reports.isEmpty());
+    }
+
+    @Test
+    public void reportsQueueLatency() throws InterruptedException {
+        ExecutorStarvationDetector latencyDetector = new ExecutorStarvationDetector(50, reports::add);
+        TrackedThreadPoolExecutor pool = track(TrackedThreadPoolExecutor.newFixedThreadPool("slow", 1, false));
+        latencyDetector.track(pool);
+        final CountDownLatch release = new CountDownLatch(1);
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                    // 测试结束
+                }
+            }
+        });
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+        try {
+            latencyDetector.detect();
+            assertTrue(reports.isEmpty());
+
+            Thread.sleep(100);
+            latencyDetector.detect();
+            assertEquals(1, reports.size());
+            DeadlockReport report = reports.get(0);
+            assertTrue(report.getMessage().contains("\"slow\" queue latency"));
+            assertEquals(1, report.getThreadDetails().size());
+            assertEquals(1, report.getOtherThreadDetails().size());
+            assertEquals("QUEUED", report.getOtherThreadDetails().get(0).getThreadState());
+        } finally {
+            release.countDown();
+            latencyDetector.destroy();
+        }
+    }
+
+    private TrackedThreadPoolExecutor track(TrackedThreadPoolExecutor pool) {
+        pools.add(pool);
+        detector.track(pool);
+        return pool;
+    }
+
+    /**
+     * 每个外层任务向同一个线程池提交内层任务并等待结果；所有外层任务都占住线程后才提交，
+     * 否则线程数未到核心线程数时内层任务会直接拿到新线程
+     */
+    private static void submitNested(final TrackedThreadPoolExecutor pool, int outerTasks) {
+        final CountDownLatch started = new CountDownLatch(outerTasks);
+        for (int i = 0; i < outerTasks; i++) {
+            pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        started.countDown();
+                        started.await();
+                        Future<?> inner = pool.submit(new Runnable() {
+                            @Override
+                            public void run() {
+                            }
+                        });
+                        inner.get();
+                    } catch (InterruptedException | ExecutionException ignored) {
+                        // 测试结束
+                    }
+                }
+            });
+        }
+    }
+
+    private void awaitReport() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (reports.isEmpty() && System.currentTimeMillis() < deadline) {
+            detector.detect();
+            Thread.sleep(10);
+        }
+        assertEquals(1, reports.size());
+    }
+
+    private static void awaitAwaiting(TrackedThreadPoolExecutor pool, int workers) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (pool.getAwaitingSnapshot().size() < workers && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(workers, pool.getAwaitingSnapshot().size());
+    }
+}
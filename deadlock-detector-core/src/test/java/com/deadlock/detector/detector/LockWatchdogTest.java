@@ -0,0 +1,153 @@
+package com.deadlock.detector.detector;
+
+import com.deadlock.detector.model.DeadlockReport;
+import com.deadlock.detector.model.DeadlockType;
+import com.deadlock.detector.model.ThreadDetail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 看门狗在没有周期检测的情况下，按阈值发现被追踪锁上的死锁
+ */
+public class LockWatchdogTest {
+
+    private static final long THRESHOLD_MS = 100;
+
+    private final BlockingQueue<DeadlockReport> reports = new LinkedBlockingQueue<>();
+    private final ReentrantLockDetector detector = new ReentrantLockDetector(reports::add);
+    private final List<Thread> threads = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        // 快照服务全局共用，其他测试留下的快照中没有本测试新建的线程
+        ThreadSnapshotService.getDefault().beginTick();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        for (Thread thread : threads) {
+            thread.join(1000);
+        }
+        detector.destroy();
+    }
+
+    @Test
+    public void reportsDeadlockAfterThreshold() throws InterruptedException {
+        detector.startWatchdog(THRESHOLD_MS);
+        Lock a = detector.createTrackedLock("lock-a");
+        Lock b = detector.createTrackedLock("lock-b");
+        CountDownLatch bothHeld = new CountDownLatch(2);
+        long start = System.nanoTime();
+        start(lockBoth(a, b, bothHeld), "worker-1");
+        start(lockBoth(b, a, bothHeld), "worker-2");
+
+        DeadlockReport report = reports.poll(5, TimeUnit.SECONDS);
+        assertNotNull(report);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMs >= THRESHOLD_MS);
+        assertEquals(DeadlockType.REENTRANT_LOCK, report.getType());
+        assertTrue(report.getMessage().contains("lock watchdog"));
+        List<String> names = new ArrayList<>();
+        for (ThreadDetail detail : report.getThreadDetails()) {
+            names.add(detail.getThreadName());
+        }
+        assertTrue(names.contains("worker-1"));
+        assertTrue(names.contains("worker-2"));
+
+        // 同一个环在复查时不重复报告
+        assertNull(reports.poll(3 * THRESHOLD_MS, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void ignoresWaitsShorterThanThreshold() throws InterruptedException {
+        detector.startWatchdog(THRESHOLD_MS);
+        final Lock lock = detector.createTrackedLock("lock-a");
+        lock.lock();
+        Thread waiter = start(new Runnable() {
+            @Override
+            public void run() {
+                lock.lock();
+                lock.unlock();
+            }
+        }, "waiter");
+        Thread.sleep(THRESHOLD_MS / 2);
+        lock.unlock();
+        waiter.join(1000);
+
+        assertNull(reports.poll(3 * THRESHOLD_MS, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void ignoresLongWaitWithoutCycle() throws InterruptedException {
+        detector.startWatchdog(THRESHOLD_MS);
+        final Lock lock = detector.createTrackedLock("lock-a");
+        lock.lock();
+        try {
+            start(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        lock.lockInterruptibly();
+                        lock.unlock();
+                    } catch (InterruptedException ignored) {
+                        // 测试结束
+                    }
+                }
+            }, "waiter");
+            // 持有者没有在等锁，等待再久也不是死锁
+            assertNull(reports.poll(4 * THRESHOLD_MS, TimeUnit.MILLISECONDS));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 先拿first，等两个线程都拿到第一把锁后再拿second
+     */
+    private static Runnable lockBoth(final Lock first, final Lock second, final CountDownLatch bothHeld) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    first.lockInterruptibly();
+                    try {
+                        bothHeld.countDown();
+                        bothHeld.await();
+                        second.lockInterruptibly();
+                        second.unlock();
+                    } finally {
+                        first.unlock();
+                    }
+                } catch (InterruptedException ignored) {
+                    // 测试结束时中断解开死锁
+                }
+            }
+        };
+    }
+
+    private Thread start(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        threads.add(thread);
+        thread.start();
+        return thread;
+    }
+}
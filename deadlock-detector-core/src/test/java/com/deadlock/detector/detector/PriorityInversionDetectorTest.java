@@ -0,0 +1,165 @@
+package com.deadlock.detector.detector;
+
+import com.deadlock.detector.model.DeadlockReport;
+import com.deadlock.detector.model.DeadlockType;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.Lock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PriorityInversionDetectorTest {
+
+    private static final long TIMEOUT_MS = 5000;
+
+    private final List<DeadlockReport> reports = new CopyOnWriteArrayList<>();
+    private final ReentrantLockDetector lockDetector = new ReentrantLockDetector(reports::add);
+    private final PriorityAccess access = new PriorityAccess();
+    private final PriorityInversionDetector detector =
+            new PriorityInversionDetector(lockDetector, access, 0, reports::add);
+
+    /**
+     * 按线程记录的优先级，不依赖平台是否支持Java优先级
+     */
+    private static final class PriorityAccess implements ThreadPriorityAccess {
+        final Map<Long, Integer> priorities = new ConcurrentHashMap<>();
+
+        @Override
+        public int getPriority(Thread thread) {
+            Integer priority = priorities.get(thread.getId());
+            return priority != null ? priority : Thread.NORM_PRIORITY;
+        }
+
+        @Override
+        public boolean setPriority(Thread thread, int priority) {
+            priorities.put(thread.getId(), priority);
+            return true;
+        }
+    }
+
+    @After
+    public void tearDown() {
+        detector.destroy();
+        lockDetector.destroy();
+    }
+
+    @Test
+    public void boostsLowPriorityOwnerUntilWaitEnds() throws InterruptedException {
+        detector.setBoostOwners(true);
+        final Lock lock = lockDetector.createTrackedLock("shared");
+        final CountDownLatch held = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch exit = new CountDownLatch(1);
+        Thread owner = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    lock.lock();
+                    try {
+                        held.countDown();
+                        release.await();
+                    } finally {
+                        lock.unlock();
+                    }
+                    // 释放后继续存活，只恢复仍在运行的线程的优先级
+                    exit.await();
+                } catch (InterruptedException ignored) {
+                    // 测试结束
+                }
+            }
+        }, "low");
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                lock.lock();
+                lock.unlock();
+            }
+        }, "high");
+        access.setPriority(owner, 1);
+        access.setPriority(waiter, 10);
+
+        owner.start();
+        held.await();
+        waiter.start();
+        awaitWaiting(waiter);
+
+        detector.detect();
+        assertEquals(1, reports.size());
+        assertEquals(DeadlockType.PRIORITY_INVERSION, reports.get(0).getType());
+        assertEquals(10, access.getPriority(owner));
+
+        release.countDown();
+        waiter.join(TIMEOUT_MS);
+        // 等待结束时恢复持有者原来的优先级
+        assertEquals(1, access.getPriority(owner));
+        List<PriorityInversionDetector.InversionRecord> records = detector.getRecentInversions();
+        assertEquals(1, records.size());
+        assertEquals("high", records.get(0).getWaiterName());
+        assertEquals("low", records.get(0).getOwnerName());
+        assertTrue(records.get(0).isBoosted());
+
+        // 反转已结束，再次检测不报告也不提升
+        detector.detect();
+        assertEquals(1, reports.size());
+        assertEquals(1, access.getPriority(owner));
+        exit.countDown();
+        owner.join(TIMEOUT_MS);
+    }
+
+    @Test
+    public void ignoresOwnerWithEqualPriority() throws InterruptedException {
+        final Lock lock = lockDetector.createTrackedLock("shared");
+        final CountDownLatch held = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Thread owner = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                lock.lock();
+                try {
+                    held.countDown();
+                    release.await();
+                } catch (InterruptedException ignored) {
+                    // 测试结束
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }, "owner");
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                lock.lock();
+                lock.unlock();
+            }
+        }, "waiter");
+
+        owner.start();
+        held.await();
+        waiter.start();
+        awaitWaiting(waiter);
+
+        detector.detect();
+        release.countDown();
+        waiter.join(TIMEOUT_MS);
+        owner.join(TIMEOUT_MS);
+        assertTrue(reports.isEmpty());
+        assertTrue(detector.getRecentInversions().isEmpty());
+    }
+
+    private void awaitWaiting(Thread waiter) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!lockDetector.getWaitingLocks().containsKey(waiter.getId())
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(lockDetector.getWaitingLocks().containsKey(waiter.getId()));
+    }
+}
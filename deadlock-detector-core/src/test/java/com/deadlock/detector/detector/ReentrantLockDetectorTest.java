@@ -0,0 +1,169 @@
+package com.deadlock.detector.detector;
+
+import com.deadlock.detector.model.DeadlockReport;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ReentrantLockDetectorTest {
+
+    private final List<DeadlockReport> reports = new ArrayList<>();
+    private final ReentrantLockDetector detector = new ReentrantLockDetector(reports::add);
+
+    /**
+     * 记录持有区间的开始和结束
+     */
+    private static final class RecordingTracer implements LockTracer {
+        final List<String> events = new ArrayList<>();
+        int waits;
+
+        @Override
+        public synchronized Object waitBegin(LockWrapper lock, long ownerThreadId) {
+            waits++;
+            return null;
+        }
+
+        @Override
+        public void waitEnd(Object token, LockWrapper lock, boolean acquired) {
+        }
+
+        @Override
+        public synchronized Object holdBegin(LockWrapper lock) {
+            String token = lock.getName() + "@" + Thread.currentThread().getName();
+            events.add("begin " + token);
+            return token;
+        }
+
+        @Override
+        public synchronized void holdEnd(Object token, LockWrapper lock) {
+            events.add("end " + token);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        detector.destroy();
+    }
+
+    @Test
+    public void tracesExclusiveHoldOnceAcrossReentry() {
+        RecordingTracer tracer = new RecordingTracer();
+        detector.setLockTracer(tracer);
+        Lock lock = detector.createTrackedLock("lock-a");
+        String self = Thread.currentThread().getName();
+
+        lock.lock();
+        lock.lock();
+        lock.unlock();
+        lock.unlock();
+
+        assertEquals(2, tracer.events.size());
+        assertEquals("begin lock-a@" + self, tracer.events.get(0));
+        assertEquals("end lock-a@" + self, tracer.events.get(1));
+    }
+
+    @Test
+    public void onlyNonFairReentrantLockSkipsWaitRegistration() {
+        RecordingTracer tracer = new RecordingTracer();
+        detector.setLockTracer(tracer);
+        Lock[] locks = {
+                detector.wrap(new ReentrantLock(), "plain"),
+                detector.wrap(new ReentrantLock(true), "fair"),
+                detector.wrap(new ReentrantReadWriteLock(true).writeLock(), "fair-write"),
+        };
+        for (Lock lock : locks) {
+            lock.lock();
+            lock.unlock();
+        }
+        // 无竞争的非公平ReentrantLock直接获取；公平锁，包括公平的读写锁，都登记等待
+        assertEquals(2, tracer.waits);
+    }
+
+    @Test
+    public void unlockByNonOwnerLeavesTrackingIntact() throws InterruptedException {
+        RecordingTracer tracer = new RecordingTracer();
+        detector.setLockTracer(tracer);
+        final LockWrapper lock = (LockWrapper) detector.createTrackedLock("lock-a");
+        final CountDownLatch held = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Thread owner = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                lock.lock();
+                held.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                lock.unlock();
+            }
+        }, "owner");
+        owner.start();
+        held.await();
+
+        try {
+            lock.unlock();
+            fail();
+        } catch (IllegalMonitorStateException expected) {
+        }
+        assertEquals(owner.getId(), lock.getOwnerThreadId());
+        assertEquals(1, tracer.events.size());
+
+        release.countDown();
+        owner.join();
+        assertEquals(-1, lock.getOwnerThreadId());
+        assertEquals("end lock-a@owner", tracer.events.get(1));
+    }
+
+    @Test
+    public void skipsHoldTracingForSharedLocks() throws InterruptedException {
+        RecordingTracer tracer = new RecordingTracer();
+        detector.setLockTracer(tracer);
+        ReentrantReadWriteLock rw = new ReentrantReadWriteLock();
+        final Lock read = detector.wrap(rw.readLock(), "read");
+        Lock write = detector.wrap(rw.writeLock(), "write");
+
+        // 两个读者交错持有，释放时不能提交另一个线程的持有事件
+        final CountDownLatch held = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                read.lock();
+                held.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                    // 测试结束
+                } finally {
+                    read.unlock();
+                }
+            }
+        }, "reader");
+        reader.start();
+        held.await();
+        read.lock();
+        release.countDown();
+        reader.join();
+        read.unlock();
+
+        write.lock();
+        write.unlock();
+
+        String self = Thread.currentThread().getName();
+        assertEquals(2, tracer.events.size());
+        assertEquals("begin write@" + self, tracer.events.get(0));
+        assertEquals("end write@" + self, tracer.events.get(1));
+    }
+}
@@ -0,0 +1,153 @@
+package com.deadlock.detector.detector;
+
+import com.deadlock.detector.model.DeadlockReport;
+import com.deadlock.detector.model.DeadlockType;
+import com.deadlock.detector.model.ThreadDetail;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class StuckThreadDetectorTest {
+
+    private static final long THRESHOLD_MS = 100;
+
+    private final List<DeadlockReport> reports = new ArrayList<>();
+    private final StuckThreadDetector detector = new StuckThreadDetector(THRESHOLD_MS, reports::add);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<Thread> threads = new ArrayList<>();
+
+    @After
+    public void tearDown() throws InterruptedException {
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.interrupt();
+            thread.join(1000);
+        }
+        detector.destroy();
+    }
+
+    @Test
+    public void reportsThreadsStuckAtSamePointOnce() throws InterruptedException {
+        start(new Runnable() {
+            @Override
+            public void run() {
+                awaitRelease();
+            }
+        }, "stuck-parked");
+        start(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(60_000);
+                } catch (InterruptedException ignored) {
+                    // 测试结束
+                }
+            }
+        }, "stuck-sleeping");
+
+        Map<String, ThreadDetail> stuck = detectAfterThreshold();
+        ThreadDetail parked = stuck.get("stuck-parked");
+        assertNotNull(parked);
+        assertTrue(parked.getWaitingForLock().startsWith("PARKED"));
+        assertTrue(parked.getBlockTimeMs() >= THRESHOLD_MS);
+        assertEquals("WAITING", stuck.get("stuck-sleeping").getWaitingForLock());
+
+        // 堆栈不变时不重复报告
+        reports.clear();
+        ThreadSnapshotService.getDefault().beginTick();
+        detector.detect();
+        assertFalse(stuckThreads().containsKey("stuck-parked"));
+    }
+
+    @Test
+    public void skipsIdlePoolThreadsAndIgnoredNames() throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(1);
+        try {
+            pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            });
+            detector.ignoreThread("ignored-");
+            start(new Runnable() {
+                @Override
+                public void run() {
+                    awaitRelease();
+                }
+            }, "ignored-worker");
+
+            Map<String, ThreadDetail> stuck = detectAfterThreshold();
+            for (String name : stuck.keySet()) {
+                assertFalse(name, name.startsWith("pool-"));
+            }
+            assertFalse(stuck.containsKey("ignored-worker"));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * 隔一个阈值检测两次，返回第二次报告的线程
+     */
+    private Map<String, ThreadDetail> detectAfterThreshold() throws InterruptedException {
+        ThreadSnapshotService.getDefault().beginTick();
+        detector.detect();
+        Thread.sleep(THRESHOLD_MS + 50);
+        ThreadSnapshotService.getDefault().beginTick();
+        detector.detect();
+        for (DeadlockReport report : reports) {
+            assertEquals(DeadlockType.STUCK_THREAD, report.getType());
+        }
+        return stuckThreads();
+    }
+
+    /**
+     * 进程中还有其他线程，只按名称查看本测试的线程
+     */
+    private Map<String, ThreadDetail> stuckThreads() {
+        Map<String, ThreadDetail> byName = new HashMap<>();
+        for (DeadlockReport report : reports) {
+            for (ThreadDetail detail : report.getThreadDetails()) {
+                byName.put(detail.getThreadName(), detail);
+            }
+        }
+        return byName;
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await(60, TimeUnit.SECONDS);
+        } catch (InterruptedException ignored) {
+            // 测试结束
+        }
+    }
+
+    private void start(Runnable runnable, String name) throws InterruptedException {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        threads.add(thread);
+        thread.start();
+        // 等线程进入等待状态
+        long deadline = System.currentTimeMillis() + 1000;
+        while (thread.getState() == Thread.State.RUNNABLE || thread.getState() == Thread.State.NEW) {
+            if (System.currentTimeMillis() > deadline) {
+                break;
+            }
+            Thread.sleep(5);
+        }
+    }
+}
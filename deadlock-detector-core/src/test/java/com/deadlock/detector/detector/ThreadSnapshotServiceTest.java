@@ -0,0 +1,118 @@
+package com.deadlock.detector.detector;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ThreadSnapshotServiceTest {
+
+    @Test
+    public void walksEachStackOncePerTick() throws InterruptedException {
+        ThreadSnapshotService service = new ThreadSnapshotService(60_000);
+        Thread thread = parkedThread(1);
+        try {
+            ThreadSnapshotService.Snapshot snapshot = service.current();
+            assertSame(snapshot, service.current());
+            assertSame(thread, snapshot.findThread(thread.getId()));
+            StackTraceElement[] stack = snapshot.getStackTrace(thread);
+            assertSame(stack, snapshot.getStackTrace(thread));
+            assertEquals(1, service.getStackWalkCount());
+
+            service.beginTick();
+            assertNotSame(snapshot, service.current());
+            assertEquals(2, service.getCaptureCount());
+        } finally {
+            thread.interrupt();
+        }
+    }
+
+    @Test
+    public void keepsFullStacksForDetection() throws InterruptedException {
+        ThreadSnapshotService service = new ThreadSnapshotService(60_000);
+        Thread thread = parkedThread(200);
+        try {
+            // 持锁帧可能在很深的位置，快照不能截断
+            StackTraceElement[] stack = service.current().getStackTrace(thread);
+            assertTrue(stack.length > 200);
+        } finally {
+            thread.interrupt();
+        }
+    }
+
+    @Test
+    public void dumpsAllThreadsOncePerSnapshot() throws InterruptedException {
+        ThreadSnapshotService service = new ThreadSnapshotService(60_000);
+        Thread thread = parkedThread(1);
+        try {
+            ThreadSnapshotService.Snapshot snapshot = service.current();
+            snapshot.getStackTrace(thread);
+            Map<Thread, StackTraceElement[]> all = snapshot.getAllStackTraces();
+            assertEquals(snapshot.size(), all.size());
+            assertEquals(Thread.State.TIMED_WAITING, snapshot.getState(thread));
+            // 转储后单独请求的堆栈也来自转储，不再单独遍历
+            assertSame(all.get(thread), snapshot.getStackTrace(thread));
+            snapshot.getAllStackTraces();
+            assertEquals(1, service.getDumpCount());
+            assertEquals(1, service.getStackWalkCount());
+        } finally {
+            thread.interrupt();
+        }
+    }
+
+    @Test
+    public void takesStatesFromTheDump() {
+        ThreadSnapshotService service = new ThreadSnapshotService(60_000);
+        service.setDumper(new ThreadSnapshotService.Dumper() {
+            @Override
+            public void dumpAll(List<Thread> threads, StackTraceElement[][] stacks, Thread.State[] states) {
+                for (int i = 0; i < threads.size(); i++) {
+                    stacks[i] = new StackTraceElement[0];
+                    states[i] = Thread.State.BLOCKED;
+                }
+            }
+        });
+        ThreadSnapshotService.Snapshot snapshot = service.current();
+        Thread current = Thread.currentThread();
+        assertEquals(Thread.State.RUNNABLE, snapshot.getState(current));
+        snapshot.getAllStackTraces();
+        assertEquals(Thread.State.BLOCKED, snapshot.getState(current));
+        assertEquals(0, snapshot.getStackTrace(current).length);
+    }
+
+    /**
+     * 启动一个在depth层递归后阻塞的线程
+     */
+    private static Thread parkedThread(final int depth) throws InterruptedException {
+        final CountDownLatch parked = new CountDownLatch(1);
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                recurse(depth, parked);
+            }
+        }, "snapshot-test");
+        thread.setDaemon(true);
+        thread.start();
+        parked.await();
+        return thread;
+    }
+
+    private static void recurse(int depth, CountDownLatch parked) {
+        if (depth > 0) {
+            recurse(depth - 1, parked);
+            return;
+        }
+        parked.countDown();
+        try {
+            Thread.sleep(60_000);
+        } catch (InterruptedException ignored) {
+            // 测试结束
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.deadlock.detector.detector;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TrackedThreadPoolExecutorTest {
+
+    private static final long TIMEOUT_MS = 5000;
+
+    private final TrackedThreadPoolExecutor pool = TrackedThreadPoolExecutor.newFixedThreadPool("tracked", 1, false);
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void tearDown() throws InterruptedException {
+        release.countDown();
+        pool.shutdownNow();
+        pool.awaitTermination(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void removesQueuedTaskByOriginalRunnable() throws InterruptedException {
+        occupyWorker();
+        Runnable first = new NamedTask("first");
+        Runnable second = new NamedTask("second");
+        pool.execute(first);
+        pool.execute(second);
+
+        assertTrue(pool.remove(first));
+        assertFalse(pool.remove(first));
+        assertEquals(1, pool.getQueue().size());
+    }
+
+    @Test
+    public void shutdownNowReturnsOriginalRunnables() throws InterruptedException {
+        occupyWorker();
+        Runnable first = new NamedTask("first");
+        Runnable second = new NamedTask("second");
+        pool.execute(first);
+        pool.execute(second);
+
+        List<Runnable> pending = pool.shutdownNow();
+        assertEquals(Arrays.asList(first, second), pending);
+    }
+
+    /**
+     * 让唯一的工作线程忙碌，后续任务留在队列中
+     */
+    private void occupyWorker() throws InterruptedException {
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    release.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        assertTrue(started.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    }
+
+    private static final class NamedTask implements Runnable {
+        private final String name;
+
+        NamedTask(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void run() {
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.deadlock.detector.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class StackDictionaryTest {
+
+    @Test
+    public void internsEqualStacksToOneArray() {
+        StackDictionary dictionary = new StackDictionary(16, 64);
+        StackTraceElement[] first = dictionary.intern(stack(1));
+        StackTraceElement[] second = dictionary.intern(stack(1));
+        assertSame(first, second);
+        assertArrayEquals(stack(1), first);
+        assertEquals(dictionary.idOf(stack(1)), dictionary.idOf(first));
+        assertNotEquals(dictionary.idOf(stack(1)), dictionary.idOf(stack(2)));
+        // 不同堆栈中的相同栈帧共用一个对象
+        assertSame(first[0], dictionary.intern(stack(2))[0]);
+        assertEquals(StackDictionary.NO_ID, dictionary.idOf(null));
+    }
+
+    @Test
+    public void keepsDeduplicatingAfterFillingUp() {
+        StackDictionary dictionary = new StackDictionary(8, 1024);
+        for (int i = 0; i < 100; i++) {
+            dictionary.intern(stack(i));
+        }
+        assertTrue(dictionary.getRotationCount() > 0);
+        assertTrue(dictionary.getStackCount() <= 16);
+        StackTraceElement[] interned = dictionary.intern(stack(1000));
+        assertSame(interned, dictionary.intern(stack(1000)));
+        assertTrue(dictionary.idOf(stack(1000)) != StackDictionary.NO_ID);
+    }
+
+    @Test
+    public void promotesStacksStillInUseAndEvictsTheRest() {
+        StackDictionary dictionary = new StackDictionary(4, 1024);
+        StackTraceElement[] hot = dictionary.intern(stack(0));
+        int hotId = dictionary.idOf(hot);
+        int coldId = dictionary.idOf(stack(1));
+        for (int i = 2; i < 40; i++) {
+            dictionary.intern(stack(i));
+            // 一直在用的堆栈每代都被提升，数组和id都不变
+            assertSame(hot, dictionary.intern(stack(0)));
+        }
+        assertEquals(hotId, dictionary.idOf(stack(0)));
+        assertSame(hot, dictionary.getStack(hotId));
+        assertNull(dictionary.getStack(coldId));
+    }
+
+    private static StackTraceElement[] stack(int index) {
+        return new StackTraceElement[]{
+                new StackTraceElement("java.lang.Object", "wait", "Object.java", 328),
+                new StackTraceElement("com.example.Task" + index, "run", "Task.java", index),
+        };
+    }
+}
@@ -0,0 +1,72 @@
+package com.deadlock.detector.model;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StackProfileTest {
+
+    private static final StackTraceElement RUN = frame("java.lang.Thread", "run", 840);
+    private static final StackTraceElement LOOP = frame("android.os.Looper", "loop", 193);
+    private static final StackTraceElement DRAW = frame("com.example.View", "draw", 12);
+    private static final StackTraceElement WAIT = frame("java.lang.Object", "wait", 0);
+
+    @Test
+    public void aggregatesSharedPrefixes() {
+        StackProfile profile = new StackProfile();
+        // 下标0为栈顶
+        profile.add(new StackTraceElement[]{DRAW, LOOP, RUN});
+        profile.add(new StackTraceElement[]{DRAW, LOOP, RUN});
+        profile.add(new StackTraceElement[]{WAIT, LOOP, RUN});
+        profile.add(new StackTraceElement[0]);
+        profile.add(null);
+
+        assertEquals(3, profile.getSampleCount());
+        // RUN、LOOP共用，DRAW和WAIT各一个
+        assertEquals(4, profile.getNodeCount());
+        assertEquals(0, profile.getTruncatedSamples());
+        assertEquals(Arrays.asList(
+                "java.lang.Thread.run:840;android.os.Looper.loop:193;com.example.View.draw:12 2",
+                "java.lang.Thread.run:840;android.os.Looper.loop:193;java.lang.Object.wait 1"),
+                profile.toFoldedLines());
+    }
+
+    @Test
+    public void truncatesSamplesBeyondNodeCap() {
+        StackProfile profile = new StackProfile(3);
+        profile.add(new StackTraceElement[]{DRAW, LOOP, RUN});
+        for (int i = 0; i < 100; i++) {
+            profile.add(new StackTraceElement[]{frame("com.example.Task" + i, "run", 1), LOOP, RUN});
+        }
+
+        // 节点数不随采样增长，超出上限的采样记在已有的最深节点上
+        assertEquals(3, profile.getNodeCount());
+        assertEquals(101, profile.getSampleCount());
+        assertEquals(100, profile.getTruncatedSamples());
+        assertEquals(Arrays.asList(
+                "java.lang.Thread.run:840;android.os.Looper.loop:193 100",
+                "java.lang.Thread.run:840;android.os.Looper.loop:193;com.example.View.draw:12 1"),
+                profile.toFoldedLines());
+    }
+
+    @Test
+    public void copyIsIndependentOfLaterSamples() {
+        StackProfile profile = new StackProfile();
+        profile.add(new StackTraceElement[]{DRAW, RUN});
+        StackProfile copy = profile.copy();
+        profile.add(new StackTraceElement[]{WAIT, RUN});
+        profile.reset();
+
+        assertTrue(profile.isEmpty());
+        assertEquals(0, profile.getNodeCount());
+        assertEquals(1, copy.getSampleCount());
+        assertEquals(Arrays.asList("java.lang.Thread.run:840;com.example.View.draw:12 1"), copy.toFoldedLines());
+    }
+
+    private static StackTraceElement frame(String className, String method, int line) {
+        return new StackTraceElement(className, method, "Source.java", line);
+    }
+}
@@ -0,0 +1,76 @@
+package com.deadlock.detector.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ThreadStackGroupTest {
+
+    private static final StackTraceElement[] IDLE = {
+            new StackTraceElement("java.util.concurrent.locks.LockSupport", "park", "LockSupport.java", 211),
+            new StackTraceElement("java.util.concurrent.ThreadPoolExecutor", "getTask", "ThreadPoolExecutor.java", 1062),
+    };
+    private static final StackTraceElement[] BUSY = {
+            new StackTraceElement("com.example.Worker", "compute", "Worker.java", 20),
+    };
+
+    @Test
+    public void groupsByStateAndStackContent() {
+        List<ThreadDetail> details = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            // 内容相同但不是同一个数组
+            details.add(detail(i, "WAITING", IDLE.clone()));
+        }
+        details.add(detail(10, "TIMED_WAITING", IDLE.clone()));
+        details.add(detail(11, "RUNNABLE", BUSY));
+        details.add(detail(12, "BLOCKED", BUSY));
+        details.add(detail(13, "WAITING", null));
+
+        List<ThreadStackGroup> groups = ThreadStackGroup.group(details);
+        assertEquals(5, groups.size());
+        // BLOCKED最先，其次RUNNABLE，其余按组大小降序
+        assertEquals("BLOCKED", groups.get(0).getThreadState());
+        assertEquals("RUNNABLE", groups.get(1).getThreadState());
+        ThreadStackGroup idle = groups.get(2);
+        assertEquals("WAITING", idle.getThreadState());
+        assertEquals(5, idle.size());
+        assertArrayEquals(IDLE, idle.getStackTrace());
+        assertTrue(idle.getStackId() != StackDictionary.NO_ID);
+        assertEquals(details.get(0).getStackId(), idle.getStackId());
+        assertEquals(0, idle.getThreads().get(0).getThreadId());
+        assertEquals(4, idle.getThreads().get(4).getThreadId());
+        assertEquals(1, groups.get(3).size());
+        assertEquals(1, groups.get(4).size());
+    }
+
+    @Test
+    public void reportGroupsOtherThreadsLazily() {
+        DeadlockReport report = new DeadlockReport.Builder()
+                .addOtherThreadDetail(detail(1, "WAITING", IDLE))
+                .addOtherThreadDetail(detail(2, "WAITING", IDLE))
+                .addOtherThreadDetail(detail(3, "WAITING", null))
+                .build();
+
+        List<ThreadStackGroup> groups = report.getOtherThreadGroups();
+        assertEquals(2, groups.size());
+        assertEquals(2, groups.get(0).size());
+        assertNull(groups.get(1).getStackTrace());
+        assertEquals(groups, report.getOtherThreadGroups());
+    }
+
+    private static ThreadDetail detail(long id, String state, StackTraceElement[] stack) {
+        return new ThreadDetail.Builder()
+                .stackDictionary(StackDictionary.getDefault())
+                .threadId(id)
+                .threadName("thread-" + id)
+                .threadState(state)
+                .stackTrace(stack)
+                .build();
+    }
+}
@@ -0,0 +1,208 @@
+package com.deadlock.detector.reporter;
+
+import com.deadlock.detector.model.DeadlockReport;
+import com.deadlock.detector.model.DeadlockType;
+import com.deadlock.detector.model.ThreadDetail;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AsyncReporterTest {
+
+    private static final long TIMEOUT_MS = 5000;
+
+    private final List<AsyncReporter> reporters = new ArrayList<>();
+
+    /**
+     * 记录收到的批次；gate打开前第一批阻塞在消费线程上
+     */
+    private static final class Downstream implements DeadlockReporter {
+        final List<List<String>> batches = new ArrayList<>();
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch gate = new CountDownLatch(1);
+        String failOn;
+
+        @Override
+        public void report(DeadlockReport report) {
+            reportBatch(Arrays.asList(report));
+        }
+
+        @Override
+        public void reportBatch(List<DeadlockReport> reports) {
+            entered.countDown();
+            try {
+                gate.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            List<String> messages = new ArrayList<>();
+            for (DeadlockReport report : reports) {
+                if (report.getMessage().equals(failOn)) {
+                    throw new IllegalStateException("rejected " + failOn);
+                }
+                messages.add(report.getMessage());
+            }
+            synchronized (this) {
+                batches.add(messages);
+            }
+        }
+
+        synchronized List<String> messages() {
+            List<String> all = new ArrayList<>();
+            for (List<String> batch : batches) {
+                all.addAll(batch);
+            }
+            return all;
+        }
+    }
+
+    @After
+    public void tearDown() {
+        for (AsyncReporter reporter : reporters) {
+            reporter.shutdown(1000);
+        }
+    }
+
+    @Test
+    public void deliversInOrderInBoundedBatches() throws InterruptedException {
+        Downstream downstream = new Downstream();
+        AsyncReporter reporter = newReporter(downstream, 64, 4, AsyncReporter.OverflowPolicy.DROP_OLDEST);
+        reporter.report(report("r0", 0));
+        downstream.entered.await();
+        for (int i = 1; i < 10; i++) {
+            reporter.report(report("r" + i, i));
+        }
+        downstream.gate.countDown();
+        reporter.shutdown(TIMEOUT_MS);
+
+        assertEquals(names("r", 0, 10), downstream.messages());
+        for (List<String> batch : downstream.batches) {
+            assertTrue(batch.size() <= 4);
+        }
+        assertEquals(10, reporter.getSubmittedCount());
+        assertEquals(10, reporter.getDeliveredCount());
+        assertEquals(0, reporter.getDroppedCount());
+        assertEquals(9, reporter.getMaxQueueDepth());
+    }
+
+    @Test
+    public void dropsOldestWhenFull() throws InterruptedException {
+        Downstream downstream = new Downstream();
+        AsyncReporter reporter = newReporter(downstream, 3, 16, AsyncReporter.OverflowPolicy.DROP_OLDEST);
+        reporter.report(report("r0", 0));
+        downstream.entered.await();
+        for (int i = 1; i <= 5; i++) {
+            reporter.report(report("r" + i, i));
+        }
+        assertEquals(3, reporter.getQueueDepth());
+        assertEquals(2, reporter.getDroppedCount());
+
+        downstream.gate.countDown();
+        reporter.shutdown(TIMEOUT_MS);
+        // r0已被消费线程取走，r1和r2被丢弃
+        assertEquals(Arrays.asList("r0", "r3", "r4", "r5"), downstream.messages());
+    }
+
+    @Test
+    public void coalescesDuplicatesWhileOneIsPending() throws InterruptedException {
+        Downstream downstream = new Downstream();
+        AsyncReporter reporter = newReporter(downstream, 16, 16, AsyncReporter.OverflowPolicy.COALESCE);
+        reporter.report(report("busy", 99));
+        downstream.entered.await();
+
+        reporter.report(report("a-first", 1));
+        reporter.report(report("a-second", 1));
+        reporter.report(report("b", 2));
+        assertEquals(1, reporter.getCoalescedCount());
+        assertEquals(2, reporter.getQueueDepth());
+
+        downstream.gate.countDown();
+        awaitDelivered(reporter, 3);
+        // 排队的报告已输出，同一问题的新报告重新入队
+        reporter.report(report("a-third", 1));
+        reporter.shutdown(TIMEOUT_MS);
+        assertEquals(Arrays.asList("busy", "a-first", "b", "a-third"), downstream.messages());
+        assertEquals(1, reporter.getCoalescedCount());
+    }
+
+    @Test
+    public void coalescesReportsWithoutType() throws InterruptedException {
+        Downstream downstream = new Downstream();
+        AsyncReporter reporter = newReporter(downstream, 16, 16, AsyncReporter.OverflowPolicy.COALESCE);
+        reporter.report(report("busy", 99));
+        downstream.entered.await();
+
+        reporter.report(new DeadlockReport.Builder().message("untyped-first").build());
+        reporter.report(new DeadlockReport.Builder().message("untyped-second").build());
+        assertEquals(1, reporter.getCoalescedCount());
+
+        downstream.gate.countDown();
+        reporter.shutdown(TIMEOUT_MS);
+        assertEquals(Arrays.asList("busy", "untyped-first"), downstream.messages());
+    }
+
+    @Test
+    public void countsFailedBatchesAndKeepsConsuming() throws InterruptedException {
+        Downstream downstream = new Downstream();
+        downstream.failOn = "bad";
+        downstream.gate.countDown();
+        AsyncReporter reporter = newReporter(downstream, 16, 1, AsyncReporter.OverflowPolicy.DROP_OLDEST);
+        reporter.report(report("bad", 0));
+        reporter.report(report("good", 1));
+        reporter.shutdown(TIMEOUT_MS);
+
+        assertEquals(Arrays.asList("good"), downstream.messages());
+        assertEquals(1, reporter.getFailedCount());
+        assertEquals(1, reporter.getDeliveredCount());
+
+        // 停止后提交的报告直接丢弃
+        reporter.report(report("late", 2));
+        assertEquals(1, reporter.getDroppedCount());
+    }
+
+    private AsyncReporter newReporter(DeadlockReporter delegate, int capacity, int batchSize,
+                                      AsyncReporter.OverflowPolicy policy) {
+        AsyncReporter reporter = new AsyncReporter(delegate, capacity, batchSize, policy);
+        reporters.add(reporter);
+        return reporter;
+    }
+
+    private static void awaitDelivered(AsyncReporter reporter, long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (reporter.getDeliveredCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, reporter.getDeliveredCount());
+    }
+
+    private static List<String> names(String prefix, int from, int to) {
+        List<String> names = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            names.add(prefix + i);
+        }
+        return names;
+    }
+
+    /**
+     * threadId相同、类型相同的报告在COALESCE下视为同一问题
+     */
+    private static DeadlockReport report(String message, long threadId) {
+        return new DeadlockReport.Builder()
+                .type(DeadlockType.REENTRANT_LOCK)
+                .message(message)
+                .addThreadDetail(new ThreadDetail.Builder()
+                        .threadId(threadId)
+                        .threadName("worker-" + threadId)
+                        .build())
+                .build();
+    }
+}
@@ -0,0 +1,414 @@
+package com.deadlock.detector.reporter;
+
+import com.deadlock.detector.codec.JsonReportCodec;
+import com.deadlock.detector.model.DeadlockReport;
+import com.deadlock.detector.model.DeadlockType;
+import com.deadlock.detector.model.ThreadDetail;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 用本地HttpServer代替采集端，端到端测试批量、压缩、重试和离线spool
+ */
+public class HttpUploadReporterTest {
+
+    private static final long TIMEOUT_MS = 5000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<HttpServer> servers = new ArrayList<>();
+    private final List<HttpUploadReporter> reporters = new ArrayList<>();
+
+    /**
+     * 采集端收到的一次请求
+     */
+    private static final class Upload {
+        final long receivedNanos;
+        final String contentType;
+        final String contentEncoding;
+        final byte[] body;
+
+        Upload(HttpExchange exchange) throws IOException {
+            this.receivedNanos = System.nanoTime();
+            this.contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            this.contentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+            this.body = readAll(exchange.getRequestBody());
+        }
+
+        List<DeadlockReport> reports() throws IOException {
+            List<DeadlockReport> reports = new ArrayList<>();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(new ByteArrayInputStream(body)), StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                reports.add(JsonReportCodec.decode(new StringReader(line)));
+            }
+            return reports;
+        }
+    }
+
+    /**
+     * 记录每个请求并按statuses依次返回状态码，用完后返回200
+     */
+    private static final class Collector implements HttpHandler {
+        final BlockingQueue<Upload> uploads = new LinkedBlockingQueue<>();
+        final int[] statuses;
+        final AtomicInteger requests = new AtomicInteger();
+
+        Collector(int... statuses) {
+            this.statuses = statuses;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            Upload upload = new Upload(exchange);
+            int index = requests.getAndIncrement();
+            int status = index < statuses.length ? statuses[index] : 200;
+            if (status == 200) {
+                uploads.add(upload);
+            }
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        for (HttpUploadReporter reporter : reporters) {
+            reporter.shutdown(1000);
+        }
+        for (HttpServer server : servers) {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void uploadsFullBatchAsGzippedNdjson() throws Exception {
+        Collector collector = new Collector();
+        HttpServer server = startServer(0, collector);
+        HttpUploadReporter reporter = newReporter(new HttpUploadReporter.Builder(
+                url(server.getAddress().getPort()), folder.newFolder("spool"))
+                .batchSize(3)
+                .flushInterval(60_000));
+
+        for (int i = 0; i < 3; i++) {
+            reporter.report(report(i));
+        }
+
+        Upload upload = collector.uploads.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(upload);
+        assertEquals("application/x-ndjson", upload.contentType);
+        assertEquals("gzip", upload.contentEncoding);
+        List<DeadlockReport> reports = upload.reports();
+        assertEquals(3, reports.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(DeadlockType.ANR, reports.get(i).getType());
+            assertEquals("report-" + i, reports.get(i).getMessage());
+        }
+        awaitUploaded(reporter, 1);
+        assertNull(collector.uploads.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void flushesPartialBatchAfterInterval() throws Exception {
+        Collector collector = new Collector();
+        HttpServer server = startServer(0, collector);
+        HttpUploadReporter reporter = newReporter(new HttpUploadReporter.Builder(
+                url(server.getAddress().getPort()), folder.newFolder("spool"))
+                .batchSize(10)
+                .flushInterval(50));
+
+        reporter.report(report(0));
+
+        Upload upload = collector.uploads.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(upload);
+        assertEquals(1, upload.reports().size());
+    }
+
+    @Test
+    public void retriesServerErrorsWithBackoff() throws Exception {
+        Collector collector = new Collector(503, 500);
+        HttpServer server = startServer(0, collector);
+        HttpUploadReporter reporter = newReporter(new HttpUploadReporter.Builder(
+                url(server.getAddress().getPort()), folder.newFolder("spool"))
+                .batchSize(1)
+                .flushInterval(60_000)
+                .backoff(100, 1000));
+
+        long start = System.nanoTime();
+        reporter.report(report(0));
+
+        Upload upload = collector.uploads.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(upload);
+        assertEquals("report-0", upload.reports().get(0).getMessage());
+        assertEquals(3, collector.requests.get());
+        awaitUploaded(reporter, 1);
+        assertEquals(2, reporter.getUploadFailures());
+        // 两次退避：100ms，然后加倍到200ms
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(upload.receivedNanos - start) >= 300);
+    }
+
+    @Test
+    public void dropsBatchRejectedByClientError() throws Exception {
+        Collector collector = new Collector(400);
+        HttpServer server = startServer(0, collector);
+        File spool = folder.newFolder("spool");
+        HttpUploadReporter reporter = newReporter(new HttpUploadReporter.Builder(
+                url(server.getAddress().getPort()), spool)
+                .batchSize(1)
+                .flushInterval(60_000)
+                .backoff(50, 100));
+
+        reporter.report(report(0));
+        reporter.report(report(1));
+
+        Upload upload = collector.uploads.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(upload);
+        assertEquals("report-1", upload.reports().get(0).getMessage());
+        assertEquals(0, reporter.getUploadFailures());
+    }
+
+    @Test
+    public void spoolsWhileServerIsDownAndDrainsWhenBack() throws Exception {
+        // 先占一个端口再关掉，上传时连接被拒绝
+        HttpServer probe = startServer(0, new Collector());
+        int port = probe.getAddress().getPort();
+        probe.stop(0);
+        servers.remove(probe);
+
+        File spool = folder.newFolder("spool");
+        HttpUploadReporter reporter = newReporter(new HttpUploadReporter.Builder(url(port), spool)
+                .batchSize(2)
+                .flushInterval(60_000)
+                .backoff(50, 200));
+        for (int i = 0; i < 6; i++) {
+            reporter.report(report(i));
+        }
+
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while ((reporter.getBatchesSpooled() < 3 || reporter.getUploadFailures() < 2)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(3, reporter.getBatchesSpooled());
+        assertTrue(reporter.getUploadFailures() >= 2);
+        assertEquals(0, reporter.getBatchesUploaded());
+        assertEquals(3, spoolFiles(spool));
+
+        Collector collector = new Collector();
+        startServer(port, collector);
+        List<String> messages = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Upload upload = collector.uploads.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            assertNotNull(upload);
+            for (DeadlockReport report : upload.reports()) {
+                messages.add(report.getMessage());
+            }
+        }
+        // 按批次从旧到新上传，上传成功的批次从spool目录删除
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            expected.add("report-" + i);
+        }
+        assertEquals(expected, messages);
+        awaitUploaded(reporter, 3);
+        assertEquals(0, spoolFiles(spool));
+    }
+
+    @Test
+    public void uploadsBatchesLeftByPreviousProcess() throws Exception {
+        File spool = folder.newFolder("spool");
+        // 没有采集端时停止，剩下的报告写入spool目录
+        HttpUploadReporter offline = new HttpUploadReporter.Builder(url(1), spool)
+                .batchSize(10)
+                .flushInterval(60_000)
+                .build();
+        offline.report(report(0));
+        offline.shutdown(1000);
+        assertEquals(1, spoolFiles(spool));
+
+        Collector collector = new Collector();
+        HttpServer server = startServer(0, collector);
+        newReporter(new HttpUploadReporter.Builder(
+                url(server.getAddress().getPort()), spool)
+                .flushInterval(50));
+
+        Upload upload = collector.uploads.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(upload);
+        assertEquals("report-0", upload.reports().get(0).getMessage());
+    }
+
+    @Test
+    public void keepsUploadingAfterBatchFailsToEncode() throws Exception {
+        Collector collector = new Collector();
+        HttpServer server = startServer(0, collector);
+        HttpUploadReporter reporter = newReporter(new HttpUploadReporter.Builder(
+                url(server.getAddress().getPort()), folder.newFolder("spool"))
+                .batchSize(1)
+                .flushInterval(60_000));
+
+        // 堆栈中的null帧在编码时抛出NullPointerException
+        reporter.report(new DeadlockReport.Builder()
+                .type(DeadlockType.ANR)
+                .message("broken")
+                .addThreadDetail(new ThreadDetail.Builder()
+                        .stackTrace(new StackTraceElement[]{null})
+                        .build())
+                .build());
+        reporter.report(report(1));
+
+        Upload upload = collector.uploads.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(upload);
+        assertEquals("report-1", upload.reports().get(0).getMessage());
+        assertEquals(1, reporter.getDroppedCount());
+    }
+
+    @Test
+    public void countsReportsDiscardedWhenShutdownTimesOut() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch uploading = new CountDownLatch(1);
+        HttpServer server = startServer(0, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                readAll(exchange.getRequestBody());
+                uploading.countDown();
+                try {
+                    release.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                exchange.sendResponseHeaders(200, -1);
+                exchange.close();
+            }
+        });
+        HttpUploadReporter reporter = new HttpUploadReporter.Builder(
+                url(server.getAddress().getPort()), folder.newFolder("spool"))
+                .batchSize(1)
+                .flushInterval(60_000)
+                .timeouts(1000, 10_000)
+                .build();
+        reporters.add(reporter);
+
+        reporter.report(report(0));
+        assertTrue(uploading.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        // 上传线程阻塞在请求中，这两个报告留在队列里
+        reporter.report(report(1));
+        reporter.report(report(2));
+        reporter.shutdown(50);
+        release.countDown();
+
+        assertEquals(2, reporter.getDroppedCount());
+    }
+
+    @Test
+    public void rejectsInvalidConfiguration() throws Exception {
+        File file = folder.newFile("not-a-dir");
+        try {
+            new HttpUploadReporter.Builder(null, folder.newFolder("spool")).build();
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            new HttpUploadReporter.Builder(new URL("file:///tmp/reports"), folder.newFolder("other")).build();
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            new HttpUploadReporter.Builder(url(1), file).build();
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    /**
+     * 采集端先记录请求再返回响应，上传计数在收到响应后才增加
+     */
+    private static void awaitUploaded(HttpUploadReporter reporter, long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (reporter.getBatchesUploaded() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, reporter.getBatchesUploaded());
+    }
+
+    private HttpServer startServer(int port, HttpHandler handler) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/reports", handler);
+        server.start();
+        servers.add(server);
+        return server;
+    }
+
+    private HttpUploadReporter newReporter(HttpUploadReporter.Builder builder) {
+        HttpUploadReporter reporter = builder.timeouts(1000, 1000).build();
+        reporters.add(reporter);
+        return reporter;
+    }
+
+    private static URL url(int port) throws IOException {
+        return new URL("http://127.0.0.1:" + port + "/reports");
+    }
+
+    private static int spoolFiles(File dir) {
+        File[] files = dir.listFiles();
+        int count = 0;
+        for (File file : files != null ? files : new File[0]) {
+            if (file.getName().endsWith(".ndjson.gz")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static DeadlockReport report(int index) {
+        return new DeadlockReport.Builder()
+                .type(DeadlockType.ANR)
+                .timestamp(1_700_000_000_000L + index)
+                .message("report-" + index)
+                .build();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] chunk = new byte[4096];
+        int n;
+        while ((n = in.read(chunk)) > 0) {
+            out.write(chunk, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,83 @@
+package com.deadlock.detector.reporter;
+
+import com.deadlock.detector.model.DeadlockReport;
+import com.deadlock.detector.model.DeadlockType;
+import com.deadlock.detector.model.StackDictionary;
+import com.deadlock.detector.model.ThreadDetail;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class StackDepthReporterTest {
+
+    private final StackDictionary dictionary = new StackDictionary(16, 1024);
+
+    @Test
+    public void truncatesStacksOnlyInTheReport() {
+        List<DeadlockReport> received = new ArrayList<>();
+        StackDepthReporter reporter = new StackDepthReporter(received::add, 3);
+        StackTraceElement[] deep = stack(10);
+        ThreadDetail detail = detail(1, deep);
+        DeadlockReport report = new DeadlockReport.Builder()
+                .type(DeadlockType.SYNCHRONIZED)
+                .message("deep")
+                .addThreadDetail(detail)
+                .addOtherThreadDetail(detail(2, stack(2)))
+                .build();
+
+        reporter.report(report);
+
+        DeadlockReport limited = received.get(0);
+        assertEquals("deep", limited.getMessage());
+        assertArrayEquals(Arrays.copyOf(deep, 3), limited.getThreadDetails().get(0).getStackTrace());
+        assertEquals(Arrays.asList("lock-a"), limited.getThreadDetails().get(0).getHeldLocks());
+        // 没有超出的线程原样保留，原报告不受影响
+        assertSame(report.getOtherThreadDetails().get(0), limited.getOtherThreadDetails().get(0));
+        assertEquals(10, detail.getStackTrace().length);
+        // 截断的副本不进入字典，沿用完整堆栈的id
+        assertEquals(2, dictionary.getStackCount());
+        assertEquals(detail.getStackId(), limited.getThreadDetails().get(0).getStackId());
+    }
+
+    @Test
+    public void passesReportThroughWhenNothingExceeds() {
+        List<DeadlockReport> received = new ArrayList<>();
+        DeadlockReport report = new DeadlockReport.Builder()
+                .addThreadDetail(detail(1, stack(3)))
+                .build();
+
+        new StackDepthReporter(received::add, 3).report(report);
+        new StackDepthReporter(received::add, 0).report(new DeadlockReport.Builder()
+                .addThreadDetail(detail(1, stack(100)))
+                .build());
+
+        assertSame(report, received.get(0));
+        assertEquals(100, received.get(1).getThreadDetails().get(0).getStackTrace().length);
+    }
+
+    private ThreadDetail detail(long id, StackTraceElement[] stack) {
+        return new ThreadDetail.Builder()
+                .stackDictionary(dictionary)
+                .threadId(id)
+                .threadName("worker-" + id)
+                .threadState("BLOCKED")
+                .heldLocks(Arrays.asList("lock-a"))
+                .stackTrace(stack)
+                .build();
+    }
+
+    private static StackTraceElement[] stack(int depth) {
+        StackTraceElement[] stack = new StackTraceElement[depth];
+        for (int i = 0; i < depth; i++) {
+            stack[i] = new StackTraceElement("com.example.Deep", "call" + i, "Deep.java", i + 1);
+        }
+        return stack;
+    }
+}
@@ -0,0 +1,48 @@
+package com.deadlock.detector.stats;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class DetectorStatsTest {
+
+    @Test
+    public void averagesOverRollingWindow() {
+        DetectorStats stats = new DetectorStats("detector");
+        assertEquals(0, stats.snapshot().getAvgWallNanos());
+
+        // 前面的大值在窗口滚动后不再影响平均值，但计入累计和最大值
+        stats.record(1_000_000, 500_000, 4096, 10, 2);
+        for (int i = 0; i < DetectorStats.WINDOW_SIZE; i++) {
+            stats.record(100, 50, 16, 20, 3);
+        }
+
+        DetectorStats.Snapshot snapshot = stats.snapshot();
+        assertEquals("detector", snapshot.getName());
+        assertEquals(DetectorStats.WINDOW_SIZE + 1, snapshot.getRuns());
+        assertEquals(100, snapshot.getAvgWallNanos());
+        assertEquals(50, snapshot.getAvgCpuNanos());
+        assertEquals(50, stats.getWindowAvgCpuNanos());
+        assertEquals(16, snapshot.getAvgAllocBytes());
+        assertEquals(1_000_000, snapshot.getMaxWallNanos());
+        assertEquals(1_000_000 + 100L * DetectorStats.WINDOW_SIZE, snapshot.getTotalWallNanos());
+        assertEquals(500_000 + 50L * DetectorStats.WINDOW_SIZE, snapshot.getTotalCpuNanos());
+        assertEquals(100, snapshot.getLastWallNanos());
+        assertEquals(20, snapshot.getLastThreadsScanned());
+        assertEquals(3, snapshot.getLastGraphSize());
+    }
+
+    @Test
+    public void reportsUnsupportedMetrics() {
+        DetectorStats stats = new DetectorStats("detector");
+        stats.record(200, DetectorStats.UNSUPPORTED, DetectorStats.UNSUPPORTED, 1, 0);
+        stats.record(400, DetectorStats.UNSUPPORTED, DetectorStats.UNSUPPORTED, 1, 0);
+
+        DetectorStats.Snapshot snapshot = stats.snapshot();
+        assertEquals(300, snapshot.getAvgWallNanos());
+        assertEquals(DetectorStats.UNSUPPORTED, snapshot.getAvgCpuNanos());
+        assertEquals(DetectorStats.UNSUPPORTED, snapshot.getAvgAllocBytes());
+        assertEquals(DetectorStats.UNSUPPORTED, snapshot.getLastCpuNanos());
+        assertEquals(0, snapshot.getTotalCpuNanos());
+    }
+}
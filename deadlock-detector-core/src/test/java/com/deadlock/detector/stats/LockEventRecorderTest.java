@@ -0,0 +1,190 @@
+package com.deadlock.detector.stats;
+
+import com.deadlock.detector.codec.TraceEventWriter;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LockEventRecorderTest {
+
+    @Test
+    public void keepsNewestEventsPerThread() throws InterruptedException {
+        final LockEventRecorder recorder = new LockEventRecorder(5, 4);
+        recorder.record(LockEventRecorder.ACQUIRED, "ignored", -1);
+        recorder.start();
+        // 容量向上取整为8
+        for (int i = 0; i < 20; i++) {
+            recorder.record(LockEventRecorder.ACQUIRED, "lock-" + i, -1);
+        }
+        Thread other = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                recorder.record(LockEventRecorder.RELEASED, "other", -1);
+            }
+        }, "other-thread");
+        other.start();
+        other.join();
+
+        List<LockEventRecorder.ThreadEvents> threads = recorder.snapshot();
+        assertEquals(2, threads.size());
+        LockEventRecorder.ThreadEvents mine = threads.get(0);
+        assertEquals(Thread.currentThread().getId(), mine.getThreadId());
+        assertEquals(8, mine.size());
+        assertEquals(12, mine.getOverwrittenCount());
+        for (int i = 0; i < 8; i++) {
+            assertEquals("lock-" + (12 + i), mine.getSubject(i));
+            assertEquals(LockEventRecorder.ACQUIRED, mine.getKind(i));
+            assertTrue(i == 0 || mine.getTimeNanos(i) >= mine.getTimeNanos(i - 1));
+        }
+        assertEquals("other-thread", threads.get(1).getThreadName());
+        assertEquals(1, threads.get(1).size());
+    }
+
+    @Test
+    public void dropsEventsOfThreadsBeyondLimit() throws InterruptedException {
+        final LockEventRecorder recorder = new LockEventRecorder(16, 1);
+        recorder.start();
+        recorder.record(LockEventRecorder.ACQUIRED, "mine", -1);
+        Thread other = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                recorder.record(LockEventRecorder.ACQUIRED, "dropped", -1);
+                recorder.record(LockEventRecorder.RELEASED, "dropped", -1);
+            }
+        });
+        other.start();
+        other.join();
+
+        assertEquals(1, recorder.snapshot().size());
+        assertEquals(2, recorder.getDroppedCount());
+
+        // 重新开始后清空记录
+        recorder.start();
+        assertTrue(recorder.snapshot().isEmpty());
+        assertEquals(0, recorder.getDroppedCount());
+    }
+
+    @Test
+    public void reclaimsBuffersOfFinishedThreads() throws InterruptedException {
+        LockEventRecorder recorder = new LockEventRecorder(16, 1);
+        recorder.start();
+        runAndJoin(recordTwice(recorder, "finished"), "finished-thread");
+        runAndJoin(recordTwice(recorder, "next"), "next-thread");
+
+        // 已结束线程的缓冲区让给新线程，其事件计入丢弃数
+        List<LockEventRecorder.ThreadEvents> threads = recorder.snapshot();
+        assertEquals(1, threads.size());
+        assertEquals("next-thread", threads.get(0).getThreadName());
+        assertEquals(2, threads.get(0).size());
+        assertEquals(2, recorder.getDroppedCount());
+    }
+
+    @Test
+    public void rejectedThreadStaysRejectedUntilRestart() throws InterruptedException {
+        final LockEventRecorder recorder = new LockEventRecorder(16, 1);
+        recorder.start();
+        final CountDownLatch recorded = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                recorder.record(LockEventRecorder.ACQUIRED, "holder", -1);
+                recorded.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "holder-thread");
+        holder.start();
+        recorded.await();
+        recorder.record(LockEventRecorder.ACQUIRED, "mine", -1);
+        release.countDown();
+        holder.join();
+
+        // 被拒绝的线程不再登记，即使之后有线程结束腾出空位
+        recorder.record(LockEventRecorder.RELEASED, "mine", -1);
+        assertEquals(2, recorder.getDroppedCount());
+        assertEquals("holder-thread", recorder.snapshot().get(0).getThreadName());
+
+        recorder.start();
+        recorder.record(LockEventRecorder.ACQUIRED, "mine", -1);
+        assertEquals(Thread.currentThread().getId(), recorder.snapshot().get(0).getThreadId());
+    }
+
+    @Test
+    public void stopsAfterRecordingWindow() throws InterruptedException {
+        LockEventRecorder recorder = new LockEventRecorder(16, 4);
+        recorder.start(20);
+        recorder.record(LockEventRecorder.ACQUIRED, "inside", -1);
+        Thread.sleep(50);
+        recorder.record(LockEventRecorder.ACQUIRED, "outside", -1);
+
+        assertFalse(recorder.isRecording());
+        assertEquals(1, recorder.snapshot().get(0).size());
+    }
+
+    @Test
+    public void exportsSlicesAndWaitForFlows() throws IOException {
+        LockEventRecorder recorder = new LockEventRecorder(64, 4);
+        recorder.start();
+        recorder.record(LockEventRecorder.WAIT_BEGIN, "lock-a", 42);
+        recorder.record(LockEventRecorder.ACQUIRED, "lock-a", -1);
+        recorder.record(LockEventRecorder.TICK_BEGIN, "SomeDetector", -1);
+        recorder.record(LockEventRecorder.TICK_END, "SomeDetector", -1);
+        recorder.record(LockEventRecorder.RELEASED, "lock-a", -1);
+        // 导出时仍在等待
+        recorder.record(LockEventRecorder.WAIT_BEGIN, "lock-b", -1);
+        recorder.stop();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TraceEventWriter.write(recorder.snapshot(), out);
+        String json = new String(out.toByteArray(), StandardCharsets.UTF_8);
+
+        assertTrue(json.startsWith("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[{\"ph\":\"M\""));
+        assertTrue(json.endsWith("]}"));
+        long tid = Thread.currentThread().getId();
+        assertTrue(json.contains("\"name\":\"wait lock-a\",\"cat\":\"lock\",\"pid\":1,\"tid\":" + tid));
+        assertTrue(json.contains("\"args\":{\"owner\":42}"));
+        assertTrue(json.contains("\"name\":\"hold lock-a\""));
+        assertTrue(json.contains("\"name\":\"SomeDetector\",\"cat\":\"detector\""));
+        assertTrue(json.contains("\"name\":\"wait lock-b\""));
+        assertTrue(json.contains("\"ph\":\"s\",\"name\":\"wait-for\""));
+        assertTrue(json.contains("\"ph\":\"f\",\"name\":\"wait-for\",\"cat\":\"lock\",\"id\":1,\"pid\":1,\"tid\":42"));
+        assertEquals(4, count(json, "\"ph\":\"X\""));
+    }
+
+    private static int count(String text, String part) {
+        int count = 0;
+        for (int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    private static Runnable recordTwice(final LockEventRecorder recorder, final String subject) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                recorder.record(LockEventRecorder.ACQUIRED, subject, -1);
+                recorder.record(LockEventRecorder.RELEASED, subject, -1);
+            }
+        };
+    }
+
+    private static void runAndJoin(Runnable task, String name) throws InterruptedException {
+        Thread thread = new Thread(task, name);
+        thread.start();
+        thread.join();
+    }
+}
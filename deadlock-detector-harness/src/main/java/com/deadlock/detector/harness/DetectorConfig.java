@@ -0,0 +1,75 @@
+package com.deadlock.detector.harness;
+
+import com.deadlock.detector.detector.SynchronizedLockDetector;
+import com.deadlock.detector.jvm.JvmDeadlockMonitor;
+import com.deadlock.detector.reporter.DeadlockReporter;
+
+import java.util.Locale;
+
+/**
+ * 被比较的检测器配置，每个配置对应一种JvmDeadlockMonitor的组装方式
+ */
+enum DetectorConfig {
+    /**
+     * 只用ThreadMXBean检测
+     */
+    MXBEAN,
+    /**
+     * 只检测被追踪锁，随检测周期扫描
+     */
+    TRACKED,
+    /**
+     * 被追踪锁 + 锁等待看门狗，阈值等于检测间隔
+     */
+    WATCHDOG,
+    /**
+     * synchronized堆栈启发式检测（Android上的默认方式）
+     */
+    SYNC_HEURISTIC,
+    /**
+     * 只检测线程池饥饿，排队阈值为5个检测间隔
+     */
+    EXECUTOR,
+    /**
+     * 只检测卡住线程，阈值为5个检测间隔
+     */
+    STUCK,
+    /**
+     * 以上全部
+     */
+    ALL;
+
+    String id() {
+        return name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+
+    static DetectorConfig parse(String id) {
+        return valueOf(id.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+    }
+
+    JvmDeadlockMonitor build(long intervalMs, DeadlockReporter reporter) {
+        boolean all = this == ALL;
+        JvmDeadlockMonitor.Builder builder = new JvmDeadlockMonitor.Builder()
+                .interval(intervalMs)
+                .initialDelay(0)
+                .reporter(reporter)
+                // 在检测线程上直接回调，报告时间就是检出时间
+                .asyncReporting(false)
+                .detectDeadlocks(this == MXBEAN || all)
+                .trackLocks(this == TRACKED || this == WATCHDOG || all)
+                .detectExecutorStarvation(this == EXECUTOR || all ? intervalMs * 5 : -1)
+                .detectStuckThreads(this == STUCK || all ? intervalMs * 5 : 0);
+        if (this == SYNC_HEURISTIC || all) {
+            builder.addDetector(new SynchronizedLockDetector(reporter));
+        }
+        JvmDeadlockMonitor monitor = builder.build();
+        if (this == WATCHDOG || all) {
+            monitor.getReentrantLockDetector().startWatchdog(intervalMs);
+        }
+        if (this == STUCK || all) {
+            // 主线程在同一处轮询等待结果
+            monitor.getStuckThreadDetector().ignoreThread("main");
+        }
+        return monitor;
+    }
+}
@@ -0,0 +1,244 @@
+package com.deadlock.detector.harness;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 场景测试入口：每个场景 x 配置 x 重复次数各启动一个子JVM（{@link ScenarioRun}），
+ * 汇总检出率、检出延迟、误报率和检测线程CPU开销，输出Markdown对比表
+ * <p>
+ * 参数：--scenarios 场景规格列表或default、--configs 配置列表或all、--reps 重复次数、
+ * --interval 检测间隔、--timeout 单次超时（毫秒）、--out 结果目录。
+ * 结果写入results.md和results.tsv，没有失败的子进程时以状态码0退出，便于在CI里无界面运行。
+ */
+public final class HarnessMain {
+
+    private static final String TSV_FILE = "results.tsv";
+    private static final String MARKDOWN_FILE = "results.md";
+
+    private HarnessMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String scenarioSpecs = "default";
+        String configSpecs = "all";
+        int reps = 3;
+        long intervalMs = 100;
+        long timeoutMs = 3000;
+        File outDir = new File("build/harness");
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--scenarios":
+                    scenarioSpecs = value;
+                    break;
+                case "--configs":
+                    configSpecs = value;
+                    break;
+                case "--reps":
+                    reps = Integer.parseInt(value);
+                    break;
+                case "--interval":
+                    intervalMs = Long.parseLong(value);
+                    break;
+                case "--timeout":
+                    timeoutMs = Long.parseLong(value);
+                    break;
+                case "--out":
+                    outDir = new File(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (!outDir.isDirectory() && !outDir.mkdirs()) {
+            throw new IllegalStateException("Cannot create " + outDir);
+        }
+
+        List<DetectorConfig> configs = new ArrayList<>();
+        if ("all".equals(configSpecs)) {
+            Collections.addAll(configs, DetectorConfig.values());
+        } else {
+            for (String id : configSpecs.split(",")) {
+                configs.add(DetectorConfig.parse(id));
+            }
+        }
+
+        List<Row> rows = new ArrayList<>();
+        int failures = 0;
+        for (Scenario scenario : Scenarios.parseList(scenarioSpecs)) {
+            for (DetectorConfig config : configs) {
+                Row row = new Row(scenario, config);
+                for (int rep = 0; rep < reps; rep++) {
+                    String result = fork(scenario.id(), config.id(), intervalMs, timeoutMs);
+                    if (result == null) {
+                        failures++;
+                        row.failed++;
+                    } else {
+                        row.add(result);
+                    }
+                }
+                System.err.println(scenario.id() + " / " + config.id() + ": " + row.detectionCell());
+                rows.add(row);
+            }
+        }
+
+        try (PrintStream out = new PrintStream(new File(outDir, TSV_FILE), "UTF-8")) {
+            writeTsv(rows, out);
+        }
+        try (PrintStream out = new PrintStream(new File(outDir, MARKDOWN_FILE), "UTF-8")) {
+            writeMarkdown(rows, intervalMs, timeoutMs, out);
+        }
+        writeMarkdown(rows, intervalMs, timeoutMs, System.out);
+        System.out.println("Results: " + outDir.getAbsolutePath());
+        if (failures > 0) {
+            System.err.println(failures + " run(s) failed");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * 用相同的classpath启动子JVM，返回RESULT行，子进程异常退出或超时返回null
+     */
+    private static String fork(String scenario, String config, long intervalMs, long timeoutMs)
+            throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                ScenarioRun.class.getName(), scenario, config,
+                String.valueOf(intervalMs), String.valueOf(timeoutMs));
+        builder.redirectErrorStream(true);
+        Process process = builder.start();
+        String result = null;
+        StringBuilder output = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(ScenarioRun.RESULT_PREFIX)) {
+                    result = line.substring(ScenarioRun.RESULT_PREFIX.length());
+                } else {
+                    output.append(line).append('\n');
+                }
+            }
+        }
+        // 正常情况下子进程在超时后很快退出，这里多留出JVM启动的时间
+        if (!process.waitFor(timeoutMs * 2 + 10_000, TimeUnit.MILLISECONDS)) {
+            process.destroyForcibly();
+            result = null;
+        }
+        if (result == null || process.exitValue() != 0) {
+            System.err.println("Run failed: " + scenario + " / " + config + "\n" + output);
+            return null;
+        }
+        return result;
+    }
+
+    private static void writeTsv(List<Row> rows, PrintStream out) {
+        out.println("scenario\tconfig\truns\tdetected\tp50_ms\tmax_ms\tfp_runs\tcpu_pct\tcpu_us_per_tick\tfailed");
+        for (Row row : rows) {
+            out.println(row.scenario.id() + '\t' + row.config.id() + '\t' + row.runs
+                    + '\t' + (row.scenario.isBenign() ? "-" : String.valueOf(row.detected))
+                    + '\t' + formatMs(row.latencyPercentile(50)) + '\t' + formatMs(row.latencyPercentile(100))
+                    + '\t' + row.falsePositiveRuns
+                    + '\t' + String.format(Locale.ROOT, "%.3f", row.cpuPercent())
+                    + '\t' + String.format(Locale.ROOT, "%.1f", row.cpuMicrosPerTick())
+                    + '\t' + row.failed);
+        }
+    }
+
+    private static void writeMarkdown(List<Row> rows, long intervalMs, long timeoutMs, PrintStream out) {
+        out.println("## Detector scenario comparison");
+        out.println();
+        out.println("interval " + intervalMs + " ms, timeout " + timeoutMs + " ms");
+        out.println();
+        out.println("| Scenario | Config | Detected | Latency p50 (ms) | Latency max (ms) "
+                + "| False positives | Detector CPU | CPU/tick (us) |");
+        out.println("|---|---|---|---|---|---|---|---|");
+        for (Row row : rows) {
+            out.println("| " + row.scenario.id() + " | " + row.config.id()
+                    + " | " + row.detectionCell()
+                    + " | " + formatMs(row.latencyPercentile(50))
+                    + " | " + formatMs(row.latencyPercentile(100))
+                    + " | " + row.falsePositiveRuns + "/" + row.runs
+                    + " | " + String.format(Locale.ROOT, "%.2f%%", row.cpuPercent())
+                    + " | " + String.format(Locale.ROOT, "%.1f", row.cpuMicrosPerTick()) + " |");
+        }
+    }
+
+    private static String formatMs(long nanos) {
+        return nanos < 0 ? "-" : String.format(Locale.ROOT, "%.1f", nanos / 1e6);
+    }
+
+    /**
+     * 一个场景和配置的汇总
+     */
+    private static final class Row {
+        final Scenario scenario;
+        final DetectorConfig config;
+        final List<Long> latencies = new ArrayList<>();
+        int runs;
+        int detected;
+        int falsePositiveRuns;
+        int failed;
+        long cpuNanos;
+        long wallNanos;
+        long ticks;
+
+        Row(Scenario scenario, DetectorConfig config) {
+            this.scenario = scenario;
+            this.config = config;
+        }
+
+        /**
+         * 解析ScenarioRun的输出：detected、latency、falsePositives、reports、cpu、wall、ticks
+         */
+        void add(String result) {
+            String[] cols = result.split("\t");
+            runs++;
+            if ("1".equals(cols[0])) {
+                detected++;
+                latencies.add(Long.parseLong(cols[1]));
+            }
+            if (Integer.parseInt(cols[2]) > 0) {
+                falsePositiveRuns++;
+            }
+            long cpu = Long.parseLong(cols[4]);
+            if (cpu > 0) {
+                cpuNanos += cpu;
+            }
+            wallNanos += Long.parseLong(cols[5]);
+            ticks += Long.parseLong(cols[6]);
+        }
+
+        String detectionCell() {
+            return scenario.isBenign() ? "n/a" : detected + "/" + runs;
+        }
+
+        long latencyPercentile(int percentile) {
+            if (latencies.isEmpty()) {
+                return -1;
+            }
+            List<Long> sorted = new ArrayList<>(latencies);
+            Collections.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+            return sorted.get(Math.max(0, index));
+        }
+
+        double cpuPercent() {
+            return wallNanos > 0 ? cpuNanos * 100.0 / wallNanos : 0;
+        }
+
+        double cpuMicrosPerTick() {
+            return ticks > 0 ? cpuNanos / 1e3 / ticks : 0;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.deadlock.detector.harness;
+
+import com.deadlock.detector.model.DeadlockType;
+
+import java.util.Set;
+
+/**
+ * 一个可参数化的死锁/卡顿场景
+ * <p>
+ * 每次运行都在单独的JVM里进行：synchronized死锁无法解除，场景之间不能共用进程。
+ */
+abstract class Scenario {
+
+    private final String kind;
+    final int size;
+
+    Scenario(String kind, int size) {
+        this.kind = kind;
+        this.size = size;
+    }
+
+    String id() {
+        return kind + ":" + size;
+    }
+
+    /**
+     * 应当被报告的类型，空集合表示任何涉及参与线程的报告都算检出，null表示正常场景，不应有任何报告
+     */
+    abstract Set<DeadlockType> expectedTypes();
+
+    final boolean isBenign() {
+        return expectedTypes() == null;
+    }
+
+    /**
+     * 启动参与线程
+     *
+     * @return 卡住状态形成的时间（System.nanoTime），正常场景返回启动完成的时间
+     */
+    abstract long start(ScenarioContext ctx, long timeoutMs) throws Exception;
+}
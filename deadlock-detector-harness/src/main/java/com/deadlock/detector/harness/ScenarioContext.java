@@ -0,0 +1,148 @@
+package com.deadlock.detector.harness;
+
+import com.deadlock.detector.detector.ExecutorStarvationDetector;
+import com.deadlock.detector.detector.ReentrantLockDetector;
+import com.deadlock.detector.detector.TrackedThreadPoolExecutor;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 场景运行环境：按当前配置创建锁和线程池，记录参与线程，判断卡住状态何时形成
+ * <p>
+ * 配置开启了锁追踪时创建被追踪锁，否则创建普通ReentrantLock，
+ * 这样同一个场景在不同配置下的差别只在检测方式上。
+ */
+final class ScenarioContext {
+
+    static final String THREAD_PREFIX = "scn-";
+
+    private final ReentrantLockDetector lockDetector;
+    private final ExecutorStarvationDetector executorDetector;
+    private final List<Thread> participants = new CopyOnWriteArrayList<>();
+    private CountDownLatch arrivals;
+
+    ScenarioContext(ReentrantLockDetector lockDetector, ExecutorStarvationDetector executorDetector) {
+        this.lockDetector = lockDetector;
+        this.executorDetector = executorDetector;
+    }
+
+    Lock newLock(String name) {
+        return lockDetector != null ? lockDetector.createTrackedLock(name) : new ReentrantLock();
+    }
+
+    /**
+     * 固定大小的被追踪线程池，工作线程是守护线程并计入参与线程
+     */
+    TrackedThreadPoolExecutor newPool(String name, int threads) {
+        TrackedThreadPoolExecutor pool = new TrackedThreadPoolExecutor(THREAD_PREFIX + name, threads, threads,
+                0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory(name), false);
+        if (executorDetector != null) {
+            executorDetector.track(pool);
+        }
+        return pool;
+    }
+
+    /**
+     * 定时任务线程池，工作线程同样计入参与线程
+     */
+    ScheduledExecutorService newScheduler(String name, int threads) {
+        return new ScheduledThreadPoolExecutor(threads, threadFactory(name));
+    }
+
+    private ThreadFactory threadFactory(final String name) {
+        return new ThreadFactory() {
+            private final AtomicInteger index = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                return register(new Thread(r, THREAD_PREFIX + name + "-" + index.incrementAndGet()));
+            }
+        };
+    }
+
+    /**
+     * 启动一个参与线程
+     */
+    Thread start(String name, Runnable body) {
+        Thread thread = register(new Thread(body, THREAD_PREFIX + name));
+        thread.start();
+        return thread;
+    }
+
+    private Thread register(Thread thread) {
+        thread.setDaemon(true);
+        participants.add(thread);
+        return thread;
+    }
+
+    /**
+     * 设置即将进入最终阻塞的参与线程数，每个线程在阻塞前调用{@link #arrive()}
+     */
+    void expectArrivals(int count) {
+        arrivals = new CountDownLatch(count);
+    }
+
+    void arrive() {
+        arrivals.countDown();
+    }
+
+    /**
+     * 等所有线程到达最终阻塞点，并且状态都不再是RUNNABLE，返回此时的nanoTime（即卡住形成的时间）
+     */
+    long awaitStalled(long timeoutMs) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        if (!arrivals.await(timeoutMs, TimeUnit.MILLISECONDS)) {
+            throw new IllegalStateException("Scenario threads did not reach their blocking point");
+        }
+        while (System.nanoTime() < deadline) {
+            if (allStalled()) {
+                return System.nanoTime();
+            }
+            Thread.sleep(1);
+        }
+        throw new IllegalStateException("Scenario threads did not stall");
+    }
+
+    /**
+     * 只等所有线程到达阻塞点，用于阻塞时仍是RUNNABLE的I/O等待
+     */
+    long awaitArrivals(long timeoutMs) throws InterruptedException {
+        if (!arrivals.await(timeoutMs, TimeUnit.MILLISECONDS)) {
+            throw new IllegalStateException("Scenario threads did not reach their blocking point");
+        }
+        // 留出从arrive()走到read()的时间
+        Thread.sleep(10);
+        return System.nanoTime();
+    }
+
+    private boolean allStalled() {
+        for (Thread thread : participants) {
+            Thread.State state = thread.getState();
+            if (state == Thread.State.RUNNABLE || state == Thread.State.NEW) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    Set<String> participantNames() {
+        Set<String> names = new HashSet<>();
+        for (Thread thread : participants) {
+            names.add(thread.getName());
+        }
+        return Collections.unmodifiableSet(names);
+    }
+}
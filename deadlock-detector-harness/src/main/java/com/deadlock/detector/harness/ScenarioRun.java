@@ -0,0 +1,168 @@
+package com.deadlock.detector.harness;
+
+import com.deadlock.detector.jvm.JvmDeadlockMonitor;
+import com.deadlock.detector.model.DeadlockReport;
+import com.deadlock.detector.model.DeadlockType;
+import com.deadlock.detector.model.ThreadDetail;
+import com.deadlock.detector.reporter.DeadlockReporter;
+import com.deadlock.detector.stats.DetectorStats;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 子进程入口：在当前JVM里运行一个场景和一个配置，结果以一行RESULT输出到stdout
+ * <p>
+ * 参数：场景规格、配置名、检测间隔、超时（毫秒）。卡住场景在第一次检出或超时后结束，
+ * 正常场景观察满超时时间。
+ */
+public final class ScenarioRun {
+
+    static final String RESULT_PREFIX = "RESULT\t";
+
+    // 检测相关的后台线程，统计它们的CPU时间作为检测开销
+    private static final String[] DETECTOR_THREADS = {"JvmDeadlockMonitor", "DeadlockDetector-LockWatchdog"};
+
+    private ScenarioRun() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Scenario scenario = Scenarios.parse(args[0]);
+        DetectorConfig config = DetectorConfig.parse(args[1]);
+        long intervalMs = Long.parseLong(args[2]);
+        long timeoutMs = Long.parseLong(args[3]);
+
+        RecordingReporter recorder = new RecordingReporter();
+        JvmDeadlockMonitor monitor = config.build(intervalMs, recorder);
+        ScenarioContext ctx = new ScenarioContext(monitor.getReentrantLockDetector(),
+                monitor.getExecutorStarvationDetector());
+
+        long startNanos = System.nanoTime();
+        monitor.start();
+        long stalledAt = scenario.start(ctx, timeoutMs);
+        Set<String> participants = ctx.participantNames();
+
+        long deadline = stalledAt + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        long detectedAt = -1;
+        while (System.nanoTime() < deadline) {
+            if (!scenario.isBenign()) {
+                detectedAt = recorder.firstMatch(scenario, participants);
+                if (detectedAt >= 0) {
+                    break;
+                }
+            }
+            recorder.awaitReport(deadline);
+        }
+        long wallNanos = System.nanoTime() - startNanos;
+        long cpuNanos = detectorCpuNanos();
+        long ticks = 0;
+        for (DetectorStats.Snapshot stats : monitor.getStats()) {
+            ticks = Math.max(ticks, stats.getRuns());
+        }
+        int falsePositives = recorder.countFalsePositives(scenario, participants);
+        int reports = recorder.size();
+
+        System.out.println(RESULT_PREFIX + (detectedAt >= 0 ? 1 : 0)
+                + '\t' + (detectedAt >= 0 ? Math.max(0, detectedAt - stalledAt) : -1)
+                + '\t' + falsePositives + '\t' + reports + '\t' + cpuNanos + '\t' + wallNanos + '\t' + ticks);
+        System.out.flush();
+        // 死锁线程无法结束，直接退出进程
+        System.exit(0);
+    }
+
+    private static long detectorCpuNanos() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (!threadMXBean.isThreadCpuTimeSupported()) {
+            return -1;
+        }
+        long total = 0;
+        for (ThreadInfo info : threadMXBean.getThreadInfo(threadMXBean.getAllThreadIds())) {
+            if (info == null) {
+                continue;
+            }
+            for (String name : DETECTOR_THREADS) {
+                if (name.equals(info.getThreadName())) {
+                    long cpu = threadMXBean.getThreadCpuTime(info.getThreadId());
+                    if (cpu > 0) {
+                        total += cpu;
+                    }
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 记录每份报告和收到时的nanoTime
+     */
+    private static final class RecordingReporter implements DeadlockReporter {
+        private final List<DeadlockReport> reports = new ArrayList<>();
+        private final List<Long> times = new ArrayList<>();
+
+        @Override
+        public synchronized void report(DeadlockReport report) {
+            reports.add(report);
+            times.add(System.nanoTime());
+            notifyAll();
+        }
+
+        synchronized void awaitReport(long deadlineNanos) throws InterruptedException {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+            if (remaining > 0) {
+                wait(Math.min(remaining, 50));
+            }
+        }
+
+        synchronized long firstMatch(Scenario scenario, Set<String> participants) {
+            for (int i = 0; i < reports.size(); i++) {
+                if (matches(reports.get(i), scenario, participants)) {
+                    return times.get(i);
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * 误报：正常场景下的任何报告，卡住场景下不涉及参与线程的报告。
+         * 涉及参与线程但类型不同的报告（如显式锁死锁同时被报告为卡住线程）不算误报
+         */
+        synchronized int countFalsePositives(Scenario scenario, Set<String> participants) {
+            int count = 0;
+            for (DeadlockReport report : reports) {
+                if (scenario.isBenign() || !involves(report, participants)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        synchronized int size() {
+            return reports.size();
+        }
+
+        /**
+         * 类型符合预期并且涉及至少一个参与线程；正常场景下任何报告都不符合
+         */
+        private static boolean matches(DeadlockReport report, Scenario scenario, Set<String> participants) {
+            Set<DeadlockType> expected = scenario.expectedTypes();
+            if (expected == null || (!expected.isEmpty() && !expected.contains(report.getType()))) {
+                return false;
+            }
+            return involves(report, participants);
+        }
+
+        private static boolean involves(DeadlockReport report, Set<String> participants) {
+            for (ThreadDetail detail : report.getThreadDetails()) {
+                if (participants.contains(detail.getThreadName())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
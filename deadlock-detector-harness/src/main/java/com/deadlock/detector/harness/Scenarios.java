@@ -0,0 +1,370 @@
+package com.deadlock.detector.harness;
+
+import com.deadlock.detector.detector.TrackedThreadPoolExecutor;
+import com.deadlock.detector.model.DeadlockType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * 场景定义，规格写作"类型:规模"，如"sync-cycle:3"
+ * <ul>
+ * <li>sync-cycle:N - N个线程的synchronized环形等待</li>
+ * <li>lock-cycle:N - N个线程的显式锁环形等待</li>
+ * <li>mixed-cycle:N - synchronized和显式锁交替组成的环</li>
+ * <li>condition-hang:N - 持锁线程等待永远不会到来的signal，其余N-1个线程排队等这把锁</li>
+ * <li>socket-read:N - N个线程读取对端永远不发送数据的socket</li>
+ * <li>pool-starvation:N - N个线程的池里每个任务都等待同池子任务的结果</li>
+ * <li>convoy:N - N个线程反复抢同一把锁，一直有进展（不应报告）</li>
+ * <li>idle-pool:N - 空闲线程池和周期执行空任务的定时线程池（不应报告）</li>
+ * </ul>
+ */
+final class Scenarios {
+
+    static final String DEFAULT = "sync-cycle:2,sync-cycle:8,lock-cycle:2,lock-cycle:8,mixed-cycle:4,"
+            + "condition-hang:4,socket-read:2,pool-starvation:4,convoy:8,idle-pool:4";
+
+    private Scenarios() {
+    }
+
+    static List<Scenario> parseList(String specs) {
+        List<Scenario> list = new ArrayList<>();
+        for (String spec : ("default".equals(specs) ? DEFAULT : specs).split(",")) {
+            if (!spec.trim().isEmpty()) {
+                list.add(parse(spec.trim()));
+            }
+        }
+        return list;
+    }
+
+    static Scenario parse(String spec) {
+        int colon = spec.indexOf(':');
+        String kind = colon < 0 ? spec : spec.substring(0, colon);
+        int size = colon < 0 ? 2 : Integer.parseInt(spec.substring(colon + 1));
+        switch (kind) {
+            case "sync-cycle":
+                return new Cycle(kind, size, EnumSet.of(DeadlockType.SYNCHRONIZED));
+            case "lock-cycle":
+                return new Cycle(kind, size, EnumSet.of(DeadlockType.REENTRANT_LOCK));
+            case "mixed-cycle":
+                return new Cycle(kind, size, EnumSet.of(DeadlockType.SYNCHRONIZED, DeadlockType.REENTRANT_LOCK));
+            case "condition-hang":
+                return new ConditionHang(size);
+            case "socket-read":
+                return new SocketRead(size);
+            case "pool-starvation":
+                return new PoolStarvation(size);
+            case "convoy":
+                return new Convoy(size);
+            case "idle-pool":
+                return new IdlePool(size);
+            default:
+                throw new IllegalArgumentException("Unknown scenario: " + spec);
+        }
+    }
+
+    /**
+     * 环形等待：线程i持有资源i后请求资源i+1
+     */
+    private static final class Cycle extends Scenario {
+        private final Set<DeadlockType> expected;
+
+        Cycle(String kind, int size, Set<DeadlockType> expected) {
+            super(kind, Math.max(2, size));
+            this.expected = expected;
+        }
+
+        @Override
+        Set<DeadlockType> expectedTypes() {
+            return expected;
+        }
+
+        @Override
+        long start(final ScenarioContext ctx, long timeoutMs) throws Exception {
+            final Object[] resources = new Object[size];
+            for (int i = 0; i < size; i++) {
+                boolean monitor = expected.size() == 1
+                        ? expected.contains(DeadlockType.SYNCHRONIZED)
+                        : i % 2 == 0;
+                resources[i] = monitor ? new Object() : ctx.newLock("lock-" + i);
+            }
+            final CyclicBarrier allHolding = new CyclicBarrier(size);
+            ctx.expectArrivals(size);
+            for (int i = 0; i < size; i++) {
+                final Object first = resources[i];
+                final Object second = resources[(i + 1) % size];
+                ctx.start("cycle-" + i, new Runnable() {
+                    @Override
+                    public void run() {
+                        hold(first, new Runnable() {
+                            @Override
+                            public void run() {
+                                awaitQuietly(allHolding);
+                                ctx.arrive();
+                                hold(second, NOTHING);
+                            }
+                        });
+                    }
+                });
+            }
+            return ctx.awaitStalled(timeoutMs);
+        }
+    }
+
+    /**
+     * 等待方持有guard后在另一把锁的Condition上等待，其余线程排队获取guard
+     */
+    private static final class ConditionHang extends Scenario {
+        ConditionHang(int size) {
+            super("condition-hang", Math.max(2, size));
+        }
+
+        @Override
+        Set<DeadlockType> expectedTypes() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        long start(final ScenarioContext ctx, long timeoutMs) throws Exception {
+            final Lock guard = ctx.newLock("guard");
+            final Lock signal = ctx.newLock("signal");
+            final Condition never = signal.newCondition();
+            final CountDownLatch guardHeld = new CountDownLatch(1);
+            ctx.expectArrivals(size);
+            ctx.start("waiter", new Runnable() {
+                @Override
+                public void run() {
+                    guard.lock();
+                    signal.lock();
+                    guardHeld.countDown();
+                    ctx.arrive();
+                    never.awaitUninterruptibly();
+                }
+            });
+            guardHeld.await();
+            for (int i = 1; i < size; i++) {
+                ctx.start("queued-" + i, new Runnable() {
+                    @Override
+                    public void run() {
+                        ctx.arrive();
+                        guard.lock();
+                    }
+                });
+            }
+            return ctx.awaitStalled(timeoutMs);
+        }
+    }
+
+    /**
+     * 读取对端不发送数据的本地socket，线程状态一直是RUNNABLE
+     */
+    private static final class SocketRead extends Scenario {
+        SocketRead(int size) {
+            super("socket-read", Math.max(1, size));
+        }
+
+        @Override
+        Set<DeadlockType> expectedTypes() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        long start(final ScenarioContext ctx, long timeoutMs) throws Exception {
+            final ServerSocket server = new ServerSocket(0, size, InetAddress.getLoopbackAddress());
+            ctx.expectArrivals(size);
+            for (int i = 0; i < size; i++) {
+                ctx.start("reader-" + i, new Runnable() {
+                    @Override
+                    public void run() {
+                        try (Socket socket = new Socket(server.getInetAddress(), server.getLocalPort())) {
+                            InputStream in = socket.getInputStream();
+                            ctx.arrive();
+                            in.read();
+                        } catch (IOException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                });
+            }
+            // 接受连接后保持打开但不写入，进程退出时一起关闭
+            for (int i = 0; i < size; i++) {
+                server.accept();
+            }
+            return ctx.awaitArrivals(timeoutMs);
+        }
+    }
+
+    /**
+     * 每个任务提交子任务到同一个池并等待结果，子任务排在队列里永远不会执行
+     */
+    private static final class PoolStarvation extends Scenario {
+        PoolStarvation(int size) {
+            super("pool-starvation", Math.max(1, size));
+        }
+
+        @Override
+        Set<DeadlockType> expectedTypes() {
+            return EnumSet.of(DeadlockType.EXECUTOR_STARVATION);
+        }
+
+        @Override
+        long start(final ScenarioContext ctx, long timeoutMs) throws Exception {
+            final TrackedThreadPoolExecutor pool = ctx.newPool("pool", size);
+            final CyclicBarrier allRunning = new CyclicBarrier(size);
+            ctx.expectArrivals(size);
+            for (int i = 0; i < size; i++) {
+                pool.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        // 所有工作线程都被占住后再提交，保证子任务只能排队
+                        awaitQuietly(allRunning);
+                        Future<Integer> child = pool.submit(new Callable<Integer>() {
+                            @Override
+                            public Integer call() {
+                                return 1;
+                            }
+                        });
+                        ctx.arrive();
+                        try {
+                            child.get();
+                        } catch (InterruptedException | ExecutionException ignored) {
+                        }
+                    }
+                });
+            }
+            return ctx.awaitStalled(timeoutMs);
+        }
+    }
+
+    /**
+     * 高竞争但一直有进展，用来统计误报
+     */
+    private static final class Convoy extends Scenario {
+        Convoy(int size) {
+            super("convoy", Math.max(2, size));
+        }
+
+        @Override
+        Set<DeadlockType> expectedTypes() {
+            return null;
+        }
+
+        @Override
+        long start(ScenarioContext ctx, long timeoutMs) {
+            final Lock shared = ctx.newLock("convoy");
+            final Object monitor = new Object();
+            for (int i = 0; i < size; i++) {
+                final boolean useMonitor = i % 2 == 1;
+                ctx.start("convoy-" + i, new Runnable() {
+                    @Override
+                    public void run() {
+                        while (true) {
+                            if (useMonitor) {
+                                synchronized (monitor) {
+                                    spin(20_000);
+                                }
+                            } else {
+                                shared.lock();
+                                try {
+                                    spin(20_000);
+                                } finally {
+                                    shared.unlock();
+                                }
+                            }
+                        }
+                    }
+                });
+            }
+            return System.nanoTime();
+        }
+    }
+
+    /**
+     * 空闲的线程池和周期执行空任务的定时线程池，用来统计误报
+     */
+    private static final class IdlePool extends Scenario {
+        IdlePool(int size) {
+            super("idle-pool", Math.max(1, size));
+        }
+
+        @Override
+        Set<DeadlockType> expectedTypes() {
+            return null;
+        }
+
+        @Override
+        long start(ScenarioContext ctx, long timeoutMs) throws Exception {
+            TrackedThreadPoolExecutor pool = ctx.newPool("idle", size);
+            List<Future<?>> warmUp = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                warmUp.add(pool.submit(NOTHING));
+            }
+            for (Future<?> future : warmUp) {
+                future.get();
+            }
+            ScheduledExecutorService scheduler = ctx.newScheduler("timer", size);
+            for (int i = 0; i < size; i++) {
+                scheduler.scheduleWithFixedDelay(NOTHING, 0, 50, TimeUnit.MILLISECONDS);
+            }
+            return System.nanoTime();
+        }
+    }
+
+    private static final Runnable NOTHING = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    /**
+     * 获取monitor或显式锁后执行body
+     */
+    private static void hold(Object resource, Runnable body) {
+        if (resource instanceof Lock) {
+            Lock lock = (Lock) resource;
+            lock.lock();
+            try {
+                body.run();
+            } finally {
+                lock.unlock();
+            }
+        } else {
+            synchronized (resource) {
+                body.run();
+            }
+        }
+    }
+
+    private static void awaitQuietly(CyclicBarrier barrier) {
+        try {
+            barrier.await();
+        } catch (InterruptedException | BrokenBarrierException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void spin(long nanos) {
+        long end = System.nanoTime() + nanos;
+        while (System.nanoTime() < end) {
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.deadlock.detector.jvm;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 检测器发出的一份报告，堆栈是检测线程的，不记录
+ */
+@Name("com.deadlock.detector.DeadlockDetected")
+@Label("Deadlock Detected")
+@Category("Deadlock Detector")
+@Description("Report produced by a DeadlockDetector detector")
+@StackTrace(false)
+final class DeadlockDetectedEvent extends Event {
+
+    @Label("Type")
+    String type;
+
+    @Label("Message")
+    String message;
+
+    @Label("Thread Count")
+    int threadCount;
+
+    @Label("Threads")
+    @Description("Names of the reported threads")
+    String threads;
+
+    @Label("Locks")
+    @Description("Locks the reported threads wait for")
+    String locks;
+}
@@ -0,0 +1,77 @@
+package com.deadlock.detector.jvm;
+
+import com.deadlock.detector.model.DeadlockReport;
+import com.deadlock.detector.model.DeadlockType;
+import com.deadlock.detector.model.ThreadDetail;
+import com.deadlock.detector.reporter.DeadlockReporter;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 过滤同一死锁的重复报告
+ * <p>
+ * 同时开启ThreadMXBean检测和被追踪锁检测时，被追踪锁之间的死锁会被两个检测器各报告一次。
+ * 按参与线程的集合去重，窗口内线程集合相同的死锁报告只输出第一份；
+ * 两个检测器各自不会重复报告同一个死锁，窗口只需覆盖两者发现的时间差。
+ */
+final class DuplicateDeadlockFilter implements DeadlockReporter {
+
+    private final DeadlockReporter delegate;
+    private final long windowMs;
+    // 线程集合 -> 首次报告时间，按报告顺序排列
+    private final Map<Set<Long>, Long> reported = new LinkedHashMap<>();
+    private long suppressed;
+
+    DuplicateDeadlockFilter(DeadlockReporter delegate, long windowMs) {
+        this.delegate = delegate;
+        this.windowMs = windowMs;
+    }
+
+    @Override
+    public void report(DeadlockReport report) {
+        if (isDeadlock(report.getType()) && !report.getThreadDetails().isEmpty()
+                && !markReported(threadIds(report), System.currentTimeMillis())) {
+            return;
+        }
+        delegate.report(report);
+    }
+
+    private static boolean isDeadlock(DeadlockType type) {
+        return type == DeadlockType.SYNCHRONIZED || type == DeadlockType.REENTRANT_LOCK;
+    }
+
+    private static Set<Long> threadIds(DeadlockReport report) {
+        Set<Long> ids = new HashSet<>();
+        for (ThreadDetail detail : report.getThreadDetails()) {
+            ids.add(detail.getThreadId());
+        }
+        return ids;
+    }
+
+    /**
+     * 记录一次报告，窗口内已报告过相同线程集合时返回false
+     */
+    private synchronized boolean markReported(Set<Long> threadIds, long now) {
+        Iterator<Long> it = reported.values().iterator();
+        while (it.hasNext() && now - it.next() > windowMs) {
+            it.remove();
+        }
+        if (reported.containsKey(threadIds)) {
+            suppressed++;
+            return false;
+        }
+        reported.put(threadIds, now);
+        return true;
+    }
+
+    /**
+     * 被过滤掉的重复报告数
+     */
+    synchronized long getSuppressedCount() {
+        return suppressed;
+    }
+}
@@ -0,0 +1,69 @@
+package com.deadlock.detector.jvm;
+
+import com.deadlock.detector.detector.LockTracer;
+import com.deadlock.detector.detector.LockWrapper;
+
+import jdk.jfr.EventType;
+
+/**
+ * 把被追踪锁的等待和持有输出为JFR事件
+ * <p>
+ * 事件未启用（没有在录制或被配置关闭）时只判断一次{@link EventType#isEnabled()}，不创建事件对象；
+ * 启用后阈值在提交时由{@code shouldCommit()}过滤，未超过阈值的事件不填充字段。
+ * <pre>
+ * reentrantLockDetector.setLockTracer(new JfrLockTracer());
+ * </pre>
+ */
+public final class JfrLockTracer implements LockTracer {
+
+    private static final EventType WAIT_TYPE = EventType.getEventType(LockWaitEvent.class);
+    private static final EventType HOLD_TYPE = EventType.getEventType(LockHoldEvent.class);
+
+    @Override
+    public Object waitBegin(LockWrapper lock, long ownerThreadId) {
+        if (!WAIT_TYPE.isEnabled()) {
+            return null;
+        }
+        LockWaitEvent event = new LockWaitEvent();
+        event.ownerThreadId = ownerThreadId;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void waitEnd(Object token, LockWrapper lock, boolean acquired) {
+        if (!(token instanceof LockWaitEvent)) {
+            return;
+        }
+        LockWaitEvent event = (LockWaitEvent) token;
+        event.end();
+        if (event.shouldCommit()) {
+            event.lockName = lock.getName();
+            event.acquired = acquired;
+            event.commit();
+        }
+    }
+
+    @Override
+    public Object holdBegin(LockWrapper lock) {
+        if (!HOLD_TYPE.isEnabled()) {
+            return null;
+        }
+        LockHoldEvent event = new LockHoldEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void holdEnd(Object token, LockWrapper lock) {
+        if (!(token instanceof LockHoldEvent)) {
+            return;
+        }
+        LockHoldEvent event = (LockHoldEvent) token;
+        event.end();
+        if (event.shouldCommit()) {
+            event.lockName = lock.getName();
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.deadlock.detector.jvm;
+
+import com.deadlock.detector.model.DeadlockReport;
+import com.deadlock.detector.model.ThreadDetail;
+import com.deadlock.detector.reporter.DeadlockReporter;
+
+import java.util.List;
+
+import jdk.jfr.EventType;
+
+/**
+ * 把报告输出为JFR事件，和CPU、GC等数据显示在同一条时间线上
+ * <p>
+ * 没有在录制时不创建事件对象。通常与其他reporter组合使用：
+ * <pre>
+ * new CompositeReporter(Arrays.asList(new JfrReporter(), uploadReporter))
+ * </pre>
+ */
+public class JfrReporter implements DeadlockReporter {
+
+    private static final EventType EVENT_TYPE = EventType.getEventType(DeadlockDetectedEvent.class);
+
+    @Override
+    public void report(DeadlockReport report) {
+        if (!EVENT_TYPE.isEnabled()) {
+            return;
+        }
+        DeadlockDetectedEvent event = new DeadlockDetectedEvent();
+        List<ThreadDetail> details = report.getThreadDetails();
+        StringBuilder threads = new StringBuilder();
+        StringBuilder locks = new StringBuilder();
+        for (ThreadDetail detail : details) {
+            if (threads.length() > 0) {
+                threads.append(", ");
+            }
+            threads.append(detail.getThreadName());
+            String lock = detail.getWaitingForLock() != null ? detail.getWaitingForLock() : detail.getLockName();
+            if (lock != null) {
+                if (locks.length() > 0) {
+                    locks.append(", ");
+                }
+                locks.append(lock);
+            }
+        }
+        event.type = report.getType() != null ? report.getType().name() : null;
+        event.message = report.getMessage();
+        event.threadCount = details.size();
+        event.threads = threads.toString();
+        event.locks = locks.toString();
+        event.commit();
+    }
+}
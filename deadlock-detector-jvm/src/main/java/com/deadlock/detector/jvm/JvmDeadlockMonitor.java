@@ -0,0 +1,420 @@
+package com.deadlock.detector.jvm;
+
+import com.deadlock.detector.DetectorLog;
+import com.deadlock.detector.detector.ExecutorStarvationDetector;
+import com.deadlock.detector.detector.IDeadlockDetector;
+import com.deadlock.detector.detector.PriorityInversionDetector;
+import com.deadlock.detector.detector.ReentrantLockDetector;
+import com.deadlock.detector.detector.StuckThreadDetector;
+import com.deadlock.detector.detector.ThreadPriorityAccess;
+import com.deadlock.detector.detector.ThreadSnapshotService;
+import com.deadlock.detector.reporter.AsyncReporter;
+import com.deadlock.detector.reporter.CompositeReporter;
+import com.deadlock.detector.reporter.DeadlockReporter;
+import com.deadlock.detector.reporter.LogReporter;
+import com.deadlock.detector.reporter.StackDepthReporter;
+import com.deadlock.detector.stats.DetectorStats;
+import com.deadlock.detector.stats.LockEventRecorder;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JVM服务端的检测入口 - 按固定间隔在一个后台线程上运行所有检测器
+ * <p>
+ * 默认只启用{@link ThreadMXBeanDetector}；需要锁等待关系、线程池饥饿检测或自定义检测器时在Builder中开启。
+ * 所有检测器共用同一个报告输出和线程快照，开销统计与Android端的DeadlockDetector.getStats()一致。
+ * <pre>
+ * JvmDeadlockMonitor monitor = new JvmDeadlockMonitor.Builder()
+ *         .interval(10_000)
+ *         .reporter(new HttpUploadReporter.Builder(url, spoolDir).build())
+ *         .build();
+ * monitor.start();
+ * </pre>
+ */
+public final class JvmDeadlockMonitor {
+
+    private static final String TAG = "JvmDeadlockMonitor";
+
+    private final long intervalMs;
+    private final long initialDelayMs;
+    private final DeadlockReporter reporter;
+    private final AsyncReporter asyncReporter;
+    private final List<IDeadlockDetector> detectors;
+    private final List<DetectorStats> detectorStats;
+    private final ReentrantLockDetector reentrantLockDetector;
+    private final ExecutorStarvationDetector executorStarvationDetector;
+    private final StuckThreadDetector stuckThreadDetector;
+    private final PriorityInversionDetector priorityInversionDetector;
+    private final ThreadSnapshotService snapshotService = ThreadSnapshotService.getDefault();
+    private final LockEventRecorder eventRecorder = LockEventRecorder.getDefault();
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    private final ScheduledExecutorService scheduler;
+    private volatile boolean running;
+
+    private JvmDeadlockMonitor(Builder builder) {
+        this.intervalMs = builder.intervalMs;
+        this.initialDelayMs = builder.initialDelayMs;
+
+        DeadlockReporter baseReporter = builder.reporter != null ? builder.reporter : new LogReporter();
+        DeadlockReporter outputReporter;
+        if (builder.asyncReporting) {
+            asyncReporter = new AsyncReporter(baseReporter);
+            outputReporter = asyncReporter;
+        } else {
+            asyncReporter = null;
+            outputReporter = baseReporter;
+        }
+        // JFR事件在检测线程上提交，时间点和检测一致
+        DeadlockReporter chain = builder.jfrEvents
+                ? new CompositeReporter(Arrays.asList(new JfrReporter(), outputReporter))
+                : outputReporter;
+        if (builder.detectDeadlocks && builder.trackLocks) {
+            // 被追踪锁之间的死锁两个检测器都会发现，通常在同一次检测中，最迟相差一个间隔
+            chain = new DuplicateDeadlockFilter(chain, 2 * intervalMs);
+        }
+        // 深度只作用于本实例的报告，不修改共用的快照服务
+        reporter = new StackDepthReporter(chain, builder.maxStackDepth);
+
+        List<IDeadlockDetector> list = new ArrayList<>();
+        if (builder.detectDeadlocks) {
+            list.add(new ThreadMXBeanDetector(threadMXBean, reporter, builder.maxStackDepth));
+        }
+        if (builder.trackLocks) {
+            reentrantLockDetector = new ReentrantLockDetector(reporter);
+            if (builder.jfrEvents) {
+                reentrantLockDetector.setLockTracer(new JfrLockTracer());
+            }
+            list.add(reentrantLockDetector);
+        } else {
+            reentrantLockDetector = null;
+        }
+        if (reentrantLockDetector != null && builder.inversionThresholdMs >= 0) {
+            priorityInversionDetector = new PriorityInversionDetector(reentrantLockDetector,
+                    ThreadPriorityAccess.JAVA, builder.inversionThresholdMs, reporter);
+            priorityInversionDetector.setBoostOwners(builder.boostOnInversion);
+            list.add(priorityInversionDetector);
+        } else {
+            priorityInversionDetector = null;
+        }
+        if (builder.queueLatencyThresholdMs >= 0) {
+            executorStarvationDetector = new ExecutorStarvationDetector(builder.queueLatencyThresholdMs, reporter);
+            list.add(executorStarvationDetector);
+        } else {
+            executorStarvationDetector = null;
+        }
+        if (builder.stuckThreadThresholdMs > 0) {
+            stuckThreadDetector = new StuckThreadDetector(builder.stuckThreadThresholdMs, reporter);
+            list.add(stuckThreadDetector);
+        } else {
+            stuckThreadDetector = null;
+        }
+        list.addAll(builder.extraDetectors);
+        this.detectors = Collections.unmodifiableList(list);
+
+        List<DetectorStats> stats = new ArrayList<>(list.size());
+        for (IDeadlockDetector detector : list) {
+            stats.add(new DetectorStats(detector.getName()));
+        }
+        this.detectorStats = Collections.unmodifiableList(stats);
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "JvmDeadlockMonitor");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                performDetection();
+            }
+        }, initialDelayMs, intervalMs, TimeUnit.MILLISECONDS);
+        DetectorLog.i(TAG, "Started " + detectors.size() + " detector(s), interval " + intervalMs + "ms");
+    }
+
+    /**
+     * 停止检测并销毁所有检测器，停止后不能再次启动
+     */
+    public synchronized void stop() {
+        running = false;
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(1, TimeUnit.SECONDS)) {
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        for (IDeadlockDetector detector : detectors) {
+            try {
+                detector.destroy();
+            } catch (Exception e) {
+                DetectorLog.e(TAG, "Error destroying " + detector.getName(), e);
+            }
+        }
+        if (asyncReporter != null) {
+            asyncReporter.shutdown(1000);
+        }
+    }
+
+    /**
+     * 立即在检测线程上执行一次检测
+     */
+    public void detectNow() {
+        if (running) {
+            scheduler.execute(new Runnable() {
+                @Override
+                public void run() {
+                    performDetection();
+                }
+            });
+        }
+    }
+
+    private void performDetection() {
+        snapshotService.beginTick();
+        long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < detectors.size(); i++) {
+            IDeadlockDetector detector = detectors.get(i);
+            long wallStart = System.nanoTime();
+            long cpuStart = threadCpuTimeNanos();
+            long allocStart = threadAllocatedBytes(threadId);
+            if (eventRecorder.isRecording()) {
+                eventRecorder.record(LockEventRecorder.TICK_BEGIN, detector.getName(), -1);
+            }
+            try {
+                detector.detect();
+            } catch (Exception e) {
+                DetectorLog.e(TAG, "Detection error in " + detector.getName(), e);
+            }
+            if (eventRecorder.isRecording()) {
+                eventRecorder.record(LockEventRecorder.TICK_END, detector.getName(), -1);
+            }
+            long cpuEnd = threadCpuTimeNanos();
+            long allocEnd = threadAllocatedBytes(threadId);
+            detectorStats.get(i).record(
+                    System.nanoTime() - wallStart,
+                    cpuStart >= 0 && cpuEnd >= 0 ? cpuEnd - cpuStart : DetectorStats.UNSUPPORTED,
+                    allocStart >= 0 && allocEnd >= 0 ? allocEnd - allocStart : DetectorStats.UNSUPPORTED,
+                    detector.getLastScannedThreadCount(),
+                    detector.getLastGraphSize());
+        }
+    }
+
+    private long threadCpuTimeNanos() {
+        return threadMXBean.isCurrentThreadCpuTimeSupported()
+                ? threadMXBean.getCurrentThreadCpuTime() : DetectorStats.UNSUPPORTED;
+    }
+
+    private long threadAllocatedBytes(long threadId) {
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threadMXBean;
+            if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()) {
+                return hotspot.getThreadAllocatedBytes(threadId);
+            }
+        }
+        return DetectorStats.UNSUPPORTED;
+    }
+
+    /**
+     * 所有检测器共用的报告输出，自定义检测器可以复用
+     */
+    public DeadlockReporter getReporter() {
+        return reporter;
+    }
+
+    /**
+     * 异步报告队列，未开启时返回null
+     */
+    public AsyncReporter getAsyncReporter() {
+        return asyncReporter;
+    }
+
+    /**
+     * 锁追踪检测器，用于创建被追踪的锁，未开启时返回null
+     */
+    public ReentrantLockDetector getReentrantLockDetector() {
+        return reentrantLockDetector;
+    }
+
+    /**
+     * 线程池饥饿检测器，用于注册被追踪的线程池，未开启时返回null
+     */
+    public ExecutorStarvationDetector getExecutorStarvationDetector() {
+        return executorStarvationDetector;
+    }
+
+    /**
+     * 卡住线程检测器，用于配置空闲帧白名单，未开启时返回null
+     */
+    public StuckThreadDetector getStuckThreadDetector() {
+        return stuckThreadDetector;
+    }
+
+    /**
+     * 优先级反转检测器，用于查看反转记录，未开启时返回null
+     */
+    public PriorityInversionDetector getPriorityInversionDetector() {
+        return priorityInversionDetector;
+    }
+
+    public List<IDeadlockDetector> getDetectors() {
+        return detectors;
+    }
+
+    public List<DetectorStats.Snapshot> getStats() {
+        List<DetectorStats.Snapshot> snapshots = new ArrayList<>(detectorStats.size());
+        for (DetectorStats stats : detectorStats) {
+            snapshots.add(stats.snapshot());
+        }
+        return snapshots;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public static class Builder {
+        private long intervalMs = 5000;
+        private long initialDelayMs = 0;
+        private DeadlockReporter reporter;
+        private boolean asyncReporting = true;
+        private int maxStackDepth = StackDepthReporter.DEFAULT_MAX_STACK_DEPTH;
+        private boolean detectDeadlocks = true;
+        private boolean trackLocks = false;
+        private boolean jfrEvents = false;
+        private long queueLatencyThresholdMs = -1; // 小于0表示不启用线程池饥饿检测
+        private long stuckThreadThresholdMs = 0;   // 0表示不启用卡住线程检测
+        private long inversionThresholdMs = -1;    // 小于0表示不启用优先级反转检测
+        private boolean boostOnInversion = false;
+        private final List<IDeadlockDetector> extraDetectors = new ArrayList<>();
+
+        /**
+         * 检测间隔（毫秒）
+         */
+        public Builder interval(long intervalMs) {
+            this.intervalMs = intervalMs;
+            return this;
+        }
+
+        public Builder initialDelay(long delayMs) {
+            this.initialDelayMs = delayMs;
+            return this;
+        }
+
+        /**
+         * 报告输出，为null时通过DetectorLog输出到System.err
+         */
+        public Builder reporter(DeadlockReporter reporter) {
+            this.reporter = reporter;
+            return this;
+        }
+
+        /**
+         * 报告是否在单独线程输出
+         */
+        public Builder asyncReporting(boolean async) {
+            this.asyncReporting = async;
+            return this;
+        }
+
+        /**
+         * 报告中每个堆栈保留的最大帧数（从栈顶开始），0表示不截断
+         */
+        public Builder maxStackDepth(int depth) {
+            this.maxStackDepth = depth;
+            return this;
+        }
+
+        /**
+         * 是否用ThreadMXBean检测synchronized和j.u.c锁的死锁
+         */
+        public Builder detectDeadlocks(boolean detect) {
+            this.detectDeadlocks = detect;
+            return this;
+        }
+
+        /**
+         * 是否启用被追踪锁的检测（锁等待看门狗、锁事件时间线需要）
+         * <p>
+         * 与{@link #detectDeadlocks(boolean)}同时开启时，被追踪锁之间的死锁按参与线程去重，只报告一次
+         */
+        public Builder trackLocks(boolean track) {
+            this.trackLocks = track;
+            return this;
+        }
+
+        /**
+         * 是否输出JFR事件：报告输出为DeadlockDetected事件，开启trackLocks时还输出锁等待和持有事件
+         */
+        public Builder jfrEvents(boolean enabled) {
+            this.jfrEvents = enabled;
+            return this;
+        }
+
+        /**
+         * 启用线程池饥饿检测，任务排队超过阈值时报告，0表示只检测线程池内的互相等待
+         */
+        public Builder detectExecutorStarvation(long queueLatencyThresholdMs) {
+            this.queueLatencyThresholdMs = queueLatencyThresholdMs;
+            return this;
+        }
+
+        /**
+         * 启用卡住线程检测，等待中的线程堆栈超过阈值没有变化时报告
+         */
+        public Builder detectStuckThreads(long thresholdMs) {
+            this.stuckThreadThresholdMs = thresholdMs;
+            return this;
+        }
+
+        /**
+         * 启用优先级反转检测（需要trackLocks），反转持续超过阈值时报告，0表示发现即报告
+         * <p>
+         * 使用Java线程优先级；HotSpot在Linux上默认不把它映射到系统调度优先级
+         */
+        public Builder detectPriorityInversion(long reportThresholdMs) {
+            this.inversionThresholdMs = reportThresholdMs;
+            return this;
+        }
+
+        /**
+         * 报告优先级反转时是否临时提升持有者的优先级，等待结束后恢复
+         */
+        public Builder boostPriorityOnInversion(boolean boost) {
+            this.boostOnInversion = boost;
+            return this;
+        }
+
+        /**
+         * 添加自定义检测器
+         */
+        public Builder addDetector(IDeadlockDetector detector) {
+            this.extraDetectors.add(detector);
+            return this;
+        }
+
+        public JvmDeadlockMonitor build() {
+            return new JvmDeadlockMonitor(this);
+        }
+    }
+}
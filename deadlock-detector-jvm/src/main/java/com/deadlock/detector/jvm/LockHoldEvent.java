@@ -0,0 +1,22 @@
+package com.deadlock.detector.jvm;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * 被追踪锁的持有，持续时间为首次获得到完全释放，堆栈为释放位置
+ */
+@Name("com.deadlock.detector.LockHold")
+@Label("Tracked Lock Hold")
+@Category({"Deadlock Detector", "Locks"})
+@Description("Lock tracked by ReentrantLockDetector held by a thread, stack trace is the release site")
+@Threshold("20 ms")
+final class LockHoldEvent extends Event {
+
+    @Label("Lock Name")
+    String lockName;
+}
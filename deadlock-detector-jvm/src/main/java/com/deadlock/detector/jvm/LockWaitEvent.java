@@ -0,0 +1,30 @@
+package com.deadlock.detector.jvm;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * 被追踪锁的阻塞等待，持续时间为开始等待到获得锁（或放弃）
+ */
+@Name("com.deadlock.detector.LockWait")
+@Label("Tracked Lock Wait")
+@Category({"Deadlock Detector", "Locks"})
+@Description("Thread blocked on a lock tracked by ReentrantLockDetector")
+@Threshold("20 ms")
+final class LockWaitEvent extends Event {
+
+    @Label("Lock Name")
+    String lockName;
+
+    @Label("Owner Thread Id")
+    @Description("Thread holding the lock when the wait began, -1 if unknown")
+    long ownerThreadId;
+
+    @Label("Acquired")
+    @Description("False when the wait timed out or was interrupted")
+    boolean acquired;
+}
@@ -0,0 +1,189 @@
+package com.deadlock.detector.jvm;
+
+import com.deadlock.detector.analyzer.DeadlockAnalyzer;
+import com.deadlock.detector.detector.IDeadlockDetector;
+import com.deadlock.detector.model.DeadlockReport;
+import com.deadlock.detector.model.DeadlockType;
+import com.deadlock.detector.model.StackDictionary;
+import com.deadlock.detector.model.ThreadDetail;
+import com.deadlock.detector.reporter.DeadlockReporter;
+import com.deadlock.detector.reporter.LogReporter;
+
+import java.lang.management.LockInfo;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MonitorInfo;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * JVM死锁检测器 - 基于ThreadMXBean
+ * <p>
+ * 每次检测只调用{@link ThreadMXBean#findDeadlockedThreads()}，由JVM直接给出处于死锁中的线程，
+ * 同时覆盖synchronized和java.util.concurrent的锁，不需要包装锁，也不需要获取所有线程的堆栈。
+ * 发现死锁后才用getThreadInfo(ids, lockedMonitors, lockedSynchronizers, maxDepth)
+ * 取这些线程的精确锁持有关系和堆栈。同一组死锁线程只报告一次，解开后再次出现会重新报告。
+ */
+public class ThreadMXBeanDetector implements IDeadlockDetector {
+
+    public static final int DEFAULT_MAX_STACK_DEPTH = 64;
+
+    private final ThreadMXBean threadMXBean;
+    private final DeadlockReporter reporter;
+    private final DeadlockAnalyzer analyzer;
+    private final int maxStackDepth;
+    private final boolean lockedMonitors;
+    private final boolean lockedSynchronizers;
+
+    // 已报告过的死锁线程集合
+    private final Set<Set<Long>> reportedDeadlocks = new HashSet<>();
+
+    private volatile int lastScannedThreadCount;
+    private volatile int lastGraphSize;
+
+    public ThreadMXBeanDetector() {
+        this(new LogReporter());
+    }
+
+    public ThreadMXBeanDetector(DeadlockReporter reporter) {
+        this(ManagementFactory.getThreadMXBean(), reporter, DEFAULT_MAX_STACK_DEPTH);
+    }
+
+    /**
+     * @param maxStackDepth 每个线程获取的最大栈帧数
+     */
+    public ThreadMXBeanDetector(ThreadMXBean threadMXBean, DeadlockReporter reporter, int maxStackDepth) {
+        this.threadMXBean = threadMXBean;
+        this.reporter = reporter;
+        this.analyzer = new DeadlockAnalyzer();
+        this.maxStackDepth = maxStackDepth;
+        this.lockedMonitors = threadMXBean.isObjectMonitorUsageSupported();
+        this.lockedSynchronizers = threadMXBean.isSynchronizerUsageSupported();
+    }
+
+    @Override
+    public void detect() {
+        long[] ids = lockedSynchronizers
+                ? threadMXBean.findDeadlockedThreads()
+                : threadMXBean.findMonitorDeadlockedThreads();
+        lastScannedThreadCount = threadMXBean.getThreadCount();
+        if (ids == null) {
+            lastGraphSize = 0;
+            reportedDeadlocks.clear();
+            return;
+        }
+        lastGraphSize = ids.length;
+
+        Set<Long> deadlocked = new HashSet<>();
+        for (long id : ids) {
+            deadlocked.add(id);
+        }
+        // 已经解开的死锁不再记录，再次出现时重新报告
+        Iterator<Set<Long>> it = reportedDeadlocks.iterator();
+        while (it.hasNext()) {
+            if (!deadlocked.containsAll(it.next())) {
+                it.remove();
+            }
+        }
+
+        ThreadInfo[] infos = threadMXBean.getThreadInfo(ids, lockedMonitors, lockedSynchronizers, maxStackDepth);
+        Map<Long, ThreadInfo> infoById = new HashMap<>();
+        Map<Long, Long> waitForGraph = new HashMap<>();
+        for (ThreadInfo info : infos) {
+            if (info == null) {
+                // 线程已结束
+                continue;
+            }
+            infoById.put(info.getThreadId(), info);
+            if (info.getLockOwnerId() >= 0) {
+                waitForGraph.put(info.getThreadId(), info.getLockOwnerId());
+            }
+        }
+
+        for (List<Long> cycle : analyzer.detectCycles(waitForGraph)) {
+            Set<Long> key = new HashSet<>(cycle);
+            if (reportedDeadlocks.add(key)) {
+                reporter.report(buildReport(cycle, infoById));
+            }
+        }
+    }
+
+    private DeadlockReport buildReport(List<Long> cycle, Map<Long, ThreadInfo> infoById) {
+        boolean monitorOnly = true;
+        for (Long id : cycle) {
+            ThreadInfo info = infoById.get(id);
+            // 等待monitor的线程是BLOCKED，等待j.u.c锁的线程是park后的WAITING
+            if (info != null && info.getThreadState() != Thread.State.BLOCKED) {
+                monitorOnly = false;
+            }
+        }
+
+        DeadlockReport.Builder builder = new DeadlockReport.Builder()
+                .type(monitorOnly ? DeadlockType.SYNCHRONIZED : DeadlockType.REENTRANT_LOCK)
+                .timestamp(System.currentTimeMillis())
+                .message("Detected deadlock cycle of " + cycle.size() + " thread(s) by ThreadMXBean");
+
+        for (Long id : cycle) {
+            ThreadInfo info = infoById.get(id);
+            if (info == null) {
+                continue;
+            }
+            String lockName = info.getLockName();
+            builder.addThreadDetail(new ThreadDetail.Builder()
+                    .stackDictionary(StackDictionary.getDefault())
+                    .threadId(info.getThreadId())
+                    .threadName(info.getThreadName())
+                    .threadState(info.getThreadState().name())
+                    .lockName(lockName)
+                    .lockOwnerId(info.getLockOwnerId())
+                    .lockOwnerName(info.getLockOwnerName())
+                    .waitingForLock(lockName)
+                    .heldLocks(heldLocks(info))
+                    .stackTrace(info.getStackTrace())
+                    .build());
+        }
+        return builder.build();
+    }
+
+    /**
+     * 线程持有的monitor和ownable synchronizer
+     */
+    private static List<String> heldLocks(ThreadInfo info) {
+        MonitorInfo[] monitors = info.getLockedMonitors();
+        LockInfo[] synchronizers = info.getLockedSynchronizers();
+        List<String> held = new ArrayList<>(monitors.length + synchronizers.length);
+        for (MonitorInfo monitor : monitors) {
+            held.add(monitor.toString());
+        }
+        for (LockInfo synchronizer : synchronizers) {
+            held.add(synchronizer.toString());
+        }
+        return held;
+    }
+
+    @Override
+    public int getLastScannedThreadCount() {
+        return lastScannedThreadCount;
+    }
+
+    @Override
+    public int getLastGraphSize() {
+        return lastGraphSize;
+    }
+
+    @Override
+    public String getName() {
+        return "ThreadMXBeanDetector";
+    }
+
+    @Override
+    public void destroy() {
+        reportedDeadlocks.clear();
+    }
+}
@@ -0,0 +1,43 @@
+package com.deadlock.detector.jvm;
+
+import com.deadlock.detector.detector.ThreadSnapshotService;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+
+/**
+ * 基于ThreadMXBean的全线程转储，通过ServiceLoader注册为{@link ThreadSnapshotService}的默认实现
+ * <p>
+ * getThreadInfo(ids, maxDepth)在一次VM操作中取得所有线程的堆栈和状态，两者是同一时刻的。
+ */
+public final class ThreadMXBeanDumper implements ThreadSnapshotService.Dumper {
+
+    private static final StackTraceElement[] EMPTY = new StackTraceElement[0];
+
+    private final ThreadMXBean threadMXBean;
+
+    public ThreadMXBeanDumper() {
+        this(ManagementFactory.getThreadMXBean());
+    }
+
+    public ThreadMXBeanDumper(ThreadMXBean threadMXBean) {
+        this.threadMXBean = threadMXBean;
+    }
+
+    @Override
+    public void dumpAll(List<Thread> threads, StackTraceElement[][] stacks, Thread.State[] states) {
+        long[] ids = new long[threads.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = threads.get(i).getId();
+        }
+        ThreadInfo[] infos = threadMXBean.getThreadInfo(ids, Integer.MAX_VALUE);
+        for (int i = 0; i < ids.length; i++) {
+            ThreadInfo info = infos[i];
+            // 线程已结束
+            stacks[i] = info != null ? info.getStackTrace() : EMPTY;
+            states[i] = info != null ? info.getThreadState() : Thread.State.TERMINATED;
+        }
+    }
+}
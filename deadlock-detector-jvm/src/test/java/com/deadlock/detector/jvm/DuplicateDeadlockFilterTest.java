@@ -0,0 +1,55 @@
+package com.deadlock.detector.jvm;
+
+import com.deadlock.detector.model.DeadlockReport;
+import com.deadlock.detector.model.DeadlockType;
+import com.deadlock.detector.model.ThreadDetail;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class DuplicateDeadlockFilterTest {
+
+    private final List<DeadlockReport> reports = new ArrayList<>();
+
+    @Test
+    public void reportsSameThreadSetOnce() {
+        DuplicateDeadlockFilter filter = new DuplicateDeadlockFilter(reports::add, 60_000);
+
+        // ThreadMXBean和被追踪锁检测器报告同一个环，线程顺序和类型可以不同
+        filter.report(report(DeadlockType.REENTRANT_LOCK, 1, 2));
+        filter.report(report(DeadlockType.SYNCHRONIZED, 2, 1));
+        filter.report(report(DeadlockType.REENTRANT_LOCK, 1, 3));
+        // 其他类型的报告不参与去重
+        filter.report(report(DeadlockType.STUCK_THREAD, 1, 2));
+        filter.report(report(DeadlockType.STUCK_THREAD, 1, 2));
+
+        assertEquals(4, reports.size());
+        assertEquals(1, filter.getSuppressedCount());
+    }
+
+    @Test
+    public void reportsAgainAfterWindow() throws InterruptedException {
+        DuplicateDeadlockFilter filter = new DuplicateDeadlockFilter(reports::add, 0);
+        filter.report(report(DeadlockType.REENTRANT_LOCK, 1, 2));
+        Thread.sleep(5);
+        filter.report(report(DeadlockType.REENTRANT_LOCK, 1, 2));
+
+        assertEquals(2, reports.size());
+        assertEquals(0, filter.getSuppressedCount());
+    }
+
+    private static DeadlockReport report(DeadlockType type, long... threadIds) {
+        DeadlockReport.Builder builder = new DeadlockReport.Builder().type(type);
+        for (long id : threadIds) {
+            builder.addThreadDetail(new ThreadDetail.Builder()
+                    .threadId(id)
+                    .threadName("thread-" + id)
+                    .build());
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,164 @@
+package com.deadlock.detector.jvm;
+
+import com.deadlock.detector.model.DeadlockReport;
+import com.deadlock.detector.model.DeadlockType;
+import com.deadlock.detector.model.ThreadDetail;
+import com.deadlock.detector.reporter.DeadlockReporter;
+import com.deadlock.detector.reporter.StackDepthReporter;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ThreadMXBeanDetectorTest {
+
+    private static final long TIMEOUT_MS = 5000;
+
+    private final List<Thread> threads = new ArrayList<>();
+
+    @Test
+    public void reportsSynchronizedDeadlockOnce() throws Exception {
+        Object a = new Object();
+        Object b = new Object();
+        CountDownLatch held = new CountDownLatch(2);
+        startMonitorDeadlock(a, b, held);
+        startMonitorDeadlock(b, a, held);
+
+        List<DeadlockReport> reports = Collections.synchronizedList(new ArrayList<DeadlockReport>());
+        ThreadMXBeanDetector detector = new ThreadMXBeanDetector(ownReports(reports));
+        awaitReports(detector, reports);
+        // 同一组死锁线程只报告一次
+        detector.detect();
+        assertEquals(1, reports.size());
+
+        DeadlockReport report = reports.get(0);
+        assertEquals(DeadlockType.SYNCHRONIZED, report.getType());
+        assertEquals(2, report.getThreadDetails().size());
+        for (ThreadDetail detail : report.getThreadDetails()) {
+            assertEquals("BLOCKED", detail.getThreadState());
+            assertEquals(1, detail.getHeldLocks().size());
+        }
+    }
+
+    @Test
+    public void reportsReentrantLockDeadlock() throws Exception {
+        ReentrantLock a = new ReentrantLock();
+        ReentrantLock b = new ReentrantLock();
+        CountDownLatch held = new CountDownLatch(2);
+        startLockDeadlock(a, b, held);
+        startLockDeadlock(b, a, held);
+
+        List<DeadlockReport> reports = Collections.synchronizedList(new ArrayList<DeadlockReport>());
+        awaitReports(new ThreadMXBeanDetector(ownReports(reports)), reports);
+        assertEquals(DeadlockType.REENTRANT_LOCK, reports.get(0).getType());
+    }
+
+    @Test
+    public void truncatesStacksPerMonitor() {
+        List<DeadlockReport> shallow = new ArrayList<>();
+        List<DeadlockReport> full = new ArrayList<>();
+        DeadlockReport report = deepReport(100);
+        new StackDepthReporter(shallow::add, 2).report(report);
+        new StackDepthReporter(full::add, 0).report(report);
+        // 一个监控的截断深度不影响另一个监控的报告
+        assertEquals(2, shallow.get(0).getThreadDetails().get(0).getStackTrace().length);
+        assertEquals(100, full.get(0).getThreadDetails().get(0).getStackTrace().length);
+        assertEquals(100, report.getThreadDetails().get(0).getStackTrace().length);
+    }
+
+    /**
+     * 死锁的线程无法结束，之前测试留下的死锁也会被检测到，只保留本测试线程的报告
+     */
+    private DeadlockReporter ownReports(final List<DeadlockReport> reports) {
+        return new DeadlockReporter() {
+            @Override
+            public void report(DeadlockReport report) {
+                for (ThreadDetail detail : report.getThreadDetails()) {
+                    for (Thread thread : threads) {
+                        if (thread.getId() == detail.getThreadId()) {
+                            reports.add(report);
+                            return;
+                        }
+                    }
+                }
+            }
+        };
+    }
+
+    private void startMonitorDeadlock(final Object first, final Object second, final CountDownLatch held) {
+        start(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (first) {
+                    held.countDown();
+                    awaitQuietly(held);
+                    synchronized (second) {
+                        held.countDown();
+                    }
+                }
+            }
+        });
+    }
+
+    private void startLockDeadlock(final ReentrantLock first, final ReentrantLock second, final CountDownLatch held) {
+        start(new Runnable() {
+            @Override
+            public void run() {
+                first.lock();
+                held.countDown();
+                awaitQuietly(held);
+                // lock()不响应中断，测试结束后线程一直阻塞
+                second.lock();
+            }
+        });
+    }
+
+    private void start(Runnable task) {
+        Thread thread = new Thread(task, "deadlock-" + threads.size());
+        // 测试结束后死锁线程不会退出，设为守护线程不阻止JVM退出
+        thread.setDaemon(true);
+        threads.add(thread);
+        thread.start();
+    }
+
+    private static void awaitReports(ThreadMXBeanDetector detector, List<DeadlockReport> reports)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (reports.isEmpty() && System.currentTimeMillis() < deadline) {
+            detector.detect();
+            Thread.sleep(10);
+        }
+        assertEquals(1, reports.size());
+        assertTrue(ManagementFactory.getThreadMXBean().findDeadlockedThreads().length >= 2);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static DeadlockReport deepReport(int depth) {
+        StackTraceElement[] stack = new StackTraceElement[depth];
+        for (int i = 0; i < depth; i++) {
+            stack[i] = new StackTraceElement("com.example.Deep", "call" + i, "Deep.java", i + 1);
+        }
+        return new DeadlockReport.Builder()
+                .type(DeadlockType.SYNCHRONIZED)
+                .addThreadDetail(new ThreadDetail.Builder()
+                        .threadName("worker")
+                        .stackTrace(stack)
+                        .build())
+                .build();
+    }
+}
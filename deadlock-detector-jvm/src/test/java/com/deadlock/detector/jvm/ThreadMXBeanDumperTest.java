@@ -0,0 +1,70 @@
+package com.deadlock.detector.jvm;
+
+import com.deadlock.detector.detector.ThreadSnapshotService;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ThreadMXBeanDumperTest {
+
+    @Test
+    public void dumpsStacksAndStatesTogether() throws InterruptedException {
+        final Object monitor = new Object();
+        final CountDownLatch started = new CountDownLatch(1);
+        Thread blocked = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                synchronized (monitor) {
+                    monitor.notifyAll();
+                }
+            }
+        }, "blocked-thread");
+        Thread finished = new Thread(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }, "finished-thread");
+        finished.start();
+        finished.join();
+
+        List<Thread> threads = Arrays.asList(blocked, finished);
+        StackTraceElement[][] stacks = new StackTraceElement[2][];
+        Thread.State[] states = new Thread.State[2];
+        synchronized (monitor) {
+            blocked.start();
+            started.await();
+            while (blocked.getState() != Thread.State.BLOCKED) {
+                Thread.sleep(1);
+            }
+            new ThreadMXBeanDumper().dumpAll(threads, stacks, states);
+        }
+        blocked.join();
+
+        assertEquals(Thread.State.BLOCKED, states[0]);
+        assertTrue(stacks[0].length > 0);
+        assertEquals(ThreadMXBeanDumperTest.class.getName() + "$1", stacks[0][0].getClassName());
+        assertEquals(Thread.State.TERMINATED, states[1]);
+        assertEquals(0, stacks[1].length);
+    }
+
+    @Test
+    public void registeredAsDefaultDumper() {
+        ThreadSnapshotService service = new ThreadSnapshotService(60_000);
+        ThreadSnapshotService.Snapshot snapshot = service.current();
+        snapshot.getAllStackTraces();
+        // 通过ServiceLoader加载的实现带有ThreadMXBean的栈帧
+        StackTraceElement[] stack = snapshot.getStackTrace(Thread.currentThread());
+        boolean viaMXBean = false;
+        for (StackTraceElement frame : stack) {
+            viaMXBean |= frame.getClassName().equals(ThreadMXBeanDumper.class.getName());
+        }
+        assertTrue(viaMXBean);
+    }
+}
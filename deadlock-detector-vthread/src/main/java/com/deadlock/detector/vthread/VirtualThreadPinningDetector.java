@@ -0,0 +1,583 @@
+package com.deadlock.detector.vthread;
+
+import com.deadlock.detector.DetectorLog;
+import com.deadlock.detector.detector.IDeadlockDetector;
+import com.deadlock.detector.detector.LockWrapper;
+import com.deadlock.detector.detector.ReentrantLockDetector;
+import com.deadlock.detector.detector.ThreadSnapshotService;
+import com.deadlock.detector.model.DeadlockReport;
+import com.deadlock.detector.model.DeadlockType;
+import com.deadlock.detector.model.StackDictionary;
+import com.deadlock.detector.model.ThreadDetail;
+import com.deadlock.detector.reporter.DeadlockReporter;
+import com.deadlock.detector.reporter.LogReporter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedMethod;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingStream;
+
+/**
+ * 虚拟线程固定(pinning)和载体线程饥饿检测器 - 需要JDK 21+运行时
+ * <p>
+ * 虚拟线程在synchronized块内阻塞时会固定在载体线程上。固定的载体线程接近调度器并行度后，
+ * 其他虚拟线程都得不到调度，表现和死锁一样，但等待图里没有环。
+ * <ul>
+ * <li>进程内用JFR {@link RecordingStream}订阅jdk.VirtualThreadPinned事件，按堆栈聚合固定次数和时长，
+ * 单次固定超过长固定阈值的位置报告一次</li>
+ * <li>每次检测扫描载体线程，挂载着虚拟线程却处于阻塞/等待状态的载体即为被固定，
+ * 连续两次检测都被固定的载体数达到并行度的一定比例时报告载体饥饿，附带累计固定时间最长的位置</li>
+ * </ul>
+ * 传入{@link ReentrantLockDetector}时，固定位置会记录事件线程持有和等待的被追踪锁。
+ * JFR事件在固定结束后才送达，锁名称是送达时的状态；堆栈中的{@link LockWrapper}栈帧则总是准确的。
+ */
+public class VirtualThreadPinningDetector implements IDeadlockDetector {
+
+    private static final String TAG = "VThreadPinning";
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    // 按类名识别，不依赖JDK 21的API
+    private static final String CARRIER_THREAD_CLASS = "jdk.internal.misc.CarrierThread";
+    private static final String VIRTUAL_THREAD_CLASS = "java.lang.VirtualThread";
+    private static final String CONTINUATION_CLASS = "jdk.internal.vm.Continuation";
+    private static final String LOCK_WRAPPER_CLASS = LockWrapper.class.getName();
+
+    public static final long DEFAULT_PIN_THRESHOLD_MS = 20;
+    public static final long DEFAULT_LONG_PIN_THRESHOLD_MS = 1000;
+    public static final float DEFAULT_STARVATION_RATIO = 0.75f;
+
+    // 聚合的固定位置上限，超出后新位置的事件只计数
+    private static final int MAX_SITES = 256;
+    // 每个位置记录的锁名称上限
+    private static final int MAX_LOCK_NAMES = 8;
+    // 载体饥饿报告中列出的固定位置数
+    private static final int MAX_REPORTED_SITES = 5;
+
+    private final DeadlockReporter reporter;
+    private final ReentrantLockDetector lockDetector;
+    private final long pinThresholdMs;
+    private final long longPinThresholdNanos;
+    private final int parallelism;
+    private final int starvationCarriers;
+    private final ThreadSnapshotService snapshots = ThreadSnapshotService.getDefault();
+
+    // 按堆栈聚合的固定位置，JFR回调线程写入，检测线程读取
+    private final Map<String, PinSite> sites = new HashMap<>();
+    private final List<PinSite> pendingLongPins = new ArrayList<>();
+    private long droppedEvents;
+
+    // 以下只在检测线程访问
+    private RecordingStream stream;
+    private boolean streamStarted;
+    // 载体线程ID -> 第一次发现被固定的时间
+    private final Map<Long, Long> pinnedSince = new HashMap<>();
+    private boolean starvationReported;
+
+    private volatile int lastScannedThreadCount;
+    private volatile int lastGraphSize;
+
+    public VirtualThreadPinningDetector() {
+        this(new LogReporter());
+    }
+
+    public VirtualThreadPinningDetector(DeadlockReporter reporter) {
+        this(new Builder().reporter(reporter));
+    }
+
+    private VirtualThreadPinningDetector(Builder builder) {
+        this.reporter = builder.reporter != null ? builder.reporter : new LogReporter();
+        this.lockDetector = builder.lockDetector;
+        this.pinThresholdMs = builder.pinThresholdMs;
+        this.longPinThresholdNanos = TimeUnit.MILLISECONDS.toNanos(builder.longPinThresholdMs);
+        this.parallelism = builder.parallelism > 0 ? builder.parallelism : defaultParallelism();
+        this.starvationCarriers = Math.max(1, (int) Math.ceil(parallelism * builder.starvationRatio));
+    }
+
+    /**
+     * 虚拟线程调度器的并行度，与JDK的默认值一致
+     */
+    private static int defaultParallelism() {
+        return Integer.getInteger("jdk.virtualThreadScheduler.parallelism",
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    @Override
+    public void detect() {
+        if (!streamStarted) {
+            streamStarted = true;
+            startStream();
+        }
+        reportLongPins();
+        checkCarriers();
+    }
+
+    private void startStream() {
+        try {
+            RecordingStream rs = new RecordingStream();
+            rs.enable(PINNED_EVENT).withThreshold(Duration.ofMillis(pinThresholdMs)).withStackTrace();
+            // 回调里不保留事件对象，可以复用；聚合与顺序无关，不需要排序
+            rs.setReuse(true);
+            rs.setOrdered(false);
+            rs.onEvent(PINNED_EVENT, this::onPinned);
+            rs.startAsync();
+            stream = rs;
+        } catch (RuntimeException e) {
+            // JFR不可用或没有权限时只做载体扫描
+            DetectorLog.w(TAG, "JFR stream unavailable, pin sites will not be aggregated", e);
+        }
+    }
+
+    /**
+     * JFR回调 - 在流的分发线程上执行
+     */
+    private void onPinned(RecordedEvent event) {
+        long durationNanos = event.getDuration().toNanos();
+        RecordedThread recordedThread = event.getThread();
+        long threadId = recordedThread != null ? recordedThread.getJavaThreadId() : -1;
+        String threadName = recordedThread != null ? recordedThread.getJavaName() : null;
+        if (threadName == null || threadName.isEmpty()) {
+            threadName = "VirtualThread#" + threadId;
+        }
+        StackTraceElement[] stack = toStackTrace(event.getStackTrace());
+        String key = siteKey(stack);
+
+        List<String> heldLocks = Collections.emptyList();
+        String waitingLock = null;
+        if (lockDetector != null && threadId >= 0) {
+            heldLocks = lockDetector.getHeldLockNames(threadId);
+            waitingLock = lockDetector.getWaitingLockName(threadId);
+        }
+
+        synchronized (sites) {
+            PinSite site = sites.get(key);
+            if (site == null) {
+                if (sites.size() >= MAX_SITES) {
+                    droppedEvents++;
+                    return;
+                }
+                site = new PinSite(stack, hasFrame(stack, LOCK_WRAPPER_CLASS));
+                sites.put(key, site);
+            }
+            site.record(durationNanos, threadId, threadName, heldLocks, waitingLock);
+            if (durationNanos >= longPinThresholdNanos && !site.longPinReported) {
+                site.longPinReported = true;
+                pendingLongPins.add(site.copy());
+            }
+        }
+    }
+
+    private StackTraceElement[] toStackTrace(RecordedStackTrace recorded) {
+        if (recorded == null) {
+            return new StackTraceElement[0];
+        }
+        List<RecordedFrame> frames = recorded.getFrames();
+        List<StackTraceElement> stack = new ArrayList<>(frames.size());
+        for (RecordedFrame frame : frames) {
+            RecordedMethod method = frame.getMethod();
+            if (!frame.isJavaFrame() || method == null) {
+                continue;
+            }
+            String className = method.getType().getName();
+            stack.add(new StackTraceElement(className, method.getName(),
+                    sourceFileName(className), frame.getLineNumber()));
+        }
+        return stack.toArray(new StackTraceElement[0]);
+    }
+
+    /**
+     * JFR栈帧不带源文件名，按顶层类名推断，使报告中保留行号
+     */
+    private static String sourceFileName(String className) {
+        int start = className.lastIndexOf('.') + 1;
+        int end = className.indexOf('$', start);
+        return className.substring(start, end > start ? end : className.length()) + ".java";
+    }
+
+    private static String siteKey(StackTraceElement[] stack) {
+        StringBuilder sb = new StringBuilder(stack.length * 48);
+        for (StackTraceElement frame : stack) {
+            sb.append(frame.getClassName()).append('.').append(frame.getMethodName())
+                    .append(':').append(frame.getLineNumber()).append(';');
+        }
+        return sb.toString();
+    }
+
+    private static boolean hasFrame(StackTraceElement[] stack, String className) {
+        for (StackTraceElement frame : stack) {
+            if (className.equals(frame.getClassName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void reportLongPins() {
+        List<PinSite> pending;
+        synchronized (sites) {
+            if (pendingLongPins.isEmpty()) {
+                return;
+            }
+            pending = new ArrayList<>(pendingLongPins);
+            pendingLongPins.clear();
+        }
+        long thresholdMs = TimeUnit.NANOSECONDS.toMillis(longPinThresholdNanos);
+        for (PinSite site : pending) {
+            reporter.report(new DeadlockReport.Builder()
+                    .type(DeadlockType.VIRTUAL_THREAD_PINNED)
+                    .timestamp(System.currentTimeMillis())
+                    .message("Virtual thread pinned its carrier for " + site.getMaxMillis()
+                            + "ms (threshold: " + thresholdMs + "ms), " + site.getCount()
+                            + " pin(s) at this site, total " + site.getTotalMillis() + "ms")
+                    .addThreadDetail(site.toThreadDetail())
+                    .build());
+        }
+    }
+
+    private void checkCarriers() {
+        ThreadSnapshotService.Snapshot snapshot = snapshots.current();
+        List<Thread> carriers = new ArrayList<>();
+        int notRunning = 0;
+        for (Thread thread : snapshot.getThreads()) {
+            if (CARRIER_THREAD_CLASS.equals(thread.getClass().getName())) {
+                carriers.add(thread);
+                if (isStalled(snapshot.getState(thread))) {
+                    notRunning++;
+                }
+            }
+        }
+        lastScannedThreadCount = carriers.size();
+
+        // 空闲的载体也是等待状态，数量不够时不可能饥饿，不必获取堆栈
+        if (notRunning < starvationCarriers) {
+            pinnedSince.clear();
+            starvationReported = false;
+            lastGraphSize = 0;
+            return;
+        }
+
+        long now = System.nanoTime();
+        List<Thread> pinned = new ArrayList<>();
+        Set<Long> pinnedIds = new HashSet<>();
+        int persistent = 0;
+        for (Thread carrier : carriers) {
+            if (!isStalled(snapshot.getState(carrier)) || !isMounted(snapshot.getStackTrace(carrier))) {
+                continue;
+            }
+            pinned.add(carrier);
+            pinnedIds.add(carrier.getId());
+            Long since = pinnedSince.putIfAbsent(carrier.getId(), now);
+            if (since != null) {
+                persistent++;
+            }
+        }
+        pinnedSince.keySet().retainAll(pinnedIds);
+        lastGraphSize = pinned.size();
+
+        // 只有连续两次检测都被固定才算，避免短暂的固定恰好同时发生
+        if (persistent < starvationCarriers) {
+            starvationReported = false;
+            return;
+        }
+        if (starvationReported) {
+            return;
+        }
+        starvationReported = true;
+        reportStarvation(snapshot, pinned, now);
+    }
+
+    private static boolean isStalled(Thread.State state) {
+        return state == Thread.State.BLOCKED || state == Thread.State.WAITING
+                || state == Thread.State.TIMED_WAITING;
+    }
+
+    /**
+     * 载体线程上是否挂载着虚拟线程
+     */
+    private static boolean isMounted(StackTraceElement[] stack) {
+        for (StackTraceElement frame : stack) {
+            String className = frame.getClassName();
+            if (VIRTUAL_THREAD_CLASS.equals(className) || CONTINUATION_CLASS.equals(className)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void reportStarvation(ThreadSnapshotService.Snapshot snapshot, List<Thread> pinned, long now) {
+        DeadlockReport.Builder builder = new DeadlockReport.Builder()
+                .type(DeadlockType.CARRIER_STARVATION)
+                .timestamp(System.currentTimeMillis())
+                .message(pinned.size() + "/" + parallelism + " carrier thread(s) pinned by blocked virtual threads"
+                        + " (threshold: " + starvationCarriers + "), other virtual threads cannot be scheduled");
+
+        for (Thread carrier : pinned) {
+            Long since = pinnedSince.get(carrier.getId());
+            builder.addThreadDetail(new ThreadDetail.Builder()
+                    .stackDictionary(StackDictionary.getDefault())
+                    .threadId(carrier.getId())
+                    .threadName(carrier.getName())
+                    .threadState(snapshot.getState(carrier).name())
+                    .blockTimeMs(since != null ? TimeUnit.NANOSECONDS.toMillis(now - since) : 0)
+                    .stackTrace(snapshot.getStackTrace(carrier))
+                    .build());
+        }
+
+        // 载体线程的堆栈看不到虚拟线程的栈帧，附上JFR聚合出的固定位置
+        List<PinSite> topSites = getPinningStats();
+        for (int i = 0; i < topSites.size() && i < MAX_REPORTED_SITES; i++) {
+            builder.addThreadDetail(topSites.get(i).toThreadDetail());
+        }
+        reporter.report(builder.build());
+    }
+
+    /**
+     * 按累计固定时长从大到小排列的固定位置
+     */
+    public List<PinSite> getPinningStats() {
+        List<PinSite> result;
+        synchronized (sites) {
+            result = new ArrayList<>(sites.size());
+            for (PinSite site : sites.values()) {
+                result.add(site.copy());
+            }
+        }
+        result.sort((a, b) -> Long.compare(b.totalNanos, a.totalNanos));
+        return result;
+    }
+
+    /**
+     * 固定位置超过上限后丢弃的事件数
+     */
+    public long getDroppedEventCount() {
+        synchronized (sites) {
+            return droppedEvents;
+        }
+    }
+
+    /**
+     * JFR事件流是否在运行
+     */
+    public boolean isStreaming() {
+        return stream != null;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    @Override
+    public int getLastScannedThreadCount() {
+        return lastScannedThreadCount;
+    }
+
+    @Override
+    public int getLastGraphSize() {
+        return lastGraphSize;
+    }
+
+    @Override
+    public String getName() {
+        return "VirtualThreadPinningDetector";
+    }
+
+    @Override
+    public void destroy() {
+        RecordingStream rs = stream;
+        if (rs != null) {
+            rs.close();
+            stream = null;
+        }
+        // 重新启动后下次检测再订阅事件流
+        streamStarted = false;
+        starvationReported = false;
+        synchronized (sites) {
+            sites.clear();
+            pendingLongPins.clear();
+        }
+        pinnedSince.clear();
+    }
+
+    /**
+     * 同一堆栈上的固定统计
+     */
+    public static final class PinSite {
+        private final StackTraceElement[] stackTrace;
+        private final boolean inTrackedLock;
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+        private long lastThreadId = -1;
+        private String lastThreadName;
+        private final Set<String> heldLocks = new LinkedHashSet<>();
+        private final Set<String> waitingLocks = new LinkedHashSet<>();
+        private boolean longPinReported;
+
+        PinSite(StackTraceElement[] stackTrace, boolean inTrackedLock) {
+            this.stackTrace = stackTrace;
+            this.inTrackedLock = inTrackedLock;
+        }
+
+        void record(long durationNanos, long threadId, String threadName,
+                    List<String> held, String waiting) {
+            count++;
+            totalNanos += durationNanos;
+            maxNanos = Math.max(maxNanos, durationNanos);
+            lastThreadId = threadId;
+            lastThreadName = threadName;
+            for (String name : held) {
+                if (heldLocks.size() >= MAX_LOCK_NAMES) {
+                    break;
+                }
+                heldLocks.add(name);
+            }
+            if (waiting != null && waitingLocks.size() < MAX_LOCK_NAMES) {
+                waitingLocks.add(waiting);
+            }
+        }
+
+        PinSite copy() {
+            PinSite copy = new PinSite(stackTrace, inTrackedLock);
+            copy.count = count;
+            copy.totalNanos = totalNanos;
+            copy.maxNanos = maxNanos;
+            copy.lastThreadId = lastThreadId;
+            copy.lastThreadName = lastThreadName;
+            copy.heldLocks.addAll(heldLocks);
+            copy.waitingLocks.addAll(waitingLocks);
+            copy.longPinReported = longPinReported;
+            return copy;
+        }
+
+        ThreadDetail toThreadDetail() {
+            String waiting = null;
+            if (!waitingLocks.isEmpty()) {
+                waiting = String.join(", ", waitingLocks);
+            } else if (inTrackedLock) {
+                waiting = "tracked lock (LockWrapper frame in stack)";
+            }
+            return new ThreadDetail.Builder()
+                    .stackDictionary(StackDictionary.getDefault())
+                    .threadId(lastThreadId)
+                    .threadName(lastThreadName)
+                    .threadState("PINNED (" + count + " times, total " + getTotalMillis() + "ms)")
+                    .waitingForLock(waiting)
+                    .heldLocks(new ArrayList<>(heldLocks))
+                    .stackTrace(stackTrace)
+                    .blockTimeMs(getMaxMillis())
+                    .build();
+        }
+
+        public StackTraceElement[] getStackTrace() {
+            return stackTrace;
+        }
+
+        /**
+         * 固定时是否在等待被追踪的锁
+         */
+        public boolean isInTrackedLock() {
+            return inTrackedLock;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(totalNanos);
+        }
+
+        public long getMaxMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(maxNanos);
+        }
+
+        public long getLastThreadId() {
+            return lastThreadId;
+        }
+
+        public String getLastThreadName() {
+            return lastThreadName;
+        }
+
+        public List<String> getHeldLocks() {
+            return new ArrayList<>(heldLocks);
+        }
+
+        public List<String> getWaitingLocks() {
+            return new ArrayList<>(waitingLocks);
+        }
+    }
+
+    public static class Builder {
+        private DeadlockReporter reporter;
+        private ReentrantLockDetector lockDetector;
+        private long pinThresholdMs = DEFAULT_PIN_THRESHOLD_MS;
+        private long longPinThresholdMs = DEFAULT_LONG_PIN_THRESHOLD_MS;
+        private float starvationRatio = DEFAULT_STARVATION_RATIO;
+        private int parallelism;
+
+        /**
+         * 报告输出，为null时通过DetectorLog输出
+         */
+        public Builder reporter(DeadlockReporter reporter) {
+            this.reporter = reporter;
+            return this;
+        }
+
+        /**
+         * 用于关联固定位置和被追踪锁
+         */
+        public Builder lockDetector(ReentrantLockDetector lockDetector) {
+            this.lockDetector = lockDetector;
+            return this;
+        }
+
+        /**
+         * JFR事件阈值（毫秒），更短的固定不产生事件
+         */
+        public Builder pinThreshold(long thresholdMs) {
+            this.pinThresholdMs = thresholdMs;
+            return this;
+        }
+
+        /**
+         * 单次固定超过该时长（毫秒）时报告该位置
+         */
+        public Builder longPinThreshold(long thresholdMs) {
+            this.longPinThresholdMs = thresholdMs;
+            return this;
+        }
+
+        /**
+         * 被固定的载体数达到并行度的该比例时报告载体饥饿
+         */
+        public Builder starvationRatio(float ratio) {
+            this.starvationRatio = ratio;
+            return this;
+        }
+
+        /**
+         * 虚拟线程调度器的并行度，0表示读取jdk.virtualThreadScheduler.parallelism或CPU数
+         */
+        public Builder parallelism(int parallelism) {
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        public VirtualThreadPinningDetector build() {
+            return new VirtualThreadPinningDetector(this);
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.deadlock.detector.vthread;
+
+import com.deadlock.detector.detector.ReentrantLockDetector;
+import com.deadlock.detector.detector.ThreadSnapshotService;
+import com.deadlock.detector.model.DeadlockReport;
+import com.deadlock.detector.model.DeadlockType;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class VirtualThreadPinningDetectorTest {
+
+    private static final long TIMEOUT_MS = 10_000;
+
+    private final List<DeadlockReport> reports = Collections.synchronizedList(new ArrayList<DeadlockReport>());
+    private final List<VirtualThreadPinningDetector> detectors = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+
+    @After
+    public void tearDown() throws InterruptedException {
+        for (Thread thread : threads) {
+            thread.interrupt();
+            thread.join(TIMEOUT_MS);
+        }
+        for (VirtualThreadPinningDetector detector : detectors) {
+            detector.destroy();
+        }
+    }
+
+    @Test
+    public void resubscribesAfterDestroy() {
+        VirtualThreadPinningDetector detector = newDetector(new VirtualThreadPinningDetector.Builder());
+        detector.detect();
+        assertTrue(detector.isStreaming());
+
+        detector.destroy();
+        assertFalse(detector.isStreaming());
+
+        // 停止后再启动的检测器重新订阅JFR事件流
+        detector.detect();
+        assertTrue(detector.isStreaming());
+    }
+
+    @Test
+    public void aggregatesPinsBySite() throws Exception {
+        assumePinningInSynchronized();
+        VirtualThreadPinningDetector detector = newDetector(new VirtualThreadPinningDetector.Builder()
+                .pinThreshold(10)
+                .longPinThreshold(60_000));
+        detector.detect();
+
+        for (int i = 0; i < 3; i++) {
+            join(startVirtualThread(new Runnable() {
+                @Override
+                public void run() {
+                    sleepInMonitor(new Object(), 50);
+                }
+            }));
+        }
+
+        VirtualThreadPinningDetector.PinSite site = awaitSite(detector, "sleepInMonitor", 3);
+        assertEquals(3, site.getCount());
+        assertTrue(site.getTotalMillis() >= 150);
+        assertTrue(site.getMaxMillis() >= 50);
+        assertFalse(site.isInTrackedLock());
+        // 没有超过长固定阈值，不报告
+        detector.detect();
+        assertTrue(reports.isEmpty());
+    }
+
+    @Test
+    public void reportsLongPinOncePerSite() throws Exception {
+        assumePinningInSynchronized();
+        VirtualThreadPinningDetector detector = newDetector(new VirtualThreadPinningDetector.Builder()
+                .pinThreshold(10)
+                .longPinThreshold(100));
+        detector.detect();
+
+        for (int i = 0; i < 2; i++) {
+            join(startVirtualThread(new Runnable() {
+                @Override
+                public void run() {
+                    sleepInMonitor(new Object(), 200);
+                }
+            }));
+        }
+        awaitSite(detector, "sleepInMonitor", 2);
+        detector.detect();
+
+        assertEquals(1, reports.size());
+        DeadlockReport report = reports.get(0);
+        assertEquals(DeadlockType.VIRTUAL_THREAD_PINNED, report.getType());
+        assertTrue(hasFrame(report.getThreadDetails().get(0).getStackTrace(), "sleepInMonitor"));
+    }
+
+    @Test
+    public void reportsCarrierStarvationWhenAllCarriersArePinned() throws Exception {
+        assumePinningInSynchronized();
+        VirtualThreadPinningDetector detector = newDetector(new VirtualThreadPinningDetector.Builder()
+                .pinThreshold(10)
+                .longPinThreshold(60_000));
+        // 每个载体线程都被一个在synchronized中睡眠的虚拟线程固定
+        int carriers = detector.getParallelism();
+        final CountDownLatch pinned = new CountDownLatch(carriers);
+        for (int i = 0; i < carriers; i++) {
+            threads.add(startVirtualThread(new Runnable() {
+                @Override
+                public void run() {
+                    Object monitor = new Object();
+                    synchronized (monitor) {
+                        pinned.countDown();
+                        try {
+                            Thread.sleep(TIMEOUT_MS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+            }));
+        }
+        assertTrue(pinned.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+
+        // 连续两次检测都被固定才报告
+        detectWithFreshSnapshot(detector);
+        assertTrue(reports.isEmpty());
+        detectWithFreshSnapshot(detector);
+
+        assertEquals(1, reports.size());
+        DeadlockReport report = reports.get(0);
+        assertEquals(DeadlockType.CARRIER_STARVATION, report.getType());
+        // 被固定的载体线程，后面附带JFR聚合出的固定位置
+        assertEquals(carriers, detector.getLastGraphSize());
+        assertTrue(report.getThreadDetails().size() >= carriers);
+
+        // 持续饥饿只报告一次
+        detectWithFreshSnapshot(detector);
+        assertEquals(1, reports.size());
+    }
+
+    @Test
+    public void tracksLocksTakenByVirtualThreads() throws Exception {
+        assumePinningInSynchronized();
+        final ReentrantLockDetector lockDetector = new ReentrantLockDetector(reports::add);
+        try {
+            VirtualThreadPinningDetector detector = newDetector(new VirtualThreadPinningDetector.Builder()
+                    .lockDetector(lockDetector)
+                    .pinThreshold(10)
+                    .longPinThreshold(60_000));
+            detector.detect();
+
+            final Lock lock = lockDetector.createTrackedLock("vthread-lock");
+            final CountDownLatch held = new CountDownLatch(1);
+            final CountDownLatch release = new CountDownLatch(1);
+            Thread owner = startVirtualThread(new Runnable() {
+                @Override
+                public void run() {
+                    lock.lock();
+                    try {
+                        held.countDown();
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            });
+            assertTrue(held.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+            assertEquals(Collections.singletonList("vthread-lock"), lockDetector.getHeldLockNames(owner.getId()));
+
+            // 在synchronized中等待被追踪的锁，固定位置的堆栈中有LockWrapper栈帧
+            Thread waiter = startVirtualThread(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (this) {
+                        lock.lock();
+                        lock.unlock();
+                    }
+                }
+            });
+            long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+            while (lockDetector.getWaitingLockName(waiter.getId()) == null
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals("vthread-lock", lockDetector.getWaitingLockName(waiter.getId()));
+            release.countDown();
+            join(owner);
+            join(waiter);
+            assertTrue(lockDetector.getHeldLockNames(owner.getId()).isEmpty());
+
+            VirtualThreadPinningDetector.PinSite site = awaitSite(detector, "LockWrapper", 1);
+            assertTrue(site.isInTrackedLock());
+            assertEquals(waiter.getId(), site.getLastThreadId());
+            // 虚拟线程之间没有死锁
+            lockDetector.detect();
+            assertTrue(reports.isEmpty());
+        } finally {
+            lockDetector.destroy();
+        }
+    }
+
+    /**
+     * 虚拟线程从JDK 21起可用；JDK 24起synchronized中阻塞不再固定载体线程（JEP 491）
+     */
+    private static void assumePinningInSynchronized() {
+        int feature = Runtime.version().feature();
+        Assume.assumeTrue(feature >= 21);
+        Assume.assumeTrue(feature < 24);
+    }
+
+    private VirtualThreadPinningDetector newDetector(VirtualThreadPinningDetector.Builder builder) {
+        VirtualThreadPinningDetector detector = builder.reporter(reports::add).build();
+        detectors.add(detector);
+        return detector;
+    }
+
+    /**
+     * 以--release 17编译，通过反射调用JDK 21的Thread.startVirtualThread
+     */
+    private static Thread startVirtualThread(Runnable task) throws Exception {
+        return (Thread) Thread.class.getMethod("startVirtualThread", Runnable.class).invoke(null, task);
+    }
+
+    private static void join(Thread thread) throws InterruptedException {
+        thread.join(TIMEOUT_MS);
+        assertFalse(thread.isAlive());
+    }
+
+    private static void sleepInMonitor(Object monitor, long millis) {
+        synchronized (monitor) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void detectWithFreshSnapshot(VirtualThreadPinningDetector detector) {
+        ThreadSnapshotService.getDefault().beginTick();
+        detector.detect();
+    }
+
+    /**
+     * JFR事件在固定结束后异步送达，等待堆栈中含有frameName的位置累计到count次
+     */
+    private static VirtualThreadPinningDetector.PinSite awaitSite(VirtualThreadPinningDetector detector,
+                                                                  String frameName, long count)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (System.currentTimeMillis() < deadline) {
+            for (VirtualThreadPinningDetector.PinSite site : detector.getPinningStats()) {
+                if (hasFrame(site.getStackTrace(), frameName) && site.getCount() >= count) {
+                    return site;
+                }
+            }
+            Thread.sleep(20);
+        }
+        VirtualThreadPinningDetector.PinSite site = null;
+        for (VirtualThreadPinningDetector.PinSite candidate : detector.getPinningStats()) {
+            if (hasFrame(candidate.getStackTrace(), frameName)) {
+                site = candidate;
+            }
+        }
+        assertNotNull("No pin site with " + frameName, site);
+        return site;
+    }
+
+    private static boolean hasFrame(StackTraceElement[] stack, String name) {
+        for (StackTraceElement frame : stack) {
+            if (frame.getMethodName().equals(name) || frame.getClassName().endsWith(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
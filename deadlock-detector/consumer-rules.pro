@@ -2,3 +2,5 @@
 -keep class com.deadlock.detector.DeadlockDetector { *; }
 -keep class com.deadlock.detector.DeadlockDetectorConfig { *; }
 -keep class com.deadlock.detector.DeadlockDetectorConfig$Builder { *; }
+# core模块通过ServiceLoader加载Logcat输出
+-keep class com.deadlock.detector.AndroidLogPrinter { <init>(); }
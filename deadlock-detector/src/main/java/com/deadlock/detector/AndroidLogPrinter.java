@@ -0,0 +1,17 @@
+package com.deadlock.detector;
+
+import android.util.Log;
+
+/**
+ * 把core模块的日志输出到Logcat，通过META-INF/services注册
+ */
+public final class AndroidLogPrinter implements DetectorLog.Printer {
+
+    @Override
+    public void println(int priority, String tag, String message, Throwable throwable) {
+        if (throwable != null) {
+            message = message + '\n' + Log.getStackTraceString(throwable);
+        }
+        Log.println(priority, tag, message);
+    }
+}
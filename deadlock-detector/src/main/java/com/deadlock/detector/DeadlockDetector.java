@@ -1,19 +1,49 @@
 package com.deadlock.detector;
 
 import android.app.Application;
+import android.os.Looper;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
 
+import com.deadlock.detector.codec.TraceEventWriter;
 import com.deadlock.detector.detector.ANRDetector;
+import com.deadlock.detector.detector.AndroidThreadPriorityAccess;
+import com.deadlock.detector.detector.ExecutorStarvationDetector;
+import com.deadlock.detector.detector.FrameJankDetector;
 import com.deadlock.detector.detector.IDeadlockDetector;
 import com.deadlock.detector.detector.LockWrapper;
+import com.deadlock.detector.detector.LooperMessageMonitor;
+import com.deadlock.detector.detector.PriorityInversionDetector;
 import com.deadlock.detector.detector.ReentrantLockDetector;
+import com.deadlock.detector.detector.StuckThreadDetector;
 import com.deadlock.detector.detector.SynchronizedLockDetector;
+import com.deadlock.detector.detector.ThreadSnapshotService;
+import com.deadlock.detector.detector.TrackedThreadPoolExecutor;
+import com.deadlock.detector.model.MessageRecord;
+import com.deadlock.detector.model.DeadlockReport;
+import com.deadlock.detector.reporter.AsyncReporter;
+import com.deadlock.detector.reporter.CompositeReporter;
+import com.deadlock.detector.reporter.DeadlockReporter;
+import com.deadlock.detector.reporter.HttpUploadReporter;
+import com.deadlock.detector.reporter.JournalReporter;
+import com.deadlock.detector.reporter.LogcatReporter;
+import com.deadlock.detector.reporter.StackDepthReporter;
+import com.deadlock.detector.stats.CostProbe;
+import com.deadlock.detector.stats.LockEventRecorder;
+import com.deadlock.detector.stats.DetectorStats;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
@@ -48,11 +78,35 @@ public final class DeadlockDetector {
     private final Application application;
     private final DeadlockDetectorConfig config;
     private final List<IDeadlockDetector> detectors;
+    // 与detectors一一对应的开销统计
+    private final List<DetectorStats> detectorStats;
     private final ScheduledExecutorService scheduler;
+    // 所有检测器共用的报告输出
+    private final DeadlockReporter reporter;
+    // 异步报告时的队列，未开启时为null
+    private final AsyncReporter asyncReporter;
+    // 报告日志，未开启时为null
+    private JournalReporter journalReporter;
+    // 报告上传，未开启时为null
+    private HttpUploadReporter uploadReporter;
+    // 上一次进程留在报告日志中的报告
+    private List<DeadlockReport> recoveredReports = Collections.emptyList();
     private volatile boolean isRunning;
+    // 各检测器共用的线程快照
+    private final ThreadSnapshotService snapshotService = ThreadSnapshotService.getDefault();
+    // 锁事件时间线记录器
+    private final LockEventRecorder eventRecorder = LockEventRecorder.getDefault();
+    // 当前实际检测间隔，超出CPU预算时会被拉长
+    private volatile long effectiveIntervalMs;
 
     // ReentrantLock检测器实例，用于创建被追踪的锁
     private ReentrantLockDetector reentrantLockDetector;
+    // ANR检测器实例，用于注册其他Looper
+    private ANRDetector anrDetector;
+    // 主线程消息监控实例，用于查询最近消息
+    private LooperMessageMonitor messageMonitor;
+    // 线程池饥饿检测器实例，用于注册被追踪的线程池
+    private ExecutorStarvationDetector executorStarvationDetector;
 
     /**
      * 一行代码初始化 - 使用默认配置
@@ -97,11 +151,12 @@ public final class DeadlockDetector {
     }
 
     /**
-     * 手动触发一次检测
+     * 手动触发一次检测，检测在调度线程上异步执行，未运行时忽略
      */
     public static void detectNow() {
-        if (sInstance != null) {
-            sInstance.performDetection();
+        DeadlockDetector instance = sInstance;
+        if (instance != null) {
+            instance.postDetection();
         }
     }
 
@@ -147,6 +202,136 @@ public final class DeadlockDetector {
         return lock;
     }
 
+    /**
+     * 创建一个被追踪的固定大小线程池
+     *
+     * @param name    线程池名称，用于线程命名和日志输出
+     * @param threads 线程数
+     * @return 被追踪的线程池，检测器未初始化时同样可用，但不会被检测
+     */
+    public static TrackedThreadPoolExecutor newTrackedFixedThreadPool(@NonNull String name, int threads) {
+        DeadlockDetector instance = sInstance;
+        boolean captureSites = instance != null && instance.config.isCaptureSubmissionSites();
+        TrackedThreadPoolExecutor pool = TrackedThreadPoolExecutor.newFixedThreadPool(name, threads, captureSites);
+        trackExecutor(pool);
+        return pool;
+    }
+
+    /**
+     * 注册一个自行创建的被追踪线程池进行饥饿检测
+     */
+    public static void trackExecutor(@NonNull TrackedThreadPoolExecutor pool) {
+        DeadlockDetector instance = sInstance;
+        if (instance != null && instance.executorStarvationDetector != null) {
+            instance.executorStarvationDetector.track(pool);
+            return;
+        }
+        Log.w(TAG, "Executor starvation detection not enabled, pool \"" + pool.getName() + "\" not tracked");
+    }
+
+    /**
+     * 注册一个Looper进行阻塞监控，与主线程共用同一个检测线程
+     *
+     * @param looper      被监控的Looper，例如数据库、网络等关键HandlerThread的Looper
+     * @param name        名称，用于报告输出
+     * @param thresholdMs 阻塞阈值（毫秒）
+     */
+    public static void watchLooper(@NonNull Looper looper, @NonNull String name, long thresholdMs) {
+        if (sInstance != null && sInstance.anrDetector != null) {
+            sInstance.anrDetector.watchLooper(looper, name, thresholdMs);
+            return;
+        }
+        Log.w(TAG, "ANR detection not enabled, looper \"" + name + "\" not watched");
+    }
+
+    /**
+     * 取消对某个Looper的阻塞监控
+     */
+    public static void unwatchLooper(@NonNull Looper looper) {
+        if (sInstance != null && sInstance.anrDetector != null) {
+            sInstance.anrDetector.unwatchLooper(looper);
+        }
+    }
+
+    /**
+     * 获取主线程最近分发的消息
+     *
+     * @return 按时间顺序排列的消息记录，未启用消息历史时返回空列表
+     */
+    public static List<MessageRecord> getRecentMessages() {
+        DeadlockDetector instance = sInstance;
+        if (instance == null || instance.messageMonitor == null) {
+            return Collections.emptyList();
+        }
+        return instance.messageMonitor.getRecentMessages();
+    }
+
+    /**
+     * 获取各检测器的开销统计
+     *
+     * @return 统计快照列表，未初始化时返回空列表
+     */
+    public static List<DetectorStats.Snapshot> getStats() {
+        DeadlockDetector instance = sInstance;
+        if (instance == null) {
+            return Collections.emptyList();
+        }
+        List<DetectorStats.Snapshot> snapshots = new ArrayList<>();
+        for (DetectorStats stats : instance.detectorStats) {
+            snapshots.add(stats.snapshot());
+        }
+        return snapshots;
+    }
+
+    /**
+     * 获取上一次进程退出前写入报告日志的报告，例如被系统杀死前的ANR报告
+     *
+     * @return 按写入顺序排列的报告，未开启报告日志时返回空列表
+     */
+    public static List<DeadlockReport> getRecoveredReports() {
+        DeadlockDetector instance = sInstance;
+        return instance != null ? instance.recoveredReports : Collections.<DeadlockReport>emptyList();
+    }
+
+    /**
+     * 获取异步报告队列，未开启异步报告时返回null，可用于查看丢弃、合并等计数
+     */
+    public static AsyncReporter getAsyncReporter() {
+        DeadlockDetector instance = sInstance;
+        return instance != null ? instance.asyncReporter : null;
+    }
+
+    /**
+     * 开始记录锁事件时间线，durationMs毫秒后自动停止，0表示直到调用{@link #stopLockTrace()}
+     * <p>
+     * 记录被追踪锁的等待、获得、释放和每次检测，之前的记录会被清空
+     */
+    public static void startLockTrace(long durationMs) {
+        LockEventRecorder.getDefault().start(durationMs);
+    }
+
+    /**
+     * 停止记录锁事件时间线，已记录的事件保留到下次开始记录
+     */
+    public static void stopLockTrace() {
+        LockEventRecorder.getDefault().stop();
+    }
+
+    /**
+     * 把已记录的锁事件导出为trace-event JSON，可在Perfetto或chrome://tracing中打开，不关闭out
+     */
+    public static void writeLockTrace(@NonNull OutputStream out) throws IOException {
+        TraceEventWriter.write(LockEventRecorder.getDefault().snapshot(), out);
+    }
+
+    /**
+     * 获取当前实际的检测间隔（毫秒），启用CPU预算时可能大于配置值
+     */
+    public static long getEffectiveIntervalMs() {
+        DeadlockDetector instance = sInstance;
+        return instance != null ? instance.effectiveIntervalMs : 0;
+    }
+
     /**
      * 检查是否已初始化
      */
@@ -165,6 +350,8 @@ public final class DeadlockDetector {
         this.application = application;
         this.config = config;
         this.detectors = new ArrayList<>();
+        this.detectorStats = new ArrayList<>();
+        this.effectiveIntervalMs = config.getDetectionIntervalMs();
         this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
             @Override
             public Thread newThread(Runnable r) {
@@ -175,51 +362,228 @@ public final class DeadlockDetector {
             }
         });
 
+        DeadlockReporter baseReporter = config.getReporter() != null ? config.getReporter() : new LogcatReporter();
+        if (config.getJournalSizeBytes() > 0) {
+            journalReporter = openJournal(application, config.getJournalSizeBytes());
+            if (journalReporter != null) {
+                baseReporter = new CompositeReporter(Arrays.asList(baseReporter, journalReporter));
+            }
+        }
+        if (config.getUploadEndpoint() != null) {
+            uploadReporter = openUpload(application, config.getUploadEndpoint());
+            if (uploadReporter != null) {
+                baseReporter = new CompositeReporter(Arrays.asList(baseReporter, uploadReporter));
+            }
+        }
+        if (config.isAsyncReporting()) {
+            asyncReporter = new AsyncReporter(baseReporter, config.getReportQueueCapacity(),
+                    AsyncReporter.DEFAULT_BATCH_SIZE, config.getReportOverflowPolicy());
+            baseReporter = asyncReporter;
+        } else {
+            asyncReporter = null;
+        }
+        // 入队前截断堆栈，队列中的报告不持有完整堆栈
+        reporter = new StackDepthReporter(baseReporter, config.getMaxStackDepth());
+
         // 根据配置初始化检测器
         if (config.isDetectSynchronized()) {
-            detectors.add(new SynchronizedLockDetector());
+            detectors.add(new SynchronizedLockDetector(reporter));
             Log.d(TAG, "SynchronizedLockDetector enabled");
         }
 
         if (config.isDetectReentrantLock()) {
-            reentrantLockDetector = new ReentrantLockDetector();
+            reentrantLockDetector = new ReentrantLockDetector(reporter);
             detectors.add(reentrantLockDetector);
             Log.d(TAG, "ReentrantLockDetector enabled");
+
+            if (config.getLockWaitThresholdMs() > 0) {
+                reentrantLockDetector.startWatchdog(config.getLockWaitThresholdMs());
+                Log.d(TAG, "Lock watchdog enabled with threshold: " + config.getLockWaitThresholdMs() + "ms");
+            }
+
+            if (config.isDetectPriorityInversion()) {
+                PriorityInversionDetector inversionDetector = new PriorityInversionDetector(reentrantLockDetector,
+                        new AndroidThreadPriorityAccess(), config.getPriorityInversionThresholdMs(), reporter);
+                inversionDetector.setBoostOwners(config.isBoostPriorityOnInversion());
+                detectors.add(inversionDetector);
+                Log.d(TAG, "PriorityInversionDetector enabled with threshold: "
+                        + config.getPriorityInversionThresholdMs() + "ms");
+            }
+        }
+
+        if (config.isDetectSlowMessage() || config.getMessageHistorySize() > 0) {
+            long slowThresholdMs = config.isDetectSlowMessage() ? config.getSlowMessageThresholdMs() : 0;
+            messageMonitor = new LooperMessageMonitor(Looper.getMainLooper(), slowThresholdMs,
+                    config.getMessageHistorySize(), reporter, null);
+            detectors.add(messageMonitor);
+            Log.d(TAG, "LooperMessageMonitor enabled with threshold: " + slowThresholdMs
+                    + "ms, history: " + config.getMessageHistorySize());
         }
 
         if (config.isDetectANR()) {
-            detectors.add(new ANRDetector(application, config.getAnrThresholdMs()));
+            anrDetector = new ANRDetector(application, config.getAnrThresholdMs(),
+                    config.getAnrSampleIntervalMs(), reporter);
+            anrDetector.setMessageMonitor(messageMonitor);
+            detectors.add(anrDetector);
             Log.d(TAG, "ANRDetector enabled with threshold: " + config.getAnrThresholdMs() + "ms");
         }
+
+        if (config.isDetectFrameJank()) {
+            detectors.add(new FrameJankDetector(FrameJankDetector.DEFAULT_FRAME_INTERVAL_NANOS,
+                    config.getLongFrameThresholdMs(), config.getJankRunFrames(), reentrantLockDetector, reporter));
+            Log.d(TAG, "FrameJankDetector enabled with long frame threshold: "
+                    + config.getLongFrameThresholdMs() + "ms");
+        }
+
+        if (config.isDetectExecutorStarvation()) {
+            executorStarvationDetector = new ExecutorStarvationDetector(config.getQueueLatencyThresholdMs(), reporter);
+            detectors.add(executorStarvationDetector);
+            Log.d(TAG, "ExecutorStarvationDetector enabled with queue latency threshold: "
+                    + config.getQueueLatencyThresholdMs() + "ms");
+        }
+
+        if (config.getStuckThreadThresholdMs() > 0) {
+            StuckThreadDetector stuckThreadDetector =
+                    new StuckThreadDetector(config.getStuckThreadThresholdMs(), reporter);
+            for (String frame : config.getStuckThreadIdleFrames()) {
+                stuckThreadDetector.allowFrame(frame);
+            }
+            detectors.add(stuckThreadDetector);
+            Log.d(TAG, "StuckThreadDetector enabled with threshold: " + config.getStuckThreadThresholdMs() + "ms");
+        }
+
+        for (IDeadlockDetector detector : detectors) {
+            detectorStats.add(new DetectorStats(detector.getName()));
+        }
+    }
+
+    /**
+     * 在缓存目录下创建上传输出，上一次进程未上传完的批次会继续上传；地址无效时返回null
+     */
+    private HttpUploadReporter openUpload(Application application, String endpoint) {
+        try {
+            File spoolDir = new File(application.getCacheDir(), HttpUploadReporter.DEFAULT_SPOOL_DIR);
+            return new HttpUploadReporter.Builder(new URL(endpoint), spoolDir).build();
+        } catch (MalformedURLException | IllegalArgumentException e) {
+            Log.e(TAG, "Cannot upload reports to " + endpoint, e);
+            return null;
+        }
+    }
+
+    /**
+     * 先读出上一次进程留下的报告，再清空日志供本次使用
+     */
+    private JournalReporter openJournal(Application application, int sizeBytes) {
+        File file = new File(application.getFilesDir(), JournalReporter.DEFAULT_FILE_NAME);
+        try {
+            recoveredReports = JournalReporter.recover(file);
+            if (!recoveredReports.isEmpty()) {
+                Log.w(TAG, "Recovered " + recoveredReports.size() + " report(s) from previous process");
+            }
+            JournalReporter journalReporter = new JournalReporter(file, sizeBytes, JournalReporter.DEFAULT_MAX_FRAMES);
+            journalReporter.getJournal().clear();
+            return journalReporter;
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Failed to open report journal", e);
+            return null;
+        }
     }
 
     private void start() {
         if (isRunning) return;
         isRunning = true;
 
-        // 定时检测
-        scheduler.scheduleWithFixedDelay(
-                new Runnable() {
-                    @Override
-                    public void run() {
-                        performDetection();
-                    }
-                },
-                config.getInitialDelayMs(),
-                config.getDetectionIntervalMs(),
-                TimeUnit.MILLISECONDS
-        );
+        // 定时检测，每次检测结束后根据CPU预算计算下一次延迟
+        scheduleNext(config.getInitialDelayMs());
 
         Log.d(TAG, "Detection started with interval: " + config.getDetectionIntervalMs() + "ms");
     }
 
+    /**
+     * 检测器和共用的线程快照只在调度线程上访问，手动检测也投递到该线程
+     */
+    private void postDetection() {
+        if (!isRunning) return;
+        try {
+            scheduler.execute(new Runnable() {
+                @Override
+                public void run() {
+                    performDetection();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 已停止
+        }
+    }
+
+    private void scheduleNext(long delayMs) {
+        if (!isRunning) return;
+        try {
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    performDetection();
+                    scheduleNext(computeNextInterval());
+                }
+            }, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 已停止
+        }
+    }
+
+    /**
+     * 根据最近的检测开销计算下一次间隔，保证 每次CPU开销 / 间隔 不超过预算
+     */
+    private long computeNextInterval() {
+        long interval = config.getDetectionIntervalMs();
+        double budget = config.getCpuBudget();
+        if (budget > 0) {
+            long cpuPerTickNanos = 0;
+            for (DetectorStats stats : detectorStats) {
+                long avg = stats.getWindowAvgCpuNanos();
+                if (avg > 0) {
+                    cpuPerTickNanos += avg;
+                }
+            }
+            long requiredMs = (long) (cpuPerTickNanos / 1_000_000d / budget);
+            if (requiredMs > interval) {
+                if (requiredMs != effectiveIntervalMs) {
+                    Log.d(TAG, "CPU budget exceeded, stretching interval to " + requiredMs + "ms");
+                }
+                interval = requiredMs;
+            }
+        }
+        effectiveIntervalMs = interval;
+        return interval;
+    }
+
     private void performDetection() {
-        for (IDeadlockDetector detector : detectors) {
+        // 本次检测的所有检测器共用同一个线程快照
+        snapshotService.beginTick();
+        for (int i = 0; i < detectors.size(); i++) {
+            IDeadlockDetector detector = detectors.get(i);
+            long wallStart = System.nanoTime();
+            long cpuStart = CostProbe.threadCpuTimeNanos();
+            long allocStart = CostProbe.threadAllocatedBytes();
+            if (eventRecorder.isRecording()) {
+                eventRecorder.record(LockEventRecorder.TICK_BEGIN, detector.getName(), -1);
+            }
             try {
                 detector.detect();
             } catch (Exception e) {
                 Log.e(TAG, "Detection error in " + detector.getName(), e);
             }
+            if (eventRecorder.isRecording()) {
+                eventRecorder.record(LockEventRecorder.TICK_END, detector.getName(), -1);
+            }
+            long cpuEnd = CostProbe.threadCpuTimeNanos();
+            long allocEnd = CostProbe.threadAllocatedBytes();
+            detectorStats.get(i).record(
+                    System.nanoTime() - wallStart,
+                    cpuStart >= 0 && cpuEnd >= 0 ? cpuEnd - cpuStart : CostProbe.UNSUPPORTED,
+                    allocStart >= 0 && allocEnd >= 0 ? allocEnd - allocStart : CostProbe.UNSUPPORTED,
+                    detector.getLastScannedThreadCount(),
+                    detector.getLastGraphSize());
         }
     }
 
@@ -243,6 +607,26 @@ public final class DeadlockDetector {
             }
         }
         detectors.clear();
+        if (asyncReporter != null) {
+            // 尽量输出已入队的报告
+            asyncReporter.shutdown(1000);
+        }
+        if (journalReporter != null) {
+            try {
+                journalReporter.getJournal().close();
+            } catch (IOException e) {
+                Log.e(TAG, "Error closing report journal", e);
+            }
+            journalReporter = null;
+        }
+        if (uploadReporter != null) {
+            // 未上传的报告留在缓存目录，下次启动后继续上传
+            uploadReporter.shutdown(1000);
+            uploadReporter = null;
+        }
         reentrantLockDetector = null;
+        anrDetector = null;
+        messageMonitor = null;
+        executorStarvationDetector = null;
     }
 }
@@ -1,5 +1,13 @@
 package com.deadlock.detector;
 
+import com.deadlock.detector.reporter.AsyncReporter;
+import com.deadlock.detector.reporter.DeadlockReporter;
+import com.deadlock.detector.reporter.StackDepthReporter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * 死锁检测配置
  */
@@ -11,6 +19,30 @@ public final class DeadlockDetectorConfig {
     private final long detectionIntervalMs;
     private final long initialDelayMs;
     private final long anrThresholdMs;
+    private final long anrSampleIntervalMs;
+    private final long lockWaitThresholdMs;
+    private final double cpuBudget;
+    private final boolean detectSlowMessage;
+    private final long slowMessageThresholdMs;
+    private final int messageHistorySize;
+    private final boolean detectFrameJank;
+    private final long longFrameThresholdMs;
+    private final int jankRunFrames;
+    private final boolean detectExecutorStarvation;
+    private final long queueLatencyThresholdMs;
+    private final boolean captureSubmissionSites;
+    private final long stuckThreadThresholdMs;
+    private final List<String> stuckThreadIdleFrames;
+    private final boolean detectPriorityInversion;
+    private final long priorityInversionThresholdMs;
+    private final boolean boostPriorityOnInversion;
+    private final DeadlockReporter reporter;
+    private final boolean asyncReporting;
+    private final int reportQueueCapacity;
+    private final AsyncReporter.OverflowPolicy reportOverflowPolicy;
+    private final int journalSizeBytes;
+    private final String uploadEndpoint;
+    private final int maxStackDepth;
 
     private DeadlockDetectorConfig(Builder builder) {
         this.detectSynchronized = builder.detectSynchronized;
@@ -19,6 +51,30 @@ public final class DeadlockDetectorConfig {
         this.detectionIntervalMs = builder.detectionIntervalMs;
         this.initialDelayMs = builder.initialDelayMs;
         this.anrThresholdMs = builder.anrThresholdMs;
+        this.anrSampleIntervalMs = builder.anrSampleIntervalMs;
+        this.lockWaitThresholdMs = builder.lockWaitThresholdMs;
+        this.cpuBudget = builder.cpuBudget;
+        this.detectSlowMessage = builder.detectSlowMessage;
+        this.slowMessageThresholdMs = builder.slowMessageThresholdMs;
+        this.messageHistorySize = builder.messageHistorySize;
+        this.detectFrameJank = builder.detectFrameJank;
+        this.longFrameThresholdMs = builder.longFrameThresholdMs;
+        this.jankRunFrames = builder.jankRunFrames;
+        this.detectExecutorStarvation = builder.detectExecutorStarvation;
+        this.queueLatencyThresholdMs = builder.queueLatencyThresholdMs;
+        this.captureSubmissionSites = builder.captureSubmissionSites;
+        this.stuckThreadThresholdMs = builder.stuckThreadThresholdMs;
+        this.stuckThreadIdleFrames = Collections.unmodifiableList(new ArrayList<>(builder.stuckThreadIdleFrames));
+        this.detectPriorityInversion = builder.detectPriorityInversion;
+        this.priorityInversionThresholdMs = builder.priorityInversionThresholdMs;
+        this.boostPriorityOnInversion = builder.boostPriorityOnInversion;
+        this.reporter = builder.reporter;
+        this.asyncReporting = builder.asyncReporting;
+        this.reportQueueCapacity = builder.reportQueueCapacity;
+        this.reportOverflowPolicy = builder.reportOverflowPolicy;
+        this.journalSizeBytes = builder.journalSizeBytes;
+        this.uploadEndpoint = builder.uploadEndpoint;
+        this.maxStackDepth = builder.maxStackDepth;
     }
 
     /**
@@ -52,6 +108,105 @@ public final class DeadlockDetectorConfig {
         return anrThresholdMs;
     }
 
+    public long getAnrSampleIntervalMs() {
+        return anrSampleIntervalMs;
+    }
+
+    public long getLockWaitThresholdMs() {
+        return lockWaitThresholdMs;
+    }
+
+    public double getCpuBudget() {
+        return cpuBudget;
+    }
+
+    public boolean isDetectSlowMessage() {
+        return detectSlowMessage;
+    }
+
+    public long getSlowMessageThresholdMs() {
+        return slowMessageThresholdMs;
+    }
+
+    public int getMessageHistorySize() {
+        return messageHistorySize;
+    }
+
+    public boolean isDetectFrameJank() {
+        return detectFrameJank;
+    }
+
+    public long getLongFrameThresholdMs() {
+        return longFrameThresholdMs;
+    }
+
+    public int getJankRunFrames() {
+        return jankRunFrames;
+    }
+
+    public boolean isDetectExecutorStarvation() {
+        return detectExecutorStarvation;
+    }
+
+    public long getQueueLatencyThresholdMs() {
+        return queueLatencyThresholdMs;
+    }
+
+    public boolean isCaptureSubmissionSites() {
+        return captureSubmissionSites;
+    }
+
+    public long getStuckThreadThresholdMs() {
+        return stuckThreadThresholdMs;
+    }
+
+    public List<String> getStuckThreadIdleFrames() {
+        return stuckThreadIdleFrames;
+    }
+
+    public boolean isDetectPriorityInversion() {
+        return detectPriorityInversion;
+    }
+
+    public long getPriorityInversionThresholdMs() {
+        return priorityInversionThresholdMs;
+    }
+
+    public boolean isBoostPriorityOnInversion() {
+        return boostPriorityOnInversion;
+    }
+
+    /**
+     * 自定义报告输出，为null时使用LogcatReporter
+     */
+    public DeadlockReporter getReporter() {
+        return reporter;
+    }
+
+    public boolean isAsyncReporting() {
+        return asyncReporting;
+    }
+
+    public int getReportQueueCapacity() {
+        return reportQueueCapacity;
+    }
+
+    public AsyncReporter.OverflowPolicy getReportOverflowPolicy() {
+        return reportOverflowPolicy;
+    }
+
+    public int getJournalSizeBytes() {
+        return journalSizeBytes;
+    }
+
+    public String getUploadEndpoint() {
+        return uploadEndpoint;
+    }
+
+    public int getMaxStackDepth() {
+        return maxStackDepth;
+    }
+
     public static class Builder {
         private boolean detectSynchronized = true;
         private boolean detectReentrantLock = true;
@@ -59,6 +214,30 @@ public final class DeadlockDetectorConfig {
         private long detectionIntervalMs = 5000;  // 5秒检测一次
         private long initialDelayMs = 3000;       // 启动后3秒开始
         private long anrThresholdMs = 5000;       // ANR阈值5秒
+        private long anrSampleIntervalMs = 100;   // 主线程阻塞期间每100毫秒采样一次堆栈
+        private long lockWaitThresholdMs = 0;     // 0表示不启用锁等待看门狗
+        private double cpuBudget = 0;             // 0表示不限制CPU预算
+        private boolean detectSlowMessage = false;
+        private long slowMessageThresholdMs = 200; // 慢消息阈值200毫秒
+        private int messageHistorySize = 0;       // 0表示不记录主线程消息历史
+        private boolean detectFrameJank = false;
+        private long longFrameThresholdMs = 100;  // 长帧阈值100毫秒
+        private int jankRunFrames = 5;            // 连续5帧掉帧时报告
+        private boolean detectExecutorStarvation = true;
+        private long queueLatencyThresholdMs = 5000; // 任务排队超过5秒时报告
+        private boolean captureSubmissionSites = false;
+        private long stuckThreadThresholdMs = 0;  // 0表示不检测卡住线程
+        private final List<String> stuckThreadIdleFrames = new ArrayList<>();
+        private boolean detectPriorityInversion = false;
+        private long priorityInversionThresholdMs = 100; // 反转持续100毫秒时报告
+        private boolean boostPriorityOnInversion = false;
+        private DeadlockReporter reporter;
+        private boolean asyncReporting = true;    // 报告在单独线程输出，不阻塞检测
+        private int reportQueueCapacity = AsyncReporter.DEFAULT_CAPACITY;
+        private AsyncReporter.OverflowPolicy reportOverflowPolicy = AsyncReporter.OverflowPolicy.DROP_OLDEST;
+        private int journalSizeBytes = 0;         // 0表示不写报告日志文件
+        private String uploadEndpoint;            // null表示不上传报告
+        private int maxStackDepth = StackDepthReporter.DEFAULT_MAX_STACK_DEPTH; // 0表示不截断
 
         public Builder() {
         }
@@ -111,6 +290,214 @@ public final class DeadlockDetectorConfig {
             return this;
         }
 
+        /**
+         * 设置主线程阻塞期间的堆栈采样间隔（毫秒），0表示不采样
+         * <p>
+         * 采样结果聚合为帧前缀树附加到ANR报告中
+         */
+        public Builder anrSampleInterval(long intervalMs) {
+            this.anrSampleIntervalMs = intervalMs;
+            return this;
+        }
+
+        /**
+         * 设置锁等待看门狗阈值（毫秒）
+         * <p>
+         * 大于0时ReentrantLock死锁改为事件驱动检测：线程等待被追踪的锁超过阈值时
+         * 只检查它所在的等待链，不再定时全局扫描
+         */
+        public Builder lockWaitThreshold(long thresholdMs) {
+            this.lockWaitThresholdMs = thresholdMs;
+            return this;
+        }
+
+        /**
+         * 设置定时检测的CPU预算，占单核的比例，例如0.005表示不超过单核的0.5%
+         * <p>
+         * 检测开销超出预算时自动拉长检测间隔，0表示不限制
+         */
+        public Builder cpuBudget(double coreFraction) {
+            this.cpuBudget = coreFraction;
+            return this;
+        }
+
+        /**
+         * 是否监控主线程消息分发耗时
+         * <p>
+         * 启用后会通过Looper.setMessageLogging接管主线程消息日志
+         */
+        public Builder detectSlowMessage(boolean detect) {
+            this.detectSlowMessage = detect;
+            return this;
+        }
+
+        /**
+         * 设置慢消息阈值（毫秒），应明显低于ANR阈值
+         */
+        public Builder slowMessageThreshold(long thresholdMs) {
+            this.slowMessageThresholdMs = thresholdMs;
+            return this;
+        }
+
+        /**
+         * 设置保留的主线程最近消息条数，0表示不记录
+         * <p>
+         * 大于0时ANR报告会附带最近分发的消息，同样会接管主线程消息日志
+         */
+        public Builder messageHistorySize(int size) {
+            this.messageHistorySize = size;
+            return this;
+        }
+
+        /**
+         * 是否检测主线程掉帧
+         * <p>
+         * 启用后每帧都会注册Choreographer回调
+         */
+        public Builder detectFrameJank(boolean detect) {
+            this.detectFrameJank = detect;
+            return this;
+        }
+
+        /**
+         * 设置长帧阈值（毫秒），超过时采样主线程堆栈和锁状态
+         */
+        public Builder longFrameThreshold(long thresholdMs) {
+            this.longFrameThresholdMs = thresholdMs;
+            return this;
+        }
+
+        /**
+         * 设置连续掉帧多少帧时报告，0表示不报告连续掉帧
+         */
+        public Builder jankRunFrames(int frames) {
+            this.jankRunFrames = frames;
+            return this;
+        }
+
+        /**
+         * 是否检测被追踪线程池的饥饿和池内任务互等
+         */
+        public Builder detectExecutorStarvation(boolean detect) {
+            this.detectExecutorStarvation = detect;
+            return this;
+        }
+
+        /**
+         * 设置线程池任务排队时长阈值（毫秒），0表示不检测排队时长
+         */
+        public Builder queueLatencyThreshold(long thresholdMs) {
+            this.queueLatencyThresholdMs = thresholdMs;
+            return this;
+        }
+
+        /**
+         * 是否在任务提交时记录调用栈，开启后报告中可以看到阻塞任务的提交位置
+         */
+        public Builder captureSubmissionSites(boolean capture) {
+            this.captureSubmissionSites = capture;
+            return this;
+        }
+
+        /**
+         * 设置卡住线程阈值（毫秒），等待中的线程堆栈超过阈值没有变化时报告，0表示不检测
+         */
+        public Builder stuckThreadThreshold(long thresholdMs) {
+            this.stuckThreadThresholdMs = thresholdMs;
+            return this;
+        }
+
+        /**
+         * 添加卡住线程检测的空闲等待帧（"类名.方法名"前缀），停在这些帧的线程视为空闲，
+         * 在默认的线程池、消息循环等空闲帧之外追加
+         */
+        public Builder addStuckThreadIdleFrame(String framePrefix) {
+            this.stuckThreadIdleFrames.add(framePrefix);
+            return this;
+        }
+
+        /**
+         * 是否检测优先级反转：高优先级线程（如主线程）等待的被追踪锁被低优先级线程持有，需要开启detectReentrantLock
+         */
+        public Builder detectPriorityInversion(boolean detect) {
+            this.detectPriorityInversion = detect;
+            return this;
+        }
+
+        /**
+         * 设置优先级反转报告阈值（毫秒），反转持续超过阈值时报告，0表示发现即报告
+         */
+        public Builder priorityInversionThreshold(long thresholdMs) {
+            this.priorityInversionThresholdMs = thresholdMs;
+            return this;
+        }
+
+        /**
+         * 报告优先级反转时是否临时把持有者提升到等待线程的优先级，等待结束后恢复
+         */
+        public Builder boostPriorityOnInversion(boolean boost) {
+            this.boostPriorityOnInversion = boost;
+            return this;
+        }
+
+        /**
+         * 设置自定义报告输出，默认输出到Logcat
+         */
+        public Builder reporter(DeadlockReporter reporter) {
+            this.reporter = reporter;
+            return this;
+        }
+
+        /**
+         * 是否异步输出报告，开启后检测线程只负责入队
+         */
+        public Builder asyncReporting(boolean async) {
+            this.asyncReporting = async;
+            return this;
+        }
+
+        /**
+         * 设置异步报告队列容量
+         */
+        public Builder reportQueueCapacity(int capacity) {
+            this.reportQueueCapacity = capacity;
+            return this;
+        }
+
+        /**
+         * 设置异步报告队列满时的溢出策略
+         */
+        public Builder reportOverflowPolicy(AsyncReporter.OverflowPolicy policy) {
+            this.reportOverflowPolicy = policy;
+            return this;
+        }
+
+        /**
+         * 设置报告日志文件大小（字节），报告同时写入内存映射的环形文件，进程被杀后下次启动可以读出，0表示关闭
+         */
+        public Builder journalSize(int sizeBytes) {
+            this.journalSizeBytes = sizeBytes;
+            return this;
+        }
+
+        /**
+         * 设置报告上传地址，报告分批gzip压缩后POST到该地址，离线时暂存在缓存目录，null表示不上传
+         */
+        public Builder uploadEndpoint(String url) {
+            this.uploadEndpoint = url;
+            return this;
+        }
+
+        /**
+         * 设置报告中每个线程堆栈保留的最大帧数（从栈顶开始），0表示不截断
+         * <p>
+         * 只在输出报告时截断，检测器仍使用完整堆栈
+         */
+        public Builder maxStackDepth(int depth) {
+            this.maxStackDepth = depth;
+            return this;
+        }
+
         public DeadlockDetectorConfig build() {
             return new DeadlockDetectorConfig(this);
         }
@@ -7,58 +7,145 @@ import android.os.Looper;
 
 import com.deadlock.detector.model.DeadlockReport;
 import com.deadlock.detector.model.DeadlockType;
+import com.deadlock.detector.model.StackDictionary;
+import com.deadlock.detector.model.StackProfile;
 import com.deadlock.detector.model.ThreadDetail;
 import com.deadlock.detector.reporter.DeadlockReporter;
 import com.deadlock.detector.reporter.LogcatReporter;
 
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * ANR检测器 - 检测主线程阻塞
+ * ANR检测器 - 检测主线程及注册的其他Looper线程阻塞
+ * <p>
+ * 所有Looper共用一个worker线程：worker按各自的阈值向Looper发送预分配的ping消息，
+ * 下一次检查时仍未响应即认为阻塞。检查过程本身不分配对象。
  */
 public class ANRDetector implements IDeadlockDetector {
 
     private static final String TAG = "ANRDetector";
 
-    private final Handler mainHandler;
+    public static final String MAIN_LOOPER_NAME = "main";
+
+    /**
+     * 被监控的Looper，ping消息和采样聚合都预先分配并复用
+     */
+    private static final class WatchedLooper {
+        final String name;
+        final Looper looper;
+        final Handler handler;
+        final long thresholdMs;
+        final Runnable ping;
+
+        volatile boolean responseReceived = true;
+        volatile long lastPingTime;
+
+        // 以下字段只在worker线程访问
+        long nextCheckTime;
+        long nextSampleTime;
+        // 防止重复报告同一次ANR
+        boolean anrReported;
+        // 阻塞期间的堆栈采样聚合
+        final StackProfile blockProfile = new StackProfile();
+
+        WatchedLooper(String name, Looper looper, long thresholdMs) {
+            this.name = name;
+            this.looper = looper;
+            this.handler = new Handler(looper);
+            this.thresholdMs = thresholdMs;
+            this.ping = new Runnable() {
+                @Override
+                public void run() {
+                    responseReceived = true;
+                }
+            };
+        }
+    }
+
     private final Handler workerHandler;
     private final HandlerThread workerThread;
-    private final long thresholdMs;
+    private final long sampleIntervalMs;
     private final DeadlockReporter reporter;
+    private final ThreadSnapshotService snapshots = ThreadSnapshotService.getDefault();
 
-    private final AtomicBoolean responseReceived;
-    private final AtomicLong lastCheckTime;
+    private final List<WatchedLooper> watchedLoopers;
     private final AtomicBoolean isMonitoring;
+    private final Runnable checkRunnable;
 
-    // 防止重复报告同一次ANR
-    private final AtomicBoolean anrReported;
+    // 主线程消息历史，用于ANR归因，可为null
+    private volatile LooperMessageMonitor messageMonitor;
 
     public ANRDetector(Application application, long thresholdMs) {
-        this.thresholdMs = thresholdMs;
-        this.mainHandler = new Handler(Looper.getMainLooper());
-        this.workerThread = new HandlerThread("ANRDetector-Worker");
-        this.workerThread.start();
-        this.workerHandler = new Handler(workerThread.getLooper());
-        this.reporter = new LogcatReporter();
-        this.responseReceived = new AtomicBoolean(true);
-        this.lastCheckTime = new AtomicLong(0);
-        this.isMonitoring = new AtomicBoolean(false);
-        this.anrReported = new AtomicBoolean(false);
+        this(application, thresholdMs, 0, new LogcatReporter());
     }
 
     public ANRDetector(Application application, long thresholdMs, DeadlockReporter reporter) {
-        this.thresholdMs = thresholdMs;
-        this.mainHandler = new Handler(Looper.getMainLooper());
+        this(application, thresholdMs, 0, reporter);
+    }
+
+    /**
+     * @param sampleIntervalMs 主线程阻塞期间的堆栈采样间隔（毫秒），0表示不采样
+     */
+    public ANRDetector(Application application, long thresholdMs, long sampleIntervalMs,
+                       DeadlockReporter reporter) {
+        this.sampleIntervalMs = sampleIntervalMs;
         this.workerThread = new HandlerThread("ANRDetector-Worker");
         this.workerThread.start();
         this.workerHandler = new Handler(workerThread.getLooper());
         this.reporter = reporter;
-        this.responseReceived = new AtomicBoolean(true);
-        this.lastCheckTime = new AtomicLong(0);
+        this.watchedLoopers = new CopyOnWriteArrayList<>();
         this.isMonitoring = new AtomicBoolean(false);
-        this.anrReported = new AtomicBoolean(false);
+        this.checkRunnable = new Runnable() {
+            @Override
+            public void run() {
+                checkLoopers();
+            }
+        };
+        this.watchedLoopers.add(new WatchedLooper(MAIN_LOOPER_NAME, Looper.getMainLooper(), thresholdMs));
+    }
+
+    /**
+     * 设置主线程消息监控，ANR报告中会附带最近分发的消息
+     */
+    public void setMessageMonitor(LooperMessageMonitor monitor) {
+        this.messageMonitor = monitor;
+    }
+
+    /**
+     * 注册一个Looper进行阻塞监控，例如数据库、网络等关键HandlerThread
+     *
+     * @param looper      被监控的Looper
+     * @param name        名称，用于报告输出
+     * @param thresholdMs 该Looper的阻塞阈值（毫秒）
+     */
+    public void watchLooper(Looper looper, String name, long thresholdMs) {
+        for (WatchedLooper watched : watchedLoopers) {
+            if (watched.looper == looper) {
+                return;
+            }
+        }
+        watchedLoopers.add(new WatchedLooper(name, looper, thresholdMs));
+        if (isMonitoring.get()) {
+            // 让worker按新的Looper重新计算下一次检查时间
+            workerHandler.removeCallbacks(checkRunnable);
+            workerHandler.post(checkRunnable);
+        }
+    }
+
+    /**
+     * 取消对某个Looper的监控
+     */
+    public void unwatchLooper(Looper looper) {
+        for (WatchedLooper watched : watchedLoopers) {
+            if (watched.looper == looper) {
+                watchedLoopers.remove(watched);
+                watched.handler.removeCallbacks(watched.ping);
+                return;
+            }
+        }
     }
 
     @Override
@@ -70,81 +157,136 @@ public class ANRDetector implements IDeadlockDetector {
 
     private void startMonitoring() {
         if (isMonitoring.compareAndSet(false, true)) {
-            scheduleCheck();
+            workerHandler.post(checkRunnable);
         }
     }
 
-    private void scheduleCheck() {
+    /**
+     * worker线程上的统一检查：到期的Looper检查上一次ping的响应并发送新的ping，
+     * 未响应期间的Looper按采样间隔采样堆栈，最后按最近的到期时间重新安排
+     */
+    private void checkLoopers() {
         if (!isMonitoring.get()) return;
 
-        workerHandler.postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                checkMainThread();
+        long now = System.currentTimeMillis();
+        long nextWakeUp = Long.MAX_VALUE;
+
+        for (WatchedLooper watched : watchedLoopers) {
+            boolean alive = true;
+            if (watched.nextCheckTime == 0) {
+                // 新注册的Looper，先发送第一次ping
+                alive = sendPing(watched, now);
+            } else if (now >= watched.nextCheckTime) {
+                alive = checkLooper(watched, now);
+            } else if (sampleIntervalMs > 0 && now >= watched.nextSampleTime) {
+                sampleLooper(watched, now);
             }
-        }, thresholdMs);
-    }
 
-    private void checkMainThread() {
-        if (!isMonitoring.get()) return;
+            if (!alive) {
+                // Looper已退出，ping无法投递
+                watchedLoopers.remove(watched);
+                continue;
+            }
+
+            nextWakeUp = Math.min(nextWakeUp, watched.nextCheckTime);
+            if (sampleIntervalMs > 0) {
+                nextWakeUp = Math.min(nextWakeUp, watched.nextSampleTime);
+            }
+        }
+
+        if (nextWakeUp != Long.MAX_VALUE) {
+            workerHandler.postDelayed(checkRunnable, Math.max(0, nextWakeUp - now));
+        }
+    }
 
+    private boolean checkLooper(WatchedLooper watched, long now) {
         // 检查上一次的响应
-        if (!responseReceived.get()) {
-            // 主线程没有响应，可能发生ANR
-            long blockTime = System.currentTimeMillis() - lastCheckTime.get();
+        if (!watched.responseReceived) {
+            // Looper线程没有响应，可能发生ANR
+            long blockTime = now - watched.lastPingTime;
 
-            // 只报告一次，直到主线程恢复
-            if (anrReported.compareAndSet(false, true)) {
-                reportANR(blockTime);
+            // 只报告一次，直到Looper线程恢复
+            if (!watched.anrReported) {
+                watched.anrReported = true;
+                reportANR(watched, blockTime);
             }
-        } else {
-            // 主线程已响应，重置ANR报告标志
-            anrReported.set(false);
+            // 上一次的ping仍在队列中，不重复发送，阻塞时长继续从那次ping开始计算
+            watched.nextCheckTime = now + watched.thresholdMs;
+            return true;
         }
 
-        // 发送新的检测消息
-        responseReceived.set(false);
-        lastCheckTime.set(System.currentTimeMillis());
+        // 已响应，重置ANR报告标志和上一次阻塞的采样
+        watched.anrReported = false;
+        watched.blockProfile.reset();
+        return sendPing(watched, now);
+    }
 
-        mainHandler.post(new Runnable() {
-            @Override
-            public void run() {
-                responseReceived.set(true);
-            }
-        });
+    private boolean sendPing(WatchedLooper watched, long now) {
+        watched.responseReceived = false;
+        watched.lastPingTime = now;
+        watched.nextCheckTime = now + watched.thresholdMs;
+        watched.nextSampleTime = now + sampleIntervalMs;
+        return watched.handler.post(watched.ping);
+    }
 
-        // 安排下一次检测
-        scheduleCheck();
+    /**
+     * Looper未响应期间按固定间隔采样堆栈，聚合到前缀树中
+     */
+    private void sampleLooper(WatchedLooper watched, long now) {
+        if (watched.responseReceived) {
+            // 已响应，本轮不再采样，避免worker按采样间隔空转
+            watched.nextSampleTime = Long.MAX_VALUE;
+            return;
+        }
+        watched.blockProfile.add(watched.looper.getThread().getStackTrace());
+        watched.nextSampleTime = now + sampleIntervalMs;
     }
 
-    private void reportANR(long blockTimeMs) {
-        Thread mainThread = Looper.getMainLooper().getThread();
+    private void reportANR(WatchedLooper watched, long blockTimeMs) {
+        Thread blockedThread = watched.looper.getThread();
+        boolean isMain = watched.looper == Looper.getMainLooper();
 
         DeadlockReport.Builder builder = new DeadlockReport.Builder()
                 .type(DeadlockType.ANR)
+                .looperName(watched.name)
                 .timestamp(System.currentTimeMillis())
-                .message("Main thread blocked for " + blockTimeMs + "ms (threshold: " + thresholdMs + "ms)");
-
-        // 主线程详情
-        ThreadDetail mainDetail = new ThreadDetail.Builder()
-                .threadId(mainThread.getId())
-                .threadName(mainThread.getName())
-                .threadState(mainThread.getState().name())
-                .stackTrace(mainThread.getStackTrace())
+                .message((isMain ? "Main thread" : "Looper \"" + watched.name + "\"")
+                        + " blocked for " + blockTimeMs + "ms (threshold: " + watched.thresholdMs + "ms)");
+
+        // 与同一次检测中的其他检测器共用线程快照，一次转储所有线程，阻塞线程与其他线程的堆栈来自同一时刻
+        ThreadSnapshotService.Snapshot snapshot = snapshots.current();
+        Map<Thread, StackTraceElement[]> allStackTraces = snapshot.getAllStackTraces();
+
+        // 阻塞线程详情
+        ThreadDetail blockedDetail = new ThreadDetail.Builder()
+                .stackDictionary(StackDictionary.getDefault())
+                .threadId(blockedThread.getId())
+                .threadName(blockedThread.getName())
+                .threadState(snapshot.getState(blockedThread).name())
+                .stackTrace(snapshot.getStackTrace(blockedThread))
                 .blockTimeMs(blockTimeMs)
                 .build();
 
-        builder.addThreadDetail(mainDetail);
+        builder.addThreadDetail(blockedDetail);
+
+        if (!watched.blockProfile.isEmpty()) {
+            builder.stackProfile(watched.blockProfile.copy());
+        }
+
+        LooperMessageMonitor monitor = messageMonitor;
+        if (isMain && monitor != null) {
+            builder.recentMessages(monitor.getRecentMessages());
+        }
 
         // 收集所有线程信息，帮助分析
-        Map<Thread, StackTraceElement[]> allStackTraces = Thread.getAllStackTraces();
         for (Map.Entry<Thread, StackTraceElement[]> entry : allStackTraces.entrySet()) {
             Thread t = entry.getKey();
-            if (t.getId() != mainThread.getId()) {
+            if (t.getId() != blockedThread.getId()) {
                 ThreadDetail otherDetail = new ThreadDetail.Builder()
+                        .stackDictionary(StackDictionary.getDefault())
                         .threadId(t.getId())
                         .threadName(t.getName())
-                        .threadState(t.getState().name())
+                        .threadState(snapshot.getState(t).name())
                         .stackTrace(entry.getValue())
                         .build();
                 builder.addOtherThreadDetail(otherDetail);
@@ -163,7 +305,10 @@ public class ANRDetector implements IDeadlockDetector {
     public void destroy() {
         isMonitoring.set(false);
         workerHandler.removeCallbacksAndMessages(null);
-        mainHandler.removeCallbacksAndMessages(null);
+        for (WatchedLooper watched : watchedLoopers) {
+            watched.handler.removeCallbacks(watched.ping);
+        }
+        watchedLoopers.clear();
         workerThread.quitSafely();
     }
 }
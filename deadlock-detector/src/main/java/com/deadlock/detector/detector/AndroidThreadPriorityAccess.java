@@ -0,0 +1,66 @@
+package com.deadlock.detector.detector;
+
+import android.os.Looper;
+import android.os.Process;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Android线程优先级 - 读写nice值（Process.getThreadPriority/setThreadPriority）
+ * <p>
+ * 调度实际使用的是nice值，Java优先级只在Thread.setPriority时换算一次，之后用Process修改不会反映到Thread上。
+ * nice值需要tid，而tid只能在线程自己身上取到：主线程的tid等于pid，其他线程在第一次等待或持有被追踪锁时记录。
+ * 还没有tid的线程按ART的Java优先级映射表估算。返回值取nice值的相反数，保持"越大越重要"。
+ */
+public class AndroidThreadPriorityAccess implements ThreadPriorityAccess {
+
+    // ART中Java优先级1-10对应的nice值
+    private static final int[] JAVA_TO_NICE = {19, 16, 13, 10, 0, -2, -4, -5, -6, -8};
+
+    // 线程ID -> tid
+    private final ConcurrentHashMap<Long, Integer> tids = new ConcurrentHashMap<>();
+
+    public AndroidThreadPriorityAccess() {
+        Thread main = Looper.getMainLooper().getThread();
+        tids.put(main.getId(), Process.myPid());
+    }
+
+    @Override
+    public void onThreadSeen(Thread current) {
+        tids.putIfAbsent(current.getId(), Process.myTid());
+    }
+
+    @Override
+    public void onThreadGone(long threadId) {
+        tids.remove(threadId);
+    }
+
+    @Override
+    public int getPriority(Thread thread) {
+        Integer tid = tids.get(thread.getId());
+        if (tid != null) {
+            try {
+                return -Process.getThreadPriority(tid);
+            } catch (IllegalArgumentException e) {
+                // 线程已经退出
+                tids.remove(thread.getId());
+            }
+        }
+        int javaPriority = Math.max(Thread.MIN_PRIORITY, Math.min(Thread.MAX_PRIORITY, thread.getPriority()));
+        return -JAVA_TO_NICE[javaPriority - 1];
+    }
+
+    @Override
+    public boolean setPriority(Thread thread, int priority) {
+        Integer tid = tids.get(thread.getId());
+        if (tid == null) {
+            return false;
+        }
+        try {
+            Process.setThreadPriority(tid, -priority);
+            return true;
+        } catch (IllegalArgumentException | SecurityException e) {
+            return false;
+        }
+    }
+}
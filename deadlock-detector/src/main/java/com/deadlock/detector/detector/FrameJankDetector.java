@@ -0,0 +1,281 @@
+package com.deadlock.detector.detector;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import com.deadlock.detector.model.DeadlockReport;
+import com.deadlock.detector.model.DeadlockType;
+import com.deadlock.detector.model.StackDictionary;
+import com.deadlock.detector.model.ThreadDetail;
+import com.deadlock.detector.reporter.DeadlockReporter;
+import com.deadlock.detector.reporter.LogcatReporter;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 掉帧检测器 - 基于Choreographer帧回调
+ * <p>
+ * 主线程的帧回调只更新基本类型字段和预分配数组：帧间隔直方图、连续掉帧计数、长帧环形数组。
+ * 看门狗线程在帧间隔超过长帧阈值时（主线程仍卡在这一帧里）采样主线程堆栈，
+ * 并结合{@link ReentrantLockDetector}记录的锁状态，帧结束后一起报告。
+ */
+public class FrameJankDetector implements IDeadlockDetector, Choreographer.FrameCallback {
+
+    private static final String TAG = "FrameJankDetector";
+
+    public static final long DEFAULT_FRAME_INTERVAL_NANOS = 16_666_667L;
+
+    /**
+     * 直方图桶数，第i个桶统计掉了i帧的帧间隔，最后一个桶包含更多
+     */
+    public static final int HISTOGRAM_BUCKETS = 32;
+
+    private static final int EVENT_RING_SIZE = 16;
+    private static final int EVENT_LONG_FRAME = 1;
+    private static final int EVENT_JANK_RUN = 2;
+
+    private final long frameIntervalNanos;
+    private final long longFrameNanos;
+    private final int jankRunFrames;
+    private final DeadlockReporter reporter;
+    private final ReentrantLockDetector lockDetector;
+
+    private final Handler mainHandler;
+    private final HandlerThread watchdogThread;
+    private final Handler watchdogHandler;
+    private final Runnable installRunnable;
+    private final Runnable watchdogRunnable;
+
+    // 以下字段只由主线程写入
+    private volatile long lastFrameNanos;
+    private volatile long frameCount;
+    private final long[] histogram = new long[HISTOGRAM_BUCKETS];
+    private int currentRunFrames;
+    private long currentRunDropped;
+
+    // 长帧/连续掉帧事件环形数组，主线程写，看门狗线程读
+    private final int[] eventTypes = new int[EVENT_RING_SIZE];
+    private final long[] eventFrameSeq = new long[EVENT_RING_SIZE];
+    private final long[] eventDurationNanos = new long[EVENT_RING_SIZE];
+    private final long[] eventDroppedFrames = new long[EVENT_RING_SIZE];
+    private volatile long eventsWritten;
+
+    // 以下字段只在看门狗线程访问
+    private long eventsRead;
+    private long sampledFrameSeq = -1;
+    private StackTraceElement[] sampledStack;
+    private List<String> sampledHeldLocks;
+    private String sampledWaitingLock;
+
+    private volatile boolean installed;
+    private volatile boolean running;
+
+    public FrameJankDetector(long longFrameMs, int jankRunFrames, ReentrantLockDetector lockDetector) {
+        this(DEFAULT_FRAME_INTERVAL_NANOS, longFrameMs, jankRunFrames, lockDetector, new LogcatReporter());
+    }
+
+    /**
+     * @param frameIntervalNanos 期望的帧间隔（纳秒），60Hz约为16.67毫秒
+     * @param longFrameMs        长帧阈值（毫秒），超过时采样主线程堆栈并报告
+     * @param jankRunFrames      连续掉帧多少帧时报告，0表示不报告连续掉帧
+     * @param lockDetector       用于关联主线程锁状态，可为null
+     * @param reporter           报告输出
+     */
+    public FrameJankDetector(long frameIntervalNanos, long longFrameMs, int jankRunFrames,
+                             ReentrantLockDetector lockDetector, DeadlockReporter reporter) {
+        this.frameIntervalNanos = frameIntervalNanos;
+        this.longFrameNanos = TimeUnit.MILLISECONDS.toNanos(longFrameMs);
+        this.jankRunFrames = jankRunFrames;
+        this.lockDetector = lockDetector;
+        this.reporter = reporter;
+        this.mainHandler = new Handler(Looper.getMainLooper());
+        this.watchdogThread = new HandlerThread("FrameJankDetector-Watchdog");
+        this.watchdogThread.start();
+        this.watchdogHandler = new Handler(watchdogThread.getLooper());
+        this.installRunnable = new Runnable() {
+            @Override
+            public void run() {
+                if (running) {
+                    Choreographer.getInstance().postFrameCallback(FrameJankDetector.this);
+                }
+            }
+        };
+        this.watchdogRunnable = new Runnable() {
+            @Override
+            public void run() {
+                watchdogCheck();
+            }
+        };
+    }
+
+    @Override
+    public void detect() {
+        if (!installed) {
+            installed = true;
+            running = true;
+            // Choreographer需要在主线程获取
+            mainHandler.post(installRunnable);
+            watchdogHandler.postDelayed(watchdogRunnable, TimeUnit.NANOSECONDS.toMillis(longFrameNanos) / 2);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!running) {
+            return;
+        }
+        long last = lastFrameNanos;
+        lastFrameNanos = frameTimeNanos;
+        long seq = frameCount;
+        frameCount = seq + 1;
+        Choreographer.getInstance().postFrameCallback(this);
+
+        if (last == 0) {
+            return;
+        }
+
+        long interval = frameTimeNanos - last;
+        long dropped = Math.max(0, (interval - frameIntervalNanos / 2) / frameIntervalNanos);
+        histogram[(int) Math.min(dropped, HISTOGRAM_BUCKETS - 1)]++;
+
+        if (interval >= longFrameNanos) {
+            recordEvent(EVENT_LONG_FRAME, seq, interval, dropped);
+        }
+
+        if (dropped > 0) {
+            currentRunFrames++;
+            currentRunDropped += dropped;
+        } else {
+            if (jankRunFrames > 0 && currentRunFrames >= jankRunFrames) {
+                recordEvent(EVENT_JANK_RUN, seq, currentRunFrames, currentRunDropped);
+            }
+            currentRunFrames = 0;
+            currentRunDropped = 0;
+        }
+    }
+
+    private void recordEvent(int type, long frameSeq, long duration, long droppedFrames) {
+        long index = eventsWritten;
+        int slot = (int) (index % EVENT_RING_SIZE);
+        eventTypes[slot] = type;
+        eventFrameSeq[slot] = frameSeq;
+        eventDurationNanos[slot] = duration;
+        eventDroppedFrames[slot] = droppedFrames;
+        eventsWritten = index + 1;
+    }
+
+    /**
+     * 看门狗线程：主线程卡在当前帧超过阈值时采样一次堆栈，并处理主线程记录的事件
+     */
+    private void watchdogCheck() {
+        if (!running) {
+            return;
+        }
+
+        long last = lastFrameNanos;
+        long seq = frameCount;
+        if (last != 0 && seq != sampledFrameSeq && System.nanoTime() - last >= longFrameNanos) {
+            Thread mainThread = Looper.getMainLooper().getThread();
+            sampledFrameSeq = seq;
+            sampledStack = mainThread.getStackTrace();
+            if (lockDetector != null) {
+                sampledHeldLocks = lockDetector.getHeldLockNames(mainThread.getId());
+                sampledWaitingLock = lockDetector.getWaitingLockName(mainThread.getId());
+            }
+        }
+
+        drainEvents();
+        watchdogHandler.postDelayed(watchdogRunnable, TimeUnit.NANOSECONDS.toMillis(longFrameNanos) / 2);
+    }
+
+    private void drainEvents() {
+        long written = eventsWritten;
+        if (written - eventsRead > EVENT_RING_SIZE) {
+            eventsRead = written - EVENT_RING_SIZE;
+        }
+        while (eventsRead < written) {
+            int slot = (int) (eventsRead % EVENT_RING_SIZE);
+            int type = eventTypes[slot];
+            long frameSeq = eventFrameSeq[slot];
+            long duration = eventDurationNanos[slot];
+            long dropped = eventDroppedFrames[slot];
+            boolean overwritten = eventsWritten - eventsRead >= EVENT_RING_SIZE;
+            eventsRead++;
+            if (overwritten) {
+                continue;
+            }
+            if (type == EVENT_LONG_FRAME) {
+                reportLongFrame(frameSeq, duration, dropped);
+            } else if (type == EVENT_JANK_RUN) {
+                reportJankRun(duration, dropped);
+            }
+        }
+    }
+
+    private void reportLongFrame(long frameSeq, long durationNanos, long droppedFrames) {
+        Thread mainThread = Looper.getMainLooper().getThread();
+        long durationMs = TimeUnit.NANOSECONDS.toMillis(durationNanos);
+
+        ThreadDetail.Builder detail = new ThreadDetail.Builder()
+                .stackDictionary(StackDictionary.getDefault())
+                .threadId(mainThread.getId())
+                .threadName(mainThread.getName())
+                .threadState(mainThread.getState().name())
+                .blockTimeMs(durationMs);
+        // 长帧事件的序号等于这一帧卡住期间的frameCount，与看门狗采样时记录的一致说明采样发生在这一帧中
+        if (frameSeq == sampledFrameSeq) {
+            detail.stackTrace(sampledStack)
+                    .heldLocks(sampledHeldLocks)
+                    .waitingForLock(sampledWaitingLock);
+        }
+
+        DeadlockReport report = new DeadlockReport.Builder()
+                .type(DeadlockType.FRAME_JANK)
+                .timestamp(System.currentTimeMillis())
+                .message("Long frame " + durationMs + "ms, " + droppedFrames + " frame(s) dropped")
+                .addThreadDetail(detail.build())
+                .build();
+        reporter.report(report);
+    }
+
+    private void reportJankRun(long jankFrames, long droppedFrames) {
+        DeadlockReport report = new DeadlockReport.Builder()
+                .type(DeadlockType.FRAME_JANK)
+                .timestamp(System.currentTimeMillis())
+                .message(jankFrames + " consecutive janky frames, " + droppedFrames + " frame(s) dropped")
+                .build();
+        reporter.report(report);
+    }
+
+    /**
+     * 获取帧间隔直方图的拷贝，下标为掉帧数
+     */
+    public long[] getHistogram() {
+        return histogram.clone();
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    @Override
+    public String getName() {
+        return "FrameJankDetector";
+    }
+
+    @Override
+    public void destroy() {
+        running = false;
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                Choreographer.getInstance().removeFrameCallback(FrameJankDetector.this);
+            }
+        });
+        watchdogHandler.removeCallbacksAndMessages(null);
+        watchdogThread.quitSafely();
+    }
+}
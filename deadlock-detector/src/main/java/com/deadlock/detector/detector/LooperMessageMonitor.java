@@ -0,0 +1,373 @@
+package com.deadlock.detector.detector;
+
+import android.os.Looper;
+import android.util.Printer;
+
+import com.deadlock.detector.model.DeadlockReport;
+import com.deadlock.detector.model.DeadlockType;
+import com.deadlock.detector.model.MessageRecord;
+import com.deadlock.detector.reporter.DeadlockReporter;
+import com.deadlock.detector.reporter.LogcatReporter;
+import com.deadlock.detector.stats.CostProbe;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looper消息分发监控 - 统计主线程每条消息的耗时
+ * <p>
+ * 通过{@link Looper#setMessageLogging}挂钩 ">>>>> Dispatching" / "<<<<< Finished" 日志行。
+ * 主线程上只做前缀判断和基本类型写入，不分配对象；
+ * 慢消息先写入预分配的环形数组，由检测线程在{@link #detect()}中解析并报告。
+ * 同时在固定大小的环形数组中保留最近N条消息的历史，供ANR报告和按需查询使用。
+ * <p>
+ * Looper没有读取当前Printer的接口，安装时会替换应用已经设置的消息日志Printer；
+ * 需要保留时把原来的Printer作为delegate传入，监控会把每一行转发给它，{@link #destroy()}时再装回去。
+ */
+public class LooperMessageMonitor implements IDeadlockDetector, Printer {
+
+    private static final String TAG = "LooperMessageMonitor";
+
+    static final String DISPATCH_PREFIX = ">>>>> Dispatching to ";
+    static final String FINISH_PREFIX = "<<<<< Finished to ";
+
+    /**
+     * 耗时直方图桶数，第i个桶统计 [2^(i-1), 2^i) 毫秒，第0个桶统计不足1毫秒的消息
+     */
+    public static final int HISTOGRAM_BUCKETS = 16;
+
+    private static final int SLOW_RING_SIZE = 16;
+
+    private final Looper looper;
+    private final long slowThresholdNanos;
+    private final DeadlockReporter reporter;
+    private final Printer delegate;
+
+    // 以下字段只由Looper线程写入
+    private volatile String currentDispatch;
+    private volatile long dispatchStartNanos;
+    private long dispatchStartCpuNanos;
+    private long lastFinishNanos;
+    private final long[] histogram = new long[HISTOGRAM_BUCKETS];
+    private volatile long messageCount;
+    private long totalDispatchNanos;
+    private long maxDispatchNanos;
+
+    // 慢消息环形数组，Looper线程写，检测线程读
+    private final String[] slowLines = new String[SLOW_RING_SIZE];
+    private final long[] slowDurations = new long[SLOW_RING_SIZE];
+    private final long[] slowTimestamps = new long[SLOW_RING_SIZE];
+    private volatile long slowWritten;
+    // 只由检测线程访问
+    private long slowRead;
+    private long slowDropped;
+
+    // 最近消息历史，环形数组，Looper线程写，任意线程快照读取
+    private final int historySize;
+    private final String[] historyLines;
+    private final long[] historyStartNanos;
+    private final long[] historyWallNanos;
+    private final long[] historyCpuNanos;
+    private final long[] historyIdleNanos;
+    private volatile long historyWritten;
+
+    private volatile boolean installed;
+
+    /**
+     * @param slowThresholdMs 慢消息阈值（毫秒），0表示只记录不报告
+     * @param historySize     保留的最近消息条数，0表示不记录历史
+     */
+    public LooperMessageMonitor(long slowThresholdMs, int historySize) {
+        this(Looper.getMainLooper(), slowThresholdMs, historySize, new LogcatReporter(), null);
+    }
+
+    /**
+     * @param looper          被监控的Looper
+     * @param slowThresholdMs 慢消息阈值（毫秒），0表示只记录不报告
+     * @param historySize     保留的最近消息条数，0表示不记录历史
+     * @param reporter        报告输出
+     * @param delegate        原有的消息日志Printer，会继续收到所有日志行，可为null
+     */
+    public LooperMessageMonitor(Looper looper, long slowThresholdMs, int historySize,
+                                DeadlockReporter reporter, Printer delegate) {
+        this.looper = looper;
+        this.slowThresholdNanos = slowThresholdMs > 0
+                ? TimeUnit.MILLISECONDS.toNanos(slowThresholdMs) : Long.MAX_VALUE;
+        this.reporter = reporter;
+        this.delegate = delegate;
+        this.historySize = historySize;
+        this.historyLines = new String[historySize];
+        this.historyStartNanos = new long[historySize];
+        this.historyWallNanos = new long[historySize];
+        this.historyCpuNanos = new long[historySize];
+        this.historyIdleNanos = new long[historySize];
+    }
+
+    @Override
+    public void println(String x) {
+        if (delegate != null) {
+            delegate.println(x);
+        }
+        if (x == null || x.isEmpty()) {
+            return;
+        }
+
+        char first = x.charAt(0);
+        if (first == '>' && x.startsWith(DISPATCH_PREFIX)) {
+            if (historySize > 0) {
+                dispatchStartCpuNanos = CostProbe.threadCpuTimeNanos();
+            }
+            dispatchStartNanos = System.nanoTime();
+            currentDispatch = x;
+        } else if (first == '<' && x.startsWith(FINISH_PREFIX)) {
+            String dispatch = currentDispatch;
+            if (dispatch == null) {
+                // 安装监控时正在分发的消息，没有开始时间
+                return;
+            }
+            long now = System.nanoTime();
+            currentDispatch = null;
+            onMessageFinished(dispatch, now - dispatchStartNanos);
+            if (historySize > 0) {
+                recordHistory(dispatch, now);
+            }
+            lastFinishNanos = now;
+        }
+    }
+
+    private void recordHistory(String dispatchLine, long finishNanos) {
+        long startNanos = dispatchStartNanos;
+        long cpuStart = dispatchStartCpuNanos;
+        long cpuEnd = cpuStart >= 0 ? CostProbe.threadCpuTimeNanos() : -1;
+
+        long index = historyWritten;
+        int slot = (int) (index % historySize);
+        historyLines[slot] = dispatchLine;
+        historyStartNanos[slot] = startNanos;
+        historyWallNanos[slot] = finishNanos - startNanos;
+        historyCpuNanos[slot] = cpuEnd >= 0 ? cpuEnd - cpuStart : -1;
+        historyIdleNanos[slot] = lastFinishNanos > 0 ? startNanos - lastFinishNanos : 0;
+        historyWritten = index + 1;
+    }
+
+    private void onMessageFinished(String dispatchLine, long durationNanos) {
+        histogram[bucketOf(durationNanos)]++;
+        totalDispatchNanos += durationNanos;
+        if (durationNanos > maxDispatchNanos) {
+            maxDispatchNanos = durationNanos;
+        }
+        messageCount++;
+
+        if (durationNanos >= slowThresholdNanos) {
+            long index = slowWritten;
+            int slot = (int) (index % SLOW_RING_SIZE);
+            slowLines[slot] = dispatchLine;
+            slowDurations[slot] = durationNanos;
+            slowTimestamps[slot] = System.currentTimeMillis();
+            slowWritten = index + 1;
+        }
+    }
+
+    static int bucketOf(long durationNanos) {
+        long ms = durationNanos / 1_000_000L;
+        int bucket = 64 - Long.numberOfLeadingZeros(ms);
+        return Math.min(bucket, HISTOGRAM_BUCKETS - 1);
+    }
+
+    @Override
+    public void detect() {
+        if (!installed) {
+            installed = true;
+            looper.setMessageLogging(this);
+            return;
+        }
+        drainSlowMessages();
+    }
+
+    /**
+     * 在检测线程上解析并报告慢消息
+     */
+    private void drainSlowMessages() {
+        long written = slowWritten;
+        if (written - slowRead > SLOW_RING_SIZE) {
+            // 检测线程跟不上时旧记录已被覆盖
+            slowDropped += written - slowRead - SLOW_RING_SIZE;
+            slowRead = written - SLOW_RING_SIZE;
+        }
+        while (slowRead < written) {
+            int slot = (int) (slowRead % SLOW_RING_SIZE);
+            String line = slowLines[slot];
+            long durationMs = TimeUnit.NANOSECONDS.toMillis(slowDurations[slot]);
+            long timestamp = slowTimestamps[slot];
+            // 读取后确认没有被Looper线程覆盖（写入方可能正在写这个槽位）
+            boolean overwritten = slowWritten - slowRead >= SLOW_RING_SIZE;
+            slowRead++;
+            if (overwritten || line == null) {
+                slowDropped++;
+                continue;
+            }
+            reportSlowMessage(line, durationMs, timestamp);
+        }
+    }
+
+    private void reportSlowMessage(String dispatchLine, long durationMs, long timestamp) {
+        Thread thread = looper.getThread();
+        DeadlockReport report = new DeadlockReport.Builder()
+                .type(DeadlockType.SLOW_MESSAGE)
+                .timestamp(timestamp)
+                .message("Message on " + thread.getName() + " took " + durationMs + "ms"
+                        + " (threshold: " + TimeUnit.NANOSECONDS.toMillis(slowThresholdNanos) + "ms)"
+                        + ", target=" + DispatchLine.targetClass(dispatchLine)
+                        + ", callback=" + DispatchLine.callbackClass(dispatchLine)
+                        + ", what=" + DispatchLine.what(dispatchLine))
+                .build();
+        reporter.report(report);
+    }
+
+    /**
+     * 获取最近分发的消息，按时间顺序排列；正在分发的消息作为最后一条，标记为进行中
+     * <p>
+     * 可在任意线程调用，只在调用时解析日志行
+     */
+    public List<MessageRecord> getRecentMessages() {
+        List<MessageRecord> records = new ArrayList<>();
+        if (historySize == 0) {
+            return records;
+        }
+        long nowNanos = System.nanoTime();
+        long nowMs = System.currentTimeMillis();
+
+        long written = historyWritten;
+        long from = Math.max(0, written - historySize);
+        for (long i = from; i < written; i++) {
+            int slot = (int) (i % historySize);
+            String line = historyLines[slot];
+            long startNanos = historyStartNanos[slot];
+            long wall = historyWallNanos[slot];
+            long cpu = historyCpuNanos[slot];
+            long idle = historyIdleNanos[slot];
+            // 读取期间被Looper线程覆盖的槽位直接丢弃
+            if (historyWritten - i >= historySize || line == null) {
+                continue;
+            }
+            records.add(toRecord(line, nowMs - TimeUnit.NANOSECONDS.toMillis(nowNanos - startNanos),
+                    wall, cpu, idle, false));
+        }
+
+        String current = currentDispatch;
+        if (current != null) {
+            long startNanos = dispatchStartNanos;
+            records.add(toRecord(current, nowMs - TimeUnit.NANOSECONDS.toMillis(nowNanos - startNanos),
+                    nowNanos - startNanos, -1, 0, true));
+        }
+        return records;
+    }
+
+    private MessageRecord toRecord(String line, long startTimeMs, long wall, long cpu,
+                                   long idle, boolean inProgress) {
+        return new MessageRecord.Builder()
+                .target(DispatchLine.targetClass(line))
+                .callback(DispatchLine.callbackClass(line))
+                .what(DispatchLine.what(line))
+                .startTimeMs(startTimeMs)
+                .wallNanos(wall)
+                .cpuNanos(cpu)
+                .idleBeforeNanos(idle)
+                .inProgress(inProgress)
+                .build();
+    }
+
+    /**
+     * 获取消息耗时直方图的拷贝
+     */
+    public long[] getHistogram() {
+        return histogram.clone();
+    }
+
+    public long getMessageCount() {
+        return messageCount;
+    }
+
+    public long getAverageDispatchNanos() {
+        long count = messageCount;
+        return count > 0 ? totalDispatchNanos / count : 0;
+    }
+
+    public long getMaxDispatchNanos() {
+        return maxDispatchNanos;
+    }
+
+    /**
+     * 检测线程来不及处理而丢弃的慢消息数
+     */
+    public long getDroppedSlowMessages() {
+        return slowDropped;
+    }
+
+    @Override
+    public String getName() {
+        return "LooperMessageMonitor";
+    }
+
+    @Override
+    public void destroy() {
+        if (installed) {
+            looper.setMessageLogging(delegate);
+            installed = false;
+        }
+    }
+
+    /**
+     * 解析Looper的分发日志行
+     * <p>
+     * 格式: ">>>>> Dispatching to " + msg.target + " " + msg.callback + ": " + msg.what，
+     * 其中 target 形如 "Handler (com.example.MyHandler) {1a2b3c}"。
+     * 只在慢路径上调用，允许分配。
+     */
+    static final class DispatchLine {
+
+        private DispatchLine() {
+        }
+
+        static String targetClass(String line) {
+            int open = line.indexOf('(', DISPATCH_PREFIX.length());
+            int close = open >= 0 ? line.indexOf(')', open) : -1;
+            if (open < 0 || close < 0) {
+                return "unknown";
+            }
+            return line.substring(open + 1, close);
+        }
+
+        static String callbackClass(String line) {
+            int brace = line.indexOf("} ", DISPATCH_PREFIX.length());
+            int colon = line.lastIndexOf(": ");
+            if (brace < 0 || colon < brace + 2) {
+                return "unknown";
+            }
+            String callback = line.substring(brace + 2, colon);
+            int at = callback.indexOf('@');
+            return at > 0 ? callback.substring(0, at) : callback;
+        }
+
+        static int what(String line) {
+            int colon = line.lastIndexOf(": ");
+            if (colon < 0) {
+                return -1;
+            }
+            int value = 0;
+            boolean negative = false;
+            for (int i = colon + 2; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (c == '-' && i == colon + 2) {
+                    negative = true;
+                } else if (c >= '0' && c <= '9') {
+                    value = value * 10 + (c - '0');
+                } else {
+                    break;
+                }
+            }
+            return negative ? -value : value;
+        }
+    }
+}
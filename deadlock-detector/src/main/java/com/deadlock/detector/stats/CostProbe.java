@@ -0,0 +1,33 @@
+package com.deadlock.detector.stats;
+
+import android.os.Debug;
+
+/**
+ * 当前线程开销采样
+ */
+public final class CostProbe {
+
+    /**
+     * 运行时不支持时返回的值
+     */
+    public static final long UNSUPPORTED = DetectorStats.UNSUPPORTED;
+
+    private CostProbe() {
+    }
+
+    /**
+     * 当前线程累计CPU时间（纳秒）
+     */
+    public static long threadCpuTimeNanos() {
+        return Debug.threadCpuTimeNanos();
+    }
+
+    /**
+     * 当前线程累计分配字节数
+     * <p>
+     * Android没有公开的按线程分配计数接口，返回{@link #UNSUPPORTED}
+     */
+    public static long threadAllocatedBytes() {
+        return UNSUPPORTED;
+    }
+}